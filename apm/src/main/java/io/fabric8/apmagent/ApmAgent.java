@@ -84,15 +84,15 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         }
     }
 
-    public static void enterMethod(String methodName) {
+    public static void enterMethod(int methodId) {
         if (INSTANCE.started.get()) {
-            INSTANCE.apmAgentContext.enterMethod(Thread.currentThread(), methodName, false);
+            INSTANCE.apmAgentContext.enterMethod(methodId);
         }
     }
 
-    public static void exitMethod(String methodName) {
+    public static void exitMethod(int methodId) {
         if (INSTANCE.started.get()) {
-            INSTANCE.apmAgentContext.exitMethod(Thread.currentThread(), methodName, false);
+            INSTANCE.apmAgentContext.exitMethod(methodId);
         }
     }
 
@@ -110,6 +110,23 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         return Collections.EMPTY_LIST;
     }
 
+    @Override
+    public String getCollapsedStacks() {
+        Strategy s = this.strategy;
+        if (isInitialized() && s instanceof SamplingStrategy) {
+            return ((SamplingStrategy) s).getCallTree().toCollapsedStacks();
+        }
+        return "";
+    }
+
+    @Override
+    public void resetCollapsedStacks() {
+        Strategy s = this.strategy;
+        if (s instanceof SamplingStrategy) {
+            ((SamplingStrategy) s).getCallTree().clear();
+        }
+    }
+
     public List<ThreadMetrics> getThreadMetrics() {
         if (isInitialized()) {
             return apmAgentContext.getThreadMetrics();
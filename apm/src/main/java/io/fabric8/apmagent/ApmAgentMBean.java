@@ -34,4 +34,16 @@ public interface ApmAgentMBean {
      * @return List of all <className>@<methodName>
      */
     List<String> getAllMethods();
+
+    /**
+     * @return the stacks of the running threads sampled by the sampling strategy, in the collapsed format of
+     * flame graphs: one line per stack with its frames from the bottom separated by semicolons, then the
+     * number of samples
+     */
+    String getCollapsedStacks();
+
+    /**
+     * Forgets the sampled stacks
+     */
+    void resetCollapsedStacks();
 }
@@ -23,10 +23,13 @@ import java.beans.PropertyEditorManager;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
 
 public class ApmConfiguration implements ApmConfigurationMBean {
     public enum STRATEGY {
@@ -58,6 +61,9 @@ public class ApmConfiguration implements ApmConfigurationMBean {
     private boolean threadMetricDepthChanged = false;
     private boolean strategyChanged = false;
     private int samplingInterval = 1;
+    private int samplingDepth = 64;
+    private volatile List<Pattern> samplingThreadNames = new ArrayList<>();
+    private volatile Set<String> samplingThreadGroups = new HashSet<>();
     private List<FilterItem> whiteFilterList = new ArrayList<>();
     private List<FilterItem> blackFilterList = new ArrayList<>();
     private List<ApmConfigurationChangeListener> changeListeners = new CopyOnWriteArrayList<>();
@@ -252,6 +258,68 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         this.samplingInterval = samplingInterval;
     }
 
+    public int getSamplingDepth() {
+        return samplingDepth;
+    }
+
+    public void setSamplingDepth(int samplingDepth) {
+        this.samplingDepth = samplingDepth;
+    }
+
+    public String getSamplingThreadNames() {
+        String result = "";
+        for (Pattern pattern : samplingThreadNames) {
+            result += (result.isEmpty() ? "" : ",") + pattern.pattern();
+        }
+        return result;
+    }
+
+    public void setSamplingThreadNames(String samplingThreadNames) {
+        List<Pattern> list = new ArrayList<>();
+        for (String s : samplingThreadNames.split(",")) {
+            if (!s.trim().isEmpty()) {
+                list.add(Pattern.compile(s.trim()));
+            }
+        }
+        this.samplingThreadNames = list;
+    }
+
+    public String getSamplingThreadGroups() {
+        String result = "";
+        for (String group : samplingThreadGroups) {
+            result += (result.isEmpty() ? "" : ",") + group;
+        }
+        return result;
+    }
+
+    public void setSamplingThreadGroups(String samplingThreadGroups) {
+        Set<String> set = new HashSet<>();
+        for (String s : samplingThreadGroups.split(",")) {
+            if (!s.trim().isEmpty()) {
+                set.add(s.trim());
+            }
+        }
+        this.samplingThreadGroups = set;
+    }
+
+    /**
+     * Whether a thread is sampled, which is every thread unless some thread names or groups are given
+     */
+    public boolean isSampled(Thread thread) {
+        List<Pattern> names = samplingThreadNames;
+        Set<String> groups = samplingThreadGroups;
+        if (names.isEmpty() && groups.isEmpty()) {
+            return true;
+        }
+        for (Pattern pattern : names) {
+            if (pattern.matcher(thread.getName()).matches()) {
+                return true;
+            }
+        }
+        ThreadGroup group = thread.getThreadGroup();
+        return group != null && groups.contains(group.getName());
+    }
+
     public String getStrategy() {
         return strategy.name();
     }
@@ -48,6 +48,22 @@ public interface ApmConfigurationMBean {
 
     void setMethodMetricDepth(int methodMetricDepth);
 
+    int getSamplingInterval();
+
+    void setSamplingInterval(int samplingInterval);
+
+    int getSamplingDepth();
+
+    void setSamplingDepth(int samplingDepth);
+
+    String getSamplingThreadNames();
+
+    void setSamplingThreadNames(String samplingThreadNames);
+
+    String getSamplingThreadGroups();
+
+    void setSamplingThreadGroups(String samplingThreadGroups);
+
     String getStrategy();
 
     void setStrategy(String strategy);
@@ -32,6 +32,7 @@ import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -50,7 +51,16 @@ public class ApmAgentContext {
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
     private ConcurrentMap<Thread, ThreadMetrics> threadMetricsMap = new ConcurrentHashMap<>();
+    private final ThreadLocal<ThreadMetrics> currentThreadMetrics = new ThreadLocal<>();
+    // changes when the thread metrics are cleared, so that the threads do not keep using their old metrics
+    private volatile int generation;
+    // the metrics of the methods which have been called
     private ConcurrentMap<String, MethodMetrics> methodMetricsMap = new ConcurrentHashMap<>();
+    // the methods are given a stable id when they are transformed, which is used to record their calls
+    private final ConcurrentMap<String, Integer> methodIds = new ConcurrentHashMap<>();
+    // grown by doubling, only the first methodCount metrics are set
+    private volatile MethodMetrics[] methodMetricsById = new MethodMetrics[64];
+    private volatile int methodCount;
     private ConcurrentMap<Object, ObjectName> objectNameMap = new ConcurrentHashMap<>();
     private MBeanServer mBeanServer;
     private JolokiaServer jolokiaServer;
@@ -59,7 +69,6 @@ public class ApmAgentContext {
     private ObjectName configurationObjectName;
     private final ApmConfiguration configuration;
     private final MonitoredMethodMetrics monitoredMethodMetrics;
-    private AtomicBoolean doHouseKeeping = new AtomicBoolean();
     private Thread backgroundThread;
     private boolean monitorByDefault = true;
 
@@ -70,42 +79,110 @@ public class ApmAgentContext {
         this.monitoredMethodMetrics.setMonitorSize(configuration.getMethodMetricDepth());
     }
 
-    public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
-        if (isInitialized()) {
-            ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
-            if (threadMetrics == null) {
-                threadMetrics = new ThreadMetrics(this, currentThread);
-                threadMetricsMap.put(currentThread, threadMetrics);
+    /**
+     * Gets the id of a method, which is the same every time the method is transformed
+     */
+    public int getMethodId(String fullMethodName) {
+        Integer id = methodIds.get(fullMethodName);
+        if (id == null) {
+            synchronized (methodIds) {
+                id = methodIds.get(fullMethodName);
+                if (id == null) {
+                    MethodMetrics[] methods = methodMetricsById;
+                    id = methodCount;
+                    if (id == methods.length) {
+                        methods = Arrays.copyOf(methods, id * 2);
+                    }
+                    methods[id] = createMethodMetrics(fullMethodName);
+                    methodMetricsById = methods;
+                    // the count is written last, so that the metrics below it are seen by whoever reads it first
+                    methodCount = id + 1;
+                    methodIds.put(fullMethodName, id);
+                }
             }
-            threadMetrics.enter(fullMethodName, alwaysActive);
+        }
+        return id;
+    }
 
-            MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
-            if (methodMetrics == null) {
-                methodMetrics = new MethodMetrics(fullMethodName);
-                methodMetrics.setActive(isMonitorByDefault());
-                methodMetricsMap.putIfAbsent(fullMethodName, methodMetrics);
-            }
+    /**
+     * Records the entry of the current thread into a method
+     */
+    public void enterMethod(int methodId) {
+        if (isInitialized() && isActive(methodId)) {
+            getCurrentThreadMetrics().enter(methodId);
+        }
+    }
+
+    /**
+     * Records the exit of the current thread from a method
+     */
+    public void exitMethod(int methodId) {
+        if (isInitialized()) {
+            getCurrentThreadMetrics().exit(methodId, isActive(methodId));
         }
+    }
 
+    public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
+        if (isInitialized()) {
+            int methodId = getMethodId(fullMethodName);
+            if (alwaysActive || isActive(methodId)) {
+                getThreadMetrics(currentThread).enter(methodId);
+            }
+        }
     }
 
     public void exitMethod(Thread currentThread, String methodName, boolean alwaysActive) {
         if (isInitialized()) {
-            ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
+            int methodId = getMethodId(methodName);
+            getThreadMetrics(currentThread).exit(methodId, alwaysActive || isActive(methodId));
+        }
+    }
 
-            long elapsed = -1;
-            if (threadMetrics != null) {
-                elapsed = threadMetrics.exit(methodName, alwaysActive);
-            }
+    private boolean isActive(int methodId) {
+        MethodMetrics methodMetrics = getMethodMetrics(methodId);
+        return methodMetrics != null && methodMetrics.isActive();
+    }
 
-            if (elapsed >= 0) {
-                MethodMetrics methodMetrics = methodMetricsMap.get(methodName);
-                if (methodMetrics != null) {
-                    methodMetrics.update(elapsed);
-                }
-            }
-            doHouseKeeping();
+    /**
+     * Gets the metrics of the method with the given id, or null if the id is not known yet by the current thread
+     */
+    private MethodMetrics getMethodMetrics(int methodId) {
+        if (methodId >= methodCount) {
+            return null;
         }
+        return methodMetricsById[methodId];
+    }
+
+    /**
+     * Gets the metrics of all the methods which have an id, indexed by id
+     */
+    MethodMetrics[] getMethodMetricsById() {
+        int count = methodCount;
+        return Arrays.copyOf(methodMetricsById, count);
+    }
+
+    private ThreadMetrics getCurrentThreadMetrics() {
+        ThreadMetrics threadMetrics = currentThreadMetrics.get();
+        if (threadMetrics == null || threadMetrics.getGeneration() != generation) {
+            threadMetrics = getThreadMetrics(Thread.currentThread());
+            currentThreadMetrics.set(threadMetrics);
+        }
+        return threadMetrics;
+    }
+
+    private ThreadMetrics getThreadMetrics(Thread thread) {
+        ThreadMetrics threadMetrics = threadMetricsMap.get(thread);
+        if (threadMetrics == null) {
+            threadMetrics = new ThreadMetrics(this, thread, generation);
+            threadMetricsMap.put(thread, threadMetrics);
+        }
+        return threadMetrics;
+    }
+
+    private MethodMetrics createMethodMetrics(String fullMethodName) {
+        MethodMetrics methodMetrics = new MethodMetrics(fullMethodName);
+        methodMetrics.setActive(isMonitorByDefault());
+        return methodMetrics;
     }
 
     public void initialize() {
@@ -130,7 +207,7 @@ public class ApmAgentContext {
                         while (started.get()) {
                             try {
                                 Thread.sleep(HOUSE_KEEPING_TIME);
-                                doHouseKeeping.set(true);
+                                doHouseKeeping();
                             } catch (Throwable e) {
                             }
                         }
@@ -143,24 +220,28 @@ public class ApmAgentContext {
     }
 
     void doHouseKeeping() {
-        //the time is going to be the elapsed time from the latest method call
-        //its not going to be terribly accurate - but then it doesn't really need to be
-        if (doHouseKeeping.compareAndSet(true, false)) {
-            try {
-                List<ThreadMetrics> threadMetricsList = getThreadMetrics();
-                for (ThreadMetrics tm : threadMetricsList) {
-                    if (tm.isDead()) {
-                        tm.destroy();
-                        threadMetricsMap.remove(tm.getThread());
-                    }
+        //the calls recorded by the threads are collected here rather than on the threads themselves
+        try {
+            MethodMetrics[] methods = getMethodMetricsById();
+            List<ThreadMetrics> threadMetricsList = getThreadMetrics();
+            for (ThreadMetrics tm : threadMetricsList) {
+                tm.collect(methods);
+                if (tm.isDead()) {
+                    tm.destroy();
+                    threadMetricsMap.remove(tm.getThread());
                 }
-                monitoredMethodMetrics.calculateMethodMetrics(getMethodMetrics());
-                for (ThreadMetrics threadMetrics : threadMetricsList) {
-                    threadMetrics.calculateMethodMetrics();
+            }
+            for (MethodMetrics methodMetrics : methods) {
+                if (methodMetrics.getCount() > 0 && !methodMetricsMap.containsKey(methodMetrics.getName())) {
+                    methodMetricsMap.putIfAbsent(methodMetrics.getName(), methodMetrics);
                 }
-            } catch (Throwable e) {
-                e.printStackTrace();
             }
+            monitoredMethodMetrics.calculateMethodMetrics(getMethodMetrics());
+            for (ThreadMetrics threadMetrics : threadMetricsList) {
+                threadMetrics.calculateMethodMetrics();
+            }
+        } catch (Throwable e) {
+            LOG.error("Failed to collect the method metrics", e);
         }
     }
 
@@ -172,6 +253,8 @@ public class ApmAgentContext {
             objectNameMap.clear();
             methodMetricsMap.clear();
             threadMetricsMap.clear();
+            generation++;
+            resetMethodMetrics(methodIds.keySet());
         }
     }
 
@@ -262,7 +345,8 @@ public class ApmAgentContext {
                 threadMetrics.setActive(fullMethodName, flag);
             }
 
-            MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
+            Integer methodId = methodIds.get(fullMethodName);
+            MethodMetrics methodMetrics = methodId != null ? getMethodMetrics(methodId) : null;
             if (methodMetrics != null) {
                 methodMetrics.setActive(flag);
             }
@@ -345,6 +429,23 @@ public class ApmAgentContext {
         for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
             threadMetrics.remove(methodDescription.getFullMethodName());
         }
+        resetMethodMetrics(Collections.singleton(methodDescription.getFullMethodName()));
+    }
+
+    /**
+     * Starts the metrics of the given methods again, their ids are kept as they may still be called
+     */
+    private void resetMethodMetrics(Collection<String> fullMethodNames) {
+        synchronized (methodIds) {
+            MethodMetrics[] methods = methodMetricsById.clone();
+            for (String fullMethodName : fullMethodNames) {
+                Integer methodId = methodIds.get(fullMethodName);
+                if (methodId != null) {
+                    methods[methodId] = createMethodMetrics(fullMethodName);
+                }
+            }
+            methodMetricsById = methods;
+        }
     }
 
     protected ObjectInstance registerMBean(ObjectName objectName, Object object) throws InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
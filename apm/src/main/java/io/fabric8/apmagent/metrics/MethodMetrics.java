@@ -15,7 +15,10 @@
  */
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Snapshot;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -25,12 +28,14 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class MethodMetrics {
-    protected final Timer timer;
+    // the parts of a Timer, so that the calls can be counted apart from the sampled durations
+    protected final Meter meter;
+    protected final Histogram histogram;
     private final String name;
     private final double rateFactor;
     private final double durationFactor;
     private int percentage;
-    private boolean active = true;
+    private volatile boolean active = true;
 
     /**
      * Constructor.
@@ -39,7 +44,8 @@ public class MethodMetrics {
      */
     public MethodMetrics(String name) {
         this.name = name;
-        this.timer = new Timer();
+        this.meter = new Meter();
+        this.histogram = new Histogram(new ExponentiallyDecayingReservoir());
 
         this.rateFactor = TimeUnit.SECONDS.toSeconds(1);
         this.durationFactor = 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
@@ -58,63 +64,63 @@ public class MethodMetrics {
     }
 
     public long getCount() {
-        return timer.getCount();
+        return meter.getCount();
     }
 
     public double getMeanRate() {
-        return timer.getMeanRate() * rateFactor;
+        return meter.getMeanRate() * rateFactor;
     }
 
     public double getOneMinuteRate() {
-        return timer.getOneMinuteRate() * rateFactor;
+        return meter.getOneMinuteRate() * rateFactor;
     }
 
     public double getFiveMinuteRate() {
-        return timer.getFiveMinuteRate() * rateFactor;
+        return meter.getFiveMinuteRate() * rateFactor;
     }
 
     public double getFifteenMinuteRate() {
-        return timer.getFifteenMinuteRate() * rateFactor;
+        return meter.getFifteenMinuteRate() * rateFactor;
     }
 
     public double getMin() {
-        return timer.getSnapshot().getMin() * durationFactor;
+        return getSnapshot().getMin() * durationFactor;
     }
 
     public double getMax() {
-        return timer.getSnapshot().getMax() * durationFactor;
+        return getSnapshot().getMax() * durationFactor;
     }
 
     public double getMean() {
-        return timer.getSnapshot().getMean() * durationFactor;
+        return getSnapshot().getMean() * durationFactor;
     }
 
     public double getStdDev() {
-        return timer.getSnapshot().getStdDev() * durationFactor;
+        return getSnapshot().getStdDev() * durationFactor;
     }
 
     public double get50thPercentile() {
-        return timer.getSnapshot().getMedian() * durationFactor;
+        return getSnapshot().getMedian() * durationFactor;
     }
 
     public double get75thPercentile() {
-        return timer.getSnapshot().get75thPercentile() * durationFactor;
+        return getSnapshot().get75thPercentile() * durationFactor;
     }
 
     public double get95thPercentile() {
-        return timer.getSnapshot().get95thPercentile() * durationFactor;
+        return getSnapshot().get95thPercentile() * durationFactor;
     }
 
     public double get98thPercentile() {
-        return timer.getSnapshot().get98thPercentile() * durationFactor;
+        return getSnapshot().get98thPercentile() * durationFactor;
     }
 
     public double get99thPercentile() {
-        return timer.getSnapshot().get99thPercentile() * durationFactor;
+        return getSnapshot().get99thPercentile() * durationFactor;
     }
 
     public double get999thPercentile() {
-        return timer.getSnapshot().get999thPercentile() * durationFactor;
+        return getSnapshot().get999thPercentile() * durationFactor;
     }
 
     /**
@@ -123,7 +129,7 @@ public class MethodMetrics {
      * @return estimated load
      */
     public double getLoad() {
-        return timer.getSnapshot().size() * getMean();
+        return getSnapshot().size() * getMean();
     }
 
     public int getPercentage() {
@@ -135,15 +141,38 @@ public class MethodMetrics {
     }
 
     public long[] values() {
-        return timer.getSnapshot().getValues();
+        return getSnapshot().getValues();
     }
 
     public void update(long elapsed) {
         if (elapsed >= 0) {
-            timer.update(elapsed, TimeUnit.NANOSECONDS);
+            histogram.update(elapsed);
+            meter.mark();
         }
     }
 
+    /**
+     * Counts calls whose durations are sampled separately
+     */
+    public void mark(long calls) {
+        if (calls > 0) {
+            meter.mark(calls);
+        }
+    }
+
+    /**
+     * Adds the duration of a call which has already been counted
+     */
+    public void sample(long elapsed) {
+        if (elapsed >= 0) {
+            histogram.update(elapsed);
+        }
+    }
+
+    protected Snapshot getSnapshot() {
+        return histogram.getSnapshot();
+    }
+
     public String toString() {
         return "MethodMetrics:" + getName();
     }
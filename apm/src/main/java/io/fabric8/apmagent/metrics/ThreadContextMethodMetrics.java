@@ -15,19 +15,12 @@
  */
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
-
-import java.util.concurrent.atomic.AtomicReference;
-
 public class ThreadContextMethodMetrics extends MethodMetrics {
     private final Thread thread;
-    private final AtomicReference<ThreadContextMethodMetricsStack> stackRef;
-    private Timer.Context timerContext;
 
-    public ThreadContextMethodMetrics(Thread thread, AtomicReference<ThreadContextMethodMetricsStack> stackRef, String name) {
+    public ThreadContextMethodMetrics(Thread thread, String name) {
         super(name);
         this.thread = thread;
-        this.stackRef = stackRef;
     }
 
     public String getThreadName() {
@@ -38,32 +31,7 @@ public class ThreadContextMethodMetrics extends MethodMetrics {
         return thread.getId();
     }
 
-    public void onEnter() {
-        timerContext = timer.time();
-        stackRef.get().push(this);
-    }
-
-    public long onExit() {
-        long result = -1;
-        ThreadContextMethodMetrics last = stackRef.get().pop();
-        if (last == this) {
-            result = timerContext.stop();
-        } else {
-            //the exit could have jumped a few methods if its
-            //caused by an exception
-            while (last != null && last != this) {
-                result = last.timerContext.stop();
-                last = stackRef.get().pop();
-            }
-            if (last == this) {
-                result = timerContext.stop();
-            }
-        }
-        return result;
-    }
-
     public String toString() {
         return "ThreadContextMethodMetrics:" + getName();
     }
 }
-
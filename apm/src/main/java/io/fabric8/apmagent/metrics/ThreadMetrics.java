@@ -20,26 +20,47 @@ import io.fabric8.apmagent.ApmConfiguration;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * The metrics of the methods called by a thread. The calls are recorded by the thread itself into primitive
+ * arrays indexed by method id, which only the house keeping reads to update the method metrics.
+ */
 public class ThreadMetrics {
-    private final AtomicReference<ThreadContextMethodMetricsStack> methodStackRef;
+    private static final int SAMPLES = 1024;
+
     private final ApmAgentContext apmAgentContext;
     private final ThreadInfo threadInfo;
     private final Thread thread;
     private final ThreadMXBean threadMXBean;
     private final ConcurrentMap<String, ThreadContextMethodMetrics> methods = new ConcurrentHashMap<>();
     private final MonitoredThreadMethodMetrics monitoredThreadMethodMetrics;
-
-    public ThreadMetrics(ApmAgentContext apmAgentContext, Thread thread) {
-        this.methodStackRef = new AtomicReference<>(new ThreadContextMethodMetricsStack());
+    private final int generation;
+
+    // written by the recording thread only
+    private int[] stack = new int[16];
+    private long[] startTimes = new long[16];
+    private int depth;
+    private volatile long[] counts = new long[0];
+    // the duration of the latest calls, some are lost when there are more calls than samples between house keepings
+    private final int[] sampleIds = new int[SAMPLES];
+    private final long[] sampleTimes = new long[SAMPLES];
+    private final AtomicLong sampleCount = new AtomicLong();
+
+    // read by the house keeping only
+    private long[] collectedCounts = new long[0];
+    private long collectedSamples;
+
+    public ThreadMetrics(ApmAgentContext apmAgentContext, Thread thread, int generation) {
         this.apmAgentContext = apmAgentContext;
         this.threadMXBean = ManagementFactory.getThreadMXBean();
         this.threadInfo = threadMXBean.getThreadInfo(thread.getId());
         this.thread = thread;
+        this.generation = generation;
         ApmConfiguration configuration = apmAgentContext.getConfiguration();
         this.monitoredThreadMethodMetrics = new MonitoredThreadMethodMetrics(thread, apmAgentContext);
         this.monitoredThreadMethodMetrics.setMonitorSize(configuration.getThreadMetricDepth());
@@ -53,6 +74,10 @@ public class ThreadMetrics {
         return thread;
     }
 
+    int getGeneration() {
+        return generation;
+    }
+
     public boolean isDead() {
         return !thread.isAlive();
     }
@@ -73,31 +98,105 @@ public class ThreadMetrics {
         monitoredThreadMethodMetrics.setMonitorSize(monitorSize);
     }
 
-    public void enter(String methodName, boolean alwaysActive) {
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
-        if (threadContextMethodMetrics == null) {
-            threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, this.methodStackRef, methodName);
-            threadContextMethodMetrics.setActive(apmAgentContext.isMonitorByDefault());
-            methods.putIfAbsent(methodName, threadContextMethodMetrics);
+    void enter(int methodId) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+            startTimes = Arrays.copyOf(startTimes, depth * 2);
         }
-        if (alwaysActive || threadContextMethodMetrics.isActive()) {
-            threadContextMethodMetrics.onEnter();
+        stack[depth] = methodId;
+        startTimes[depth] = System.nanoTime();
+        depth++;
+    }
+
+    /**
+     * Records the exit of a method
+     *
+     * @param search whether to look for the method below the top of the stack, when the methods above it
+     *               were left by an exception
+     */
+    void exit(int methodId, boolean search) {
+        int index = depth - 1;
+        if (search) {
+            while (index >= 0 && stack[index] != methodId) {
+                index--;
+            }
+        }
+        if (index >= 0 && stack[index] == methodId) {
+            long now = System.nanoTime();
+            for (int i = depth - 1; i >= index; i--) {
+                record(stack[i], now - startTimes[i]);
+            }
+            depth = index;
         }
     }
 
-    public long exit(String methodName, boolean alwaysActive) {
-        long result = -1;
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
-        if (threadContextMethodMetrics != null) {
-            if (alwaysActive || threadContextMethodMetrics.isActive()) {
-                result = threadContextMethodMetrics.onExit();
+    private void record(int methodId, long elapsed) {
+        long[] counts = this.counts;
+        if (methodId >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(methodId + 1, counts.length * 2));
+            this.counts = counts;
+        }
+        counts[methodId]++;
+        long count = sampleCount.get();
+        int index = (int) (count % SAMPLES);
+        sampleIds[index] = methodId;
+        sampleTimes[index] = elapsed;
+        sampleCount.lazySet(count + 1);
+    }
+
+    /**
+     * Adds the calls recorded since the last time to the metrics of the thread and to the given metrics of
+     * all the threads, only called by the house keeping
+     */
+    void collect(MethodMetrics[] methodMetrics) {
+        long end = sampleCount.get();
+        long start = Math.max(collectedSamples, end - SAMPLES);
+        int size = (int) (end - start);
+        int[] ids = new int[size];
+        long[] times = new long[size];
+        for (int i = 0; i < size; i++) {
+            int index = (int) ((start + i) % SAMPLES);
+            ids[i] = sampleIds[index];
+            times[i] = sampleTimes[index];
+        }
+        // skip the samples which were overwritten while being copied, including the one which may be written
+        // right now into the slot of the sample recorded SAMPLES calls before it
+        long first = Math.max(start, sampleCount.get() - SAMPLES + 1);
+        collectedSamples = end;
+        for (int i = (int) (first - start); i < size; i++) {
+            if (ids[i] < methodMetrics.length) {
+                methodMetrics[ids[i]].sample(times[i]);
+                getMethodMetrics(methodMetrics[ids[i]].getName()).sample(times[i]);
             }
-        } else {
-            //something weird happended reset the stack
-            methodStackRef.set(new ThreadContextMethodMetricsStack());
+        }
 
+        long[] counts = this.counts;
+        if (collectedCounts.length < counts.length) {
+            collectedCounts = Arrays.copyOf(collectedCounts, counts.length);
         }
-        return result;
+        // the methods which got an id since the given metrics were taken are counted the next time
+        for (int id = 0; id < counts.length && id < methodMetrics.length; id++) {
+            long count = counts[id];
+            long calls = count - collectedCounts[id];
+            collectedCounts[id] = count;
+            if (calls > 0) {
+                methodMetrics[id].mark(calls);
+                getMethodMetrics(methodMetrics[id].getName()).mark(calls);
+            }
+        }
+    }
+
+    private ThreadContextMethodMetrics getMethodMetrics(String methodName) {
+        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+        if (threadContextMethodMetrics == null) {
+            threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, methodName);
+            threadContextMethodMetrics.setActive(apmAgentContext.isMonitorByDefault());
+            ThreadContextMethodMetrics existing = methods.putIfAbsent(methodName, threadContextMethodMetrics);
+            if (existing != null) {
+                threadContextMethodMetrics = existing;
+            }
+        }
+        return threadContextMethodMetrics;
     }
 
     public String toString() {
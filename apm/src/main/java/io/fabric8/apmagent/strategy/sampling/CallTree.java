@@ -0,0 +1,207 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.sampling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tree of the sampled call stacks, which can be written as the collapsed stacks used to draw flame graphs.
+ * <p/>
+ * The frames are interned into ids and the nodes are kept in primitive arrays. The number of nodes is bounded,
+ * the samples of the stacks which do not fit are counted in the deepest of their frames which does. The stacks
+ * which were cut to the sampling depth start with a <code>[truncated]</code> frame, as their bottom is unknown.
+ */
+public class CallTree {
+    private static final int ROOT = 0;
+    private static final int TRUNCATED_FRAME = 0;
+    private static final String TRUNCATED = "[truncated]";
+    private static final int INITIAL_NODES = 1024;
+
+    private final int maxNodes;
+    private final Map<String, Map<String, Integer>> frameIds = new HashMap<>();
+    private final List<String> frames = new ArrayList<>();
+    private int[] parents;
+    private int[] nodeFrames;
+    private long[] counts;
+    private int size;
+    // the children of the nodes by parent and frame, with open addressing
+    private long[] childKeys;
+    private int[] children;
+    private long samples;
+
+    public CallTree(int maxNodes) {
+        this.maxNodes = maxNodes;
+        clear();
+    }
+
+    /**
+     * Adds a sampled stack, whose first element is the top of the stack
+     */
+    public void add(StackTraceElement[] stack) {
+        add(stack, false);
+    }
+
+    /**
+     * Adds a sampled stack, whose first element is the top of the stack
+     *
+     * @param truncated whether the bottom of the stack is missing
+     */
+    public synchronized void add(StackTraceElement[] stack, boolean truncated) {
+        int node = ROOT;
+        if (truncated) {
+            node = getChild(ROOT, TRUNCATED_FRAME);
+            if (node == ROOT) {
+                if (size == maxNodes) {
+                    counts[ROOT]++;
+                    samples++;
+                    return;
+                }
+                node = addNode(ROOT, TRUNCATED_FRAME);
+            }
+        }
+        for (int i = stack.length - 1; i >= 0; i--) {
+            int frame = getFrameId(stack[i]);
+            int child = getChild(node, frame);
+            if (child == ROOT) {
+                if (size == maxNodes) {
+                    break;
+                }
+                child = addNode(node, frame);
+            }
+            node = child;
+        }
+        counts[node]++;
+        samples++;
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    public synchronized int getNodes() {
+        return size - 1;
+    }
+
+    public synchronized void clear() {
+        frameIds.clear();
+        frames.clear();
+        frames.add(TRUNCATED);
+        parents = new int[INITIAL_NODES];
+        nodeFrames = new int[INITIAL_NODES];
+        counts = new long[INITIAL_NODES];
+        childKeys = new long[INITIAL_NODES * 2];
+        children = new int[INITIAL_NODES * 2];
+        size = 1;
+        samples = 0;
+    }
+
+    /**
+     * Writes the stacks with their number of samples, one stack per line with its frames from the bottom
+     * separated by semicolons
+     */
+    public synchronized String toCollapsedStacks() {
+        StringBuilder buffer = new StringBuilder();
+        for (int node = 1; node < size; node++) {
+            if (counts[node] > 0) {
+                appendStack(buffer, node);
+                buffer.append(' ').append(counts[node]).append('\n');
+            }
+        }
+        return buffer.toString();
+    }
+
+    private void appendStack(StringBuilder buffer, int node) {
+        if (parents[node] != ROOT) {
+            appendStack(buffer, parents[node]);
+            buffer.append(';');
+        }
+        buffer.append(frames.get(nodeFrames[node]));
+    }
+
+    private int getFrameId(StackTraceElement element) {
+        Map<String, Integer> methods = frameIds.get(element.getClassName());
+        if (methods == null) {
+            methods = new HashMap<>();
+            frameIds.put(element.getClassName(), methods);
+        }
+        Integer id = methods.get(element.getMethodName());
+        if (id == null) {
+            id = frames.size();
+            frames.add(element.getClassName() + "." + element.getMethodName());
+            methods.put(element.getMethodName(), id);
+        }
+        return id;
+    }
+
+    private int getChild(int parent, int frame) {
+        long key = key(parent, frame);
+        int mask = children.length - 1;
+        for (int slot = hash(key) & mask; children[slot] != ROOT; slot = (slot + 1) & mask) {
+            if (childKeys[slot] == key) {
+                return children[slot];
+            }
+        }
+        return ROOT;
+    }
+
+    private int addNode(int parent, int frame) {
+        if (size == parents.length) {
+            int capacity = Math.min(maxNodes, size * 2);
+            parents = Arrays.copyOf(parents, capacity);
+            nodeFrames = Arrays.copyOf(nodeFrames, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        int node = size++;
+        parents[node] = parent;
+        nodeFrames[node] = frame;
+        if (size * 2 > children.length) {
+            long[] oldKeys = childKeys;
+            int[] oldChildren = children;
+            childKeys = new long[oldKeys.length * 2];
+            children = new int[oldChildren.length * 2];
+            for (int slot = 0; slot < oldChildren.length; slot++) {
+                if (oldChildren[slot] != ROOT) {
+                    putChild(oldKeys[slot], oldChildren[slot]);
+                }
+            }
+        }
+        putChild(key(parent, frame), node);
+        return node;
+    }
+
+    private void putChild(long key, int node) {
+        int mask = children.length - 1;
+        int slot = hash(key) & mask;
+        while (children[slot] != ROOT) {
+            slot = (slot + 1) & mask;
+        }
+        childKeys[slot] = key;
+        children[slot] = node;
+    }
+
+    private static long key(int parent, int frame) {
+        return ((long) parent << 32) | (frame & 0xFFFFFFFFL);
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -22,20 +22,28 @@ import io.fabric8.apmagent.metrics.ApmAgentContext;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Samples the stacks of the configured threads, to the configured depth only, rather than the stacks of all the
+ * threads. The stacks of the running threads are added to a call tree and their top frames to the method metrics.
+ */
 public class SamplingStrategy implements Strategy, Runnable {
     private static final long CLEANUP_INTERVAL = 1000;
+    private static final int MAX_CALL_TREE_NODES = 64 * 1024;
     private ApmAgentContext context;
     private ApmConfiguration configuration;
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
     private Thread samplingThread;
     private final Map<Long, String> currentMethods = new HashMap<>();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final CallTree callTree = new CallTree(MAX_CALL_TREE_NODES);
+    // the sampled threads, which are looked for again at every cleanup
+    private Map<Long, Thread> threads = new HashMap<>();
+    private long[] threadIds = new long[0];
 
     public SamplingStrategy(ApmAgentContext context) {
         this.context = context;
@@ -80,22 +88,33 @@ public class SamplingStrategy implements Strategy, Runnable {
 
     }
 
+    public CallTree getCallTree() {
+        return callTree;
+    }
+
     @Override
     public void run() {
         long lastTime = 0;
         while (started.get()) {
             try {
-                for (Map.Entry<Thread, StackTraceElement[]> threadEntry : Thread.getAllStackTraces().entrySet()) {
-                    if (threadEntry.getKey() != Thread.currentThread()) {
-                        addMeasurement(threadEntry.getKey(), threadEntry.getValue());
-                    }
-                }
                 long currentTime = System.currentTimeMillis();
-
                 if ((currentTime - lastTime) > CLEANUP_INTERVAL) {
                     cleanup();
                     lastTime = currentTime;
                 }
+
+                int samplingDepth = configuration.getSamplingDepth();
+                ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadIds, samplingDepth);
+                for (ThreadInfo threadInfo : threadInfos) {
+                    if (threadInfo != null) {
+                        StackTraceElement[] stackTraceElements = threadInfo.getStackTrace();
+                        if (threadInfo.getThreadState() == Thread.State.RUNNABLE && stackTraceElements.length > 0) {
+                            // the stacks are cut to the sampling depth, their bottom frames are missing
+                            callTree.add(stackTraceElements, stackTraceElements.length >= samplingDepth);
+                        }
+                        addMeasurement(threads.get(threadInfo.getThreadId()), stackTraceElements);
+                    }
+                }
                 Thread.sleep(configuration.getSamplingInterval());
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
@@ -103,27 +122,33 @@ public class SamplingStrategy implements Strategy, Runnable {
         }
     }
 
+    /**
+     * Looks for the threads to sample without stopping them, and forgets the threads which are gone
+     */
     private void cleanup() {
-        List<ThreadInfo> removeList = null;
-        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
-        for (Long id : currentMethods.keySet()) {
-            ThreadInfo threadInfo = threadMXBean.getThreadInfo(id);
-            if (threadInfo != null) {
-                if (threadInfo.getThreadState() == Thread.State.TERMINATED) {
-                    if (removeList == null) {
-                        removeList = new ArrayList<>();
-                    }
-                    removeList.add(threadInfo);
-                }
-            }
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
         }
-        if (removeList != null) {
-            for (ThreadInfo threadInfo : removeList) {
-                currentMethods.remove(threadInfo.getThreadId());
+        Thread[] all = new Thread[root.activeCount() * 2 + 16];
+        int count = root.enumerate(all, true);
+
+        Map<Long, Thread> sampled = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Thread thread = all[i];
+            if (thread != Thread.currentThread() && thread.isAlive() && configuration.isSampled(thread)) {
+                sampled.put(thread.getId(), thread);
             }
         }
+        long[] ids = new long[sampled.size()];
+        int i = 0;
+        for (Long id : sampled.keySet()) {
+            ids[i++] = id;
+        }
+        threads = sampled;
+        threadIds = ids;
+        currentMethods.keySet().retainAll(sampled.keySet());
     }
-
     private void addMeasurement(Thread thread, StackTraceElement[] stackTraceElements) {
         if (thread != null && thread.isAlive() &&
                 stackTraceElements != null && stackTraceElements.length > 0) {
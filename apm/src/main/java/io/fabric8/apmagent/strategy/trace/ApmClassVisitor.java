@@ -58,7 +58,8 @@ public class ApmClassVisitor extends ClassVisitor {
             if (canProfileMethod(name, desc) && traceStrategy.isAudit(classInfo.getClassName(), name)) {
                 MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
 
-                ApmMethodVisitor methodVisitor = new ApmMethodVisitor(mv, classInfo.getClassName(), name + methodDescription);
+                int methodId = traceStrategy.getContext().getMethodId(classInfo.getClassName() + "@" + name + methodDescription);
+                ApmMethodVisitor methodVisitor = new ApmMethodVisitor(mv, methodId);
                 classInfo.addTransformedMethod(name, methodDescription);
                 return methodVisitor;
             }
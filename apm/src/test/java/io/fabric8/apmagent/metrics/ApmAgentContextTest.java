@@ -0,0 +1,160 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.fabric8.apmagent.ApmAgent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ApmAgentContextTest {
+
+    private static final int THREADS = 4;
+
+    private ApmAgentContext context;
+
+    @Before
+    public void setUp() {
+        context = new ApmAgentContext(ApmAgent.INSTANCE);
+    }
+
+    @After
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Test
+    public void testMethodIdsRegisteredConcurrently() throws Exception {
+        final int methods = 5000;
+        final int[][] ids = new int[THREADS][methods];
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(startSignal);
+                    // every thread registers the methods in another order
+                    for (int i = 0; i < methods; i++) {
+                        int method = (i * (thread + 1)) % methods;
+                        if (thread > 0 && method < i) {
+                            method = methods - 1 - i;
+                        }
+                        ids[thread][method] = context.getMethodId("Test.method" + method + "()V");
+                    }
+                    for (int method = 0; method < methods; method++) {
+                        ids[thread][method] = context.getMethodId("Test.method" + method + "()V");
+                    }
+                }
+            }));
+        }
+        run(threads, startSignal);
+
+        MethodMetrics[] methodMetrics = context.getMethodMetricsById();
+        assertEquals(methods, methodMetrics.length);
+        for (int method = 0; method < methods; method++) {
+            int id = ids[0][method];
+            for (int t = 1; t < THREADS; t++) {
+                assertEquals("id of method " + method, id, ids[t][method]);
+            }
+            assertEquals("Test.method" + method + "()V", methodMetrics[id].getName());
+        }
+    }
+
+    @Test
+    public void testCallsRecordedWhileCollecting() throws Exception {
+        final int calls = 20000;
+        context.initialize();
+        final int[] methodIds = new int[3];
+        for (int i = 0; i < methodIds.length; i++) {
+            methodIds[i] = context.getMethodId("Test.method" + i + "()V");
+        }
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    await(startSignal);
+                    for (int i = 0; i < calls; i++) {
+                        context.enterMethod(methodIds[0]);
+                        context.enterMethod(methodIds[1]);
+                        context.exitMethod(methodIds[1]);
+                        context.enterMethod(methodIds[2]);
+                        context.exitMethod(methodIds[2]);
+                        context.exitMethod(methodIds[0]);
+                        // a method which gets its id while the calls are being collected
+                        if (i == calls / 2) {
+                            int id = context.getMethodId("Test.late" + Thread.currentThread().getId() + "()V");
+                            context.enterMethod(id);
+                            context.exitMethod(id);
+                        }
+                    }
+                }
+            }));
+        }
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread houseKeeping = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    context.doHouseKeeping();
+                }
+            }
+        });
+        houseKeeping.start();
+        run(threads, startSignal);
+        done.set(true);
+        houseKeeping.join();
+        context.doHouseKeeping();
+
+        MethodMetrics[] methodMetrics = context.getMethodMetricsById();
+        assertEquals(methodIds.length + THREADS, methodMetrics.length);
+        for (MethodMetrics metrics : methodMetrics) {
+            long expected = metrics.getName().startsWith("Test.late") ? 1 : THREADS * calls;
+            assertEquals(metrics.getName(), expected, metrics.getCount());
+            // the samples are only the latest calls of each thread
+            assertTrue(metrics.getName(), metrics.histogram.getCount() <= expected);
+        }
+    }
+
+    private static void run(List<Thread> threads, CountDownLatch startSignal) throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        startSignal.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import io.fabric8.apmagent.ApmAgent;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThreadMetricsTest {
+
+    private ThreadMetrics threadMetrics;
+    private MethodMetrics[] methodMetrics;
+
+    @Before
+    public void setUp() {
+        threadMetrics = new ThreadMetrics(new ApmAgentContext(ApmAgent.INSTANCE), Thread.currentThread(), 0);
+        methodMetrics = new MethodMetrics[]{new MethodMetrics("Test.a()V"), new MethodMetrics("Test.b()V")};
+    }
+
+    @Test
+    public void testCollectAllSamples() {
+        call(0, 100);
+        call(1, 10);
+        threadMetrics.collect(methodMetrics);
+        assertEquals(100, methodMetrics[0].getCount());
+        assertEquals(100, methodMetrics[0].histogram.getCount());
+        assertEquals(10, methodMetrics[1].getCount());
+        assertEquals(10, methodMetrics[1].histogram.getCount());
+
+        // only the calls since the last collection are added
+        call(1, 5);
+        threadMetrics.collect(methodMetrics);
+        assertEquals(100, methodMetrics[0].getCount());
+        assertEquals(15, methodMetrics[1].getCount());
+        assertEquals(15, methodMetrics[1].histogram.getCount());
+    }
+
+    @Test
+    public void testCollectAfterTheSamplesWrapped() {
+        call(0, 3000);
+        call(1, 2000);
+        threadMetrics.collect(methodMetrics);
+        // every call is counted, but only the samples which are still in the buffer are taken,
+        // without the oldest one whose slot is the next to be written
+        assertEquals(3000, methodMetrics[0].getCount());
+        assertEquals(2000, methodMetrics[1].getCount());
+        assertEquals(0, methodMetrics[0].histogram.getCount());
+        assertEquals(1023, methodMetrics[1].histogram.getCount());
+    }
+
+    private void call(int methodId, int times) {
+        for (int i = 0; i < times; i++) {
+            threadMetrics.enter(methodId);
+            threadMetrics.exit(methodId, false);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.strategy.sampling;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CallTreeTest {
+
+    @Test
+    public void testCollapsedStacks() {
+        CallTree tree = new CallTree(100);
+        tree.add(stack("c", "b", "a"));
+        tree.add(stack("c", "b", "a"));
+        tree.add(stack("d", "a"));
+        assertEquals(3, tree.getSamples());
+        assertEquals(4, tree.getNodes());
+        assertEquals("A.a;A.b;A.c 2\nA.a;A.d 1\n", tree.toCollapsedStacks());
+    }
+
+    @Test
+    public void testTruncatedStacks() {
+        CallTree tree = new CallTree(100);
+        tree.add(stack("c", "b", "a"));
+        // the same frames, but the bottom of the stack is missing
+        tree.add(stack("c", "b", "a"), true);
+        tree.add(stack("c", "b"), true);
+        assertEquals(3, tree.getSamples());
+        assertEquals("A.a;A.b;A.c 1\n[truncated];A.a;A.b;A.c 1\n[truncated];A.b;A.c 1\n", tree.toCollapsedStacks());
+    }
+
+    @Test
+    public void testMaxNodes() {
+        // the root and 3 nodes
+        CallTree tree = new CallTree(4);
+        tree.add(stack("c", "b", "a"));
+        tree.add(stack("e", "d", "a"));
+        tree.add(stack("f"), true);
+        assertEquals(3, tree.getSamples());
+        assertEquals(3, tree.getNodes());
+        assertEquals("A.a 1\nA.a;A.b;A.c 1\n", tree.toCollapsedStacks());
+    }
+
+    private static StackTraceElement[] stack(String... methods) {
+        StackTraceElement[] stack = new StackTraceElement[methods.length];
+        for (int i = 0; i < methods.length; i++) {
+            stack[i] = new StackTraceElement("A", methods[i], "A.java", i + 1);
+        }
+        return stack;
+    }
+
+}
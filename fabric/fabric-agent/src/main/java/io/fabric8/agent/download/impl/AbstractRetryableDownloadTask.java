@@ -27,16 +27,36 @@ public abstract class AbstractRetryableDownloadTask extends AbstractDownloadTask
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractRetryableDownloadTask.class);
 
+    /**
+     * Delay before trying again a download from a host which has too many downloads in progress
+     */
+    private static final long HOST_BUSY_DELAY = 50;
+
     private long scheduleDelay = 250;
     protected int scheduleNbRun = 0;
 
     private Exception previousException = null;
 
+    private HostPermits hostPermits;
+
     public AbstractRetryableDownloadTask(ScheduledExecutorService executorService, String url) {
         super(executorService, url);
     }
 
+    /**
+     * Sets the permits limiting the concurrent downloads from the {@link #getHost() host} of this task
+     */
+    public void setHostPermits(HostPermits hostPermits) {
+        this.hostPermits = hostPermits;
+    }
+
     public void run() {
+        String host = hostPermits != null ? getHost() : null;
+        if (host != null && !hostPermits.tryAcquire(host)) {
+            // don't block a download thread while other downloads from the host are in progress
+            executorService.schedule(this, HOST_BUSY_DELAY, TimeUnit.MILLISECONDS);
+            return;
+        }
         try {
             try {
                 File file = download(previousException);
@@ -55,9 +75,20 @@ public abstract class AbstractRetryableDownloadTask extends AbstractDownloadTask
             }
         } catch (Throwable e) {
             setException(new IOException("Error downloading " + url, e));
+        } finally {
+            if (host != null) {
+                hostPermits.release(host);
+            }
         }
     }
 
+    /**
+     * The host this task downloads from, or null if the downloads of this task are not limited per host
+     */
+    protected String getHost() {
+        return null;
+    }
+
     protected Retry isRetryable(IOException e) {
         return Retry.DEFAULT_RETRY;
     }
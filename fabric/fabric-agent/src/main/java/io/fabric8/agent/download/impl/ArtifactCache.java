@@ -0,0 +1,228 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.download.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A content addressed cache of the released artifacts, which is shared by the containers of a host.
+ * <p/>
+ * The artifacts are stored by their SHA-1 under <code>sha1/</code>, and the SHA-1 of the artifacts are stored
+ * under <code>index/</code> by their path in the repository layout. Files are written to temporary files which
+ * are then atomically renamed, so that the containers never see partial files, and the artifacts are hard linked
+ * into the local repositories of the containers where possible.
+ */
+public class ArtifactCache {
+
+    /**
+     * The system property with the directory of the cache, the cache is disabled when it is empty
+     */
+    public static final String ARTIFACT_CACHE = "io.fabric8.agent.download.cache";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactCache.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+
+    public ArtifactCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Creates the cache configured by the system properties, which by default is shared by all the instances
+     * of the Karaf installation, or returns null if it is disabled
+     */
+    public static ArtifactCache fromSystemProperties() {
+        String instances = System.getProperty("karaf.instances");
+        String dir = System.getProperty(ARTIFACT_CACHE, instances != null ? new File(instances, ".artifacts").getPath() : "");
+        return dir.trim().isEmpty() ? null : new ArtifactCache(new File(dir.trim()));
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the cached artifact with the given path or null
+     */
+    public File get(String artifactPath) {
+        File index = getIndexFile(artifactPath);
+        if (!index.isFile()) {
+            return null;
+        }
+        try {
+            File file = getFile(readSha1(index));
+            return file.isFile() ? file : null;
+        } catch (IOException e) {
+            LOGGER.debug("Error reading the artifact cache index " + index, e);
+            return null;
+        }
+    }
+
+    /**
+     * Copies a cached artifact to the given file, which is hard linked to the cached artifact if possible
+     */
+    public void copy(File cached, File target) throws IOException {
+        File dir = target.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+        File tmp = File.createTempFile(target.getName(), ".tmp", dir);
+        try {
+            if (!tmp.delete()) {
+                throw new IOException("Unable to delete file " + tmp);
+            }
+            try {
+                Files.createLink(tmp.toPath(), cached.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                // different file stores or no support for links
+                Files.copy(cached.toPath(), tmp.toPath());
+            }
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Adds an artifact to the cache. Its SHA-1 is computed while it is copied, and nothing is added and an
+     * exception is thrown when it is different from the expected SHA-1. The cached artifacts are read only,
+     * since they are hard linked into the local repositories of all the containers.
+     *
+     * @param artifactPath the path of the artifact in the repository layout
+     * @param file         the artifact
+     * @param expectedSha1 the SHA-1 from the repository
+     * @return the cached artifact
+     */
+    public File put(String artifactPath, File file, String expectedSha1) throws IOException {
+        if (expectedSha1 == null) {
+            throw new IllegalArgumentException("Only the artifacts with a known SHA-1 can be cached: " + file);
+        }
+        File tmp = createTempFile();
+        try {
+            String sha1;
+            try (
+                    InputStream is = new FileInputStream(file);
+                    OutputStream os = new FileOutputStream(tmp)
+            ) {
+                sha1 = copy(is, os);
+            }
+            if (!expectedSha1.equalsIgnoreCase(sha1)) {
+                throw new ChecksumException("Checksum mismatch for " + file + ": expected " + expectedSha1 + " but was " + sha1);
+            }
+            File cached = getFile(sha1);
+            if (!cached.isFile()) {
+                move(tmp, cached);
+                if (!cached.setReadOnly()) {
+                    LOGGER.debug("Unable to make {} read only", cached);
+                }
+            }
+            File index = createTempFile();
+            try (OutputStream os = new FileOutputStream(index)) {
+                os.write(sha1.getBytes(StandardCharsets.US_ASCII));
+            }
+            move(index, getIndexFile(artifactPath));
+            return cached;
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    /**
+     * Reads the SHA-1 from a checksum file of a repository, which starts with the hexadecimal checksum
+     */
+    public static String readSha1(File file) throws IOException {
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim();
+        int end = 0;
+        while (end < content.length() && Character.digit(content.charAt(end), 16) >= 0) {
+            end++;
+        }
+        if (end != 40) {
+            throw new IOException("Invalid SHA-1 in " + file);
+        }
+        return content.substring(0, end).toLowerCase();
+    }
+
+    File getFile(String sha1) {
+        return new File(directory, "sha1/" + sha1.substring(0, 2) + "/" + sha1);
+    }
+
+    File getIndexFile(String artifactPath) {
+        return new File(directory, "index/" + artifactPath + ".sha1");
+    }
+
+    private File createTempFile() throws IOException {
+        File dir = new File(directory, "tmp");
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+        return File.createTempFile("artifact-", ".tmp", dir);
+    }
+
+    private static void move(File from, File to) throws IOException {
+        File dir = to.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+        Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String copy(InputStream is, OutputStream os) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int l;
+        while ((l = is.read(buffer)) > 0) {
+            digest.update(buffer, 0, l);
+            os.write(buffer, 0, l);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Thrown when an artifact does not match the checksum of its repository
+     */
+    public static class ChecksumException extends IOException {
+
+        public ChecksumException(String message) {
+            super(message);
+        }
+
+    }
+
+}
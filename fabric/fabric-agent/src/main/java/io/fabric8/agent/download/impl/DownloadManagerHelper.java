@@ -15,6 +15,8 @@
  */
 package io.fabric8.agent.download.impl;
 
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,6 +59,29 @@ public final class DownloadManagerHelper {
         return null;
     }
 
+    /**
+     * Gets the remote host a download url points to, or an inlined maven repository of a <code>mvn:</code> url
+     * points to, or null if the url is not a <code>http</code> or <code>https</code> url.
+     */
+    public static String getRemoteHost(String url) {
+        String strippedUrl = stripUrl(url);
+        if (strippedUrl.startsWith("fab:")) {
+            strippedUrl = strippedUrl.substring("fab:".length());
+        }
+        String repository = stripInlinedMavenRepositoryUrl(strippedUrl);
+        if (repository != null) {
+            strippedUrl = repository;
+        }
+        if (strippedUrl.startsWith("http:") || strippedUrl.startsWith("https:")) {
+            try {
+                return new URI(strippedUrl).getHost();
+            } catch (URISyntaxException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
     public static String removeInlinedMavenRepositoryUrl(String url) {
         if (url.startsWith("mvn:") && url.contains("!")) {
             return "mvn:" + url.substring(url.indexOf('!') + 1);
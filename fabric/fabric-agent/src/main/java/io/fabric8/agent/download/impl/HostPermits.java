@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.download.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits the number of concurrent downloads from each host
+ */
+public class HostPermits {
+
+    /**
+     * The system property with the maximum number of concurrent downloads from a host
+     */
+    public static final String MAX_PER_HOST = "io.fabric8.agent.download.maxPerHost";
+
+    public static final int DEFAULT_MAX_PER_HOST = 2;
+
+    private final int maxPerHost;
+
+    private final ConcurrentMap<String, Semaphore> permits = new ConcurrentHashMap<>();
+
+    public HostPermits(int maxPerHost) {
+        this.maxPerHost = maxPerHost;
+    }
+
+    public static HostPermits fromSystemProperties() {
+        return new HostPermits(Integer.getInteger(MAX_PER_HOST, DEFAULT_MAX_PER_HOST));
+    }
+
+    /**
+     * Acquires a permit to download from the given host without waiting
+     *
+     * @return false if there are already too many downloads from the host
+     */
+    public boolean tryAcquire(String host) {
+        return maxPerHost <= 0 || getPermits(host).tryAcquire();
+    }
+
+    public void release(String host) {
+        if (maxPerHost > 0) {
+            getPermits(host).release();
+        }
+    }
+
+    private Semaphore getPermits(String host) {
+        Semaphore semaphore = permits.get(host);
+        if (semaphore == null) {
+            Semaphore previous = permits.putIfAbsent(host, semaphore = new Semaphore(maxPerHost));
+            if (previous != null) {
+                semaphore = previous;
+            }
+        }
+        return semaphore;
+    }
+
+}
@@ -19,11 +19,13 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.fabric8.agent.download.DownloadCallback;
 import io.fabric8.agent.download.DownloadManager;
@@ -42,19 +44,30 @@ public class MavenDownloadManager implements DownloadManager {
 
     private File tmpPath;
 
-    private final Map<String, AbstractDownloadTask> downloaded = new HashMap<>();
+    private final ArtifactCache artifactCache;
 
-    private final Map<String, AbstractDownloadTask> downloading = new HashMap<>();
+    private final HostPermits hostPermits;
+
+    private final ConcurrentMap<String, AbstractDownloadTask> downloaded = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, AbstractDownloadTask> downloading = new ConcurrentHashMap<>();
 
     private final List<DownloadCallback> listeners = new CopyOnWriteArrayList<>();
 
     private final Object lock = new Object();
 
-    private volatile int allPending = 0;
+    private final AtomicInteger allPending = new AtomicInteger();
 
     public MavenDownloadManager(MavenResolver mavenResolver, ScheduledExecutorService executorService) {
+        this(mavenResolver, executorService, ArtifactCache.fromSystemProperties(), HostPermits.fromSystemProperties());
+    }
+
+    public MavenDownloadManager(MavenResolver mavenResolver, ScheduledExecutorService executorService,
+                                ArtifactCache artifactCache, HostPermits hostPermits) {
         this.mavenResolver = mavenResolver;
         this.executorService = executorService;
+        this.artifactCache = artifactCache;
+        this.hostPermits = hostPermits;
 
         String karafRoot = System.getProperty("karaf.home", "karaf");
         String karafData = System.getProperty("karaf.data", karafRoot + "/data");
@@ -63,7 +76,7 @@ public class MavenDownloadManager implements DownloadManager {
 
     @Override
     public int pending() {
-        return allPending;
+        return allPending.get();
     }
 
     @Override
@@ -74,7 +87,7 @@ public class MavenDownloadManager implements DownloadManager {
     @SuppressWarnings("unchecked")
     @Override
     public Map<String, StreamProvider> getProviders() {
-        return (Map) Collections.synchronizedMap(downloaded);
+        return (Map) Collections.unmodifiableMap(downloaded);
     }
 
     @Override
@@ -109,30 +122,25 @@ public class MavenDownloadManager implements DownloadManager {
 
         @Override
         public void download(final String location, final DownloadCallback downloadCallback) throws MalformedURLException {
-            AbstractDownloadTask task;
-            synchronized (lock) {
-                task = downloaded.get(location);
+            AbstractDownloadTask task = getTask(location);
+            if (task == null) {
+                AbstractDownloadTask newTask = createDownloadTask(location);
+                task = downloading.putIfAbsent(location, newTask);
                 if (task == null) {
-                    task = downloading.get(location);
+                    // the task may have completed before the new one was added
+                    task = downloaded.get(location);
+                    if (task == null) {
+                        task = newTask;
+                        executorService.execute(task);
+                    } else {
+                        downloading.remove(location, newTask);
+                    }
                 }
             }
-            if (task == null) {
-                task = createDownloadTask(location);
-            }
             synchronized (lock) {
-                AbstractDownloadTask prev = downloaded.get(location);
-                if (prev == null) {
-                    prev = downloading.get(location);
-                }
-                if (prev == null) {
-                    downloading.put(location, task);
-                    executorService.execute(task);
-                } else {
-                    task = prev;
-                }
                 pending++;
-                allPending++;
             }
+            allPending.incrementAndGet();
             final AbstractDownloadTask downloadTask = task;
             task.addListener(new FutureListener<AbstractDownloadTask>() {
                 @Override
@@ -150,10 +158,10 @@ public class MavenDownloadManager implements DownloadManager {
                     } catch (Exception e) {
                         exception.addCause(e);
                     } finally {
+                        downloaded.put(location, downloadTask);
+                        downloading.remove(location, downloadTask);
+                        allPending.decrementAndGet();
                         synchronized (lock) {
-                            downloading.remove(location);
-                            downloaded.put(location, downloadTask);
-                            --allPending;
                             if (--pending == 0) {
                                 lock.notifyAll();
                             }
@@ -163,23 +171,33 @@ public class MavenDownloadManager implements DownloadManager {
             });
         }
 
+        private AbstractDownloadTask getTask(String location) {
+            AbstractDownloadTask task = downloaded.get(location);
+            return task != null ? task : downloading.get(location);
+        }
+
         private AbstractDownloadTask createDownloadTask(final String url) {
             final String mvnUrl = stripUrl(url);
             if (mvnUrl.startsWith("mvn:")) {
                 if (!mvnUrl.equals(url)) {
                     return new ChainedDownloadTask(executorService, url, mvnUrl);
                 } else {
-                    return new MavenDownloadTask(executorService, mavenResolver, mvnUrl);
+                    return withHostPermits(new MavenDownloadTask(executorService, mavenResolver, mvnUrl, artifactCache));
                 }
             } else if (mvnUrl.startsWith("profile:")) {
                 // ENTESB-7506 - "profile:" handler may get republished in OSGi registry during launch
                 // phase of fabric container, so we should allow repeating download attempts
                 return new ProfileDownloadTask(executorService, url, tmpPath);
             } else {
-                return new SimpleDownloadTask(executorService, url, tmpPath);
+                return withHostPermits(new SimpleDownloadTask(executorService, url, tmpPath));
             }
         }
 
+        private AbstractDownloadTask withHostPermits(AbstractRetryableDownloadTask task) {
+            task.setHostPermits(hostPermits);
+            return task;
+        }
+
         class ChainedDownloadTask extends AbstractDownloadTask {
 
             private String innerUrl;
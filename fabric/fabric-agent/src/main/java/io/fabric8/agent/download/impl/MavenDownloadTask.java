@@ -17,21 +17,63 @@ package io.fabric8.agent.download.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.util.concurrent.ScheduledExecutorService;
 
 import io.fabric8.maven.MavenResolver;
+import io.fabric8.maven.util.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class MavenDownloadTask extends AbstractRetryableDownloadTask {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(MavenDownloadTask.class);
+
     private final MavenResolver resolver;
 
+    private final ArtifactCache artifactCache;
+
     public MavenDownloadTask(ScheduledExecutorService executor, MavenResolver resolver, String url) {
+        this(executor, resolver, url, null);
+    }
+
+    public MavenDownloadTask(ScheduledExecutorService executor, MavenResolver resolver, String url, ArtifactCache artifactCache) {
         super(executor, url);
         this.resolver = resolver;
+        this.artifactCache = artifactCache;
     }
 
+    /**
+     * Released artifacts missing from the local repository are first looked up in the shared cache, and the ones
+     * which are downloaded are verified against the SHA-1 from their repository and added to the cache. Artifacts
+     * without a SHA-1 from their repository are not cached.
+     */
     @Override
     protected File download(Exception previousException) throws Exception {
+        String artifactPath = artifactCache != null ? getCacheablePath() : null;
+        File local = artifactPath != null ? getLocalFile(artifactPath) : null;
+        boolean cached = false;
+        if (local != null && !local.isFile()) {
+            File file = artifactCache.get(artifactPath);
+            if (file != null) {
+                try {
+                    artifactCache.copy(file, local);
+                    cached = true;
+                    LOGGER.debug("Using {} from the artifact cache", url);
+                } catch (IOException e) {
+                    LOGGER.debug("Error copying " + url + " from the artifact cache", e);
+                }
+            }
+        }
+        File file = resolve(previousException);
+        if (local != null && !cached && local.getAbsoluteFile().equals(file.getAbsoluteFile())
+                && artifactCache.get(artifactPath) == null) {
+            addToCache(artifactPath, file);
+        }
+        return file;
+    }
+
+    private File resolve(Exception previousException) throws IOException {
         try {
             return resolver.download(url, previousException);
         } catch (NoSuchMethodError error) {
@@ -40,6 +82,58 @@ public class MavenDownloadTask extends AbstractRetryableDownloadTask {
         }
     }
 
+    private void addToCache(String artifactPath, File file) throws IOException {
+        File sha1 = new File(file.getPath() + ".sha1");
+        if (!sha1.isFile()) {
+            // only the artifacts verified against their repository are shared with the other containers
+            LOGGER.debug("Not adding {} to the artifact cache, its repository has no checksum", url);
+            return;
+        }
+        try {
+            artifactCache.put(artifactPath, file, ArtifactCache.readSha1(sha1));
+        } catch (ArtifactCache.ChecksumException e) {
+            // download it again
+            file.delete();
+            sha1.delete();
+            throw e;
+        } catch (IOException e) {
+            LOGGER.debug("Error adding " + url + " to the artifact cache", e);
+        }
+    }
+
+    /**
+     * Gets the path of the artifact in the repository layout if it can be cached, released artifacts never
+     * change so they can be shared
+     */
+    private String getCacheablePath() {
+        try {
+            Parser parser = new Parser(url.substring("mvn:".length()));
+            String version = parser.getVersion();
+            if (version == null || version.endsWith("SNAPSHOT") || version.equals(Parser.VERSION_LATEST)
+                    || version.matches(".*[\\[\\](),].*")) {
+                return null;
+            }
+            return parser.getArtifactPath();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private File getLocalFile(String artifactPath) {
+        try {
+            File repository = resolver.getLocalRepository();
+            return repository != null ? new File(repository, artifactPath) : null;
+        } catch (NoSuchMethodError error) {
+            // handle R patch, where agent is updated, but still wired to old fabric-maven.
+            return null;
+        }
+    }
+
+    @Override
+    protected String getHost() {
+        return DownloadManagerHelper.getRemoteHost(url);
+    }
+
     /**
      * Maven artifact may be looked up in several repositories. Only if exception for <strong>each</strong>
      * repository is not retryable, we won't retry.
@@ -48,6 +142,9 @@ public class MavenDownloadTask extends AbstractRetryableDownloadTask {
      */
     @Override
     protected Retry isRetryable(IOException e) {
+        if (e instanceof ArtifactCache.ChecksumException) {
+            return Retry.QUICK_RETRY;
+        }
         try {
             // convert fabric-maven "retry" to fabric-agent "retry"
             switch (resolver.isRetryableException(e)) {
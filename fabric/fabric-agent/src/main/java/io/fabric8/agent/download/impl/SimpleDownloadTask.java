@@ -132,6 +132,11 @@ public class SimpleDownloadTask extends AbstractRetryableDownloadTask {
         return tmpFile;
     }
 
+    @Override
+    protected String getHost() {
+        return DownloadManagerHelper.getRemoteHost(url);
+    }
+
     @Override
     protected Retry isRetryable(IOException e) {
         // TODO: check http errors, etc.
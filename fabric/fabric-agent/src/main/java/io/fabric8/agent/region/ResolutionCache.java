@@ -0,0 +1,370 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.region;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+
+import static io.fabric8.agent.resolver.ResourceUtils.getSymbolicName;
+import static io.fabric8.agent.resolver.ResourceUtils.getType;
+import static io.fabric8.agent.resolver.ResourceUtils.getVersion;
+
+/**
+ * Caches the wiring computed by the resolver by a fingerprint of everything the resolution depends on: the
+ * subsystems with their sharing policies, and the capabilities and requirements of all the resources which can
+ * be installed, so that the resolver does not need to run again when the inputs are unchanged.
+ * <p/>
+ * The wiring is stored with the keys of the resources and the indexes of the requirements and capabilities
+ * of the wires in the resources declaring them, which are the fragments rather than their hosts for the hosted
+ * ones, in JSON friendly maps so that it can be persisted with the state of the agent.
+ */
+public class ResolutionCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 2;
+
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String RESOURCES = "resources";
+    private static final String WIRING = "wiring";
+
+    private final List<Map<String, Object>> entries;
+    private final int maxEntries;
+
+    /**
+     * @param entries the cached resolutions, oldest first, which are updated when a resolution is added
+     */
+    public ResolutionCache(List<Map<String, Object>> entries) {
+        this(entries, DEFAULT_MAX_ENTRIES);
+    }
+
+    public ResolutionCache(List<Map<String, Object>> entries, int maxEntries) {
+        this.entries = entries;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Computes the fingerprint of the resolution of the given subsystems, or returns null if the resources
+     * cannot be told apart
+     */
+    public Fingerprint fingerprint(Subsystem root) {
+        Map<String, Resource> resources = new TreeMap<>();
+        Map<Resource, String> keys = new IdentityHashMap<>();
+        StringBuilder subsystems = new StringBuilder();
+        if (!addResources(root, resources, keys, subsystems)) {
+            return null;
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        update(digest, subsystems);
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Resource> entry : resources.entrySet()) {
+            Resource resource = entry.getValue();
+            sb.setLength(0);
+            sb.append(entry.getKey()).append('\n');
+            if (resource instanceof BundleRevision) {
+                sb.append(((BundleRevision) resource).getBundle().getLastModified()).append('\n');
+            }
+            for (Capability capability : resource.getCapabilities(null)) {
+                sb.append("c ").append(capability.getNamespace()).append(' ')
+                        .append(sorted(capability.getAttributes())).append(' ')
+                        .append(sorted(capability.getDirectives())).append('\n');
+            }
+            for (Requirement requirement : resource.getRequirements(null)) {
+                sb.append("r ").append(requirement.getNamespace()).append(' ')
+                        .append(sorted(requirement.getAttributes())).append(' ')
+                        .append(sorted(requirement.getDirectives())).append('\n');
+            }
+            update(digest, sb);
+        }
+        StringBuilder value = new StringBuilder();
+        for (byte b : digest.digest()) {
+            value.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return new Fingerprint(value.toString(), resources, keys);
+    }
+
+    /**
+     * Gets the cached wiring of the resolution with the given fingerprint or null
+     */
+    public Map<Resource, List<Wire>> get(Fingerprint fingerprint) {
+        for (Map<String, Object> entry : entries) {
+            if (fingerprint.value.equals(entry.get(FINGERPRINT))) {
+                try {
+                    return decode(fingerprint, entry);
+                } catch (RuntimeException e) {
+                    // the entry does not match the resources after all
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Caches the wiring of a resolution, which is not cached if it refers to resources which are not part of
+     * the fingerprint, such as the ones from a global repository
+     */
+    public void put(Fingerprint fingerprint, Map<Resource, List<Wire>> wiring) {
+        Map<String, Object> entry = encode(fingerprint, wiring);
+        for (Iterator<Map<String, Object>> iterator = entries.iterator(); iterator.hasNext();) {
+            if (fingerprint.value.equals(iterator.next().get(FINGERPRINT))) {
+                iterator.remove();
+            }
+        }
+        if (entry != null) {
+            entries.add(entry);
+            while (entries.size() > maxEntries) {
+                entries.remove(0);
+            }
+        }
+    }
+
+    private Map<String, Object> encode(Fingerprint fingerprint, Map<Resource, List<Wire>> wiring) {
+        List<String> resources = new ArrayList<>();
+        Map<Resource, Integer> indexes = new IdentityHashMap<>();
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Resource, List<Wire>> entry : wiring.entrySet()) {
+            if (!append(sb, index(fingerprint, entry.getKey(), resources, indexes))
+                    || !append(sb, entry.getValue().size())) {
+                return null;
+            }
+            for (Wire wire : entry.getValue()) {
+                // the requirement and capability of a fragment are wired for its host
+                Resource declaringRequirer = wire.getRequirement().getResource();
+                Resource declaringProvider = wire.getCapability().getResource();
+                if (!append(sb, index(fingerprint, wire.getRequirer(), resources, indexes))
+                        || !append(sb, index(fingerprint, declaringRequirer, resources, indexes))
+                        || !append(sb, indexOf(declaringRequirer.getRequirements(null), wire.getRequirement()))
+                        || !append(sb, index(fingerprint, wire.getProvider(), resources, indexes))
+                        || !append(sb, index(fingerprint, declaringProvider, resources, indexes))
+                        || !append(sb, indexOf(declaringProvider.getCapabilities(null), wire.getCapability()))) {
+                    return null;
+                }
+            }
+        }
+        Map<String, Object> entry = new HashMap<>();
+        entry.put(FINGERPRINT, fingerprint.value);
+        entry.put(RESOURCES, resources);
+        entry.put(WIRING, sb.toString());
+        return entry;
+    }
+
+    private Map<Resource, List<Wire>> decode(Fingerprint fingerprint, Map<String, Object> entry) {
+        List<Resource> resources = new ArrayList<>();
+        for (Object key : (Collection<?>) entry.get(RESOURCES)) {
+            Resource resource = fingerprint.resources.get(key.toString());
+            if (resource == null) {
+                return null;
+            }
+            resources.add(resource);
+        }
+        String wiringString = entry.get(WIRING).toString();
+        String[] values = wiringString.isEmpty() ? new String[0] : wiringString.split(",");
+        Map<Resource, List<Wire>> wiring = new HashMap<>();
+        int i = 0;
+        while (i < values.length) {
+            Resource resource = resources.get(Integer.parseInt(values[i++]));
+            int count = Integer.parseInt(values[i++]);
+            List<Wire> wires = new ArrayList<>(count);
+            for (int w = 0; w < count; w++) {
+                Resource requirer = resources.get(Integer.parseInt(values[i++]));
+                Resource declaringRequirer = resources.get(Integer.parseInt(values[i++]));
+                Requirement requirement = declaringRequirer.getRequirements(null).get(Integer.parseInt(values[i++]));
+                Resource provider = resources.get(Integer.parseInt(values[i++]));
+                Resource declaringProvider = resources.get(Integer.parseInt(values[i++]));
+                Capability capability = declaringProvider.getCapabilities(null).get(Integer.parseInt(values[i++]));
+                if (!requirement.getNamespace().equals(capability.getNamespace())) {
+                    return null;
+                }
+                wires.add(new CachedWire(capability, requirement, provider, requirer));
+            }
+            wiring.put(resource, wires);
+        }
+        return wiring;
+    }
+
+    private static int index(Fingerprint fingerprint, Resource resource, List<String> resources, Map<Resource, Integer> indexes) {
+        Integer index = indexes.get(resource);
+        if (index == null) {
+            String key = fingerprint.keys.get(resource);
+            if (key == null) {
+                return -1;
+            }
+            index = resources.size();
+            resources.add(key);
+            indexes.put(resource, index);
+        }
+        return index;
+    }
+
+    private static int indexOf(List<?> list, Object element) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == element) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean append(StringBuilder sb, int value) {
+        if (value < 0) {
+            return false;
+        }
+        if (sb.length() > 0) {
+            sb.append(',');
+        }
+        sb.append(value);
+        return true;
+    }
+
+    private static boolean addResources(Subsystem subsystem, Map<String, Resource> resources, Map<Resource, String> keys, StringBuilder subsystems) {
+        subsystems.append(subsystem.getName()).append(' ')
+                .append(subsystem.getParent() != null ? subsystem.getParent().getName() : "").append(' ')
+                .append(sorted(subsystem.getImportPolicy())).append(' ')
+                .append(sorted(subsystem.getExportPolicy())).append('\n');
+        if (!addResource(subsystem, "subsystem:" + subsystem.getName(), resources, keys)) {
+            return false;
+        }
+        for (Resource resource : subsystem.getInstallable()) {
+            if (resource instanceof Subsystem) {
+                continue;
+            }
+            String key;
+            if (resource instanceof BundleRevision) {
+                key = subsystem.getName() + ":bundle:" + ((BundleRevision) resource).getBundle().getBundleId();
+            } else {
+                key = subsystem.getName() + ":" + getType(resource) + ":" + getSymbolicName(resource) + "/" + getVersion(resource);
+            }
+            if (!addResource(resource, key, resources, keys)) {
+                return false;
+            }
+        }
+        for (Subsystem child : subsystem.getChildren()) {
+            if (!addResources(child, resources, keys, subsystems)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean addResource(Resource resource, String key, Map<String, Resource> resources, Map<Resource, String> keys) {
+        Resource previous = resources.put(key, resource);
+        keys.put(resource, key);
+        return previous == null || previous == resource;
+    }
+
+    private static String sorted(Map<String, ?> map) {
+        StringBuilder sb = new StringBuilder("{");
+        for (Map.Entry<String, ?> entry : new TreeMap<>(map).entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Collection && !(value instanceof List)) {
+                value = new TreeSet<>(toStrings((Collection<?>) value));
+            }
+            sb.append(entry.getKey()).append('=').append(value).append(';');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static List<String> toStrings(Collection<?> collection) {
+        List<String> strings = new ArrayList<>();
+        for (Object o : collection) {
+            strings.add(String.valueOf(o));
+        }
+        return strings;
+    }
+
+    private static void update(MessageDigest digest, CharSequence sb) {
+        digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The fingerprint of a resolution with the resources it was computed from
+     */
+    public static class Fingerprint {
+        private final String value;
+        private final Map<String, Resource> resources;
+        private final Map<Resource, String> keys;
+
+        Fingerprint(String value, Map<String, Resource> resources, Map<Resource, String> keys) {
+            this.value = value;
+            this.resources = resources;
+            this.keys = keys;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private static class CachedWire implements Wire {
+        private final Capability capability;
+        private final Requirement requirement;
+        private final Resource provider;
+        private final Resource requirer;
+
+        CachedWire(Capability capability, Requirement requirement, Resource provider, Resource requirer) {
+            this.capability = capability;
+            this.requirement = requirement;
+            this.provider = provider;
+            this.requirer = requirer;
+        }
+
+        @Override
+        public Capability getCapability() {
+            return capability;
+        }
+
+        @Override
+        public Requirement getRequirement() {
+            return requirement;
+        }
+
+        @Override
+        public Resource getProvider() {
+            return provider;
+        }
+
+        @Override
+        public Resource getRequirer() {
+            return requirer;
+        }
+
+        @Override
+        public String toString() {
+            return requirement + " -> " + capability;
+        }
+    }
+
+}
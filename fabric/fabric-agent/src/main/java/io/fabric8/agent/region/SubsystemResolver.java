@@ -83,11 +83,19 @@ public class SubsystemResolver {
     private Map<Resource, String> features;
     private RegionDigraph flatDigraph;
     private Map<String, Map<String, BundleInfo>> bundleInfos;
+    private ResolutionCache resolutionCache;
 
     public SubsystemResolver(DownloadManager manager) {
         this.manager = manager;
     }
 
+    /**
+     * Sets the cache used to skip the resolution when its inputs did not change
+     */
+    public void setResolutionCache(ResolutionCache resolutionCache) {
+        this.resolutionCache = resolutionCache;
+    }
+
     public void prepare(
             Collection<Feature> allFeatures,
             Map<String, Set<String>> requirements,
@@ -185,10 +193,19 @@ public class SubsystemResolver {
         digraph = new StandardRegionDigraph(null, null);
         populateDigraph(digraph, root);
 
-        Resolver resolver = new ResolverImpl(new Slf4jResolverLog(LOGGER));
-        Downloader downloader = manager.createDownloader();
-        wiring = resolver.resolve(new SubsystemResolveContext(root, digraph, globalRepository, downloader));
-        downloader.await();
+        ResolutionCache.Fingerprint fingerprint = resolutionCache != null ? resolutionCache.fingerprint(root) : null;
+        wiring = fingerprint != null ? resolutionCache.get(fingerprint) : null;
+        if (wiring != null) {
+            LOGGER.info("Using the cached resolution {}", fingerprint.getValue());
+        } else {
+            Resolver resolver = new ResolverImpl(new Slf4jResolverLog(LOGGER));
+            Downloader downloader = manager.createDownloader();
+            wiring = resolver.resolve(new SubsystemResolveContext(root, digraph, globalRepository, downloader));
+            downloader.await();
+            if (fingerprint != null) {
+                resolutionCache.put(fingerprint, wiring);
+            }
+        }
 
         // Remove wiring to the fake environment resource
         if (environmentResource != null) {
@@ -295,6 +295,10 @@ public class Agent {
         // This is a bit hacky, but we can't get a hold on the real bundle location
         // in a standard way in OSGi.  Therefore, hack into Felix to obtain the
         // corresponding jar url and use that one to compute the checksum of the bundle.
+        // The checksums of the jars are persisted so that they are only computed again
+        // when the jars are modified.
+        state.purgeFileChecksums();
+        boolean computed = false;
         for (Map.Entry<Long, Bundle> entry : dstate.bundles.entrySet()) {
             long id = entry.getKey();
             Bundle bundle = entry.getValue();
@@ -308,7 +312,14 @@ public class Agent {
                     if (jarUrl.startsWith("jar:")) {
                         String jar = jarUrl.substring("jar:".length(), jarUrl.indexOf("!/"));
                         jar = new URL(jar).getFile();
-                        long checksum = ChecksumUtils.checksumFile(new File(jar));
+                        File file = new File(jar);
+                        String key = State.fileChecksumKey(file);
+                        Long checksum = state.fileChecksums.get(key);
+                        if (checksum == null) {
+                            checksum = ChecksumUtils.checksumFile(file);
+                            state.fileChecksums.put(key, checksum);
+                            computed = true;
+                        }
                         state.bundleChecksums.put(id, checksum);
                     }
                 } catch (Throwable t) {
@@ -316,6 +327,13 @@ public class Agent {
                 }
             }
         }
+        if (computed) {
+            try {
+                saveState(state);
+            } catch (IOException e) {
+                LOGGER.warn("Error storing agent state", e);
+            }
+        }
         dstate.state = state;
 
         Set<String> prereqs = new HashSet<>();
@@ -36,6 +36,7 @@ import io.fabric8.agent.internal.MapUtils;
 import io.fabric8.agent.model.BundleInfo;
 import io.fabric8.agent.model.ConfigFile;
 import io.fabric8.agent.model.Feature;
+import io.fabric8.agent.region.ResolutionCache;
 import io.fabric8.agent.region.SubsystemResolver;
 import io.fabric8.agent.resolver.FeatureResource;
 import io.fabric8.agent.utils.AgentUtils;
@@ -172,6 +173,7 @@ public class Deployer {
 
     static class Deployment {
         Map<Long, Long> bundleChecksums = new HashMap<>();
+        Map<String, Long> fileChecksums = new HashMap<>();
         Map<Resource, Bundle> resToBnd = new HashMap<>();
         Map<String, RegionDeployment> regions = new HashMap<>();
     }
@@ -228,7 +230,9 @@ public class Deployer {
                 map(dstate.bundles));
 
         // Resolve
+        List<Map<String, Object>> resolutions = copy(dstate.state.resolutions);
         SubsystemResolver resolver = new SubsystemResolver(manager);
+        resolver.setResolutionCache(new ResolutionCache(resolutions));
         resolver.prepare(
                 dstate.features.values(),
                 request.requirements,
@@ -902,6 +906,9 @@ public class Deployer {
         //
         State newState = new State();
         newState.bundleChecksums.putAll(deployment.bundleChecksums);
+        newState.fileChecksums.putAll(dstate.state.fileChecksums);
+        newState.fileChecksums.putAll(deployment.fileChecksums);
+        newState.resolutions.addAll(resolutions);
         newState.requirements.putAll(request.requirements);
         newState.installedFeatures.putAll(installedFeatures);
         newState.stateFeatures.putAll(stateFeatures);
@@ -1379,7 +1386,8 @@ public class Deployer {
                                         }
                                     } catch (URISyntaxException ignored) {
                                     }
-                                    long newCrc = bpNewCrc != null ? bpNewCrc : ChecksumUtils.checksum(is);
+                                    long newCrc = bpNewCrc != null ? bpNewCrc
+                                            : getFileChecksum(dstate, result, resource, resolver.getProviders(), is);
                                     long oldCrc = dstate.state.bundleChecksums.containsKey(bundle.getBundleId())
                                                     ? dstate.state.bundleChecksums.get(bundle.getBundleId()) : 0L;
                                     if (newCrc != oldCrc) {
@@ -1580,6 +1588,21 @@ public class Deployer {
         return new FileInputStream(provider.getFile());
     }
 
+    /**
+     * Computes the checksum of the file of a resource from the given stream, unless it was already computed
+     * and persisted with the state and the file has not been modified since
+     */
+    protected long getFileChecksum(DeploymentState dstate, Deployment deployment, Resource resource,
+                                   Map<String, StreamProvider> providers, InputStream is) throws IOException {
+        String key = State.fileChecksumKey(providers.get(getUri(resource)).getFile());
+        Long crc = dstate.state.fileChecksums.get(key);
+        if (crc == null) {
+            crc = ChecksumUtils.checksum(is);
+        }
+        deployment.fileChecksums.put(key, crc);
+        return crc;
+    }
+
     /**
      * Assuming that <code>stream</code> is a <em>blueprint bundle</em>, extracts <code>/OSGI-INF/blueprint/*.xml</code>
      * entry instead.
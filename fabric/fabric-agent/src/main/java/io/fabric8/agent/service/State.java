@@ -15,7 +15,11 @@
  */
 package io.fabric8.agent.service;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -32,6 +36,8 @@ public class State {
     public final Map<String, Map<String, String>> stateFeatures = new HashMap<>();
     public final Map<String, Set<Long>> managedBundles = new HashMap<>();
     public final Map<Long, Long> bundleChecksums = new HashMap<>();
+    public final Map<String, Long> fileChecksums = new HashMap<>();
+    public final List<Map<String, Object>> resolutions = new ArrayList<>();
 
     public State copy() {
         State state = new State();
@@ -51,6 +57,8 @@ public class State {
             to.stateFeatures.clear();
             to.managedBundles.clear();
             to.bundleChecksums.clear();
+            to.fileChecksums.clear();
+            to.resolutions.clear();
         }
         to.bootDone.set(from.bootDone.get());
         MapUtils.copy(from.repositories, to.repositories);
@@ -59,6 +67,27 @@ public class State {
         MapUtils.copy(from.stateFeatures, to.stateFeatures);
         MapUtils.copy(from.managedBundles, to.managedBundles);
         MapUtils.copy(from.bundleChecksums, to.bundleChecksums);
+        MapUtils.copy(from.fileChecksums, to.fileChecksums);
+        MapUtils.copy(from.resolutions, to.resolutions);
+    }
+
+    /**
+     * The key of the checksum of a file in {@link #fileChecksums}, which changes whenever the file is modified
+     */
+    public static String fileChecksumKey(File file) {
+        return file.length() + ":" + file.lastModified() + ":" + file.getAbsolutePath();
+    }
+
+    /**
+     * Removes the checksums of the files which were modified or deleted since they were computed
+     */
+    public void purgeFileChecksums() {
+        for (Iterator<String> iterator = fileChecksums.keySet().iterator(); iterator.hasNext();) {
+            String[] key = iterator.next().split(":", 3);
+            if (key.length != 3 || !fileChecksumKey(new File(key[2])).equals(key[0] + ":" + key[1] + ":" + key[2])) {
+                iterator.remove();
+            }
+        }
     }
 
 }
@@ -18,8 +18,10 @@ package io.fabric8.agent.service;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -34,6 +36,8 @@ public abstract class StateStorage {
         state.requirements.clear();
         state.installedFeatures.clear();
         state.managedBundles.clear();
+        state.fileChecksums.clear();
+        state.resolutions.clear();
         try (
                 InputStream is = getInputStream()
         ) {
@@ -46,6 +50,12 @@ public abstract class StateStorage {
                 state.stateFeatures.putAll(toStringStringStringMapMap((Map) json.get("state")));
                 state.managedBundles.putAll(toStringLongSetMap((Map) json.get("managed")));
                 state.bundleChecksums.putAll(toLongLongMap((Map) json.get("checksums")));
+                if (json.get("fileChecksums") != null) {
+                    state.fileChecksums.putAll(toStringLongMap((Map) json.get("fileChecksums")));
+                }
+                if (json.get("resolutions") != null) {
+                    state.resolutions.addAll(toMapList((Collection) json.get("resolutions")));
+                }
             }
         }
     }
@@ -63,6 +73,8 @@ public abstract class StateStorage {
                 json.put("state", state.stateFeatures);
                 json.put("managed", state.managedBundles);
                 json.put("checksums", toStringLongMap(state.bundleChecksums));
+                json.put("fileChecksums", state.fileChecksums);
+                json.put("resolutions", state.resolutions);
                 JsonWriter.write(os, json);
             }
         }
@@ -104,6 +116,15 @@ public abstract class StateStorage {
         return nm;
     }
 
+    @SuppressWarnings("unchecked")
+    static List<Map<String, Object>> toMapList(Collection<?> col) {
+        List<Map<String, Object>> nl = new ArrayList<>();
+        for (Object o : col) {
+            nl.add((Map<String, Object>) o);
+        }
+        return nl;
+    }
+
     static Set<String> toStringSet(Collection<?> col) {
         Set<String> ns = new TreeSet<>();
         for (Object o : col) {
@@ -18,6 +18,7 @@ package io.fabric8.agent.download;
 import io.fabric8.agent.download.impl.DownloadManagerHelper;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class DownloadManagerHelperTest {
 
@@ -36,4 +37,13 @@ public class DownloadManagerHelperTest {
         assertEquals(artifact, DownloadManagerHelper.stripUrl("spring:"+artifact));
         assertEquals(artifact, DownloadManagerHelper.stripUrl("blueprint:"+artifact));
     }
+
+    @Test
+    public void testGetRemoteHost() {
+        assertEquals("repo.example.com", DownloadManagerHelper.getRemoteHost("http://repo.example.com/bundle.jar"));
+        assertEquals("repo.example.com", DownloadManagerHelper.getRemoteHost("wrap:https://repo.example.com:8443/bundle.jar$Bundle-Version=1.1"));
+        assertEquals("repo.example.com", DownloadManagerHelper.getRemoteHost("mvn:http://repo.example.com/maven2@id=example!my/artifact/1.0"));
+        assertNull(DownloadManagerHelper.getRemoteHost("mvn:my/artifact/1.0"));
+        assertNull(DownloadManagerHelper.getRemoteHost("file:/tmp/bundle.jar"));
+    }
 }
@@ -0,0 +1,114 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.download.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ArtifactCacheTest {
+
+    // SHA-1 of "hello"
+    private static final String HELLO_SHA1 = "aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d";
+    private static final String PATH = "x/y/z/1.0/z-1.0.jar";
+
+    private File dir;
+    private ArtifactCache cache;
+
+    @Before
+    public void init() throws Exception {
+        dir = new File("target/artifact-cache");
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        cache = new ArtifactCache(new File(dir, "cache"));
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testPutAndCopy() throws Exception {
+        assertNull(cache.get(PATH));
+        File file = write(new File(dir, "repo1/" + PATH), "hello");
+        File cached = cache.put(PATH, file, HELLO_SHA1.toUpperCase());
+        assertEquals(HELLO_SHA1, cached.getName());
+        assertEquals(cached, cache.get(PATH));
+
+        File target = new File(dir, "repo2/" + PATH);
+        cache.copy(cache.get(PATH), target);
+        assertArrayEquals("hello".getBytes(StandardCharsets.US_ASCII), Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void testCachedArtifactIsReadOnly() throws Exception {
+        File cached = cache.put(PATH, write(new File(dir, "repo1/" + PATH), "hello"), HELLO_SHA1);
+        if (Files.getFileStore(cached.toPath()).supportsFileAttributeView("posix")) {
+            assertFalse(Files.getPosixFilePermissions(cached.toPath()).contains(PosixFilePermission.OWNER_WRITE));
+        } else {
+            assertFalse(cached.canWrite());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnverifiedArtifactIsRefused() throws Exception {
+        cache.put(PATH, write(new File(dir, "repo1/" + PATH), "hello"), null);
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        File file = write(new File(dir, "repo1/" + PATH), "corrupted");
+        try {
+            cache.put(PATH, file, HELLO_SHA1);
+            fail("Expected a checksum exception");
+        } catch (ArtifactCache.ChecksumException e) {
+            // expected
+        }
+        assertNull(cache.get(PATH));
+    }
+
+    @Test
+    public void testReadSha1() throws Exception {
+        assertEquals(HELLO_SHA1, ArtifactCache.readSha1(write(new File(dir, "a.sha1"), HELLO_SHA1.toUpperCase() + "  z-1.0.jar\n")));
+        try {
+            ArtifactCache.readSha1(write(new File(dir, "b.sha1"), "<html>"));
+            fail("Expected an invalid checksum");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static File write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+}
@@ -0,0 +1,187 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.download.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.maven.MavenResolver;
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MavenDownloadTaskTest {
+
+    // SHA-1 of "hello"
+    private static final String HELLO_SHA1 = "aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d";
+    private static final String URL = "mvn:x.y/z/1.0";
+    private static final String PATH = "x/y/z/1.0/z-1.0.jar";
+
+    private File dir;
+    private ArtifactCache cache;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void init() throws Exception {
+        dir = new File("target/maven-download-task");
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        cache = new ArtifactCache(new File(dir, "cache"));
+        executor = EasyMock.createMock(ScheduledExecutorService.class);
+        EasyMock.replay(executor);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testDownloadedArtifactIsCached() throws Exception {
+        File repository = new File(dir, "repo1");
+        MavenResolver resolver = resolver(repository, "hello", HELLO_SHA1);
+
+        MavenDownloadTask task = new MavenDownloadTask(executor, resolver, URL, cache);
+        task.run();
+        assertEquals(new File(repository, PATH), task.getFile());
+        assertNotNull(cache.get(PATH));
+        EasyMock.verify(resolver);
+    }
+
+    @Test
+    public void testArtifactWithoutChecksumIsNotCached() throws Exception {
+        MavenResolver resolver = resolver(new File(dir, "repo1"), "hello", null);
+
+        MavenDownloadTask task = new MavenDownloadTask(executor, resolver, URL, cache);
+        task.run();
+        assertNotNull(task.getFile());
+        assertNull(cache.get(PATH));
+        EasyMock.verify(resolver);
+    }
+
+    @Test
+    public void testCorruptedArtifactIsDownloadedAgain() throws Exception {
+        File repository = new File(dir, "repo1");
+        MavenResolver resolver = resolver(repository, "corrupted", HELLO_SHA1);
+        EasyMock.reset(executor);
+        executor.schedule((Runnable) EasyMock.anyObject(), EasyMock.anyLong(), EasyMock.eq(TimeUnit.MILLISECONDS));
+        EasyMock.expectLastCall().andReturn(null);
+        EasyMock.replay(executor);
+
+        MavenDownloadTask task = new MavenDownloadTask(executor, resolver, URL, cache);
+        task.run();
+        assertFalse(task.isDone());
+        assertFalse(new File(repository, PATH).exists());
+        assertNull(cache.get(PATH));
+        EasyMock.verify(resolver, executor);
+    }
+
+    @Test
+    public void testCachedArtifactIsCopiedToTheLocalRepository() throws Exception {
+        File cached = write(new File(dir, "repo1/" + PATH), "hello");
+        cache.put(PATH, cached, HELLO_SHA1);
+
+        final File local = new File(dir, "repo2/" + PATH);
+        MavenResolver resolver = EasyMock.createMock(MavenResolver.class);
+        EasyMock.expect(resolver.getLocalRepository()).andReturn(new File(dir, "repo2")).anyTimes();
+        EasyMock.expect(resolver.download(URL, null)).andAnswer(new IAnswer<File>() {
+            @Override
+            public File answer() throws Throwable {
+                // the resolver finds the artifact in the local repository
+                assertTrue(local.isFile());
+                return local;
+            }
+        });
+        EasyMock.replay(resolver);
+
+        MavenDownloadTask task = new MavenDownloadTask(executor, resolver, URL, cache);
+        task.run();
+        assertEquals(local, task.getFile());
+        assertEquals("hello", new String(Files.readAllBytes(local.toPath()), StandardCharsets.US_ASCII));
+        EasyMock.verify(resolver);
+    }
+
+    @Test
+    public void testBusyHostIsRescheduled() throws Exception {
+        String url = "mvn:http://repo.example.com/maven2@id=example!x.y/z/1.0";
+        File file = write(new File(dir, "repo1/" + PATH), "hello");
+        MavenResolver resolver = EasyMock.createMock(MavenResolver.class);
+        EasyMock.expect(resolver.download(url, null)).andReturn(file);
+        EasyMock.replay(resolver);
+
+        HostPermits permits = new HostPermits(1);
+        MavenDownloadTask task = new MavenDownloadTask(executor, resolver, url);
+        task.setHostPermits(permits);
+        EasyMock.reset(executor);
+        executor.schedule(task, 50, TimeUnit.MILLISECONDS);
+        EasyMock.expectLastCall().andReturn(null);
+        EasyMock.replay(executor);
+
+        // another download from the same host is in progress
+        assertTrue(permits.tryAcquire("repo.example.com"));
+        task.run();
+        assertFalse(task.isDone());
+        EasyMock.verify(executor);
+
+        permits.release("repo.example.com");
+        task.run();
+        assertEquals(file, task.getFile());
+        // the permit of the task is released
+        assertTrue(permits.tryAcquire("repo.example.com"));
+        EasyMock.verify(resolver);
+    }
+
+    /**
+     * Creates a resolver which downloads the artifact with the given content, and its checksum file if given,
+     * to the given local repository
+     */
+    private MavenResolver resolver(final File repository, final String content, final String sha1) throws IOException {
+        MavenResolver resolver = EasyMock.createMock(MavenResolver.class);
+        EasyMock.expect(resolver.getLocalRepository()).andReturn(repository).anyTimes();
+        EasyMock.expect(resolver.download(URL, null)).andAnswer(new IAnswer<File>() {
+            @Override
+            public File answer() throws Throwable {
+                File file = write(new File(repository, PATH), content);
+                if (sha1 != null) {
+                    write(new File(repository, PATH + ".sha1"), sha1);
+                }
+                return file;
+            }
+        });
+        EasyMock.replay(resolver);
+        return resolver;
+    }
+
+    private static File write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+}
@@ -0,0 +1,226 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.region;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.fabric8.agent.resolver.CapabilityImpl;
+import io.fabric8.agent.resolver.RequirementImpl;
+import io.fabric8.agent.resolver.ResourceImpl;
+import io.fabric8.common.util.json.JsonReader;
+import io.fabric8.common.util.json.JsonWriter;
+import org.junit.Test;
+import org.osgi.framework.Version;
+import org.osgi.resource.Capability;
+import org.osgi.resource.Requirement;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ResolutionCacheTest {
+
+    @Test
+    public void testCachedWiring() throws Exception {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        ResolutionCache cache = new ResolutionCache(entries);
+        Subsystem root = createSubsystem("1.0.0");
+        ResolutionCache.Fingerprint fingerprint = cache.fingerprint(root);
+        assertNotNull(fingerprint);
+        assertNull(cache.get(fingerprint));
+        cache.put(fingerprint, createWiring(root));
+        assertEquals(1, entries.size());
+
+        // the same inputs give the same wiring, even after a round trip through the persisted state
+        cache = new ResolutionCache(persist(entries));
+        Subsystem other = createSubsystem("1.0.0");
+        ResolutionCache.Fingerprint otherFingerprint = cache.fingerprint(other);
+        assertEquals(fingerprint.getValue(), otherFingerprint.getValue());
+        Map<Resource, List<Wire>> wiring = cache.get(otherFingerprint);
+        assertNotNull(wiring);
+        Resource a = other.getInstallable().get(0);
+        Resource b = other.getInstallable().get(1);
+        assertEquals(2, wiring.size());
+        assertEquals(1, wiring.get(a).size());
+        assertEquals(0, wiring.get(b).size());
+        Wire wire = wiring.get(a).get(0);
+        assertSame(a, wire.getRequirer());
+        assertSame(b, wire.getProvider());
+        assertSame(a.getRequirements("osgi.wiring.package").get(0), wire.getRequirement());
+        assertSame(b.getCapabilities("osgi.wiring.package").get(0), wire.getCapability());
+
+        // any change in the capabilities is another resolution
+        ResolutionCache.Fingerprint changed = cache.fingerprint(createSubsystem("1.1.0"));
+        assertNotEquals(fingerprint.getValue(), changed.getValue());
+        assertNull(cache.get(changed));
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        ResolutionCache cache = new ResolutionCache(entries, 2);
+        for (String version : new String[] {"1.0.0", "1.1.0", "1.2.0"}) {
+            Subsystem root = createSubsystem(version);
+            cache.put(cache.fingerprint(root), createWiring(root));
+        }
+        assertEquals(2, entries.size());
+        assertNull(cache.get(cache.fingerprint(createSubsystem("1.0.0"))));
+        assertNotNull(cache.get(cache.fingerprint(createSubsystem("1.2.0"))));
+    }
+
+    @Test
+    public void testUnknownProvider() throws Exception {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        ResolutionCache cache = new ResolutionCache(entries);
+        Subsystem root = createSubsystem("1.0.0");
+        Map<Resource, List<Wire>> wiring = createWiring(root);
+        // a provider from outside of the subsystems, such as a global repository
+        Resource a = root.getInstallable().get(0);
+        ResourceImpl external = createBundle("external", "1.0.0");
+        wiring.put(external, new ArrayList<Wire>());
+        wiring.get(a).add(wire(a, a.getRequirements(null).get(0), external, external.getCapabilities(null).get(0)));
+        cache.put(cache.fingerprint(root), wiring);
+        assertEquals(0, entries.size());
+    }
+
+    @Test
+    public void testFragmentWiring() throws Exception {
+        Subsystem root = new Subsystem("root");
+        ResourceImpl host = createBundle("host", "1.0.0");
+        host.addCapability(new CapabilityImpl(host, "osgi.wiring.host", Collections.<String, String>emptyMap(),
+                Collections.<String, Object>singletonMap("osgi.wiring.host", "host")));
+        ResourceImpl fragment = createBundle("fragment", "1.0.0");
+        fragment.addRequirement(new RequirementImpl(fragment, "osgi.wiring.host", Collections.<String, String>emptyMap(),
+                Collections.<String, Object>singletonMap("osgi.wiring.host", "host")));
+        fragment.addRequirement(new RequirementImpl(fragment, "osgi.wiring.package", Collections.<String, String>emptyMap(),
+                Collections.<String, Object>singletonMap("osgi.wiring.package", "org.foo")));
+        fragment.addCapability(new CapabilityImpl(fragment, "osgi.wiring.package", Collections.<String, String>emptyMap(),
+                Collections.<String, Object>singletonMap("osgi.wiring.package", "org.bar")));
+        ResourceImpl b = createBundle("b", "1.0.0");
+        b.addCapability(new CapabilityImpl(b, "osgi.wiring.package", Collections.<String, String>emptyMap(),
+                Collections.<String, Object>singletonMap("osgi.wiring.package", "org.foo")));
+        b.addRequirement(new RequirementImpl(b, "osgi.wiring.package", Collections.<String, String>emptyMap(),
+                Collections.<String, Object>singletonMap("osgi.wiring.package", "org.bar")));
+        root.addSystemResource(host);
+        root.addSystemResource(fragment);
+        root.addSystemResource(b);
+
+        // the import and the export of the fragment are wired for its host
+        Map<Resource, List<Wire>> wiring = new HashMap<>();
+        wiring.put(fragment, Collections.singletonList(wire(fragment, fragment.getRequirements("osgi.wiring.host").get(0),
+                host, host.getCapabilities("osgi.wiring.host").get(0))));
+        wiring.put(host, Collections.singletonList(wire(host, fragment.getRequirements("osgi.wiring.package").get(0),
+                b, b.getCapabilities("osgi.wiring.package").get(0))));
+        wiring.put(b, Collections.singletonList(wire(b, b.getRequirements("osgi.wiring.package").get(0),
+                host, fragment.getCapabilities("osgi.wiring.package").get(0))));
+
+        List<Map<String, Object>> entries = new ArrayList<>();
+        ResolutionCache cache = new ResolutionCache(entries);
+        ResolutionCache.Fingerprint fingerprint = cache.fingerprint(root);
+        cache.put(fingerprint, wiring);
+        assertEquals(1, entries.size());
+
+        Map<Resource, List<Wire>> cached = new ResolutionCache(persist(entries)).get(fingerprint);
+        assertNotNull(cached);
+        assertEquals(3, cached.size());
+        for (Map.Entry<Resource, List<Wire>> entry : wiring.entrySet()) {
+            Wire expected = entry.getValue().get(0);
+            Wire wire = cached.get(entry.getKey()).get(0);
+            assertSame(expected.getRequirer(), wire.getRequirer());
+            assertSame(expected.getRequirement(), wire.getRequirement());
+            assertSame(expected.getProvider(), wire.getProvider());
+            assertSame(expected.getCapability(), wire.getCapability());
+        }
+    }
+
+    private static Subsystem createSubsystem(String packageVersion) {
+        Subsystem root = new Subsystem("root");
+        ResourceImpl a = createBundle("a", "1.0.0");
+        Map<String, Object> attrs = new HashMap<>();
+        attrs.put("osgi.wiring.package", "org.foo");
+        a.addRequirement(new RequirementImpl(a, "osgi.wiring.package", Collections.<String, String>emptyMap(), attrs));
+        ResourceImpl b = createBundle("b", "1.0.0");
+        attrs = new HashMap<>();
+        attrs.put("osgi.wiring.package", "org.foo");
+        attrs.put("version", new Version(packageVersion));
+        b.addCapability(new CapabilityImpl(b, "osgi.wiring.package", Collections.<String, String>emptyMap(), attrs));
+        root.addSystemResource(a);
+        root.addSystemResource(b);
+        return root;
+    }
+
+    private static ResourceImpl createBundle(String name, String version) {
+        return new ResourceImpl(name, "osgi.bundle", new Version(version));
+    }
+
+    private static Map<Resource, List<Wire>> createWiring(Subsystem root) {
+        Resource a = root.getInstallable().get(0);
+        Resource b = root.getInstallable().get(1);
+        Map<Resource, List<Wire>> wiring = new HashMap<>();
+        List<Wire> wires = new ArrayList<>();
+        wires.add(wire(a, a.getRequirements("osgi.wiring.package").get(0), b, b.getCapabilities("osgi.wiring.package").get(0)));
+        wiring.put(a, wires);
+        wiring.put(b, new ArrayList<Wire>());
+        return wiring;
+    }
+
+    private static Wire wire(final Resource requirer, final Requirement requirement, final Resource provider, final Capability capability) {
+        return new Wire() {
+            @Override
+            public Capability getCapability() {
+                return capability;
+            }
+
+            @Override
+            public Requirement getRequirement() {
+                return requirement;
+            }
+
+            @Override
+            public Resource getProvider() {
+                return provider;
+            }
+
+            @Override
+            public Resource getRequirer() {
+                return requirer;
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> persist(List<Map<String, Object>> entries) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        JsonWriter.write(baos, entries);
+        List<Map<String, Object>> answer = new ArrayList<>();
+        for (Object entry : (Collection<?>) JsonReader.read(new ByteArrayInputStream(baos.toByteArray()))) {
+            answer.add((Map<String, Object>) entry);
+        }
+        return answer;
+    }
+
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.agent.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StateStorageTest {
+
+    private File dir;
+    private ByteArrayOutputStream stored;
+    private StateStorage storage;
+
+    @Before
+    public void init() throws Exception {
+        dir = new File("target/state-storage");
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        stored = new ByteArrayOutputStream();
+        storage = new StateStorage() {
+            @Override
+            protected InputStream getInputStream() throws IOException {
+                return stored.size() > 0 ? new ByteArrayInputStream(stored.toByteArray()) : null;
+            }
+
+            @Override
+            protected OutputStream getOutputStream() throws IOException {
+                stored.reset();
+                return stored;
+            }
+        };
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testFileChecksumsAreStored() throws Exception {
+        File unchanged = write(new File(dir, "unchanged.jar"), "unchanged");
+        File modified = write(new File(dir, "modified.jar"), "modified");
+        String unchangedKey = State.fileChecksumKey(unchanged);
+        String modifiedKey = State.fileChecksumKey(modified);
+
+        State state = new State();
+        state.fileChecksums.put(unchangedKey, 1L);
+        state.fileChecksums.put(modifiedKey, 2L);
+        storage.save(state);
+
+        State loaded = new State();
+        storage.load(loaded);
+        assertEquals(state.fileChecksums, loaded.fileChecksums);
+
+        // the checksums of the files modified since they were stored are dropped
+        write(modified, "modified again");
+        loaded.purgeFileChecksums();
+        assertEquals(Long.valueOf(1L), loaded.fileChecksums.get(unchangedKey));
+        assertNull(loaded.fileChecksums.get(modifiedKey));
+        assertEquals(1, loaded.fileChecksums.size());
+    }
+
+    private static File write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+
+}
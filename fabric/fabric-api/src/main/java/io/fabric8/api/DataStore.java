@@ -16,6 +16,7 @@
 package io.fabric8.api;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -104,6 +105,14 @@ public interface DataStore {
 
     String getContainerAttribute(String containerId, ContainerAttribute attribute, String def, boolean mandatory, boolean substituted);
 
+    /**
+     * Get the given attributes of several containers at once. The attributes a container does not have are left out.
+     *
+     * @param substituted whether the placeholders in the values are substituted, like {@link #getContainerAttribute}
+     * @return the attributes by container id
+     */
+    Map<String, Map<ContainerAttribute, String>> getContainerAttributes(Collection<String> containerIds, Collection<ContainerAttribute> attributes, boolean substituted);
+
     void setContainerAttribute(String containerId, ContainerAttribute attribute, String value);
 
     //
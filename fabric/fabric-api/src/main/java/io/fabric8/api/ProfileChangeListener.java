@@ -0,0 +1,30 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.api;
+
+import java.util.Set;
+
+/**
+ * A listener which is told which profiles of a version changed in the {@link ProfileRegistry}
+ */
+public interface ProfileChangeListener {
+
+    /**
+     * Called after the given profiles of a version were created, modified or deleted.
+     * The profile registry is not locked while listeners are called.
+     */
+    void profilesChanged(String versionId, Set<String> profileIds);
+}
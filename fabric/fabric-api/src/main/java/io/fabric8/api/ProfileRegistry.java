@@ -197,6 +197,20 @@ public interface ProfileRegistry {
      */
     void deleteProfile(GitContext context, String versionId, String profileId);
 
+    //
+    // Tracking
+    //
+
+    /**
+     * Register a listener which is told the identities of the profiles which changed.
+     */
+    void trackProfiles(ProfileChangeListener listener);
+
+    /**
+     * Unregister a listener registered with {@link #trackProfiles(ProfileChangeListener)}.
+     */
+    void untrackProfiles(ProfileChangeListener listener);
+
     //
     // Import/Export 
     // [TODO] Consider utility methods for import/export that go through ProfileService 
@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.api.jmx;
+
+/**
+ * JMX MBean API for the cache of overlay profiles built by the profile service
+ */
+public interface OverlayCacheMBean {
+
+    /**
+     * The number of cached overlay profiles
+     */
+    int getSize();
+
+    /**
+     * The number of overlay profiles which were served from the cache
+     */
+    long getHits();
+
+    /**
+     * The number of overlay profiles which had to be built
+     */
+    long getMisses();
+
+    /**
+     * The number of cached overlay profiles which were dropped because one of the profiles they inherit from changed
+     */
+    long getInvalidations();
+
+    /**
+     * The total time spent building overlay profiles in milliseconds
+     */
+    long getTotalBuildTime();
+
+    /**
+     * The mean time spent building an overlay profile in milliseconds
+     */
+    double getMeanBuildTime();
+
+    /**
+     * The longest time spent building an overlay profile in milliseconds
+     */
+    long getMaxBuildTime();
+
+    /**
+     * Drops all cached overlay profiles
+     */
+    void clear();
+
+    /**
+     * Resets the statistics
+     */
+    void reset();
+}
@@ -16,6 +16,8 @@
 package io.fabric8.core.jmx;
 
 import io.fabric8.api.Container;
+import io.fabric8.api.DataStore;
+import io.fabric8.api.DataStore.ContainerAttribute;
 import io.fabric8.api.FabricException;
 import io.fabric8.api.FabricService;
 import io.fabric8.api.Ids;
@@ -23,13 +25,25 @@ import io.fabric8.api.Profile;
 import io.fabric8.api.ProfileService;
 import io.fabric8.api.Profiles;
 import io.fabric8.api.Version;
+import io.fabric8.internal.ContainerImpl;
 
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.apache.commons.beanutils.MethodUtils;
 import org.apache.commons.beanutils.PropertyUtils;
 import io.fabric8.api.gravia.IllegalArgumentAssertion;
 
@@ -37,11 +51,68 @@ import io.fabric8.api.gravia.IllegalArgumentAssertion;
  */
 public class BeanUtils {
 
+    // the getters of the classes by property name, resolved once per class
+    private static final ConcurrentMap<Class<?>, Map<String, MethodHandle>> ACCESSORS = new ConcurrentHashMap<Class<?>, Map<String, MethodHandle>>();
+    private static final ConcurrentMap<Class<?>, List<String>> FIELDS = new ConcurrentHashMap<Class<?>, List<String>>();
+
+    // the container attributes read by the container fields, by lower case field name
+    private static final Map<String, Set<ContainerAttribute>> CONTAINER_FIELD_ATTRIBUTES = new HashMap<String, Set<ContainerAttribute>>();
+    // the container attributes which are read with their placeholders substituted
+    private static final Set<ContainerAttribute> SUBSTITUTED_ATTRIBUTES = EnumSet.of(ContainerAttribute.SshUrl, ContainerAttribute.JmxUrl,
+            ContainerAttribute.JolokiaUrl, ContainerAttribute.HttpUrl, ContainerAttribute.Resolver, ContainerAttribute.Ip,
+            ContainerAttribute.LocalIp, ContainerAttribute.LocalHostName, ContainerAttribute.PublicIp, ContainerAttribute.PublicHostName,
+            ContainerAttribute.ManualIp);
+
+    static {
+        Set<ContainerAttribute> provisionResult = EnumSet.of(ContainerAttribute.ProvisionStatus, ContainerAttribute.BlueprintStatus, ContainerAttribute.SpringStatus);
+        Set<ContainerAttribute> provisionStatus = EnumSet.copyOf(provisionResult);
+        provisionStatus.add(ContainerAttribute.ProvisionException);
+        Set<ContainerAttribute> provisioningPending = EnumSet.copyOf(provisionResult);
+        provisioningPending.add(ContainerAttribute.Managed);
+        CONTAINER_FIELD_ATTRIBUTES.put("provisionresult", provisionResult);
+        CONTAINER_FIELD_ATTRIBUTES.put("provisioncomplete", provisionResult);
+        CONTAINER_FIELD_ATTRIBUTES.put("provisioningcomplete", provisionResult);
+        CONTAINER_FIELD_ATTRIBUTES.put("provisionstatus", provisionStatus);
+        CONTAINER_FIELD_ATTRIBUTES.put("provisionstatusmap", provisionStatus);
+        CONTAINER_FIELD_ATTRIBUTES.put("aliveandok", provisionStatus);
+        CONTAINER_FIELD_ATTRIBUTES.put("provisioningpending", provisioningPending);
+        CONTAINER_FIELD_ATTRIBUTES.put("provisionexception", EnumSet.of(ContainerAttribute.ProvisionException));
+        CONTAINER_FIELD_ATTRIBUTES.put("provisionlist", EnumSet.of(ContainerAttribute.ProvisionList));
+        CONTAINER_FIELD_ATTRIBUTES.put("provisionchecksums", EnumSet.of(ContainerAttribute.ProvisionChecksums));
+        CONTAINER_FIELD_ATTRIBUTES.put("managed", EnumSet.of(ContainerAttribute.Managed));
+        CONTAINER_FIELD_ATTRIBUTES.put("sshurl", EnumSet.of(ContainerAttribute.SshUrl));
+        CONTAINER_FIELD_ATTRIBUTES.put("jmxurl", EnumSet.of(ContainerAttribute.JmxUrl));
+        CONTAINER_FIELD_ATTRIBUTES.put("jolokiaurl", EnumSet.of(ContainerAttribute.JolokiaUrl));
+        CONTAINER_FIELD_ATTRIBUTES.put("httpurl", EnumSet.of(ContainerAttribute.HttpUrl));
+        CONTAINER_FIELD_ATTRIBUTES.put("debugport", EnumSet.of(ContainerAttribute.DebugPort));
+        CONTAINER_FIELD_ATTRIBUTES.put("location", EnumSet.of(ContainerAttribute.Location));
+        CONTAINER_FIELD_ATTRIBUTES.put("geolocation", EnumSet.of(ContainerAttribute.GeoLocation));
+        CONTAINER_FIELD_ATTRIBUTES.put("resolver", EnumSet.of(ContainerAttribute.Resolver));
+        CONTAINER_FIELD_ATTRIBUTES.put("ip", EnumSet.of(ContainerAttribute.Ip));
+        CONTAINER_FIELD_ATTRIBUTES.put("localip", EnumSet.of(ContainerAttribute.LocalIp));
+        CONTAINER_FIELD_ATTRIBUTES.put("localhostname", EnumSet.of(ContainerAttribute.LocalHostName));
+        CONTAINER_FIELD_ATTRIBUTES.put("publicip", EnumSet.of(ContainerAttribute.PublicIp));
+        CONTAINER_FIELD_ATTRIBUTES.put("publichostname", EnumSet.of(ContainerAttribute.PublicHostName));
+        CONTAINER_FIELD_ATTRIBUTES.put("manualip", EnumSet.of(ContainerAttribute.ManualIp));
+        CONTAINER_FIELD_ATTRIBUTES.put("minimumport", EnumSet.of(ContainerAttribute.PortMin));
+        CONTAINER_FIELD_ATTRIBUTES.put("maximumport", EnumSet.of(ContainerAttribute.PortMax));
+        CONTAINER_FIELD_ATTRIBUTES.put("processid", EnumSet.of(ContainerAttribute.ProcessId));
+    }
+
     private BeanUtils() {
         // Utils class
     }
 
     public static List<String> getFields(Class clazz) {
+        List<String> fields = FIELDS.get(clazz);
+        if (fields == null) {
+            fields = Collections.unmodifiableList(findFields(clazz));
+            FIELDS.putIfAbsent(clazz, fields);
+        }
+        return new ArrayList<String>(fields);
+    }
+
+    private static List<String> findFields(Class<?> clazz) {
         List<String> answer = new ArrayList<String>();
 
         try {
@@ -95,6 +166,8 @@ public class BeanUtils {
     public static Map<String, Object> convertProfileToMap(FabricService fabricService, Profile profile, List<String> fields) {
 
         Map<String, Object> answer = new TreeMap<String, Object>();
+        // the associated containers are looked up once, and only if a field needs them
+        Container[] containers = null;
 
         for (String field : fields) {
 
@@ -112,11 +185,17 @@ public class BeanUtils {
 
             } else if (field.equalsIgnoreCase("containers") || field.equalsIgnoreCase("associatedContainers")) {
 
-                answer.put(field, fetchContainers(fabricService, profile));
+                if (containers == null) {
+                    containers = fabricService.getAssociatedContainers(profile.getVersion(), profile.getId());
+                }
+                answer.put(field, Ids.getIds(containers));
 
             } else if (field.equalsIgnoreCase("containerCount")) {
 
-                answer.put(field, fetchContainerCount(fabricService, profile));
+                if (containers == null) {
+                    containers = fabricService.getAssociatedContainers(profile.getVersion(), profile.getId());
+                }
+                answer.put(field, containers.length);
 
             } else if (field.equalsIgnoreCase("parentIds") || field.equalsIgnoreCase("parents")) {
 
@@ -137,13 +216,96 @@ public class BeanUtils {
 
     private static void addProperty(Object obj, String field, Map<String, Object> map) {
         try {
-            Object prop = PropertyUtils.getProperty(obj, field);
+            MethodHandle getter = getAccessors(obj.getClass()).get(field);
+            Object prop = getter != null ? getter.invoke(obj) : PropertyUtils.getProperty(obj, field);
             map.put(field, prop);
-        } catch (Exception e) {
+        } catch (Throwable e) {
             throw new FabricException("Failed to initialize DTO", e);
         }
     }
 
+    /**
+     * Returns the public getters of the given class by property name, nested or indexed properties are left to
+     * {@link PropertyUtils}.
+     */
+    static Map<String, MethodHandle> getAccessors(Class<?> clazz) {
+        Map<String, MethodHandle> accessors = ACCESSORS.get(clazz);
+        if (accessors == null) {
+            accessors = new HashMap<String, MethodHandle>();
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            for (PropertyDescriptor desc : PropertyUtils.getPropertyDescriptors(clazz)) {
+                // the getter may be declared by a class which is not public
+                Method method = desc.getReadMethod() != null ? MethodUtils.getAccessibleMethod(desc.getReadMethod()) : null;
+                if (method != null) {
+                    try {
+                        accessors.put(desc.getName(), lookup.unreflect(method));
+                    } catch (IllegalAccessException e) {
+                        // use PropertyUtils for this property
+                    }
+                }
+            }
+            ACCESSORS.putIfAbsent(clazz, accessors);
+        }
+        return accessors;
+    }
+
+    /**
+     * Reads the container attributes the given fields need for all the containers at once, so that the fields
+     * which are not requested do not cause any read and the requested ones are not read one container at a time.
+     * The attributes are handed to the containers which the getters read them from.
+     */
+    public static void prefetchContainerAttributes(FabricService fabricService, Collection<Container> containers, List<String> fields) {
+        Set<ContainerAttribute> attributes = EnumSet.noneOf(ContainerAttribute.class);
+        for (String field : fields) {
+            Set<ContainerAttribute> fieldAttributes = CONTAINER_FIELD_ATTRIBUTES.get(field.toLowerCase());
+            if (fieldAttributes != null) {
+                attributes.addAll(fieldAttributes);
+            }
+        }
+        if (attributes.isEmpty() || containers.isEmpty()) {
+            return;
+        }
+        List<String> containerIds = new ArrayList<String>();
+        for (Container container : containers) {
+            containerIds.add(container.getId());
+        }
+        Set<ContainerAttribute> substituted = EnumSet.noneOf(ContainerAttribute.class);
+        for (ContainerAttribute attribute : attributes) {
+            if (SUBSTITUTED_ATTRIBUTES.contains(attribute)) {
+                substituted.add(attribute);
+            }
+        }
+        attributes.removeAll(substituted);
+        DataStore dataStore = fabricService.adapt(DataStore.class);
+        if (!attributes.isEmpty()) {
+            setPrefetchedAttributes(containers, attributes, dataStore.getContainerAttributes(containerIds, attributes, false), false);
+        }
+        if (!substituted.isEmpty()) {
+            setPrefetchedAttributes(containers, substituted, dataStore.getContainerAttributes(containerIds, substituted, true), true);
+        }
+    }
+
+    private static void setPrefetchedAttributes(Collection<Container> containers, Set<ContainerAttribute> attributes,
+                                                Map<String, Map<ContainerAttribute, String>> values, boolean substituted) {
+        for (Container container : containers) {
+            if (container instanceof ContainerImpl) {
+                ((ContainerImpl) container).setPrefetchedAttributes(attributes, values.get(container.getId()), substituted);
+            }
+        }
+    }
+
+    /**
+     * Converts the given containers, see {@link #convertContainerToMap}.
+     */
+    public static List<Map<String, Object>> convertContainersToMaps(FabricService fabricService, Collection<Container> containers, List<String> fields) {
+        prefetchContainerAttributes(fabricService, containers, fields);
+        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
+        for (Container container : containers) {
+            answer.add(convertContainerToMap(fabricService, container, fields));
+        }
+        return answer;
+    }
+
     public static Map<String, Object> convertContainerToMap(FabricService fabricService, Container container, List<String> fields) {
         Map<String, Object> answer = new TreeMap<String, Object>();
 
@@ -478,17 +478,15 @@ public final class FabricManager implements FabricManagerMBean {
 
     @Override
     public List<Map<String, Object>> containers(List<String> fields) {
-        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        for (Container c : fabricService.getContainers()) {
-            answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
-        }
-        return answer;
+        return BeanUtils.convertContainersToMaps(fabricService, Arrays.asList(fabricService.getContainers()), fields);
     }
 
     @Override
     public List<Map<String, Object>> containers(List<String> fields, List<String> profileFields) {
         List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
-        for (Container c : fabricService.getContainers()) {
+        List<Container> containers = Arrays.asList(fabricService.getContainers());
+        BeanUtils.prefetchContainerAttributes(fabricService, containers, fields);
+        for (Container c : containers) {
             Map<String, Object> map = BeanUtils.convertContainerToMap(fabricService, c, fields);
             List<Map<String, Object>> profiles = new ArrayList<Map<String, Object>>();
             for (Profile p : c.getProfiles()) {
@@ -722,26 +720,24 @@ public final class FabricManager implements FabricManagerMBean {
     public List<Map<String, Object>> containersForProfile(String versionId, String profileId, List<String> fields, boolean checkParents) {
         Version version = profileService.getVersion(versionId);
         Profile profile = version != null ? version.getRequiredProfile(profileId) : null;
-        Set<Map<String, Object>> answer = new LinkedHashSet<Map<String, Object>>();
+        Set<Container> containers = new LinkedHashSet<Container>();
         if (profile != null) {
             for (Container c : fabricService.getContainers()) {
                 for (Profile p : c.getProfiles()) {
                     if (p.equals(profile)) {
-                        answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
+                        containers.add(c);
                     } else if (checkParents) {
                         HashSet<Profile> profileIDs = new HashSet<>();
                         getAllParentProfiles(version, p, profileIDs);
-                        for (Profile pprofile : profileIDs) {
-                            if (pprofile.equals(profile)) {
-                                answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
-                                break;
-                            }
+                        if (profileIDs.contains(profile)) {
+                            containers.add(c);
                         }
                     }
                 }
             }
         }
-        return new ArrayList<>(answer);
+        // the fields are only evaluated once the matching containers are known
+        return new ArrayList<>(new LinkedHashSet<>(BeanUtils.convertContainersToMaps(fabricService, containers, fields)));
     }
 
     /**
@@ -776,15 +772,15 @@ public final class FabricManager implements FabricManagerMBean {
     @Override
     public List<Map<String, Object>> containersForVersion(String versionId, List<String> fields) {
         Version version = profileService.getVersion(versionId);
-        List<Map<String, Object>> answer = new ArrayList<Map<String, Object>>();
+        List<Container> containers = new ArrayList<Container>();
         if (version != null) {
             for (Container c : fabricService.getContainers()) {
                 if (c.getVersion().equals(version)) {
-                    answer.add(BeanUtils.convertContainerToMap(fabricService, c, fields));
+                    containers.add(c);
                 }
             }
         }
-        return answer;
+        return BeanUtils.convertContainersToMaps(fabricService, containers, fields);
     }
 
     @Override
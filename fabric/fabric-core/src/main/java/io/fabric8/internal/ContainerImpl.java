@@ -39,7 +39,9 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -67,6 +69,9 @@ public class ContainerImpl implements Container {
     private final DataStore dataStore;
 
     private CreateContainerMetadata<?> metadata;
+    // the attributes read at once for several containers, by whether their placeholders are substituted
+    private final Map<DataStore.ContainerAttribute, String> prefetchedAttributes = new EnumMap<DataStore.ContainerAttribute, String>(DataStore.ContainerAttribute.class);
+    private final Map<DataStore.ContainerAttribute, String> prefetchedSubstitutedAttributes = new EnumMap<DataStore.ContainerAttribute, String>(DataStore.ContainerAttribute.class);
 
     public ContainerImpl(Container parent, String id, FabricService fabricService) {
         this.parent = parent;
@@ -214,7 +219,7 @@ public class ContainerImpl implements Container {
 
     @Override
     public Long getProcessId() {
-        String pid = dataStore.getContainerAttribute(id, DataStore.ContainerAttribute.ProcessId, null, false, false);
+        String pid = getOptionalAttribute(DataStore.ContainerAttribute.ProcessId, null);
         if( pid == null )
             return null;
         return Long.valueOf(pid);
@@ -718,16 +723,45 @@ public class ContainerImpl implements Container {
         return answer;
     }
 
+    /**
+     * Sets the given attributes which were read for several containers at once with
+     * {@link DataStore#getContainerAttributes}, so that they are not read again by this container.
+     *
+     * @param values the values of the attributes this container has, the others are known not to be set
+     */
+    public void setPrefetchedAttributes(Collection<DataStore.ContainerAttribute> attributes, Map<DataStore.ContainerAttribute, String> values, boolean substituted) {
+        Map<DataStore.ContainerAttribute, String> prefetched = substituted ? prefetchedSubstitutedAttributes : prefetchedAttributes;
+        synchronized (prefetched) {
+            for (DataStore.ContainerAttribute attribute : attributes) {
+                prefetched.put(attribute, values != null ? values.get(attribute) : null);
+            }
+        }
+    }
+
     private String getOptionalAttribute(DataStore.ContainerAttribute attribute, String def) {
-        return dataStore.getContainerAttribute(id, attribute, def, false, false);
+        return getAttribute(attribute, def, false, false);
     }
 
     private String getNullableSubstitutedAttribute(DataStore.ContainerAttribute attribute) {
-        return dataStore.getContainerAttribute(id, attribute, null, false, true);
+        return getAttribute(attribute, null, false, true);
     }
 
     private String getMandatorySubstitutedAttribute(DataStore.ContainerAttribute attribute) {
-        return dataStore.getContainerAttribute(id, attribute, null, true, true);
+        return getAttribute(attribute, null, true, true);
+    }
+
+    private String getAttribute(DataStore.ContainerAttribute attribute, String def, boolean mandatory, boolean substituted) {
+        Map<DataStore.ContainerAttribute, String> prefetched = substituted ? prefetchedSubstitutedAttributes : prefetchedAttributes;
+        synchronized (prefetched) {
+            if (prefetched.containsKey(attribute)) {
+                String value = prefetched.get(attribute);
+                if (value != null || !mandatory) {
+                    return value != null ? value : def;
+                }
+            }
+        }
+        // a missing mandatory attribute is reported by the data store
+        return dataStore.getContainerAttribute(id, attribute, def, mandatory, substituted);
     }
 
     private void setAttribute(DataStore.ContainerAttribute attribute, String value) {
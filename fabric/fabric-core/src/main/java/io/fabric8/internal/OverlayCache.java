@@ -0,0 +1,234 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.internal;
+
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileChangeListener;
+import io.fabric8.api.ProfileRegistry;
+import io.fabric8.api.Version;
+import io.fabric8.api.jmx.OverlayCacheMBean;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the overlay profiles built by the {@link ProfileServiceImpl} by version, profile and environment.
+ * <p/>
+ * Every overlay records the profiles it was built from: the profile itself, the default profile and all the
+ * profiles it inherits from, including parents which did not exist. The overlay is dropped when the
+ * {@link ProfileRegistry} reports that one of them changed. It is also only served while the version still holds
+ * the very same profile instances, so changes the registry did not report lead to a rebuild rather than a stale
+ * overlay.
+ */
+final class OverlayCache implements OverlayCacheMBean, ProfileChangeListener {
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong buildTime = new AtomicLong();
+    private final AtomicLong maxBuildTime = new AtomicLong();
+
+    /**
+     * Get the cached overlay of the given profile
+     *
+     * @return the overlay or null if it has to be built
+     */
+    Profile get(Version version, Profile profile, String environment) {
+        Entry entry = entries.get(new Key(version.getId(), profile.getId(), environment));
+        if (entry != null && entry.isBuiltFrom(version, profile)) {
+            hits.incrementAndGet();
+            return entry.overlay;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Cache the overlay of the given profile
+     *
+     * @param inherited the profiles of the version the overlay was built from by their identities, null for the
+     *                  parents which did not exist
+     * @param buildNanos the time it took to build the overlay
+     */
+    void put(Version version, Profile profile, String environment, Profile overlay, Map<String, Profile> inherited, long buildNanos) {
+        entries.put(new Key(version.getId(), profile.getId(), environment), new Entry(profile, overlay, inherited));
+        builds.incrementAndGet();
+        buildTime.addAndGet(buildNanos);
+        long max = maxBuildTime.get();
+        while (buildNanos > max && !maxBuildTime.compareAndSet(max, buildNanos)) {
+            max = maxBuildTime.get();
+        }
+    }
+
+    @Override
+    public void profilesChanged(String versionId, Set<String> profileIds) {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            Key key = entry.getKey();
+            if (key.versionId.equals(versionId) && (profileIds.contains(key.profileId) || entry.getValue().inheritsFrom(profileIds))) {
+                iterator.remove();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public long getTotalBuildTime() {
+        return TimeUnit.NANOSECONDS.toMillis(buildTime.get());
+    }
+
+    @Override
+    public double getMeanBuildTime() {
+        long count = builds.get();
+        return count > 0 ? buildTime.get() / (double) count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+    }
+
+    @Override
+    public long getMaxBuildTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxBuildTime.get());
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        invalidations.set(0);
+        builds.set(0);
+        buildTime.set(0);
+        maxBuildTime.set(0);
+    }
+
+    private static final class Key {
+        private final String versionId;
+        private final String profileId;
+        private final String environment;
+        private final int hashCode;
+
+        Key(String versionId, String profileId, String environment) {
+            this.versionId = versionId;
+            this.profileId = profileId;
+            this.environment = environment;
+            this.hashCode = Arrays.hashCode(new Object[]{versionId, profileId, environment});
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return versionId.equals(other.versionId) && profileId.equals(other.profileId)
+                    && (environment == null ? other.environment == null : environment.equals(other.environment));
+        }
+    }
+
+    private static final class Entry {
+        private final Profile profile;
+        private final Profile overlay;
+        private final Map<String, Profile> inherited;
+
+        Entry(Profile profile, Profile overlay, Map<String, Profile> inherited) {
+            this.profile = profile;
+            this.overlay = overlay;
+            this.inherited = Collections.unmodifiableMap(new HashMap<>(inherited));
+        }
+
+        boolean inheritsFrom(Set<String> profileIds) {
+            for (String profileId : profileIds) {
+                if (inherited.containsKey(profileId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isBuiltFrom(Version version, Profile profile) {
+            if (!isSameProfile(this.profile, profile)) {
+                return false;
+            }
+            for (Map.Entry<String, Profile> entry : inherited.entrySet()) {
+                if (version.getProfile(entry.getKey()) != entry.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Compares what an overlay is built from, profiles such as the container profiles are built on every call.
+         */
+        private static boolean isSameProfile(Profile a, Profile b) {
+            if (a == b) {
+                return true;
+            }
+            if (a.isOverlay() != b.isOverlay() || !a.getParentIds().equals(b.getParentIds()) || !a.getAttributes().equals(b.getAttributes())) {
+                return false;
+            }
+            Map<String, byte[]> aFiles = a.getFileConfigurations();
+            Map<String, byte[]> bFiles = b.getFileConfigurations();
+            if (aFiles.size() != bFiles.size()) {
+                return false;
+            }
+            for (Map.Entry<String, byte[]> entry : aFiles.entrySet()) {
+                if (!Arrays.equals(entry.getValue(), bFiles.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            String aHash = a.getProfileHash();
+            return aHash == null ? b.getProfileHash() == null : aHash.equals(b.getProfileHash());
+        }
+    }
+}
@@ -28,10 +28,12 @@ import io.fabric8.api.Profiles;
 import io.fabric8.api.RuntimeProperties;
 import io.fabric8.api.SystemProperties;
 import io.fabric8.api.Version;
+import io.fabric8.api.jmx.OverlayCacheMBean;
 import io.fabric8.api.permit.PermitManager;
 import io.fabric8.api.scr.AbstractProtectedComponent;
 import io.fabric8.api.scr.ValidatingReference;
 import io.fabric8.api.visibility.VisibleForExternal;
+import io.fabric8.common.util.JMXUtils;
 import io.fabric8.utils.DataStoreUtils;
 
 import java.io.IOException;
@@ -40,12 +42,17 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
 import io.fabric8.utils.FabricValidations;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.ConfigurationPolicy;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
+import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.References;
 import org.apache.felix.scr.annotations.Service;
 import org.apache.felix.utils.properties.Properties;
@@ -58,11 +65,16 @@ import org.slf4j.LoggerFactory;
 public final class ProfileServiceImpl extends AbstractProtectedComponent<ProfileService> implements ProfileService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProfileServiceImpl.class);
+    private static final String OVERLAY_CACHE_OBJECT_NAME = "io.fabric8:type=OverlayCache";
 
     @Reference(referenceInterface = ProfileRegistry.class)
     private final ValidatingReference<ProfileRegistry> profileRegistry = new ValidatingReference<>();
     @Reference(referenceInterface = RuntimeProperties.class)
     private final ValidatingReference<RuntimeProperties> runtimeProperties = new ValidatingReference<>();
+    @Reference(referenceInterface = MBeanServer.class, cardinality = ReferenceCardinality.OPTIONAL_UNARY, bind = "bindMBeanServer", unbind = "unbindMBeanServer")
+    private final ValidatingReference<MBeanServer> mbeanServer = new ValidatingReference<>();
+
+    private final OverlayCache overlayCache = new OverlayCache();
 
     static class OverlayAudit {
         Map<String, Profile> overlayProfiles = new HashMap<String, Profile>();
@@ -72,6 +84,15 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
     @VisibleForExternal
     public void activate() throws Exception {
         getOverlayAudit();
+        profileRegistry.get().trackProfiles(overlayCache);
+        MBeanServer server = mbeanServer.getOptional();
+        if (server != null) {
+            try {
+                JMXUtils.registerMBean(new StandardMBean(overlayCache, OverlayCacheMBean.class), server, new ObjectName(OVERLAY_CACHE_OBJECT_NAME));
+            } catch (Exception e) {
+                LOGGER.warn("Cannot register the overlay cache MBean: " + e, e);
+            }
+        }
         activateComponent(PERMIT, this);
     }
 
@@ -89,6 +110,16 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
     @Deactivate
     void deactivate() {
         deactivateComponent(PERMIT);
+        MBeanServer server = mbeanServer.getOptional();
+        if (server != null) {
+            try {
+                JMXUtils.unregisterMBean(server, new ObjectName(OVERLAY_CACHE_OBJECT_NAME));
+            } catch (Exception e) {
+                LOGGER.warn("Cannot unregister the overlay cache MBean: " + e, e);
+            }
+        }
+        profileRegistry.get().untrackProfiles(overlayCache);
+        overlayCache.clear();
     }
 
     @Override
@@ -181,37 +212,41 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
     @Override
     public Profile getOverlayProfile(Profile profile) {
         assertValid();
-        Profile overlayProfile;
-        synchronized (this) {
-            if (profile.isOverlay()) {
-                LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
-                overlayProfile = profile;
-            } else {
-                String profileId = profile.getId();
-                String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
-                if (environment == null) {
-                    // lets default to the environment from the current active
-                    // set of profiles (e.g. docker or openshift)
-                    environment = System.getProperty(SystemProperties.FABRIC_PROFILE_ENVIRONMENT);
-                }
-                Version version = getRequiredVersion(profile.getVersion());
-                ProfileBuilder builder = ProfileBuilder.Factory.create(profile.getVersion(), profileId);
-                builder.addOptions(new OverlayOptionsProvider(version, profile, environment));
-                overlayProfile = builder.getProfile();
-
-                // Log the overlay profile difference
-                if (LOGGER.isDebugEnabled()) {
-                    OverlayAudit audit = getOverlayAudit();
-                    synchronized (audit) {
-                        Profile lastOverlay = audit.overlayProfiles.get(profileId);
-                        if (lastOverlay == null) {
-                            LOGGER.debug("Overlay" + Profiles.getProfileInfo(overlayProfile));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
-                        } else if (!lastOverlay.equals(overlayProfile)) {
-                            LOGGER.debug("Overlay" + Profiles.getProfileDifference(lastOverlay, overlayProfile));
-                            audit.overlayProfiles.put(profileId, overlayProfile);
-                        }
-                    }
+        if (profile.isOverlay()) {
+            LOGGER.debug("getOverlayProfile, given profile is already an overlay: " + profile);
+            return profile;
+        }
+        String profileId = profile.getId();
+        String environment = runtimeProperties.get().getProperty(SystemProperties.FABRIC_ENVIRONMENT);
+        if (environment == null) {
+            // lets default to the environment from the current active
+            // set of profiles (e.g. docker or openshift)
+            environment = System.getProperty(SystemProperties.FABRIC_PROFILE_ENVIRONMENT);
+        }
+        Version version = getRequiredVersion(profile.getVersion());
+        Profile overlayProfile = overlayCache.get(version, profile, environment);
+        if (overlayProfile != null) {
+            return overlayProfile;
+        }
+
+        long start = System.nanoTime();
+        OverlayOptionsProvider optionsProvider = new OverlayOptionsProvider(version, profile, environment);
+        ProfileBuilder builder = ProfileBuilder.Factory.create(profile.getVersion(), profileId);
+        builder.addOptions(optionsProvider);
+        overlayProfile = builder.getProfile();
+        overlayCache.put(version, profile, environment, overlayProfile, optionsProvider.getInheritedProfileMap(), System.nanoTime() - start);
+
+        // Log the overlay profile difference
+        if (LOGGER.isDebugEnabled()) {
+            OverlayAudit audit = getOverlayAudit();
+            synchronized (audit) {
+                Profile lastOverlay = audit.overlayProfiles.get(profileId);
+                if (lastOverlay == null) {
+                    LOGGER.debug("Overlay" + Profiles.getProfileInfo(overlayProfile));
+                    audit.overlayProfiles.put(profileId, overlayProfile);
+                } else if (!lastOverlay.equals(overlayProfile)) {
+                    LOGGER.debug("Overlay" + Profiles.getProfileDifference(lastOverlay, overlayProfile));
+                    audit.overlayProfiles.put(profileId, overlayProfile);
                 }
             }
         }
@@ -266,6 +301,9 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
         private final Version version;
         private final Profile self;
         private final String environment;
+        // the profiles looked up in the version, null for the parents which do not exist
+        private final Map<String, Profile> inheritedProfileMap = new HashMap<>();
+        private List<Profile> inheritedProfiles;
 
         private static class SupplementControl {
             byte[] data;
@@ -329,30 +367,42 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
             }
         }
 
+        Map<String, Profile> getInheritedProfileMap() {
+            getInheritedProfiles();
+            return inheritedProfileMap;
+        }
+
         private List<Profile> getInheritedProfiles() {
+            if (inheritedProfiles != null) {
+                return inheritedProfiles;
+            }
             List<Profile> profiles = new ArrayList<>();
             fillParentProfiles(self, profiles);
             // always prepend "default" as first profile
             if(profiles.size() > 0){
                 if(!"default".equals(profiles.get(0).getId())){
-                    profiles.add(0, version.getProfile("default"));
+                    profiles.add(0, getProfile("default"));
                 }
             }
-            return profiles;
+            return inheritedProfiles = profiles;
+        }
+
+        private Profile getProfile(String profileId) {
+            Profile profile = version.getProfile(profileId);
+            inheritedProfileMap.put(profileId, profile);
+            return profile;
         }
 
         private void fillParentProfiles(Profile profile, List<Profile> profiles) {
             if (!profiles.contains(profile)) {
                 List<Profile> circularRelationship = new ArrayList<>();
                 for (String parentId : profile.getParentIds()) {
-                    if (version.hasProfile(parentId)){
-                        Profile parent = version.getRequiredProfile(parentId);
-                        if (parent != null){
-                            if ( !isCircularRelationship(profile, parent)){
-                                fillParentProfiles(parent, profiles);
-                            } else {
-                                circularRelationship.add(parent);
-                            }
+                    Profile parent = getProfile(parentId);
+                    if (parent != null){
+                        if ( !isCircularRelationship(profile, parent)){
+                            fillParentProfiles(parent, profiles);
+                        } else {
+                            circularRelationship.add(parent);
                         }
                     } else {
                         LOGGER.error("Tried to load a profile[{}] not present in this version[{}]", parentId, version);
@@ -451,4 +501,12 @@ public final class ProfileServiceImpl extends AbstractProtectedComponent<Profile
     void unbindRuntimeProperties(RuntimeProperties service) {
         this.runtimeProperties.unbind(service);
     }
+
+    void bindMBeanServer(MBeanServer service) {
+        this.mbeanServer.bind(service);
+    }
+
+    void unbindMBeanServer(MBeanServer service) {
+        this.mbeanServer.unbind(service);
+    }
 }
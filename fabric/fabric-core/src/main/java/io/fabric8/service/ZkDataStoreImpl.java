@@ -21,7 +21,6 @@ import static io.fabric8.zookeeper.utils.ZooKeeperUtils.exists;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getByteData;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getChildrenSafe;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getStringData;
-import static io.fabric8.zookeeper.utils.ZooKeeperUtils.getSubstitutedPath;
 import static io.fabric8.zookeeper.utils.ZooKeeperUtils.setData;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
@@ -49,6 +48,7 @@ import io.fabric8.utils.Base64Encoder;
 import io.fabric8.utils.FabricVersionUtils;
 import io.fabric8.utils.NamedThreadFactory;
 import io.fabric8.zookeeper.ZkPath;
+import io.fabric8.zookeeper.utils.InterpolationHelper;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -57,8 +57,12 @@ import java.io.ObjectInputStream;
 import java.io.ObjectStreamClass;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -120,6 +124,8 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
 
     private TreeCacheExtended configCache;
     private TreeCacheExtended containerCache;
+    // watched cache of the registry nodes of the containers and of the cluster id which were read
+    private ZooKeeperDataCache registryCache;
 
     // executor to invoke JMX commands received via ZK queues
     private final ExecutorService commandProcessorExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("zk-cmd-processor"));
@@ -150,6 +156,8 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         containerCache.start(TreeCacheExtended.StartMode.NORMAL);
         containerCache.getListenable().addListener(this);
 
+        registryCache = new ZooKeeperDataCache(curator.get());
+
         commandsMapper = new ObjectMapper();
         commandsMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         commandsMapper.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
@@ -173,6 +181,8 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         containerCache.getListenable().removeListener(this);
         Closeables.closeQuietly(containerCache);
 
+        registryCache.clear();
+
         Closeables.closeQuietly(commandRequestsQueue);
         Closeables.closeQuietly(commandResponsesQueue);
         commandsMapper.getTypeFactory().clearCache();
@@ -300,11 +310,8 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
     public String getContainerParent(String containerId) {
         assertValid();
         try {
-            String parentName = getStringData(curator.get(), ZkPath.CONTAINER_PARENT.getPath(containerId));
-            return parentName != null ? parentName.trim() : "";
-        } catch (KeeperException.NoNodeException e) {
-            // Ignore
-            return "";
+            byte[] data = registryCache.getData(ZkPath.CONTAINER_PARENT.getPath(containerId));
+            return data != null ? new String(data, "UTF-8").trim() : "";
         } catch (Throwable e) {
             throw FabricException.launderThrowable(e);
         }
@@ -515,9 +522,7 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
     public boolean isContainerAlive(String id) {
         assertValid();
         try {
-            return exists(curator.get(), ZkPath.CONTAINER_ALIVE.getPath(id)) != null;
-        } catch (KeeperException.NoNodeException e) {
-            return false;
+            return registryCache.getData(ZkPath.CONTAINER_ALIVE.getPath(id)) != null;
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         }
@@ -544,29 +549,20 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         assertValid();
         if (attribute == ContainerAttribute.Domains) {
             try {
-                List<String> list = curator.get().getChildren().forPath(ZkPath.CONTAINER_DOMAINS.getPath(containerId));
-                Collections.sort(list);
-                StringBuilder sb = new StringBuilder();
-                for (String l : list) {
-                    if (sb.length() > 0) {
-                        sb.append("\n");
-                    }
-                    sb.append(l);
-                }
-                return sb.toString();
+                return joinDomains(curator.get().getChildren().forPath(ZkPath.CONTAINER_DOMAINS.getPath(containerId)));
             } catch (Exception e) {
                 return "";
             }
         } else {
+            String path = getAttributePath(containerId, attribute);
             try {
+                byte[] data = registryCache.getData(path);
                 if (substituted) {
-                    return getSubstitutedPath(curator.get(), getAttributePath(containerId, attribute));
-                } else {
-                    return getStringData(curator.get(), getAttributePath(containerId, attribute));
-                }
-            } catch (KeeperException.NoNodeException e) {
-                if (mandatory) {
-                    throw FabricException.launderThrowable(e);
+                    return getSubstitutedData(data);
+                } else if (data != null) {
+                    return new String(data, "UTF-8");
+                } else if (mandatory) {
+                    throw new KeeperException.NoNodeException(path);
                 }
                 return def;
             } catch (Exception e) {
@@ -575,6 +571,96 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
         }
     }
 
+    @Override
+    public Map<String, Map<ContainerAttribute, String>> getContainerAttributes(Collection<String> containerIds, Collection<ContainerAttribute> attributes, boolean substituted) {
+        assertValid();
+        Map<String, Map<ContainerAttribute, String>> answer = new LinkedHashMap<String, Map<ContainerAttribute, String>>();
+        try {
+            List<String> paths = new ArrayList<String>();
+            List<String> domainPaths = new ArrayList<String>();
+            for (String containerId : containerIds) {
+                answer.put(containerId, new EnumMap<ContainerAttribute, String>(ContainerAttribute.class));
+                for (ContainerAttribute attribute : attributes) {
+                    if (attribute == ContainerAttribute.Domains) {
+                        domainPaths.add(ZkPath.CONTAINER_DOMAINS.getPath(containerId));
+                    } else {
+                        paths.add(getAttributePath(containerId, attribute));
+                    }
+                }
+            }
+            // all the nodes which are not cached are read at once rather than one round trip each
+            Map<String, byte[]> data = registryCache.getData(paths);
+            Map<String, List<String>> domains = domainPaths.isEmpty() ? Collections.<String, List<String>>emptyMap() : registryCache.getChildren(domainPaths);
+            for (Map.Entry<String, Map<ContainerAttribute, String>> entry : answer.entrySet()) {
+                String containerId = entry.getKey();
+                for (ContainerAttribute attribute : attributes) {
+                    String value;
+                    if (attribute == ContainerAttribute.Domains) {
+                        List<String> list = domains.get(ZkPath.CONTAINER_DOMAINS.getPath(containerId));
+                        value = list != null ? joinDomains(list) : "";
+                    } else {
+                        byte[] bytes = data.get(getAttributePath(containerId, attribute));
+                        if (substituted) {
+                            value = getSubstitutedData(bytes);
+                        } else {
+                            value = bytes != null ? new String(bytes, "UTF-8") : null;
+                        }
+                    }
+                    if (value != null) {
+                        entry.getValue().put(attribute, value);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw FabricException.launderThrowable(e);
+        }
+        return answer;
+    }
+
+    /**
+     * Substitutes the placeholders of the data of a node like {@link io.fabric8.zookeeper.utils.ZooKeeperUtils#getSubstitutedPath},
+     * reading the nodes the placeholders refer to through the registry cache.
+     */
+    private String getSubstitutedData(byte[] data) throws Exception {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("data", new String(data, "UTF-8"));
+        InterpolationHelper.performSubstitution(props, new InterpolationHelper.SubstitutionCallback() {
+            @Override
+            public String getValue(String key) {
+                if (key.startsWith("zk:")) {
+                    try {
+                        String url = key.substring("zk:".length()).trim();
+                        if (url.contains("#")) {
+                            return new String(ZkPath.loadURL(curator.get(), key), "UTF-8");
+                        }
+                        byte[] value = registryCache.getData(url.startsWith("/") ? url : ZkPath.CONTAINER.getPath(url));
+                        return value != null ? new String(value, "UTF-8") : null;
+                    } catch (Exception e) {
+                        //ignore and just return null.
+                    }
+                }
+                return null;
+            }
+        });
+        return props.get("data");
+    }
+
+    private static String joinDomains(List<String> list) {
+        List<String> sorted = new ArrayList<String>(list);
+        Collections.sort(sorted);
+        StringBuilder sb = new StringBuilder();
+        for (String l : sorted) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            sb.append(l);
+        }
+        return sb.toString();
+    }
+
     @Override
     public void setContainerAttribute(String containerId, ContainerAttribute attribute, String value) {
         assertValid();
@@ -789,7 +875,13 @@ public class ZkDataStoreImpl extends AbstractComponent implements DataStore, Pat
     public String getClusterId() {
         assertValid();
         try {
-            return getStringData(curator.get(), ZkPath.CONFIG_ENSEMBLES.getPath());
+            // read for every container of the ensemble, it only changes when the ensemble is recreated
+            String path = ZkPath.CONFIG_ENSEMBLES.getPath();
+            byte[] data = registryCache.getData(path);
+            if (data == null) {
+                throw new KeeperException.NoNodeException(path);
+            }
+            return new String(data, "UTF-8");
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         }
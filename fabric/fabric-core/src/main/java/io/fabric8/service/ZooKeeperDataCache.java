@@ -0,0 +1,270 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.service;
+
+import io.fabric8.api.FabricException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.CuratorEventType;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-through cache of the data of ZooKeeper nodes, used for the container registry nodes and the cluster id
+ * which are read far more often than they change.
+ * <p/>
+ * Nodes are only cached once they have been read, and every read leaves a watch behind which drops the node
+ * again when it changes, is created or is deleted. Nodes which are not cached are read with pipelined
+ * asynchronous requests when several of them are needed at once.
+ * <p/>
+ * A read puts a token in place of the node before reading it, and the data read only replaces that token. So
+ * the data is not cached if the node was dropped while it was read, while the changes of other nodes do not
+ * matter.
+ */
+final class ZooKeeperDataCache implements Watcher {
+
+    private static final transient Logger LOGGER = LoggerFactory.getLogger(ZooKeeperDataCache.class);
+    private static final long READ_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    // marks the nodes which do not exist, compared by identity
+    private static final byte[] NO_NODE = new byte[0];
+
+    private final CuratorFramework curator;
+    // the data of the nodes, or the tokens of the reads in progress
+    private final ConcurrentMap<String, Object> cache = new ConcurrentHashMap<>();
+
+    ZooKeeperDataCache(CuratorFramework curator) {
+        this.curator = curator;
+    }
+
+    /**
+     * Get the data of a node
+     *
+     * @return the data or null if the node does not exist
+     */
+    byte[] getData(String path) throws Exception {
+        byte[] data = getCached(path);
+        if (data == null) {
+            Object token = startRead(path);
+            try {
+                while (data == null) {
+                    try {
+                        data = curator.getData().usingWatcher(this).forPath(path);
+                        if (data == null) {
+                            data = new byte[0];
+                        }
+                    } catch (KeeperException.NoNodeException e) {
+                        // watch the creation of the node, which may have been created since it was read
+                        if (curator.checkExists().usingWatcher(this).forPath(path) == null) {
+                            data = NO_NODE;
+                        }
+                    }
+                }
+                cacheIfUnchanged(path, data, token);
+            } finally {
+                endRead(path, token);
+            }
+        }
+        return data != NO_NODE ? data : null;
+    }
+
+    /**
+     * Get the data of several nodes. The nodes which are not cached are read all at once.
+     *
+     * @return the data by path, without the nodes which do not exist
+     */
+    Map<String, byte[]> getData(Collection<String> paths) throws Exception {
+        Map<String, byte[]> answer = new HashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String path : paths) {
+            byte[] data = getCached(path);
+            if (data == null) {
+                missing.add(path);
+            } else if (data != NO_NODE) {
+                answer.put(path, data);
+            }
+        }
+        if (!missing.isEmpty()) {
+            BulkRead read = new BulkRead(missing.size());
+            try {
+                for (String path : missing) {
+                    read.start(path);
+                }
+                if (!read.latch.await(READ_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    throw new FabricException("Timed out reading " + missing.size() + " nodes from ZooKeeper");
+                }
+            } finally {
+                read.end();
+            }
+            if (!read.failures.isEmpty()) {
+                throw new FabricException("Failed to read " + read.failures + " from ZooKeeper");
+            }
+            answer.putAll(read.results);
+        }
+        return answer;
+    }
+
+    /**
+     * Get the children of several nodes with pipelined asynchronous requests, the children are not cached.
+     *
+     * @return the children by path, without the nodes which do not exist
+     */
+    Map<String, List<String>> getChildren(Collection<String> paths) throws Exception {
+        final Map<String, List<String>> results = new ConcurrentHashMap<>();
+        final CountDownLatch latch = new CountDownLatch(paths.size());
+        BackgroundCallback callback = new BackgroundCallback() {
+            @Override
+            public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+                if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
+                    results.put(event.getPath(), event.getChildren());
+                }
+                latch.countDown();
+            }
+        };
+        for (String path : paths) {
+            curator.getChildren().inBackground(callback).forPath(path);
+        }
+        if (!latch.await(READ_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            throw new FabricException("Timed out reading the children of " + paths.size() + " nodes from ZooKeeper");
+        }
+        return results;
+    }
+
+    void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public void process(WatchedEvent event) {
+        if (event.getType() == Event.EventType.None) {
+            // the watches do not survive a lost session and nothing is reported while disconnected
+            if (event.getState() != Event.KeeperState.SyncConnected) {
+                clear();
+            }
+        } else if (event.getPath() != null) {
+            // the token of a read in progress is dropped too, so that what it reads is not cached
+            cache.remove(event.getPath());
+        }
+    }
+
+    /**
+     * Pipelined asynchronous reads of the data of several nodes. The nodes which do not exist are watched,
+     * and read again if they were created in the meantime.
+     */
+    private final class BulkRead implements BackgroundCallback {
+
+        private final CountDownLatch latch;
+        private final Map<String, Object> tokens = new ConcurrentHashMap<>();
+        private final Map<String, byte[]> results = new ConcurrentHashMap<>();
+        private final Set<String> failures = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        BulkRead(int count) {
+            this.latch = new CountDownLatch(count);
+        }
+
+        void start(String path) throws Exception {
+            Object token = startRead(path);
+            if (token != null) {
+                tokens.put(path, token);
+            }
+            read(path);
+        }
+
+        void end() {
+            for (Map.Entry<String, Object> entry : tokens.entrySet()) {
+                endRead(entry.getKey(), entry.getValue());
+            }
+        }
+
+        private void read(String path) throws Exception {
+            curator.getData().usingWatcher(ZooKeeperDataCache.this).inBackground(this).forPath(path);
+        }
+
+        @Override
+        public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+            String path = event.getPath();
+            int resultCode = event.getResultCode();
+            try {
+                if (event.getType() == CuratorEventType.EXISTS && resultCode == KeeperException.Code.OK.intValue()) {
+                    // the node was created since it was read
+                    read(path);
+                    return;
+                } else if (event.getType() == CuratorEventType.EXISTS && resultCode == KeeperException.Code.NONODE.intValue()) {
+                    cacheIfUnchanged(path, NO_NODE, tokens.get(path));
+                } else if (resultCode == KeeperException.Code.OK.intValue()) {
+                    byte[] data = event.getData() != null ? event.getData() : new byte[0];
+                    results.put(path, data);
+                    cacheIfUnchanged(path, data, tokens.get(path));
+                } else if (resultCode == KeeperException.Code.NONODE.intValue()) {
+                    // watch the creation of the node
+                    curator.checkExists().usingWatcher(ZooKeeperDataCache.this).inBackground(this).forPath(path);
+                    return;
+                } else {
+                    failures.add(path);
+                    LOGGER.debug("Cannot read " + path + ": " + KeeperException.Code.get(resultCode));
+                }
+            } catch (Exception e) {
+                failures.add(path);
+                LOGGER.debug("Cannot read " + path + ": " + e);
+            }
+            latch.countDown();
+        }
+    }
+
+    private byte[] getCached(String path) {
+        Object cached = cache.get(path);
+        return cached instanceof byte[] ? (byte[]) cached : null;
+    }
+
+    /**
+     * Puts the token of a read in place of the node, unless another read of the node is in progress
+     *
+     * @return the token or null if the data read will not be cached
+     */
+    private Object startRead(String path) {
+        Object token = new Object();
+        return cache.putIfAbsent(path, token) == null ? token : null;
+    }
+
+    private void cacheIfUnchanged(String path, byte[] data, Object token) {
+        if (token != null) {
+            cache.replace(path, token, data);
+        }
+    }
+
+    private void endRead(String path, Object token) {
+        if (token != null) {
+            cache.remove(path, token);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.core.jmx;
+
+import io.fabric8.api.Container;
+import io.fabric8.api.DataStore;
+import io.fabric8.api.DataStore.ContainerAttribute;
+import io.fabric8.api.FabricService;
+import io.fabric8.api.Version;
+import io.fabric8.api.VersionBuilder;
+import io.fabric8.internal.ContainerImpl;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BeanUtilsTest {
+
+    FabricService fabricService;
+    DataStore dataStore;
+    Container root;
+    Container child;
+
+    @Before
+    public void setUp() {
+        fabricService = createMock(FabricService.class);
+        dataStore = createMock(DataStore.class);
+        root = createMock(Container.class);
+        child = createMock(Container.class);
+        expect(fabricService.adapt(DataStore.class)).andReturn(dataStore).anyTimes();
+        expect(root.getId()).andReturn("root").anyTimes();
+        expect(child.getId()).andReturn("child").anyTimes();
+    }
+
+    @Test
+    public void testAccessors() throws Throwable {
+        Map<String, MethodHandle> accessors = BeanUtils.getAccessors(Bean.class);
+        assertEquals("bean", accessors.get("id").invoke(new Bean()));
+        assertEquals(3, accessors.get("count").invoke(new Bean()));
+        assertFalse(accessors.containsKey("hidden"));
+        assertSame(accessors, BeanUtils.getAccessors(Bean.class));
+    }
+
+    @Test
+    public void testAccessorsOfClassesWhichAreNotPublic() {
+        Version version = VersionBuilder.Factory.create("1.1").addAttribute("parent", "1.0").getVersion();
+        replay(fabricService);
+
+        Map<String, Object> map = BeanUtils.convertVersionToMap(fabricService, version, Arrays.asList("id", "attributes"));
+        assertEquals("1.1", map.get("id"));
+        assertEquals(Collections.singletonMap("parent", "1.0"), map.get("attributes"));
+    }
+
+    @Test
+    public void testFieldsAreCopied() {
+        List<String> fields = BeanUtils.getFields(Container.class);
+        assertTrue(fields.contains("parentId"));
+        assertFalse(fields.contains("fabricService"));
+        fields.clear();
+        assertNotSame(fields, BeanUtils.getFields(Container.class));
+        assertTrue(BeanUtils.getFields(Container.class).contains("parentId"));
+    }
+
+    @Test
+    public void testOnlyRequestedAttributesAreRead() {
+        List<String> ids = Arrays.asList("root", "child");
+        expect(dataStore.getContainerAttributes(eq(ids), eq(EnumSet.of(ContainerAttribute.ProvisionStatus, ContainerAttribute.ProvisionException,
+                ContainerAttribute.BlueprintStatus, ContainerAttribute.SpringStatus)), eq(false)))
+                .andReturn(Collections.<String, Map<ContainerAttribute, String>>emptyMap());
+        expect(dataStore.getContainerAttributes(eq(ids), eq(EnumSet.of(ContainerAttribute.JmxUrl)), eq(true)))
+                .andReturn(Collections.<String, Map<ContainerAttribute, String>>emptyMap());
+        replay(fabricService, dataStore, root, child);
+
+        BeanUtils.prefetchContainerAttributes(fabricService, Arrays.asList(root, child), Arrays.asList("id", "provisionStatus", "jmxUrl"));
+        verify(dataStore);
+    }
+
+    @Test
+    public void testNoAttributesAreReadForPlainFields() {
+        replay(fabricService, dataStore, root, child);
+
+        BeanUtils.prefetchContainerAttributes(fabricService, Arrays.asList(root, child), Arrays.asList("id", "parentId", "profileIds"));
+        verify(dataStore);
+    }
+
+    @Test
+    public void testPrefetchedAttributesAreNotReadAgain() {
+        List<String> ids = Arrays.asList("root", "child");
+        Map<String, Map<ContainerAttribute, String>> attributes = new HashMap<String, Map<ContainerAttribute, String>>();
+        attributes.put("root", Collections.singletonMap(ContainerAttribute.ProvisionStatus, "success"));
+        expect(dataStore.getContainerAttributes(eq(ids), eq(EnumSet.of(ContainerAttribute.ProvisionStatus, ContainerAttribute.ProvisionException,
+                ContainerAttribute.BlueprintStatus, ContainerAttribute.SpringStatus)), eq(false)))
+                .andReturn(attributes);
+        expect(dataStore.getContainerAttributes(eq(ids), eq(EnumSet.of(ContainerAttribute.LocalIp)), eq(true)))
+                .andReturn(Collections.singletonMap("child", Collections.singletonMap(ContainerAttribute.LocalIp, "10.0.0.1")));
+        replay(fabricService, dataStore);
+
+        // the data store mock fails any other read
+        List<Container> containers = Arrays.<Container>asList(new ContainerImpl(null, "root", fabricService), new ContainerImpl(null, "child", fabricService));
+        List<Map<String, Object>> maps = BeanUtils.convertContainersToMaps(fabricService, containers, Arrays.asList("id", "provisionStatus", "localIp"));
+        assertEquals("success", maps.get(0).get("provisionStatus"));
+        assertNull(maps.get(0).get("localIp"));
+        assertEquals("", maps.get(1).get("provisionStatus"));
+        assertEquals("10.0.0.1", maps.get(1).get("localIp"));
+        verify(dataStore);
+    }
+
+    public static class Bean {
+        public String getId() {
+            return "bean";
+        }
+
+        public int getCount() {
+            return 3;
+        }
+
+        String getHidden() {
+            return "hidden";
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.internal;
+
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.Version;
+import io.fabric8.api.VersionBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OverlayCacheTest {
+
+    private OverlayCache cache;
+    private Profile defaultProfile;
+    private Profile base;
+    private Profile child;
+    private Profile other;
+    private Version version;
+
+    @Before
+    public void setUp() {
+        cache = new OverlayCache();
+        defaultProfile = profile("default", "a", "1");
+        base = profile("base", "b", "2", "default", "missing");
+        child = profile("child", "c", "3", "base");
+        other = profile("other", "d", "4", "default");
+        version = version(defaultProfile, base, child, other);
+    }
+
+    @Test
+    public void testInheritedProfiles() {
+        ProfileServiceImpl.OverlayOptionsProvider provider = new ProfileServiceImpl.OverlayOptionsProvider(version, child, null);
+        Profile overlay = ProfileBuilder.Factory.create("1.0", "child").addOptions(provider).getProfile();
+
+        Map<String, Profile> inherited = provider.getInheritedProfileMap();
+        assertEquals(new HashSet<>(Arrays.asList("default", "base", "missing")), inherited.keySet());
+        assertSame(base, inherited.get("base"));
+        assertNull(inherited.get("missing"));
+        assertEquals("1", overlay.getConfiguration("test").get("a"));
+        assertEquals("3", overlay.getConfiguration("test").get("c"));
+    }
+
+    @Test
+    public void testOverlayIsCached() {
+        Profile overlay = overlay(version, child, null);
+
+        assertSame(overlay, overlay(version, child, null));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertNotSame(overlay, overlay(version, child, "docker"));
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testProfilesBuiltOnEveryCallAreCompared() {
+        Profile overlay = overlay(version, profile("#container-root", "e", "5", "child"), null);
+
+        assertSame(overlay, overlay(version, profile("#container-root", "e", "5", "child"), null));
+        assertNotSame(overlay, overlay(version, profile("#container-root", "e", "6", "child"), null));
+    }
+
+    @Test
+    public void testChangedParentsInvalidateOverlays() {
+        Profile childOverlay = overlay(version, child, null);
+        Profile otherOverlay = overlay(version, other, null);
+
+        cache.profilesChanged("1.0", Collections.singleton("base"));
+        assertEquals(1, cache.getInvalidations());
+        assertSame(otherOverlay, overlay(version, other, null));
+        assertNotSame(childOverlay, overlay(version, child, null));
+
+        cache.profilesChanged("1.1", Collections.singleton("default"));
+        cache.profilesChanged("1.0", Collections.singleton("missing"));
+        assertEquals(2, cache.getInvalidations());
+        assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testUnreportedChangesAreNotServed() {
+        Profile childOverlay = overlay(version, child, null);
+        Profile otherOverlay = overlay(version, other, null);
+
+        Profile changedBase = profile("base", "b", "changed", "default", "missing");
+        Version changed = version(defaultProfile, changedBase, child, other);
+        Profile overlay = overlay(changed, child, null);
+        assertNotSame(childOverlay, overlay);
+        assertEquals("changed", overlay.getConfiguration("test").get("b"));
+        assertSame(otherOverlay, overlay(changed, other, null));
+
+        Version added = version(defaultProfile, changedBase, child, other, profile("missing", "m", "7"));
+        assertEquals("7", overlay(added, child, null).getConfiguration("test").get("m"));
+    }
+
+    @Test
+    public void testBuildTimes() {
+        overlay(version, child, null);
+        overlay(version, other, null);
+        assertTrue(cache.getMeanBuildTime() > 0);
+        assertTrue(cache.getMaxBuildTime() >= 0);
+
+        cache.reset();
+        cache.clear();
+        assertEquals(0, cache.getMisses());
+        assertEquals(0, cache.getMeanBuildTime(), 0);
+        assertEquals(0, cache.getSize());
+    }
+
+    private Profile overlay(Version version, Profile profile, String environment) {
+        Profile overlay = cache.get(version, profile, environment);
+        if (overlay == null) {
+            long start = System.nanoTime();
+            ProfileServiceImpl.OverlayOptionsProvider provider = new ProfileServiceImpl.OverlayOptionsProvider(version, profile, environment);
+            overlay = ProfileBuilder.Factory.create(version.getId(), profile.getId()).addOptions(provider).getProfile();
+            cache.put(version, profile, environment, overlay, provider.getInheritedProfileMap(), System.nanoTime() - start);
+        }
+        return overlay;
+    }
+
+    private static Profile profile(String id, String key, String value, String... parents) {
+        return ProfileBuilder.Factory.create("1.0", id).addParents(Arrays.asList(parents))
+                .addConfiguration("test", key, value).getProfile();
+    }
+
+    private static Version version(Profile... profiles) {
+        return VersionBuilder.Factory.create("1.0").addProfiles(Arrays.asList(profiles)).getVersion();
+    }
+}
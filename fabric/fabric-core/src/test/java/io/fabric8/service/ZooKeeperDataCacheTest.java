@@ -0,0 +1,255 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.service;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.BackgroundPathable;
+import org.apache.curator.framework.api.GetDataBuilder;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.server.NIOServerCnxnFactory;
+import org.apache.zookeeper.server.ServerConfig;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.apache.zookeeper.server.persistence.FileTxnSnapLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ZooKeeperDataCacheTest {
+
+    private static final String PATH = "/fabric/registry/containers/alive/c1";
+
+    private CuratorFramework curator;
+    private NIOServerCnxnFactory cnxnFactory;
+
+    @Before
+    public void init() throws Exception {
+        int port = findFreePort();
+        cnxnFactory = startZooKeeper(port);
+
+        curator = CuratorFrameworkFactory.builder()
+                .connectString("localhost:" + port)
+                .retryPolicy(new RetryOneTime(1000))
+                .build();
+        curator.start();
+        curator.getZookeeperClient().blockUntilConnectedOrTimedOut();
+        curator.create().creatingParentsIfNeeded().forPath("/fabric/registry/containers/alive");
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        curator.close();
+        cnxnFactory.shutdown();
+    }
+
+    @Test
+    public void changedNodesAreReadAgain() throws Exception {
+        ZooKeeperDataCache cache = new ZooKeeperDataCache(curator);
+        assertThat(cache.getData(PATH), nullValue());
+
+        curator.create().forPath(PATH, "1".getBytes("UTF-8"));
+        assertTrue(awaitData(cache, PATH, "1"));
+
+        curator.setData().forPath(PATH, "2".getBytes("UTF-8"));
+        assertTrue(awaitData(cache, PATH, "2"));
+
+        curator.delete().forPath(PATH);
+        assertTrue(awaitData(cache, PATH, null));
+    }
+
+    @Test
+    public void readsOverlappingAChangeAreNotCached() throws Exception {
+        curator.create().forPath(PATH, "1".getBytes("UTF-8"));
+        final CountDownLatch changed = new CountDownLatch(1);
+        CuratorFramework client = curatorWithFirstRead(new FirstRead() {
+            @Override
+            public byte[] read(final Watcher cache) throws Exception {
+                byte[] data = curator.getData().usingWatcher(new Watcher() {
+                    @Override
+                    public void process(WatchedEvent event) {
+                        cache.process(event);
+                        changed.countDown();
+                    }
+                }).forPath(PATH);
+                // the node changes before the data which was read is cached
+                curator.setData().forPath(PATH, "2".getBytes("UTF-8"));
+                assertTrue(changed.await(5, TimeUnit.SECONDS));
+                return data;
+            }
+        });
+
+        ZooKeeperDataCache cache = new ZooKeeperDataCache(client);
+        assertThat(new String(cache.getData(PATH), "UTF-8"), equalTo("1"));
+        assertThat(new String(cache.getData(PATH), "UTF-8"), equalTo("2"));
+    }
+
+    @Test
+    public void readsOverlappingAChangeOfAnotherNodeAreCached() throws Exception {
+        curator.create().forPath(PATH, "1".getBytes("UTF-8"));
+        CuratorFramework client = curatorWithFirstRead(new FirstRead() {
+            @Override
+            public byte[] read(Watcher cache) throws Exception {
+                byte[] data = curator.getData().forPath(PATH);
+                cache.process(new WatchedEvent(Watcher.Event.EventType.NodeDataChanged, Watcher.Event.KeeperState.SyncConnected,
+                        "/fabric/registry/containers/alive/c2"));
+                return data;
+            }
+        });
+
+        ZooKeeperDataCache cache = new ZooKeeperDataCache(client);
+        assertThat(new String(cache.getData(PATH), "UTF-8"), equalTo("1"));
+        assertThat(new String(cache.getData(PATH), "UTF-8"), equalTo("1"));
+        assertThat(cache.getData(Arrays.asList(PATH)).size(), equalTo(1));
+        Mockito.verify(client, Mockito.times(1)).getData();
+    }
+
+    @Test
+    public void nodesCreatedAfterAFailedReadAreFound() throws Exception {
+        CuratorFramework client = curatorWithFirstRead(new FirstRead() {
+            @Override
+            public byte[] read(Watcher watcher) throws Exception {
+                // the node is created between the read of its data and the check of its existence
+                curator.create().forPath(PATH, "1".getBytes("UTF-8"));
+                throw new KeeperException.NoNodeException(PATH);
+            }
+        });
+
+        ZooKeeperDataCache cache = new ZooKeeperDataCache(client);
+        assertThat(new String(cache.getData(PATH), "UTF-8"), equalTo("1"));
+    }
+
+    @Test
+    public void nodesAreReadAllAtOnce() throws Exception {
+        String other = "/fabric/registry/containers/alive/c2";
+        curator.create().forPath(PATH, "1".getBytes("UTF-8"));
+
+        ZooKeeperDataCache cache = new ZooKeeperDataCache(curator);
+        Map<String, byte[]> data = cache.getData(Arrays.asList(PATH, other));
+        assertThat(data.size(), equalTo(1));
+        assertThat(new String(data.get(PATH), "UTF-8"), equalTo("1"));
+
+        // the missing node is watched
+        curator.create().forPath(other, "2".getBytes("UTF-8"));
+        assertTrue(awaitData(cache, other, "2"));
+        data = cache.getData(Arrays.asList(PATH, other));
+        assertThat(data.size(), equalTo(2));
+
+        cache.clear();
+        curator.delete().forPath(other);
+        assertFalse(cache.getData(Arrays.asList(PATH, other)).containsKey(other));
+    }
+
+    /**
+     * Creates a client whose first read of the data of a node is done by the given read, the other operations
+     * are done by the real client
+     */
+    @SuppressWarnings("unchecked")
+    private CuratorFramework curatorWithFirstRead(final FirstRead read) throws Exception {
+        final Watcher[] watcher = new Watcher[1];
+        final BackgroundPathable<byte[]> pathable = Mockito.mock(BackgroundPathable.class);
+        Mockito.when(pathable.forPath(PATH)).thenAnswer(new Answer<byte[]>() {
+            @Override
+            public byte[] answer(InvocationOnMock invocation) throws Throwable {
+                return read.read(watcher[0]);
+            }
+        });
+        GetDataBuilder getData = Mockito.mock(GetDataBuilder.class);
+        Mockito.when(getData.usingWatcher(Mockito.any(Watcher.class))).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                watcher[0] = (Watcher) invocation.getArguments()[0];
+                return pathable;
+            }
+        });
+
+        CuratorFramework client = Mockito.mock(CuratorFramework.class);
+        Mockito.when(client.getData()).thenReturn(getData).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return curator.getData();
+            }
+        });
+        Mockito.when(client.checkExists()).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return curator.checkExists();
+            }
+        });
+        return client;
+    }
+
+    private interface FirstRead {
+        byte[] read(Watcher watcher) throws Exception;
+    }
+
+    private static boolean awaitData(ZooKeeperDataCache cache, String path, String expected) throws Exception {
+        for (int i = 0; i < 50; i++) {
+            byte[] data = cache.getData(path);
+            String value = data != null ? new String(data, "UTF-8") : null;
+            if (expected == null ? value == null : expected.equals(value)) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+
+    private int findFreePort() throws Exception {
+        ServerSocket ss = new ServerSocket(0);
+        int port = ss.getLocalPort();
+        ss.close();
+        return port;
+    }
+
+    private NIOServerCnxnFactory startZooKeeper(int port) throws Exception {
+        String testDirectory = "target/zk-data-cache/data" + System.currentTimeMillis();
+        FileUtils.deleteDirectory(new File(testDirectory));
+        ServerConfig cfg = new ServerConfig();
+        cfg.parse(new String[]{Integer.toString(port), testDirectory});
+
+        ZooKeeperServer zkServer = new ZooKeeperServer();
+        FileTxnSnapLog ftxn = new FileTxnSnapLog(new File(cfg.getDataLogDir()), new File(cfg.getDataDir()));
+        zkServer.setTxnLogFactory(ftxn);
+        zkServer.setTickTime(cfg.getTickTime());
+        zkServer.setMinSessionTimeout(cfg.getMinSessionTimeout());
+        zkServer.setMaxSessionTimeout(cfg.getMaxSessionTimeout());
+        NIOServerCnxnFactory cnxnFactory = new NIOServerCnxnFactory();
+        cnxnFactory.configure(cfg.getClientPortAddress(), cfg.getMaxClientCnxns());
+        cnxnFactory.startup(zkServer);
+        return cnxnFactory;
+    }
+
+}
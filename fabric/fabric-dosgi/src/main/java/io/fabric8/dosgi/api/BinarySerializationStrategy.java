@@ -0,0 +1,794 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.dosgi.api;
+
+import io.fabric8.dosgi.util.ClassLoaderObjectInputStream;
+import org.fusesource.hawtbuf.DataByteArrayInputStream;
+import org.fusesource.hawtbuf.DataByteArrayOutputStream;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * <p>
+ * A compact binary serialization which is selected with <code>@Serialization("binary")</code>.
+ * </p>
+ * <p>
+ * Values are written with a one byte tag followed by a variable length encoding of their content, so
+ * small numbers and strings take a few bytes where Java serialization writes whole class descriptors.
+ * Plain serializable classes are written field by field using a schema of their fields which is built
+ * once per class and cached. The name of each class is only written the first time it is used in a
+ * message and a schema hash is sent along so mismatched class versions are detected. Shared and cyclic
+ * references are preserved. Classes with custom serialization, such as exceptions, fall back to Java
+ * serialization.
+ * </p>
+ */
+public class BinarySerializationStrategy implements SerializationStrategy {
+
+    public static final BinarySerializationStrategy INSTANCE = new BinarySerializationStrategy();
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final byte NULL = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte BYTE = 3;
+    static final byte SHORT = 4;
+    static final byte INT = 5;
+    static final byte LONG = 6;
+    static final byte FLOAT = 7;
+    static final byte DOUBLE = 8;
+    static final byte CHAR = 9;
+    static final byte STRING = 10;
+    static final byte BYTES = 11;
+    static final byte ARRAY = 12;
+    static final byte COLLECTION = 13;
+    static final byte MAP = 14;
+    static final byte ENUM = 15;
+    static final byte OBJECT = 16;
+    static final byte SERIALIZED = 17;
+    static final byte REFERENCE = 18;
+
+    private static final ClassValue<ClassSchema> SCHEMAS = new ClassValue<ClassSchema>() {
+        @Override
+        protected ClassSchema computeValue(Class<?> type) {
+            return ClassSchema.create(type);
+        }
+    };
+
+    public String name() {
+        return "binary";
+    }
+
+    public void encodeRequest(ClassLoader loader, Class<?>[] types, Object[] args, DataByteArrayOutputStream target) throws IOException {
+        Encoder encoder = new Encoder(target);
+        int length = args != null ? args.length : 0;
+        target.writeVarInt(length);
+        for (int i = 0; i < length; i++) {
+            encoder.writeObject(args[i]);
+        }
+    }
+
+    public void decodeRequest(ClassLoader loader, Class<?>[] types, DataByteArrayInputStream source, Object[] target) throws IOException, ClassNotFoundException {
+        Decoder decoder = new Decoder(loader, source);
+        int length = source.readVarInt();
+        if (length > target.length) {
+            throw new StreamCorruptedException("Expected at most " + target.length + " arguments but got " + length);
+        }
+        for (int i = 0; i < length; i++) {
+            target[i] = decoder.readObject();
+        }
+    }
+
+    public void encodeResponse(ClassLoader loader, Class<?> type, Object value, Throwable error, DataByteArrayOutputStream target) throws IOException {
+        Encoder encoder = new Encoder(target);
+        if (error != null) {
+            target.writeBoolean(true);
+            encoder.writeObject(error);
+        } else {
+            target.writeBoolean(false);
+            encoder.writeObject(value);
+        }
+    }
+
+    public void decodeResponse(ClassLoader loader, Class<?> type, DataByteArrayInputStream source, AsyncCallback result) throws IOException, ClassNotFoundException {
+        Decoder decoder = new Decoder(loader, source);
+        if (source.readBoolean()) {
+            result.onFailure((Throwable) decoder.readObject());
+        } else {
+            result.onSuccess(decoder.readObject());
+        }
+    }
+
+    /**
+     * Writes the values of a single message
+     */
+    static class Encoder {
+        private final DataByteArrayOutputStream out;
+        private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+        private final Map<Object, Integer> references = new IdentityHashMap<Object, Integer>();
+
+        Encoder(DataByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        void writeObject(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+                return;
+            }
+            Class<?> type = value.getClass();
+            if (type == String.class) {
+                out.writeByte(STRING);
+                writeString((String) value);
+            } else if (type == Integer.class) {
+                out.writeByte(INT);
+                out.writeVarSignedInt((Integer) value);
+            } else if (type == Long.class) {
+                out.writeByte(LONG);
+                out.writeVarSignedLong((Long) value);
+            } else if (type == Boolean.class) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (type == Byte.class) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte) value);
+            } else if (type == Short.class) {
+                out.writeByte(SHORT);
+                out.writeVarSignedInt((Short) value);
+            } else if (type == Character.class) {
+                out.writeByte(CHAR);
+                out.writeChar((Character) value);
+            } else if (type == Float.class) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float) value);
+            } else if (type == Double.class) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Enum) {
+                out.writeByte(ENUM);
+                writeClass(((Enum<?>) value).getDeclaringClass(), 0);
+                writeString(((Enum<?>) value).name());
+            } else if (!writeReference(value)) {
+                if (type == byte[].class) {
+                    byte[] bytes = (byte[]) value;
+                    out.writeByte(BYTES);
+                    out.writeVarInt(bytes.length);
+                    out.write(bytes);
+                } else if (type.isArray()) {
+                    writeArray(type, value);
+                } else if (isPlainCollection(value)) {
+                    Collection<?> collection = (Collection<?>) value;
+                    out.writeByte(COLLECTION);
+                    writeClass(type, 0);
+                    out.writeVarInt(collection.size());
+                    for (Object element : collection) {
+                        writeObject(element);
+                    }
+                } else if (isPlainMap(value)) {
+                    Map<?, ?> map = (Map<?, ?>) value;
+                    out.writeByte(MAP);
+                    writeClass(type, 0);
+                    out.writeVarInt(map.size());
+                    for (Map.Entry<?, ?> entry : map.entrySet()) {
+                        writeObject(entry.getKey());
+                        writeObject(entry.getValue());
+                    }
+                } else {
+                    ClassSchema schema = SCHEMAS.get(type);
+                    if (schema.isSupported()) {
+                        out.writeByte(OBJECT);
+                        writeClass(type, schema.hash);
+                        schema.write(this, value);
+                    } else {
+                        writeSerialized(value);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes a reference to the given object if it was written before in this message
+         * and remembers it otherwise.
+         */
+        private boolean writeReference(Object value) throws IOException {
+            Integer index = references.get(value);
+            if (index != null) {
+                out.writeByte(REFERENCE);
+                out.writeVarInt(index);
+                return true;
+            }
+            references.put(value, references.size());
+            return false;
+        }
+
+        private void writeArray(Class<?> type, Object array) throws IOException {
+            Class<?> componentType = type.getComponentType();
+            int length = Array.getLength(array);
+            out.writeByte(ARRAY);
+            writeClass(type, 0);
+            out.writeVarInt(length);
+            if (componentType.isPrimitive()) {
+                int kind = ClassSchema.kindOf(componentType);
+                for (int i = 0; i < length; i++) {
+                    writePrimitive(kind, Array.get(array, i));
+                }
+            } else {
+                Object[] elements = (Object[]) array;
+                for (Object element : elements) {
+                    writeObject(element);
+                }
+            }
+        }
+
+        void writePrimitive(int kind, Object value) throws IOException {
+            switch (kind) {
+                case ClassSchema.BOOLEAN:
+                    out.writeBoolean((Boolean) value);
+                    break;
+                case ClassSchema.BYTE:
+                    out.writeByte((Byte) value);
+                    break;
+                case ClassSchema.SHORT:
+                    out.writeVarSignedInt((Short) value);
+                    break;
+                case ClassSchema.CHAR:
+                    out.writeChar((Character) value);
+                    break;
+                case ClassSchema.INT:
+                    out.writeVarSignedInt((Integer) value);
+                    break;
+                case ClassSchema.LONG:
+                    out.writeVarSignedLong((Long) value);
+                    break;
+                case ClassSchema.FLOAT:
+                    out.writeFloat((Float) value);
+                    break;
+                case ClassSchema.DOUBLE:
+                    out.writeDouble((Double) value);
+                    break;
+                default:
+                    writeObject(value);
+            }
+        }
+
+        /**
+         * Writes the index of a class already written in this message or its name and schema hash
+         */
+        private void writeClass(Class<?> type, int hash) throws IOException {
+            Integer index = classes.get(type);
+            if (index != null) {
+                out.writeVarInt(index + 1);
+            } else {
+                classes.put(type, classes.size());
+                out.writeVarInt(0);
+                writeString(type.getName());
+                out.writeInt(hash);
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF8);
+            out.writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeSerialized(Object value) throws IOException {
+            DataByteArrayOutputStream buffer = new DataByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(buffer);
+            oos.writeObject(value);
+            oos.flush();
+            out.writeByte(SERIALIZED);
+            out.writeVarInt(buffer.size());
+            out.write(buffer.getData(), 0, buffer.size());
+        }
+    }
+
+    /**
+     * Reads the values of a single message
+     */
+    static class Decoder {
+        private final ClassLoader loader;
+        private final DataByteArrayInputStream in;
+        private final List<Class<?>> classes = new ArrayList<Class<?>>();
+        private final List<Object> references = new ArrayList<Object>();
+
+        Decoder(ClassLoader loader, DataByteArrayInputStream in) {
+            this.loader = loader != null ? loader : BinarySerializationStrategy.class.getClassLoader();
+            this.in = in;
+        }
+
+        Object readObject() throws IOException, ClassNotFoundException {
+            byte tag = in.readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case BYTE:
+                    return in.readByte();
+                case SHORT:
+                    return (short) in.readVarSignedInt();
+                case INT:
+                    return in.readVarSignedInt();
+                case LONG:
+                    return in.readVarSignedLong();
+                case FLOAT:
+                    return in.readFloat();
+                case DOUBLE:
+                    return in.readDouble();
+                case CHAR:
+                    return in.readChar();
+                case STRING:
+                    return readString();
+                case ENUM:
+                    return readEnum();
+                case REFERENCE:
+                    return readReference();
+                case BYTES: {
+                    byte[] bytes = new byte[readLength()];
+                    in.readFully(bytes);
+                    references.add(bytes);
+                    return bytes;
+                }
+                case ARRAY:
+                    return readArray();
+                case COLLECTION:
+                    return readCollection();
+                case MAP:
+                    return readMap();
+                case OBJECT: {
+                    ClassSchema schema = readSchema();
+                    Object value = schema.newInstance();
+                    references.add(value);
+                    schema.read(this, value);
+                    return value;
+                }
+                case SERIALIZED:
+                    return readSerialized();
+                default:
+                    throw new StreamCorruptedException("Unknown value tag: " + tag);
+            }
+        }
+
+        private Object readReference() throws IOException {
+            int index = in.readVarInt();
+            if (index < 0 || index >= references.size()) {
+                throw new StreamCorruptedException("Unknown reference: " + index);
+            }
+            return references.get(index);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object readEnum() throws IOException, ClassNotFoundException {
+            Class type = readClass();
+            if (!type.isEnum()) {
+                throw new InvalidClassException(type.getName(), "Not an enum");
+            }
+            return Enum.valueOf(type, readString());
+        }
+
+        private Object readArray() throws IOException, ClassNotFoundException {
+            Class<?> type = readClass();
+            if (!type.isArray()) {
+                throw new InvalidClassException(type.getName(), "Not an array");
+            }
+            Class<?> componentType = type.getComponentType();
+            int length = readLength();
+            Object array = Array.newInstance(componentType, length);
+            references.add(array);
+            if (componentType.isPrimitive()) {
+                int kind = ClassSchema.kindOf(componentType);
+                for (int i = 0; i < length; i++) {
+                    Array.set(array, i, readPrimitive(kind));
+                }
+            } else {
+                Object[] elements = (Object[]) array;
+                for (int i = 0; i < length; i++) {
+                    elements[i] = readObject();
+                }
+            }
+            return array;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readCollection() throws IOException, ClassNotFoundException {
+            Class<?> type = readClass();
+            if (!Collection.class.isAssignableFrom(type)) {
+                throw new InvalidClassException(type.getName(), "Not a collection");
+            }
+            Collection<Object> collection = (Collection<Object>) newPlainInstance(type);
+            references.add(collection);
+            int size = readLength();
+            for (int i = 0; i < size; i++) {
+                collection.add(readObject());
+            }
+            return collection;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object readMap() throws IOException, ClassNotFoundException {
+            Class<?> type = readClass();
+            if (!Map.class.isAssignableFrom(type)) {
+                throw new InvalidClassException(type.getName(), "Not a map");
+            }
+            Map<Object, Object> map = (Map<Object, Object>) newPlainInstance(type);
+            references.add(map);
+            int size = readLength();
+            for (int i = 0; i < size; i++) {
+                Object key = readObject();
+                map.put(key, readObject());
+            }
+            return map;
+        }
+
+        Object readPrimitive(int kind) throws IOException, ClassNotFoundException {
+            switch (kind) {
+                case ClassSchema.BOOLEAN:
+                    return in.readBoolean();
+                case ClassSchema.BYTE:
+                    return in.readByte();
+                case ClassSchema.SHORT:
+                    return (short) in.readVarSignedInt();
+                case ClassSchema.CHAR:
+                    return in.readChar();
+                case ClassSchema.INT:
+                    return in.readVarSignedInt();
+                case ClassSchema.LONG:
+                    return in.readVarSignedLong();
+                case ClassSchema.FLOAT:
+                    return in.readFloat();
+                case ClassSchema.DOUBLE:
+                    return in.readDouble();
+                default:
+                    return readObject();
+            }
+        }
+
+        private ClassSchema readSchema() throws IOException, ClassNotFoundException {
+            int index = in.readVarInt();
+            if (index > 0) {
+                return SCHEMAS.get(classAt(index - 1));
+            }
+            Class<?> type = loadClass(readString());
+            ClassSchema schema = SCHEMAS.get(type);
+            int hash = in.readInt();
+            if (!schema.isSupported()) {
+                throw new InvalidClassException(type.getName(), "Cannot be serialized field by field");
+            }
+            if (hash != schema.hash) {
+                throw new InvalidClassException(type.getName(), "The fields of the class do not match the ones of the sender");
+            }
+            classes.add(type);
+            return schema;
+        }
+
+        private Class<?> readClass() throws IOException, ClassNotFoundException {
+            int index = in.readVarInt();
+            if (index > 0) {
+                return classAt(index - 1);
+            }
+            Class<?> type = loadClass(readString());
+            in.readInt();
+            classes.add(type);
+            return type;
+        }
+
+        private Class<?> classAt(int index) throws IOException {
+            if (index >= classes.size()) {
+                throw new StreamCorruptedException("Unknown class reference: " + index);
+            }
+            return classes.get(index);
+        }
+
+        private Class<?> loadClass(String name) throws ClassNotFoundException {
+            return Class.forName(name, false, loader);
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[readLength()];
+            in.readFully(bytes);
+            return new String(bytes, UTF8);
+        }
+
+        private int readLength() throws IOException {
+            int length = in.readVarInt();
+            if (length < 0 || length > in.available()) {
+                throw new StreamCorruptedException("Invalid length: " + length);
+            }
+            return length;
+        }
+
+        private Object readSerialized() throws IOException, ClassNotFoundException {
+            int length = readLength();
+            ClassLoaderObjectInputStream ois = new ClassLoaderObjectInputStream(new DataByteArrayInputStream(in.readBuffer(length)));
+            ois.setClassLoader(loader);
+            Object value = ois.readObject();
+            references.add(value);
+            return value;
+        }
+    }
+
+    /**
+     * Only collections and maps of the JDK with a public default constructor and no
+     * comparator are written element by element, so they can be created the same way.
+     */
+    static boolean isPlainCollection(Object value) {
+        return value instanceof Collection && isPlainClass(value.getClass())
+                && !(value instanceof SortedSet && ((SortedSet<?>) value).comparator() != null);
+    }
+
+    static boolean isPlainMap(Object value) {
+        return value instanceof Map && isPlainClass(value.getClass())
+                && !(value instanceof SortedMap && ((SortedMap<?, ?>) value).comparator() != null);
+    }
+
+    private static boolean isPlainClass(Class<?> type) {
+        if (!type.getName().startsWith("java.util.") || !Modifier.isPublic(type.getModifiers())) {
+            return false;
+        }
+        try {
+            return Modifier.isPublic(type.getConstructor().getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static Object newPlainInstance(Class<?> type) throws InvalidClassException {
+        if (!isPlainClass(type)) {
+            throw new InvalidClassException(type.getName(), "Not a plain collection");
+        }
+        try {
+            return type.newInstance();
+        } catch (Exception e) {
+            throw new InvalidClassException(type.getName(), "Cannot be created: " + e);
+        }
+    }
+
+    /**
+     * The serializable fields of a class which is serialized field by field
+     */
+    static final class ClassSchema {
+        static final int OBJECT = 0;
+        static final int BOOLEAN = 1;
+        static final int BYTE = 2;
+        static final int SHORT = 3;
+        static final int CHAR = 4;
+        static final int INT = 5;
+        static final int LONG = 6;
+        static final int FLOAT = 7;
+        static final int DOUBLE = 8;
+
+        private static final ClassSchema UNSUPPORTED = new ClassSchema(null, new Field[0], 0);
+
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+        private final int[] kinds;
+        final int hash;
+
+        private ClassSchema(Constructor<?> constructor, Field[] fields, int hash) {
+            this.constructor = constructor;
+            this.fields = fields;
+            this.kinds = new int[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                kinds[i] = kindOf(fields[i].getType());
+            }
+            this.hash = hash;
+        }
+
+        /**
+         * Builds the schema of a class if it is a serializable class with a default constructor,
+         * without custom serialization methods and outside of the JDK
+         */
+        static ClassSchema create(Class<?> type) {
+            if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+                    || type.getName().startsWith("java.") || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                return UNSUPPORTED;
+            }
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                List<Field> fields = new ArrayList<Field>();
+                for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                    if (hasCustomSerialization(c)) {
+                        return UNSUPPORTED;
+                    }
+                    List<Field> declared = new ArrayList<Field>();
+                    for (Field field : c.getDeclaredFields()) {
+                        int modifiers = field.getModifiers();
+                        if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+                            declared.add(field);
+                        }
+                    }
+                    Field[] sorted = declared.toArray(new Field[declared.size()]);
+                    Arrays.sort(sorted, FIELD_ORDER);
+                    // the fields of the super classes come first
+                    fields.addAll(0, Arrays.asList(sorted));
+                }
+                constructor.setAccessible(true);
+                int hash = type.getName().hashCode();
+                for (Field field : fields) {
+                    field.setAccessible(true);
+                    hash = 31 * hash + field.getName().hashCode();
+                    hash = 31 * hash + field.getType().getName().hashCode();
+                }
+                return new ClassSchema(constructor, fields.toArray(new Field[fields.size()]), hash);
+            } catch (NoSuchMethodException e) {
+                return UNSUPPORTED;
+            } catch (SecurityException e) {
+                return UNSUPPORTED;
+            }
+        }
+
+        private static boolean hasCustomSerialization(Class<?> type) {
+            for (Method method : type.getDeclaredMethods()) {
+                String name = method.getName();
+                if (name.equals("writeObject") || name.equals("readObject") || name.equals("readObjectNoData")
+                        || name.equals("writeReplace") || name.equals("readResolve")) {
+                    return true;
+                }
+            }
+            for (Field field : type.getDeclaredFields()) {
+                if (field.getName().equals("serialPersistentFields") && Modifier.isStatic(field.getModifiers())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        static int kindOf(Class<?> type) {
+            if (!type.isPrimitive()) {
+                return OBJECT;
+            } else if (type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == byte.class) {
+                return BYTE;
+            } else if (type == short.class) {
+                return SHORT;
+            } else if (type == char.class) {
+                return CHAR;
+            } else if (type == int.class) {
+                return INT;
+            } else if (type == long.class) {
+                return LONG;
+            } else if (type == float.class) {
+                return FLOAT;
+            } else {
+                return DOUBLE;
+            }
+        }
+
+        boolean isSupported() {
+            return constructor != null;
+        }
+
+        Object newInstance() throws InvalidClassException {
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw new InvalidClassException(constructor.getDeclaringClass().getName(), "Cannot be created: " + e);
+            }
+        }
+
+        void write(Encoder encoder, Object value) throws IOException {
+            DataByteArrayOutputStream out = encoder.out;
+            try {
+                // the typed accessors avoid boxing the primitive fields
+                for (int i = 0; i < fields.length; i++) {
+                    Field field = fields[i];
+                    switch (kinds[i]) {
+                        case BOOLEAN:
+                            out.writeBoolean(field.getBoolean(value));
+                            break;
+                        case BYTE:
+                            out.writeByte(field.getByte(value));
+                            break;
+                        case SHORT:
+                            out.writeVarSignedInt(field.getShort(value));
+                            break;
+                        case CHAR:
+                            out.writeChar(field.getChar(value));
+                            break;
+                        case INT:
+                            out.writeVarSignedInt(field.getInt(value));
+                            break;
+                        case LONG:
+                            out.writeVarSignedLong(field.getLong(value));
+                            break;
+                        case FLOAT:
+                            out.writeFloat(field.getFloat(value));
+                            break;
+                        case DOUBLE:
+                            out.writeDouble(field.getDouble(value));
+                            break;
+                        default:
+                            encoder.writeObject(field.get(value));
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new InvalidClassException(value.getClass().getName(), e.toString());
+            }
+        }
+
+        void read(Decoder decoder, Object value) throws IOException, ClassNotFoundException {
+            DataByteArrayInputStream in = decoder.in;
+            try {
+                for (int i = 0; i < fields.length; i++) {
+                    Field field = fields[i];
+                    switch (kinds[i]) {
+                        case BOOLEAN:
+                            field.setBoolean(value, in.readBoolean());
+                            break;
+                        case BYTE:
+                            field.setByte(value, in.readByte());
+                            break;
+                        case SHORT:
+                            field.setShort(value, (short) in.readVarSignedInt());
+                            break;
+                        case CHAR:
+                            field.setChar(value, in.readChar());
+                            break;
+                        case INT:
+                            field.setInt(value, in.readVarSignedInt());
+                            break;
+                        case LONG:
+                            field.setLong(value, in.readVarSignedLong());
+                            break;
+                        case FLOAT:
+                            field.setFloat(value, in.readFloat());
+                            break;
+                        case DOUBLE:
+                            field.setDouble(value, in.readDouble());
+                            break;
+                        default:
+                            field.set(value, decoder.readObject());
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw new InvalidClassException(value.getClass().getName(), e.toString());
+            } catch (IllegalArgumentException e) {
+                throw new InvalidClassException(value.getClass().getName(), e.toString());
+            }
+        }
+
+        private static final Comparator<Field> FIELD_ORDER = new Comparator<Field>() {
+            public int compare(Field f1, Field f2) {
+                return f1.getName().compareTo(f2.getName());
+            }
+        };
+    }
+
+}
@@ -20,23 +20,37 @@ import java.io.IOException;
 import java.net.ProtocolException;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 
 import io.fabric8.dosgi.io.ProtocolCodec;
 import org.fusesource.hawtbuf.Buffer;
 
+/**
+ * Codec of frames which start with their length, including the 4 byte length field itself.
+ * <p/>
+ * Reads go through a direct buffer which is reused for the life of the codec, so a single read
+ * from the channel usually yields many small frames and each frame only costs the allocation of
+ * its own bytes. Frames larger than that buffer are read straight into their own array. Queued
+ * frames are written with a single gathering write when the channel supports it.
+ */
 public class LengthPrefixedCodec implements ProtocolCodec {
 
+    /**
+     * The most frames handed to a single gathering write
+     */
+    static final int MAX_GATHERED_WRITES = 64;
 
     final int write_buffer_size = 1024 * 64;
     long write_counter = 0L;
     WritableByteChannel write_channel;
 
-    final Queue<ByteBuffer> next_write_buffers = new LinkedList<ByteBuffer>();
+    final ArrayDeque<ByteBuffer> next_write_buffers = new ArrayDeque<ByteBuffer>();
+    final ByteBuffer[] gathered_write_buffers = new ByteBuffer[MAX_GATHERED_WRITES];
     int next_write_size = 0;
 
     public boolean full() {
@@ -75,6 +89,7 @@ public class LengthPrefixedCodec implements ProtocolCodec {
             boolean wasEmpty = empty();
             Buffer buffer = (Buffer) value;
             next_write_size += buffer.length;
+            // wraps the frame, it is not copied
             next_write_buffers.add(buffer.toByteBuffer());
             return wasEmpty ? BufferState.WAS_EMPTY : BufferState.NOT_EMPTY;
         }
@@ -88,7 +103,23 @@ public class LengthPrefixedCodec implements ProtocolCodec {
                 next_write_buffers.remove();
                 continue;
             }
-            int bytesWritten = write_channel.write(nextBuffer);
+            long bytesWritten;
+            if (next_write_buffers.size() > 1 && write_channel instanceof GatheringByteChannel) {
+                int count = 0;
+                for (ByteBuffer buffer : next_write_buffers) {
+                    if (count == gathered_write_buffers.length) {
+                        break;
+                    }
+                    gathered_write_buffers[count++] = buffer;
+                }
+                try {
+                    bytesWritten = ((GatheringByteChannel) write_channel).write(gathered_write_buffers, 0, count);
+                } finally {
+                    Arrays.fill(gathered_write_buffers, 0, count, null);
+                }
+            } else {
+                bytesWritten = write_channel.write(nextBuffer);
+            }
             write_counter += bytesWritten;
             next_write_size -= bytesWritten;
             if (nextBuffer.remaining() > 0) {
@@ -112,7 +143,10 @@ public class LengthPrefixedCodec implements ProtocolCodec {
     long read_counter = 0L;
     int read_buffer_size = 1024 * 64;
     ReadableByteChannel read_channel = null;
-    ByteBuffer read_buffer = ByteBuffer.allocate(4);
+    // holds the bytes read from the channel which were not decoded yet between its position and limit
+    ByteBuffer read_buffer = (ByteBuffer) ByteBuffer.allocateDirect(read_buffer_size).flip();
+    // the frame being read when it does not fit in the read buffer
+    ByteBuffer read_frame = null;
 
 
     public void setReadableByteChannel(ReadableByteChannel channel) {
@@ -128,43 +162,60 @@ public class LengthPrefixedCodec implements ProtocolCodec {
 
     public Object read() throws IOException {
         while(true) {
-            if( read_buffer.remaining()!=0 ) {
-                // keep reading from the channel until we fill the read buffer..
-                int count = read_channel.read(read_buffer);
+            if( read_frame!=null ) {
+                // take what was already buffered and read the rest straight into the frame
+                if( read_buffer.hasRemaining() ) {
+                    int count = Math.min(read_buffer.remaining(), read_frame.remaining());
+                    ByteBuffer chunk = read_buffer.duplicate();
+                    chunk.limit(chunk.position() + count);
+                    read_frame.put(chunk);
+                    read_buffer.position(read_buffer.position() + count);
+                }
+                if( !read_frame.hasRemaining() ) {
+                    Buffer rc = new Buffer(read_frame.array());
+                    read_frame = null;
+                    return rc;
+                }
+                int count = read_channel.read(read_frame);
                 if (count == -1) {
                     throw new EOFException("Peer disconnected");
                 } else if (count == 0) {
                     return null;
                 }
                 read_counter += count;
-            } else {
-                //read buffer is full.. interpret it..
-                read_buffer.flip();
+                continue;
+            }
 
-                if( read_buffer.capacity() == 4 ) {
-                    // Finding out the
-                    int size = read_buffer.getInt(0);
-                    if( size < 4 ) {
-                        throw new ProtocolException("Expecting a size greater than 3");
-                    }
-                    if( size == 4 ) {
-                        // weird.. empty frame.. guess it could happen.
-                        Buffer rc = new Buffer(read_buffer);
-                        read_buffer = ByteBuffer.allocate(4);
-                        return rc;
-                    } else {
-                        // Resize to the right size.. this resumes the reads..
-                        ByteBuffer next = ByteBuffer.allocate(size);
-                        next.putInt(size);
-                        read_buffer = next;
-                    }
-                } else {
-                    // finish loading the rest of the buffer..
-                    Buffer rc = new Buffer(read_buffer);
-                    read_buffer = ByteBuffer.allocate(4);
-                    return rc;
+            if( read_buffer.remaining() >= 4 ) {
+                int size = read_buffer.getInt(read_buffer.position());
+                if( size < 4 ) {
+                    throw new ProtocolException("Expecting a size greater than 3");
+                }
+                if( read_buffer.remaining() >= size ) {
+                    byte[] frame = new byte[size];
+                    read_buffer.get(frame);
+                    return new Buffer(frame);
                 }
+                if( size > read_buffer.capacity() ) {
+                    read_frame = ByteBuffer.allocate(size);
+                    continue;
+                }
+            }
+
+            // keep reading from the channel until we have a whole frame..
+            read_buffer.compact();
+            int count;
+            try {
+                count = read_channel.read(read_buffer);
+            } finally {
+                read_buffer.flip();
+            }
+            if (count == -1) {
+                throw new EOFException("Peer disconnected");
+            } else if (count == 0) {
+                return null;
             }
+            read_counter += count;
         }
     }
 
@@ -19,6 +19,7 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -51,6 +52,7 @@ public class InvocationTest {
         DispatchQueue queue = Dispatch.createQueue();
         HashMap<String, SerializationStrategy> map = new HashMap<String, SerializationStrategy>();
         map.put("protobuf", new ProtobufSerializationStrategy());
+        map.put("binary", new BinarySerializationStrategy());
 
         ServerInvokerImpl server = new ServerInvokerImpl("tcp://localhost:0", queue, map);
         server.start();
@@ -93,6 +95,9 @@ public class InvocationTest {
             hello.protobuf(stringValue("Hiram Async"), future2);
             assertEquals("Hello Hiram Async!", future2.get(2, TimeUnit.SECONDS).getValue());
 
+            assertEquals("Hello Binary!", hello.binary("Binary"));
+            assertEquals(Arrays.asList("Hello a!", "Hello b!"), hello.binary(Arrays.asList("a", "b")));
+
         }
         finally {
             server.stop();
@@ -494,6 +499,12 @@ public class InvocationTest {
         @Serialization("protobuf")
         void protobuf(StringValue.Getter name, AsyncCallback<StringValue.Getter> callback);
 
+        @Serialization("binary")
+        String binary(String name);
+
+        @Serialization("binary")
+        List<String> binary(List<String> names);
+
     }
 
     static private StringValue.Bean stringValue(String hello) {
@@ -535,6 +546,20 @@ public class InvocationTest {
             callback.onSuccess(protobuf(name));
         }
 
+        @Serialization("binary")
+        public String binary(String name) {
+            return hello(name);
+        }
+
+        @Serialization("binary")
+        public List<String> binary(List<String> names) {
+            List<String> rc = new ArrayList<String>();
+            for (String name : names) {
+                rc.add(hello(name));
+            }
+            return rc;
+        }
+
         public void hello(String name, AsyncCallback<String> callback) {
             queueCheck();
             callback.onSuccess(hello(name));
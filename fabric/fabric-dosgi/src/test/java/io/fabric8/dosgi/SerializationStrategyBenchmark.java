@@ -0,0 +1,104 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.dosgi;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.fabric8.dosgi.api.BinarySerializationStrategy;
+import io.fabric8.dosgi.api.ObjectSerializationStrategy;
+import io.fabric8.dosgi.api.ProtobufSerializationStrategy;
+import io.fabric8.dosgi.api.SerializationStrategy;
+import org.fusesource.hawtbuf.DataByteArrayInputStream;
+import org.fusesource.hawtbuf.DataByteArrayOutputStream;
+import org.junit.Test;
+
+/**
+ * Compares the cost of encoding and decoding the arguments of a remote call with each
+ * serialization strategy. It is not run as part of the build, run it from the IDE or with
+ * <code>mvn test -Dtest=SerializationStrategyBenchmark</code>.
+ */
+public class SerializationStrategyBenchmark {
+
+    final int WARMUP_ITERATIONS = 50000;
+    final int ITERATIONS = 200000;
+
+    @Test
+    public void testSmallRequest() throws Exception {
+        System.out.println("Request with a single string argument");
+        benchmark(ObjectSerializationStrategy.INSTANCE, new Class<?>[]{String.class}, new Object[]{"Fabric"});
+        benchmark(BinarySerializationStrategy.INSTANCE, new Class<?>[]{String.class}, new Object[]{"Fabric"});
+        StringValue.Bean value = new StringValue.Bean();
+        value.setValue("Fabric");
+        benchmark(ProtobufSerializationStrategy.INSTANCE, new Class<?>[]{StringValue.Getter.class}, new Object[]{value.freeze()});
+    }
+
+    @Test
+    public void testBeanRequest() throws Exception {
+        System.out.println("Request with a bean argument");
+        Class<?>[] types = new Class<?>[]{Container.class, boolean.class};
+        Object[] args = new Object[]{new Container("root", 8181, "default", "karaf", "mq-amq"), true};
+        benchmark(ObjectSerializationStrategy.INSTANCE, types, args);
+        benchmark(BinarySerializationStrategy.INSTANCE, types, args);
+    }
+
+    private void benchmark(SerializationStrategy strategy, Class<?>[] types, Object[] args) throws Exception {
+        ClassLoader loader = getClass().getClassLoader();
+        int size = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            size = roundTrip(strategy, loader, types, args);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            roundTrip(strategy, loader, types, args);
+        }
+        long duration = System.nanoTime() - start;
+        System.out.println(String.format("%10s: %,8d ns per call, %,5d bytes, %,10.0f calls/second", strategy.name(),
+                duration / ITERATIONS, size, ITERATIONS * 1.0d / duration * TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private int roundTrip(SerializationStrategy strategy, ClassLoader loader, Class<?>[] types, Object[] args) throws Exception {
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        strategy.encodeRequest(loader, types, args, out);
+        Object[] decoded = new Object[types.length];
+        strategy.decodeRequest(loader, types, new DataByteArrayInputStream(out.toBuffer()), decoded);
+        return out.size();
+    }
+
+    public static class Container implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String id;
+        private int port;
+        private boolean alive;
+        private List<String> profiles;
+
+        public Container() {
+        }
+
+        public Container(String id, int port, String... profiles) {
+            this.id = id;
+            this.port = port;
+            this.alive = true;
+            this.profiles = new ArrayList<String>();
+            for (String profile : profiles) {
+                this.profiles.add(profile);
+            }
+        }
+    }
+}
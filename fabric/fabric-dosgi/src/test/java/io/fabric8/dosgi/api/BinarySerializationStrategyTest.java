@@ -0,0 +1,164 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.dosgi.api;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.fusesource.hawtbuf.DataByteArrayInputStream;
+import org.fusesource.hawtbuf.DataByteArrayOutputStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BinarySerializationStrategyTest {
+
+    private final BinarySerializationStrategy strategy = BinarySerializationStrategy.INSTANCE;
+
+    @Test
+    public void testSimpleValues() throws Exception {
+        Object[] args = new Object[]{"Hello", -1, Long.MAX_VALUE, true, (byte) 7, (short) -300, 'x', 1.5f, 2.5d, null,
+                TimeUnit.SECONDS, new byte[]{1, 2, 3}, new int[]{1, -2, 3}, new String[][]{{"a"}, {"b", null}}};
+        Object[] decoded = roundTrip(args);
+
+        assertEquals(Arrays.asList(args).subList(0, 11), Arrays.asList(decoded).subList(0, 11));
+        assertArrayEquals((byte[]) args[11], (byte[]) decoded[11]);
+        assertArrayEquals((int[]) args[12], (int[]) decoded[12]);
+        assertArrayEquals((String[][]) args[13], (String[][]) decoded[13]);
+    }
+
+    @Test
+    public void testCollections() throws Exception {
+        List<Object> list = new ArrayList<Object>(Arrays.asList("a", 1, null));
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("list", list);
+        map.put("set", new LinkedHashSet<String>(Arrays.asList("x", "y")));
+        TreeMap<String, Integer> sorted = new TreeMap<String, Integer>(Collections.singletonMap("k", 1));
+        Date date = new Date();
+
+        Object[] decoded = roundTrip(new Object[]{map, sorted, Collections.unmodifiableList(list), date});
+
+        assertEquals(map, decoded[0]);
+        assertTrue(decoded[1] instanceof TreeMap);
+        assertEquals(sorted, decoded[1]);
+        // serialized through Java serialization
+        assertEquals(list, decoded[2]);
+        assertEquals(date, decoded[3]);
+    }
+
+    @Test
+    public void testObjectsKeepTheirReferences() throws Exception {
+        Node first = new Node("first", 1);
+        Node second = new Node("second", 2);
+        first.next = second;
+        second.next = first;
+
+        Object[] decoded = roundTrip(new Object[]{first, second});
+
+        Node decodedFirst = (Node) decoded[0];
+        Node decodedSecond = (Node) decoded[1];
+        assertEquals("first", decodedFirst.name);
+        assertEquals(1, decodedFirst.weight);
+        assertEquals("second", decodedSecond.name);
+        assertSame(decodedSecond, decodedFirst.next);
+        assertSame(decodedFirst, decodedSecond.next);
+    }
+
+    @Test
+    public void testClassNamesAreOnlyWrittenOnce() throws Exception {
+        DataByteArrayOutputStream one = new DataByteArrayOutputStream();
+        strategy.encodeRequest(null, null, new Object[]{new Node("a", 1)}, one);
+        DataByteArrayOutputStream two = new DataByteArrayOutputStream();
+        strategy.encodeRequest(null, null, new Object[]{new Node("a", 1), new Node("a", 1)}, two);
+
+        int nameLength = Node.class.getName().length();
+        assertTrue(two.size() - one.size() < nameLength);
+    }
+
+    @Test
+    public void testResponses() throws Exception {
+        AsyncCallbackFuture<Object> success = new AsyncCallbackFuture<Object>();
+        decodeResponse(encodeResponse("Hello", null), success);
+        assertEquals("Hello", success.get(1, TimeUnit.SECONDS));
+
+        AsyncCallbackFuture<Object> failure = new AsyncCallbackFuture<Object>();
+        decodeResponse(encodeResponse(null, new IllegalStateException("Failed")), failure);
+        try {
+            failure.get(1, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("Failed", e.getCause().getMessage());
+            return;
+        }
+        throw new AssertionError("Expected a failure");
+    }
+
+    @Test
+    public void testNoArguments() throws Exception {
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        strategy.encodeRequest(null, new Class<?>[0], null, out);
+        Object[] decoded = new Object[0];
+        strategy.decodeRequest(null, new Class<?>[0], new DataByteArrayInputStream(out.toBuffer()), decoded);
+        assertEquals(0, decoded.length);
+    }
+
+    private Object[] roundTrip(Object[] args) throws Exception {
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        strategy.encodeRequest(getClass().getClassLoader(), null, args, out);
+        Object[] decoded = new Object[args.length];
+        strategy.decodeRequest(getClass().getClassLoader(), null, new DataByteArrayInputStream(out.toBuffer()), decoded);
+        return decoded;
+    }
+
+    private DataByteArrayOutputStream encodeResponse(Object value, Throwable error) throws Exception {
+        DataByteArrayOutputStream out = new DataByteArrayOutputStream();
+        strategy.encodeResponse(getClass().getClassLoader(), Object.class, value, error, out);
+        return out;
+    }
+
+    private void decodeResponse(DataByteArrayOutputStream out, AsyncCallback<Object> callback) throws Exception {
+        strategy.decodeResponse(getClass().getClassLoader(), Object.class, new DataByteArrayInputStream(out.toBuffer()), callback);
+    }
+
+    static class Node implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final int weight;
+        private Node next;
+
+        Node() {
+            this(null, 0);
+        }
+
+        Node(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+}
@@ -18,8 +18,11 @@ package io.fabric8.dosgi.tcp;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 
@@ -131,6 +134,111 @@ public class LengthPrefixedCodecTest {
 		assertEquals(bytesThatWillBeWritten, codec.getWriteCounter());
 	}
 
+	@Test
+	public void testFlush$Gathering() throws Exception {
+		final ByteArrayOutputStream written = new ByteArrayOutputStream();
+		final int[] writes = new int[1];
+		codec.setWritableByteChannel(new GatheringByteChannel() {
+			public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+				writes[0]++;
+				long count = 0;
+				for (int i = offset; i < offset + length; i++) {
+					count += write(srcs[i]);
+				}
+				return count;
+			}
+			public long write(ByteBuffer[] srcs) throws IOException {
+				return write(srcs, 0, srcs.length);
+			}
+			public int write(ByteBuffer src) throws IOException {
+				int count = src.remaining();
+				while (src.hasRemaining()) {
+					written.write(src.get());
+				}
+				return count;
+			}
+			public boolean isOpen() {
+				return true;
+			}
+			public void close() throws IOException {
+			}
+		});
+		codec.write(Buffer.ascii("TEST"));
+		codec.write(Buffer.ascii("DATA"));
+		codec.write(Buffer.ascii("1234567890").slice(2, 6));
+
+		assertEquals(BufferState.EMPTY, codec.flush());
+		assertEquals(1, writes[0]);
+		assertEquals("TESTDATA3456", new String(written.toByteArray(), "US-ASCII"));
+		assertEquals(12l, codec.getWriteCounter());
+		assertEquals(true, codec.empty());
+	}
+
+	@Test
+	public void testRead$SeveralFramesInOneRead() throws Exception {
+		final ByteBuffer data = ByteBuffer.allocate(64);
+		data.putInt(8).put("ABCD".getBytes("US-ASCII"));
+		data.putInt(4);
+		data.putInt(6).put("EF".getBytes("US-ASCII"));
+		data.putInt(9).put("GH".getBytes("US-ASCII"));
+		data.flip();
+		expect(readableByteChannel.read((ByteBuffer) anyObject())).andAnswer(createReadAnswer(data)).anyTimes();
+		replay(readableByteChannel);
+
+		assertFrame("ABCD", codec.read());
+		assertFrame("", codec.read());
+		assertFrame("EF", codec.read());
+		// the last frame is incomplete
+		assertNull(codec.read());
+		assertEquals(data.limit(), codec.getReadCounter());
+	}
+
+	@Test
+	public void testRead$FrameLargerThanReadBuffer() throws Exception {
+		final int size = codec.read_buffer_size * 3 + 7;
+		final ByteBuffer data = ByteBuffer.allocate(size + 8);
+		data.putInt(size);
+		for (int i = 4; i < size; i++) {
+			data.put((byte) i);
+		}
+		data.putInt(8).put("ABCD".getBytes("US-ASCII"));
+		data.flip();
+		expect(readableByteChannel.read((ByteBuffer) anyObject())).andAnswer(createReadAnswer(data)).anyTimes();
+		replay(readableByteChannel);
+
+		final Buffer frame = (Buffer) codec.read();
+		assertEquals(size, frame.length());
+		assertEquals(size, frame.toByteBuffer().getInt());
+		for (int i = 4; i < size; i++) {
+			assertEquals((byte) i, frame.get(i));
+		}
+		assertFrame("ABCD", codec.read());
+		assertNull(codec.read());
+	}
+
+	private void assertFrame(String expected, Object frame) throws Exception {
+		assertNotNull(frame);
+		final Buffer buffer = (Buffer) frame;
+		assertEquals(expected.length() + 4, buffer.length());
+		assertEquals(expected.length() + 4, buffer.toByteBuffer().getInt());
+		assertEquals(expected, new String(buffer.getData(), buffer.getOffset() + 4, expected.length(), "US-ASCII"));
+	}
+
+	private IAnswer<Integer> createReadAnswer(final ByteBuffer data) {
+		return new IAnswer<Integer>() {
+			@Override
+			public Integer answer() throws Throwable {
+				final ByteBuffer buffer = (ByteBuffer) getCurrentArguments()[0];
+				// hand out the data in chunks of at most 1000 bytes
+				final int count = Math.min(Math.min(buffer.remaining(), data.remaining()), 1000);
+				for (int i = 0; i < count; i++) {
+					buffer.put(data.get());
+				}
+				return count;
+			}
+		};
+	}
+
 	private IAnswer<Integer> createWriteAnswer(final int length) {
 		return new IAnswer<Integer>() {
 			@Override
@@ -24,6 +24,7 @@ import io.fabric8.api.LockHandle;
 import io.fabric8.api.Profile;
 import io.fabric8.api.ProfileBuilder;
 import io.fabric8.api.ProfileBuilders;
+import io.fabric8.api.ProfileChangeListener;
 import io.fabric8.api.ProfileRegistry;
 import io.fabric8.api.Profiles;
 import io.fabric8.api.RuntimeProperties;
@@ -74,6 +75,9 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -99,14 +103,23 @@ import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.internal.storage.file.LockFile;
 import org.eclipse.jgit.lib.BatchingProgressMonitor;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.CredentialsProvider;
 import org.eclipse.jgit.transport.PushResult;
 import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.gitective.core.RepositoryUtils;
 import io.fabric8.api.gravia.IllegalArgumentAssertion;
 import io.fabric8.api.gravia.IllegalStateAssertion;
@@ -178,6 +191,9 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     private ProxySelector defaultProxySelector;
     private PullPushPolicy pullPushPolicy;
     private boolean notificationRequired;
+    // the profiles changed while the write lock is held, keyed by version
+    private final Map<String, Set<String>> changedProfiles = new HashMap<String, Set<String>>();
+    private final List<ProfileChangeListener> profileListeners = new CopyOnWriteArrayList<ProfileChangeListener>();
     private SharedCount counter;
     private String remoteUrl;
 
@@ -196,7 +212,10 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
     @Property(name = "gitRandomFetchDelay", label = "Fetch delay", description = "If greater than 0, container will wait up to given number of seconds before fetching from remote repository.", intValue = 0)
     private int gitRandomFetchDelay = 0;
 
-    private final LoadingCache<String, Version> versionCache = CacheBuilder.newBuilder().build(new VersionCacheLoader());
+    private final VersionCacheLoader versionCacheLoader = new VersionCacheLoader();
+    private final LoadingCache<String, Version> versionCache = CacheBuilder.newBuilder().build(versionCacheLoader);
+    // the master branch commits the cached versions were loaded from
+    private final ConcurrentMap<String, ObjectId> versionMasterCommits = new ConcurrentHashMap<String, ObjectId>();
     private final Set<String> versions = new HashSet<String>();
 
     // ENTESB-6336: This latch will be triggerred after versionCache contains some sane data
@@ -500,6 +519,11 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         return new LockHandle() {
             @Override
             public void unlock() {
+                Map<String, Set<String>> changes = null;
+                if (readWriteLock.getWriteHoldCount() == 1 && !changedProfiles.isEmpty()) {
+                    changes = new HashMap<String, Set<String>>(changedProfiles);
+                    changedProfiles.clear();
+                }
                 if (notificationRequired && readWriteLock.getWriteHoldCount() == 1) {
                     try {
                         dataStore.get().fireChangeNotifications();
@@ -508,6 +532,9 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
                     }
                 }
                 writeLock.unlock();
+                if (changes != null) {
+                    fireProfileChanges(changes);
+                }
             }
         };
     }
@@ -607,7 +634,8 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
             LOGGER.warn("Waiting for initial versions failed");
         }
 
-        LockHandle writeLock = aquireWriteLock();
+        // the loader reads from the object database, so versions can be loaded concurrently
+        LockHandle readLock = aquireReadLock();
         try {
             assertValid();
             String branch = GitHelpers.getProfileBranch(versionId, profileId);
@@ -619,7 +647,7 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         } catch (Exception e) {
             throw FabricException.launderThrowable(e);
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
         }
     }
 
@@ -1091,6 +1119,29 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         }
     }
 
+    @Override
+    public void trackProfiles(ProfileChangeListener listener) {
+        profileListeners.add(listener);
+    }
+
+    @Override
+    public void untrackProfiles(ProfileChangeListener listener) {
+        profileListeners.remove(listener);
+    }
+
+    private void fireProfileChanges(Map<String, Set<String>> changes) {
+        for (Map.Entry<String, Set<String>> entry : changes.entrySet()) {
+            Set<String> profileIds = Collections.unmodifiableSet(entry.getValue());
+            for (ProfileChangeListener listener : profileListeners) {
+                try {
+                    listener.profilesChanged(entry.getKey(), profileIds);
+                } catch (Throwable e) {
+                    LOGGER.warn("Caught: " + e, e);
+                }
+            }
+        }
+    }
+
     @Override
     public void importProfiles(final String versionId, final List<String> profileZipUrls) {
         IllegalStateAssertion.assertNotNull(versionId, "versionId");
@@ -1210,9 +1261,9 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
                 doCommit(git, context);
                 Object cacheKey = context.getCacheKey();
                 if( cacheKey==null || cacheKey.equals(GitHelpers.MASTER_BRANCH)  ) {
-                    versionCache.invalidateAll();
+                    refreshVersionCache(git, context, null);
                 } else {
-                    versionCache.invalidate(cacheKey);
+                    refreshVersionCache(git, context, Collections.singleton(cacheKey.toString()));
                 }
                 notificationRequired = true;
             }
@@ -1298,14 +1349,16 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         if (pullResult.getLastException() == null) {
             Map<String, PullPushPolicy.BranchChange> updatedVersions = pullResult.localUpdateVersions();
             if (!updatedVersions.isEmpty()) {
-                if( updatedVersions.containsKey(GitHelpers.MASTER_BRANCH) ) {
-                    versionCache.invalidateAll();
-                } else {
-                    for (String version : updatedVersions.keySet()) {
-                        versionCache.invalidate(version);
-                    }
+                Set<String> updated = new HashSet<String>(updatedVersions.keySet());
+                boolean changed = false;
+                if( updated.remove(GitHelpers.MASTER_BRANCH) ) {
+                    changed = refreshVersionCache(getGit(), context, null);
+                }
+                changed |= refreshVersionCache(getGit(), context, updated);
+                // only tell the containers about updates which changed a profile
+                if (changed) {
+                    notificationRequired = true;
                 }
-                notificationRequired = true;
             }
             Set<String> pullVersions = pullResult.getVersions();
             if (!pullVersions.isEmpty() && !pullVersions.equals(versions)) {
@@ -1371,14 +1424,6 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         return relativePath.replace(File.separatorChar, '/');
     }
     
-    private Map<String, String> getVersionAttributes(Git git, GitContext context, String versionId) throws IOException {
-        byte[] content = GitHelpers.getContentOfObject(git, versionId, GitHelpers.VERSION_ATTRIBUTES, false);
-        if (content == null) {
-            return Collections.emptyMap();
-        }
-        return DataStoreUtils.toMap(content);
-    }
-
     private void setVersionAttributes(Git git, GitContext context, String versionId, Map<String, String> attributes) throws IOException, GitAPIException {
         File rootDirectory = GitHelpers.getRootGitDirectory(git);
         File file = new File(rootDirectory, GitHelpers.VERSION_ATTRIBUTES);
@@ -1458,8 +1503,55 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
 
     private void removeVersionFromCaches(String versionId) {
         versionCache.invalidate(versionId);
+        versionMasterCommits.remove(versionId);
         versions.remove(versionId);
     }
+
+    /**
+     * Brings the cached versions up to date with their branches after a pull, a received push or a commit.
+     * Only the profiles whose files changed are read again and the other {@link Profile} instances are shared
+     * with the previously cached version. Versions which were not loaded yet are left to be loaded on demand.
+     *
+     * @param versionIds the versions whose branches changed or null for all cached versions
+     * @return true if any profile or version attribute changed or the changes could not be determined
+     */
+    private boolean refreshVersionCache(Git git, GitContext context, Collection<String> versionIds) {
+        assertWriteLock();
+        boolean changed = false;
+        Collection<String> refreshed = versionIds != null ? versionIds : new ArrayList<String>(versionCache.asMap().keySet());
+        for (String versionId : refreshed) {
+            Version previous = versionCache.getIfPresent(versionId);
+            if (previous == null) {
+                // not loaded so it was created, removed or is not used here
+                changed = true;
+                continue;
+            }
+            try {
+                Set<String> profileIds = new HashSet<String>();
+                Version version = versionCacheLoader.loadVersion(git, context, versionId, previous, profileIds);
+                if (version == null) {
+                    removeVersionFromCaches(versionId);
+                    profileIds.addAll(previous.getProfileIds());
+                } else {
+                    versionCache.put(versionId, version);
+                }
+                if (!profileIds.isEmpty()) {
+                    Set<String> changes = changedProfiles.get(versionId);
+                    if (changes == null) {
+                        changes = new HashSet<String>();
+                        changedProfiles.put(versionId, changes);
+                    }
+                    changes.addAll(profileIds);
+                }
+                changed |= !profileIds.isEmpty() || version == null || !version.getAttributes().equals(previous.getAttributes());
+            } catch (Exception e) {
+                LOGGER.warn("Cannot refresh version " + versionId + ", it will be loaded again: " + e);
+                versionCache.invalidate(versionId);
+                changed = true;
+            }
+        }
+        return changed;
+    }
     
     @VisibleForExternal public void bindConfigurer(Configurer service) {
         this.configurer = service;
@@ -1533,7 +1625,44 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         @Override
         public void onReceivePack() {
             assertValid();
-            versionCache.invalidateAll();
+            // the push is still being received, so the versions are refreshed once it is done
+            threadPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    runReceivePack();
+                }
+
+                @Override
+                public String toString() {
+                    return "ReceivePackTask";
+                }
+            });
+        }
+
+        private void runReceivePack() {
+            LockHandle writeLock;
+            try {
+                writeLock = aquireWriteLock();
+            } catch (IllegalStateException e) {
+                LOGGER.warn("Cannot refresh the versions after receiving a push: " + e);
+                versionCache.invalidateAll();
+                return;
+            }
+            try {
+                if (!isValid()) {
+                    LOGGER.warn("Received push on invalid component");
+                    return;
+                }
+                GitOperation<Void> gitop = new GitOperation<Void>() {
+                    public Void call(Git git, GitContext context) throws Exception {
+                        refreshVersionCache(git, context, null);
+                        return null;
+                    }
+                };
+                executeInternal(new GitContext(), null, gitop);
+            } finally {
+                writeLock.unlock();
+            }
         }
         
         private void runRemoteUrlChanged(final String updateUrl) {
@@ -1949,108 +2078,204 @@ public final class GitDataStoreImpl extends AbstractComponent implements GitData
         }
     }
     
+    /**
+     * Loads a version from the commits its branch and the master branch point to. The profiles are
+     * read straight from the git object database rather than from a checked out working tree, so
+     * no branch has to be checked out and versions may be loaded concurrently under the read lock.
+     */
     class VersionCacheLoader extends CacheLoader<String, Version> {
-        
+
+        private final String profilesPath = GitHelpers.CONFIGS + "/profiles";
+
         @Override
         public Version load(final String versionId) {
-            assertWriteLock();
+            assertReadLock();
             GitOperation<Version> gitop = new GitOperation<Version>() {
                 public Version call(Git git, GitContext context) throws Exception {
-                    String revision = git.getRepository().getRefDatabase().getRef(versionId).getObjectId().getName();
-                    return loadVersion(git, context, versionId, revision);
+                    Version version = loadVersion(git, context, versionId, null, null);
+                    IllegalStateAssertion.assertNotNull(version, "Cannot find version branch: " + versionId);
+                    return version;
                 }
             };
             GitContext context = new GitContext();
             return executeInternal(context, null, gitop);
         }
-        
-        private Version loadVersion(Git git, GitContext context, String versionId, String revision) throws Exception {
-            VersionBuilder vbuilder = VersionBuilder.Factory.create(versionId).setRevision(revision);
-            vbuilder.setAttributes(getVersionAttributes(git, context, versionId));
-            populateVersionBuilder(git, context, vbuilder, GitHelpers.MASTER_BRANCH, versionId);
-            populateVersionBuilder(git, context, vbuilder, versionId, versionId);
-            return vbuilder.getVersion();
-        }
-
-        private void populateVersionBuilder(Git git, GitContext context, VersionBuilder builder, String branch, String versionId) throws GitAPIException, IOException {
-            checkoutRequiredProfileBranch(git, context, branch, null);
-            File profilesDir = GitHelpers.getProfilesDirectory(git);
-            if (profilesDir.exists()) {
-                String[] files = profilesDir.list();
-                if (files != null) {
-                    for (String childName : files) {
-                        Path childPath = profilesDir.toPath().resolve(childName);
-                        if (childPath.toFile().isDirectory()) {
-                            populateProfile(git, builder, branch, versionId, childPath.toFile(), "");
 
+        /**
+         * Loads the version from the current commits of its branch and the master branch. When a previously
+         * loaded instance of the version is given, the trees of the commits it was loaded from are diffed with
+         * the current ones and only the profiles with changed files are read again. The branches of the origin
+         * remote are used for the branches which were not created locally yet.
+         *
+         * @param previous the previously loaded version or null to read all the profiles
+         * @param changedProfiles the set the identities of the changed profiles are added to or null
+         * @return the version or null if its branch no longer exists
+         */
+        Version loadVersion(Git git, GitContext context, String versionId, Version previous, Set<String> changedProfiles) throws IOException {
+            Repository repository = git.getRepository();
+            Ref masterRef = getBranchRef(repository, GitHelpers.MASTER_BRANCH);
+            Ref versionRef = getBranchRef(repository, versionId);
+            if (versionRef == null) {
+                return null;
+            }
+            IllegalStateAssertion.assertNotNull(masterRef, "Cannot find branch: " + GitHelpers.MASTER_BRANCH);
+            ObjectId masterCommit = masterRef.getObjectId();
+            ObjectId versionCommit = versionRef.getObjectId();
+
+            VersionBuilder vbuilder = VersionBuilder.Factory.create(versionId).setRevision(versionCommit.getName());
+            try (ObjectReader reader = repository.newObjectReader()) {
+                vbuilder.setAttributes(readVersionAttributes(reader, versionCommit));
+                Set<String> reloaded = previous != null ? diffProfiles(reader, versionId, previous, masterCommit, versionCommit) : null;
+                if (reloaded != null) {
+                    for (Profile profile : previous.getProfiles()) {
+                        if (!reloaded.contains(profile.getId())) {
+                            vbuilder.addProfile(profile);
                         }
                     }
                 }
+                // the profiles of the version branch replace the ones with the same identity on the master branch
+                Map<String, Map<String, byte[]>> profiles = readProfiles(reader, masterCommit, reloaded);
+                profiles.putAll(readProfiles(reader, versionCommit, reloaded));
+                for (Map.Entry<String, Map<String, byte[]>> entry : profiles.entrySet()) {
+                    ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, entry.getKey());
+                    profileBuilder.setFileConfigurations(entry.getValue());
+                    vbuilder.addProfile(profileBuilder.getProfile());
+                }
+                if (changedProfiles != null) {
+                    if (reloaded != null) {
+                        changedProfiles.addAll(reloaded);
+                    } else if (previous != null) {
+                        changedProfiles.addAll(previous.getProfileIds());
+                        changedProfiles.addAll(profiles.keySet());
+                    }
+                }
             }
+            versionMasterCommits.put(versionId, masterCommit);
+            return vbuilder.getVersion();
         }
 
-        private void populateProfile(Git git, VersionBuilder versionBuilder, String branch, String versionId, File profileFile, String prefix) throws IOException {
-            String profileName = profileFile.getName();
-            String profileId = profileName;
-            if (profileId.endsWith(Profiles.PROFILE_FOLDER_SUFFIX)) {
-                profileId = prefix + profileId.substring(0, profileId.length() - Profiles.PROFILE_FOLDER_SUFFIX.length());
-            } else {
-                // lets recurse all children
-                File[] files = profileFile.listFiles();
-                if (files != null) {
-                    for (File childFile : files) {
-                        if (childFile.isDirectory()) {
-                            populateProfile(git, versionBuilder, branch, versionId, childFile, prefix + profileFile.getName() + "-");
-                        }
-                    }
-                }
-                return;
+        /**
+         * Returns the local branch or, when it was not created yet, the branch of the origin remote
+         * or null if neither exists
+         */
+        private Ref getBranchRef(Repository repository, String branch) throws IOException {
+            Ref ref = repository.getRef("refs/heads/" + branch);
+            if (ref == null) {
+                ref = repository.getRef("refs/remotes/" + GitHelpers.REMOTE_ORIGIN + "/" + branch);
             }
+            return ref;
+        }
 
-            Map<String, byte[]> fileConfigurations = doGetFileConfigurations(git, profileId);
-            
-            ProfileBuilder profileBuilder = ProfileBuilder.Factory.create(versionId, profileId);
-            profileBuilder.setFileConfigurations(fileConfigurations);
-            versionBuilder.addProfile(profileBuilder.getProfile());
+        private Map<String, String> readVersionAttributes(ObjectReader reader, ObjectId commitId) throws IOException {
+            try (RevWalk revWalk = new RevWalk(reader);
+                 TreeWalk treeWalk = TreeWalk.forPath(reader, GitHelpers.VERSION_ATTRIBUTES, revWalk.parseCommit(commitId).getTree())) {
+                if (treeWalk == null) {
+                    return Collections.emptyMap();
+                }
+                return DataStoreUtils.toMap(reader.open(treeWalk.getObjectId(0)).getBytes());
+            }
         }
 
-        private Map<String, byte[]> doGetFileConfigurations(Git git, String profileId) throws IOException {
-            Map<String, byte[]> configurations = new HashMap<String, byte[]>();
-            File profileDirectory = GitHelpers.getProfileDirectory(git, profileId);
-            populateFileConfigurations(configurations, profileDirectory, profileDirectory);
-            return configurations;
+        /**
+         * Returns the identities of the profiles with files which differ between the commits the previous
+         * version was loaded from and the given ones or null if they cannot be determined.
+         */
+        private Set<String> diffProfiles(ObjectReader reader, String versionId, Version previous, ObjectId masterCommit, ObjectId versionCommit) {
+            ObjectId previousMaster = versionMasterCommits.get(versionId);
+            if (previousMaster == null || previous.getRevision() == null) {
+                return null;
+            }
+            try {
+                Set<String> answer = new HashSet<String>();
+                diffProfiles(reader, previousMaster, masterCommit, answer);
+                diffProfiles(reader, ObjectId.fromString(previous.getRevision()), versionCommit, answer);
+                return answer;
+            } catch (Exception e) {
+                // such as the previous commits having been pruned
+                LOGGER.debug("Cannot diff version " + versionId + ", reloading all its profiles: " + e);
+                return null;
+            }
         }
 
-        private void populateFileConfigurations(Map<String, byte[]> configurations, File profileDirectory, File directory) throws IOException {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    if (file.isFile()) {
-                        String relativePath = getFilePattern(profileDirectory, file);
-                        configurations.put(relativePath, loadFileConfiguration(file));
-                    } else if (file.isDirectory()) {
-                        populateFileConfigurations(configurations, profileDirectory, file);
+        private void diffProfiles(ObjectReader reader, ObjectId oldCommit, ObjectId newCommit, Set<String> profileIds) throws IOException {
+            if (oldCommit.equals(newCommit)) {
+                return;
+            }
+            try (RevWalk revWalk = new RevWalk(reader); TreeWalk treeWalk = new TreeWalk(reader)) {
+                treeWalk.addTree(revWalk.parseCommit(oldCommit).getTree());
+                treeWalk.addTree(revWalk.parseCommit(newCommit).getTree());
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(AndTreeFilter.create(PathFilter.create(profilesPath), TreeFilter.ANY_DIFF));
+                while (treeWalk.next()) {
+                    String path = treeWalk.getPathString().substring(profilesPath.length() + 1);
+                    int index = profileFolderEnd(path);
+                    if (index > 0) {
+                        profileIds.add(profileId(path, index));
                     }
                 }
             }
         }
 
-        private byte[] loadFileConfiguration(File file) throws IOException {
-            if (file.isDirectory()) {
-                // Not sure why we do this, but for directory pids, lets recurse...
-                StringBuilder buf = new StringBuilder();
-                File[] files = file.listFiles();
-                if (files != null) {
-                    for (File child : files) {
-                        String value = Files.toString(child);
-                        buf.append(String.format("%s = %s\n", child.getName(), value));
+        /**
+         * Reads the configurations of the profiles in the tree of the given commit
+         *
+         * @param profileIds the profiles to read or null for all of them
+         */
+        private Map<String, Map<String, byte[]>> readProfiles(ObjectReader reader, ObjectId commitId, Set<String> profileIds) throws IOException {
+            Map<String, Map<String, byte[]>> profiles = new LinkedHashMap<String, Map<String, byte[]>>();
+            if (profileIds != null && profileIds.isEmpty()) {
+                return profiles;
+            }
+            try (RevWalk revWalk = new RevWalk(reader); TreeWalk treeWalk = new TreeWalk(reader)) {
+                treeWalk.addTree(revWalk.parseCommit(commitId).getTree());
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(PathFilter.create(profilesPath));
+                while (treeWalk.next()) {
+                    if (FileMode.GITLINK.equals(treeWalk.getRawMode(0))) {
+                        continue;
+                    }
+                    String path = treeWalk.getPathString().substring(profilesPath.length() + 1);
+                    int index = profileFolderEnd(path);
+                    if (index < 0) {
+                        continue;
+                    }
+                    String profileId = profileId(path, index);
+                    if (profileIds != null && !profileIds.contains(profileId)) {
+                        continue;
                     }
+                    Map<String, byte[]> configurations = profiles.get(profileId);
+                    if (configurations == null) {
+                        configurations = new HashMap<String, byte[]>();
+                        profiles.put(profileId, configurations);
+                    }
+                    configurations.put(path.substring(index + 1), reader.open(treeWalk.getObjectId(0)).getBytes());
                 }
-                return buf.toString().getBytes();
-            } else if (file.exists() && file.isFile()) {
-                return Files.readBytes(file);
             }
-            return null;
+            return profiles;
+        }
+
+        /**
+         * Returns the index of the slash after the first directory with the profile folder suffix on the given
+         * path below the profiles directory or -1 if the path is not inside a profile directory
+         */
+        private int profileFolderEnd(String path) {
+            int start = 0;
+            int end;
+            while ((end = path.indexOf('/', start)) > 0) {
+                if (path.startsWith(Profiles.PROFILE_FOLDER_SUFFIX, end - Profiles.PROFILE_FOLDER_SUFFIX.length())) {
+                    return end;
+                }
+                start = end + 1;
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the identity of the profile in the directory ending at the given index, which is made of the
+         * names of the directories leading to it, so "foo/bar.profile/baz.properties" belongs to "foo-bar"
+         */
+        private String profileId(String path, int end) {
+            return path.substring(0, end - Profiles.PROFILE_FOLDER_SUFFIX.length()).replace('/', '-');
         }
     }
 
@@ -44,6 +44,9 @@ import static io.fabric8.common.util.Files.recursiveDelete;
 
 public class GitDataStoreImplTestSupport {
 
+    // the factory can only be set once per JVM
+    private static boolean urlStreamHandlerFactorySet;
+
     protected String zkURL;
     private CuratorFramework curator;
     private NIOServerCnxnFactory cnxnFactory;
@@ -52,7 +55,12 @@ public class GitDataStoreImplTestSupport {
     public void init() throws Exception {
         int port = findFreePort();
 
-        URL.setURLStreamHandlerFactory(new CustomURLStreamHandlerFactory());
+        synchronized (GitDataStoreImplTestSupport.class) {
+            if (!urlStreamHandlerFactorySet) {
+                URL.setURLStreamHandlerFactory(new CustomURLStreamHandlerFactory());
+                urlStreamHandlerFactorySet = true;
+            }
+        }
 
         zkURL = "localhost:" + port;
         curator = CuratorFrameworkFactory.builder()
@@ -0,0 +1,151 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.git.internal;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.fabric8.api.LockHandle;
+import io.fabric8.api.Profile;
+import io.fabric8.api.ProfileBuilder;
+import io.fabric8.api.ProfileChangeListener;
+import io.fabric8.api.Version;
+import io.fabric8.common.util.Files;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the loading of the versions and the refreshing of the cached ones, which reads again only the changed profiles.
+ */
+public class GitDataStoreImplVersionCacheIT extends GitDataStoreImplTestSupport {
+
+    private static final String VERSION = "1.0";
+
+    private GitDataStoreImpl gitDataStore;
+    private final Map<String, Set<String>> changes = new ConcurrentHashMap<String, Set<String>>();
+
+    @Before
+    public void setUp() throws Exception {
+        gitDataStore = createGitDataStore();
+        File profileDir = new File(projetDirectory(), "../fabric8-karaf/src/main/resources/distro/fabric/import");
+        gitDataStore.importFromFileSystem(profileDir.getCanonicalPath());
+        gitDataStore.trackProfiles(new ProfileChangeListener() {
+            @Override
+            public void profilesChanged(String versionId, Set<String> profileIds) {
+                changes.put(versionId, profileIds);
+            }
+        });
+    }
+
+    @Test
+    public void unchangedProfilesAreReusedAfterACommit() throws Exception {
+        Version before = gitDataStore.getRequiredVersion(VERSION);
+        changes.clear();
+
+        Profile profile = ProfileBuilder.Factory.createFrom(before.getRequiredProfile("default"))
+                .addConfiguration("io.fabric8.test", "foo", "bar")
+                .getProfile();
+        gitDataStore.updateProfile(profile);
+
+        Version after = gitDataStore.getRequiredVersion(VERSION);
+        assertThat(after.getRequiredProfile("default").getConfiguration("io.fabric8.test").get("foo"), equalTo("bar"));
+        assertReloaded(before, after, "default");
+    }
+
+    @Test
+    public void unchangedProfilesAreReusedAfterAReceivedPush() throws Exception {
+        Version before = gitDataStore.getRequiredVersion(VERSION);
+        changes.clear();
+
+        // another container pushes a change of a profile to the branch of the version
+        LockHandle writeLock = gitDataStore.aquireWriteLock();
+        try {
+            Git git = gitDataStore.getGit();
+            GitHelpers.checkoutBranch(git, VERSION);
+            File file = new File(GitHelpers.getProfileDirectory(git, "default"), "io.fabric8.test.properties");
+            Files.writeToFile(file, "foo = baz\n".getBytes("UTF-8"));
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("Pushed change").call();
+        } finally {
+            writeLock.unlock();
+        }
+        gitDataStore.new GitDataStoreListener().onReceivePack();
+        // the versions are refreshed in the background, and the listeners are called once it is done
+        for (int i = 0; i < 100 && changes.isEmpty(); i++) {
+            Thread.sleep(100);
+        }
+
+        Version after = gitDataStore.getRequiredVersion(VERSION);
+        assertThat(after.getRequiredProfile("default").getConfiguration("io.fabric8.test").get("foo"), equalTo("baz"));
+        assertReloaded(before, after, "default");
+    }
+
+    @Test
+    public void versionsAreLoadedFromTheRemoteBranch() throws Exception {
+        gitDataStore.createVersion(VERSION, "1.1", Collections.singletonMap("foo", "bar"));
+
+        // the branch of the version was fetched but not created locally
+        ObjectId commit;
+        LockHandle writeLock = gitDataStore.aquireWriteLock();
+        try {
+            Git git = gitDataStore.getGit();
+            GitHelpers.checkoutBranch(git, GitHelpers.MASTER_BRANCH);
+            commit = git.getRepository().getRef("refs/heads/1.1").getObjectId();
+            RefUpdate update = git.getRepository().updateRef("refs/remotes/origin/1.1");
+            update.setNewObjectId(commit);
+            update.update();
+            git.branchDelete().setBranchNames("1.1").setForce(true).call();
+        } finally {
+            writeLock.unlock();
+        }
+
+        Version version;
+        LockHandle readLock = gitDataStore.aquireReadLock();
+        try {
+            version = gitDataStore.new VersionCacheLoader().load("1.1");
+        } finally {
+            readLock.unlock();
+        }
+        assertThat(version.getRevision(), equalTo(commit.getName()));
+        assertThat(version.getAttributes().get("foo"), equalTo("bar"));
+        assertThat(version.getProfileIds(), equalTo(gitDataStore.getRequiredVersion(VERSION).getProfileIds()));
+    }
+
+    private void assertReloaded(Version before, Version after, String profileId) {
+        assertThat(after, not(sameInstance(before)));
+        assertThat(after.getProfileIds(), equalTo(before.getProfileIds()));
+        for (Profile profile : before.getProfiles()) {
+            if (profile.getId().equals(profileId)) {
+                assertThat(after.getRequiredProfile(profileId), not(sameInstance(profile)));
+            } else {
+                assertThat(after.getRequiredProfile(profile.getId()), sameInstance(profile));
+            }
+        }
+        assertThat(changes, equalTo(Collections.singletonMap(VERSION, Collections.singleton(profileId))));
+    }
+
+}
@@ -34,6 +34,35 @@ class EventOperation implements Operation
         cache.callListeners(event);
     }
 
+    @Override
+    public boolean equals(Object o)
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() )
+        {
+            return false;
+        }
+
+        EventOperation that = (EventOperation)o;
+
+        //noinspection RedundantIfStatement
+        if ( event != that.event )
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return event.hashCode();
+    }
+
     @Override
     public String toString()
     {
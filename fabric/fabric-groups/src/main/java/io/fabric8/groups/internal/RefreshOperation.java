@@ -26,6 +26,11 @@ class RefreshOperation implements Operation
         this.mode = mode;
     }
 
+    ZooKeeperGroup.RefreshMode getMode()
+    {
+        return mode;
+    }
+
     @Override
     public void invoke() throws Exception
     {
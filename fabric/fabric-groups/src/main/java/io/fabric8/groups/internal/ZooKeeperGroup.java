@@ -27,6 +27,8 @@ import com.google.common.collect.Sets;
 import io.fabric8.utils.NamedThreadFactory;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.listen.ListenerContainer;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
@@ -51,12 +53,14 @@ import java.io.InterruptedIOException;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * <p>A utility that attempts to keep all data from all children of a ZK path locally cached. This class
@@ -78,7 +82,10 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     private final String path;
     private final ExecutorService executorService;
     private final EnsurePath ensurePath;
-    private final BlockingQueue<Operation> operations = new LinkedBlockingQueue<Operation>();
+    @VisibleForTesting
+    final BlockingQueue<Operation> operations = new LinkedBlockingQueue<Operation>();
+    // the operations waiting in the queue, an operation is not queued again until it is taken from the queue
+    private final Set<Operation> queuedOperations = Sets.newConcurrentHashSet();
     private final ListenerContainer<GroupListener<T>> listeners = new ListenerContainer<GroupListener<T>>();
     protected final ConcurrentMap<String, ChildData<T>> currentData = Maps.newConcurrentMap();
     private final AtomicBoolean started = new AtomicBoolean();
@@ -491,6 +498,40 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         applyNewData(fullPath, KeeperException.Code.OK.intValue(), stat, data);
     }
 
+    /**
+     * Gets the data of the given nodes with pipelined background requests, so that the requests do not wait
+     * for each other, and waits for all of them to complete
+     */
+    void getDataAndStat(Collection<String> fullPaths) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(fullPaths.size());
+        final AtomicReference<KeeperException> failure = new AtomicReference<KeeperException>();
+        for (final String fullPath : fullPaths) {
+            client.getData().usingWatcher(dataWatcher).inBackground(new BackgroundCallback() {
+                @Override
+                public void processResult(CuratorFramework client, CuratorEvent event) throws Exception {
+                    try {
+                        int resultCode = event.getResultCode();
+                        if (resultCode == KeeperException.Code.OK.intValue()) {
+                            applyNewData(fullPath, resultCode, event.getStat(), event.getData());
+                        } else if (resultCode != KeeperException.Code.NONODE.intValue()) {
+                            failure.compareAndSet(null, KeeperException.create(KeeperException.Code.get(resultCode), fullPath));
+                        }
+                    } catch (Exception e) {
+                        handleException(e);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).forPath(fullPath);
+        }
+        if (!latch.await(client.getZookeeperClient().getConnectionTimeoutMs(), TimeUnit.MILLISECONDS)) {
+            throw KeeperException.create(KeeperException.Code.OPERATIONTIMEOUT, path);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
     /**
      * Default behavior is just to log the exception
      *
@@ -564,15 +605,15 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
             remove(fullPath);
         }
 
-        for (String name : children) {
-            String fullPath = ZKPaths.makePath(path, name);
-
+        List<String> changedPaths = new ArrayList<String>();
+        for (String fullPath : fullPaths) {
             if ((mode == RefreshMode.FORCE_GET_DATA_AND_STAT) || !currentData.containsKey(fullPath)) {
-                try {
-                    getDataAndStat(fullPath);
-                } catch (KeeperException.NoNodeException ignore) {}
+                changedPaths.add(fullPath);
             }
         }
+        if (!changedPaths.isEmpty()) {
+            getDataAndStat(changedPaths);
+        }
     }
 
     private void applyNewData(String fullPath, int resultCode, Stat stat, byte[] bytes) {
@@ -589,7 +630,12 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     private void mainLoop() {
         while (started.get() && !Thread.currentThread().isInterrupted()) {
             try {
-                operations.take().invoke();
+                Operation operation = operations.take();
+                queuedOperations.remove(operation);
+                if (operation instanceof RefreshOperation) {
+                    operation = coalesceRefreshes((RefreshOperation) operation);
+                }
+                operation.invoke();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
@@ -599,6 +645,21 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
         }
     }
 
+    /**
+     * Takes the refreshes which follow the given one from the queue, as a single refresh gets the same children.
+     * The data of all the children is got if any of them has to.
+     */
+    private RefreshOperation coalesceRefreshes(RefreshOperation refresh) {
+        while (operations.peek() instanceof RefreshOperation) {
+            RefreshOperation next = (RefreshOperation) operations.poll();
+            queuedOperations.remove(next);
+            if (next.getMode() == RefreshMode.FORCE_GET_DATA_AND_STAT) {
+                refresh = next;
+            }
+        }
+        return refresh;
+    }
+
     private byte[] encode(T state) {
         try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -618,10 +679,11 @@ public class ZooKeeperGroup<T extends NodeState> implements Group<T> {
     }
 
     private void offerOperation(Operation operation) {
-        if (!operations.contains(operation)) {
+        // the equal refreshes, data gets and events are coalesced while they wait in the queue, so that the
+        // listeners are called once when the data of many children changes
+        if (queuedOperations.add(operation)) {
             operations.offer(operation);
         }
-//        operations.remove(operation);   // avoids herding for refresh operations
     }
 
     public static <T> Map<String, T> members(ObjectMapper mapper, CuratorFramework curator, String path, Class<T> clazz) throws Exception {
@@ -229,4 +229,19 @@ public class ZooKeeperGroupTest {
         assertThat(slaves.get(1).getContainer(), equalTo("container3"));
     }
 
+    @Test
+    public void testQueuedOperationsAreCoalesced() throws Exception {
+        putChildData(group, PATH + "/001", "container1");
+        putChildData(group, PATH + "/002", "container2");
+        putChildData(group, PATH + "/003", "container3");
+
+        group.remove(PATH + "/001");
+        group.remove(PATH + "/002");
+        group.remove(PATH + "/003");
+        assertThat(group.operations.size(), equalTo(1));
+
+        group.clearAndRefresh();
+        group.clearAndRefresh();
+        assertThat(group.operations.size(), equalTo(2));
+    }
 }
@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven.proxy.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache whose entries expire some time after they are added. When the cache is full the oldest entries
+ * are evicted first.
+ */
+class ExpiringCache<V> {
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>();
+    private volatile long timeToLive;
+
+    /**
+     * @param timeToLive the time in milliseconds the entries are kept, the cache is disabled if zero or less
+     * @param maxEntries the maximum number of entries
+     */
+    ExpiringCache(long timeToLive, int maxEntries) {
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+    }
+
+    long getTimeToLive() {
+        return timeToLive;
+    }
+
+    void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+        if (timeToLive <= 0) {
+            clear();
+        }
+    }
+
+    synchronized V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiry - System.currentTimeMillis() <= 0) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    synchronized void put(String key, V value) {
+        long ttl = timeToLive;
+        if (ttl <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // removed first so that the entries stay in the order they expire
+        entries.remove(key);
+        entries.put(key, new Entry<>(value, now + ttl));
+        if (entries.size() > maxEntries) {
+            Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext() && entries.size() > maxEntries) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiry;
+
+        Entry(V value, long expiry) {
+            this.value = value;
+            this.expiry = expiry;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven.proxy.impl;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.fabric8.common.util.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a file to an asynchronous response without blocking, answering the conditional and range requests.
+ * <p/>
+ * When the output stream of the container can write {@link ByteBuffer}s, as the one of Jetty can, the file is
+ * written from memory mapped regions so that its content is not copied to the heap. As the mapped regions are only
+ * unmapped when they are garbage collected, a limited number of responses are written from them at a time and the
+ * other ones, like the responses of the containers which cannot write {@link ByteBuffer}s, are read into pooled
+ * buffers, as the servlet API only writes arrays.
+ */
+class FileSender implements WriteListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSender.class);
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final int MAPPED_REGION_SIZE = 16 * 1024 * 1024;
+    static final int MAX_MAPPED_RESPONSES = 16;
+
+    private static final ConcurrentLinkedQueue<byte[]> BUFFERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED_BUFFERS = new AtomicInteger();
+    private static final AtomicInteger MAPPED_RESPONSES = new AtomicInteger();
+    // the write(ByteBuffer) method by class of output stream, or false if there is none
+    private static final ConcurrentMap<Class<?>, Object> BYTE_BUFFER_WRITES = new ConcurrentHashMap<>();
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream output;
+    private final FileChannel channel;
+    private final Method byteBufferWrite;
+    private final long end;
+    private long position;
+    private byte[] buffer;
+    // whether the response is one of the ones written from mapped regions
+    private boolean mapped;
+
+    private FileSender(AsyncContext asyncContext, ServletOutputStream output, FileChannel channel, long start, long end) {
+        this.asyncContext = asyncContext;
+        this.output = output;
+        this.channel = channel;
+        this.byteBufferWrite = getByteBufferWrite(output.getClass());
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * Answers a request for a file, the async context is completed once the file is written
+     */
+    static void send(HttpServletRequest request, HttpServletResponse response, AsyncContext asyncContext, File file) throws IOException {
+        long length = file.length();
+        // the dates of the headers are in seconds
+        long lastModified = file.lastModified() / 1000 * 1000;
+        String etag = getETag(file);
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Accept-Ranges", "bytes");
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            asyncContext.complete();
+            return;
+        }
+
+        long start = 0;
+        long end = length;
+        long[] range = isRangeValid(request, etag, lastModified) ? parseRange(request.getHeader("Range"), length) : null;
+        if (range != null && range.length == 0) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader("Content-Range", "bytes */" + length);
+            asyncContext.complete();
+            return;
+        } else if (range != null) {
+            start = range[0];
+            end = range[1] + 1;
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + start + "-" + range[1] + "/" + length);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+        response.setContentLengthLong(end - start);
+
+        if (!"GET".equals(request.getMethod()) || start == end) {
+            asyncContext.complete();
+            return;
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            FileSender sender = new FileSender(asyncContext, response.getOutputStream(), channel, start, end);
+            sender.output.setWriteListener(sender);
+        } catch (IOException | RuntimeException e) {
+            Closeables.closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * The entity tag of a file, from its length and modification time
+     */
+    static String getETag(File file) {
+        return "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified() / 1000) + "\"";
+    }
+
+    static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag);
+        }
+        long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * Checks the If-Range header, the range is only sent if the file has not changed
+     */
+    static boolean isRangeValid(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        return getDateHeader(request, "If-Range") == lastModified;
+    }
+
+    /**
+     * Parses a Range header of a single range of bytes
+     *
+     * @return the first and last positions of the range, an empty array if the range is not satisfiable, or null
+     *         if the whole file is to be sent
+     */
+    static long[] parseRange(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            // multiple ranges are not supported, the whole file is sent instead
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long first;
+            long last;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0 || length == 0) {
+                    return new long[0];
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+                if (last < first) {
+                    return null;
+                } else if (first >= length) {
+                    return new long[0];
+                }
+                last = Math.min(last, length - 1);
+            }
+            return new long[] { first, last };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long getDateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        try {
+            while (output.isReady()) {
+                if (position >= end) {
+                    close(true);
+                    asyncContext.complete();
+                    return;
+                }
+                position += write();
+            }
+        } catch (IOException | RuntimeException e) {
+            close(false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOGGER.debug("Error while sending artifact: {}", t.getMessage(), t);
+        close(false);
+        asyncContext.complete();
+    }
+
+    private int write() throws IOException {
+        if (byteBufferWrite != null && (mapped || (mapped = acquireMappedResponse()))) {
+            // the previous region was written as the output is ready again
+            int size = (int) Math.min(end - position, MAPPED_REGION_SIZE);
+            try {
+                byteBufferWrite.invoke(output, channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            }
+            return size;
+        }
+        if (buffer == null) {
+            buffer = acquireBuffer();
+        }
+        int read = channel.read(ByteBuffer.wrap(buffer, 0, (int) Math.min(buffer.length, end - position)), position);
+        if (read < 0) {
+            throw new EOFException("Unexpected end of file at " + position);
+        }
+        output.write(buffer, 0, read);
+        return read;
+    }
+
+    /**
+     * @param released whether the container is done with the buffer, it is dropped rather than pooled otherwise
+     */
+    private void close(boolean released) {
+        Closeables.closeQuietly(channel);
+        if (mapped) {
+            MAPPED_RESPONSES.decrementAndGet();
+            mapped = false;
+        }
+        if (buffer != null && released) {
+            releaseBuffer(buffer);
+        }
+        buffer = null;
+    }
+
+    static byte[] acquireBuffer() {
+        byte[] buffer = BUFFERS.poll();
+        if (buffer == null) {
+            return new byte[BUFFER_SIZE];
+        }
+        POOLED_BUFFERS.decrementAndGet();
+        return buffer;
+    }
+
+    static void releaseBuffer(byte[] buffer) {
+        if (POOLED_BUFFERS.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            BUFFERS.offer(buffer);
+        } else {
+            POOLED_BUFFERS.decrementAndGet();
+        }
+    }
+
+    private static boolean acquireMappedResponse() {
+        if (MAPPED_RESPONSES.incrementAndGet() <= MAX_MAPPED_RESPONSES) {
+            return true;
+        }
+        MAPPED_RESPONSES.decrementAndGet();
+        return false;
+    }
+
+    static int getMappedResponses() {
+        return MAPPED_RESPONSES.get();
+    }
+
+    private static Method getByteBufferWrite(Class<?> type) {
+        Object method = BYTE_BUFFER_WRITES.get(type);
+        if (method == null) {
+            try {
+                method = type.getMethod("write", ByteBuffer.class);
+                if (!Modifier.isPublic(((Method) method).getDeclaringClass().getModifiers())) {
+                    method = Boolean.FALSE;
+                }
+            } catch (NoSuchMethodException e) {
+                method = Boolean.FALSE;
+            }
+            BYTE_BUFFER_WRITES.putIfAbsent(type, method);
+        }
+        return method instanceof Method ? (Method) method : null;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven.proxy.impl;
+
+import java.util.Map;
+
+/**
+ * JMX MBean API for the caches and statistics of the Maven download proxy
+ */
+public interface MavenDownloadProxyMBean {
+
+    /**
+     * The hits, misses, errors and latencies in milliseconds by repository. The artifacts found in the remote
+     * repositories are counted together, as the resolver does not tell which of them had the artifact.
+     */
+    Map<String, Map<String, Object>> getRepositoryStatistics();
+
+    /**
+     * The number of requests which waited for the resolution of the same path by another request
+     */
+    long getCoalescedRequests();
+
+    /**
+     * The number of requests answered from the cache of the artifacts and metadata which were not found
+     */
+    long getNotFoundCacheHits();
+
+    int getNotFoundCacheSize();
+
+    /**
+     * The number of requests answered from the cache of the merged metadata
+     */
+    long getMetadataCacheHits();
+
+    int getMetadataCacheSize();
+
+    /**
+     * Clears the cached not found results and metadata
+     */
+    void clearCaches();
+
+    /**
+     * Resets the statistics
+     */
+    void resetStatistics();
+}
@@ -16,33 +16,35 @@
 package io.fabric8.maven.proxy.impl;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousFileChannel;
-import java.nio.channels.CompletionHandler;
-import java.nio.file.StandardOpenOption;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.AsyncContext;
-import javax.servlet.AsyncEvent;
-import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import io.fabric8.api.FabricConstants;
 import io.fabric8.api.RuntimeProperties;
-import io.fabric8.common.util.Closeables;
 import io.fabric8.deployer.ProjectDeployer;
 import io.fabric8.maven.MavenResolver;
 import io.fabric8.utils.ThreadFactory;
 
-public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
+public class MavenDownloadProxyServlet extends MavenProxyServletSupport implements MavenDownloadProxyMBean {
 
     private static final int ASYNC_STARTED = 0;
     // flag set when async timeout is found
@@ -50,11 +52,20 @@ public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
     // flag set when we got the result from Aether artifact resolution
     private static final int ASYNC_ARTIFACT_READY = 1 << 1;
 
+    private static final long CHECKSUM_CACHE_TIMEOUT = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_CACHED_CHECKSUMS = 1000;
+
+    // the resolutions in progress by path, the requests for the same path share a single resolution
     private final ConcurrentMap<String, ArtifactDownloadFuture> requestMap = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    // the checksums by algorithm, path and entity tag of the artifact
+    private final ExpiringCache<String> checksumCache = new ExpiringCache<>(CHECKSUM_CACHE_TIMEOUT, MAX_CACHED_CHECKSUMS);
     private final int threadMaximumPoolSize;
     // timeout used for async context timeout - based on timeout configuration for AetherBasedResolver
     private int timeout;
     private ThreadPoolExecutor executorService;
+    // times out the resolutions
+    private ScheduledExecutorService scheduledExecutorService;
 
     public MavenDownloadProxyServlet(MavenResolver resolver, RuntimeProperties runtimeProperties, ProjectDeployer projectDeployer, int threadMaximumPoolSize, int timeout) {
         this(resolver, runtimeProperties, projectDeployer, null, threadMaximumPoolSize, timeout);
@@ -73,6 +84,9 @@ public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
         int nbThreads = threadMaximumPoolSize > 0 ? threadMaximumPoolSize : 8;
         executorService = new ThreadPoolExecutor(0, nbThreads, 60, TimeUnit.SECONDS,
                 new LinkedBlockingQueue<Runnable>(), new ThreadFactory("MavenDownloadProxyServlet"));
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory("MavenDownloadProxyServlet-timeout"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduledExecutorService = scheduler;
 
         if (this.timeout <= 0) {
             // default
@@ -85,6 +99,9 @@ public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
 
     @Override
     public synchronized void stop() {
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.shutdownNow();
+        }
         if (executorService != null) {
             executorService.shutdown();
             try {
@@ -118,166 +135,96 @@ public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
         }
         final String path = tpath;
 
-        // state to help synchronize between async timeout handler and ArtifactDownloadFuture ready handler
+        // the checksums are computed from the artifact they are for, which is resolved once for all of them
+        final String algorithm = getChecksumAlgorithm(path);
+        final String artifactPath = algorithm != null ? path.substring(0, path.lastIndexOf('.')) : path;
+
+        // state to help synchronize between timeout task and ArtifactDownloadFuture ready handler
         final AtomicInteger timeoutOrReady = new AtomicInteger(ASYNC_STARTED);
 
         final AsyncContext asyncContext = req.startAsync();
+        // only the resolution is timed out, large artifacts may take longer to be written
+        asyncContext.setTimeout(0);
         // timeout higher than the one set in:
         // org.eclipse.aether.DefaultRepositorySystemSession.setConfigProperty("aether.connector.requestTimeout", N)
-        asyncContext.setTimeout(this.timeout);
-
-        asyncContext.addListener(new AsyncListener() {
-            @Override
-            public void onComplete(AsyncEvent event) throws IOException {
-            }
-
+        final ScheduledFuture<?> timeoutTask = scheduledExecutorService.schedule(new Runnable() {
             @Override
-            public void onTimeout(AsyncEvent event) throws IOException {
+            public void run() {
                 if (timeoutOrReady.compareAndSet(ASYNC_STARTED, ASYNC_TIMEOUT)) {
-                    LOGGER.warn("Timeout handling " + ((HttpServletRequest)event.getSuppliedRequest()).getRequestURI());
-                    ((HttpServletResponse)event.getAsyncContext().getResponse())
-                            .sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Async timeout when downloading Maven artifact");
-                    event.getAsyncContext().complete();
-                } else {
-                    LOGGER.debug("Timeout handling " + ((HttpServletRequest) event.getSuppliedRequest()).getRequestURI()
-                            + ", but download thread completed, continuing process of download.");
+                    LOGGER.warn("Timeout handling " + req.getRequestURI());
+                    try {
+                        resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Async timeout when downloading Maven artifact");
+                        asyncContext.complete();
+                    } catch (IOException | IllegalStateException e) {
+                        LOGGER.debug("Error while sending timeout: {}", e.getMessage(), e);
+                    }
                 }
             }
-
-            @Override
-            public void onError(AsyncEvent event) throws IOException {
-            }
-
-            @Override
-            public void onStartAsync(AsyncEvent event) throws IOException {
-            }
-        });
-
-        final AsynchronousFileChannel channel = (AsynchronousFileChannel) req.getAttribute(AsynchronousFileChannel.class.getName());
-        if (channel != null /*&& req.getDispatcherType() == DispatcherType.ASYNC*/) {
-            long size = (Long) req.getAttribute(AsynchronousFileChannel.class.getName() + ".size");
-            long pos = (Long) req.getAttribute(AsynchronousFileChannel.class.getName() + ".position");
-            int read = (Integer) req.getAttribute(AsynchronousFileChannel.class.getName() + ".read");
-            ByteBuffer buffer = (ByteBuffer) req.getAttribute(ByteBuffer.class.getName());
-            ByteBuffer secondBuffer = (ByteBuffer) req.getAttribute(ByteBuffer.class.getName() + ".second");
-            if (read > 0) {
-                pos += read;
-                if (pos < size) {
-                    req.setAttribute(AsynchronousFileChannel.class.getName() + ".position", pos);
-                    req.setAttribute(ByteBuffer.class.getName(), secondBuffer);
-                    req.setAttribute(ByteBuffer.class.getName() + ".second", buffer);
-                    channel.read(secondBuffer, pos, asyncContext, new CompletionHandler<Integer, AsyncContext>() {
-                        @Override
-                        public void completed(Integer result, AsyncContext attachment) {
-                            req.setAttribute(AsynchronousFileChannel.class.getName() + ".read", result);
-                            // dispatch again, buffers are switched
-                            attachment.dispatch();
-                        }
-
-                        @Override
-                        public void failed(Throwable exc, AsyncContext attachment) {
-                            Closeables.closeQuietly(channel);
-                            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                            attachment.complete();
+        }, timeout, TimeUnit.MILLISECONDS);
+
+        ArtifactDownloadFuture masterFuture;
+        while (true) {
+            final ArtifactDownloadFuture future = new ArtifactDownloadFuture(artifactPath);
+            masterFuture = requestMap.putIfAbsent(artifactPath, future);
+            if (masterFuture == null) {
+                masterFuture = future;
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            File file = download(artifactPath);
+                            future.setValue(file);
+                        } catch (Throwable t) {
+                            future.setValue(t);
                         }
-                    });
-                }
-                buffer.flip();
-                resp.getOutputStream().write(buffer.array(), 0, buffer.remaining());
-                resp.flushBuffer();
-                if (pos == size) {
-                    Closeables.closeQuietly(channel);
-                    asyncContext.complete();
-                }
-            } else {
-                Closeables.closeQuietly(channel);
-                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                asyncContext.complete();
-            }
-            return;
-        }
-
-        final ArtifactDownloadFuture future = new ArtifactDownloadFuture(path);
-        ArtifactDownloadFuture masterFuture = requestMap.putIfAbsent(path, future);
-        if (masterFuture == null) {
-            masterFuture = future;
-            masterFuture.lock();
-            executorService.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        File file = download(path);
-                        future.setValue(file);
-                    } catch (Throwable t) {
-                        future.setValue(t);
                     }
-                }
-            });
-        } else {
-            masterFuture.lock();
+                });
+                break;
+            } else if (masterFuture.lock()) {
+                coalescedRequests.incrementAndGet();
+                break;
+            }
+            // the resolution was released by all its requests meanwhile, its file may be gone already
+            requestMap.remove(artifactPath, masterFuture);
         }
         masterFuture.addListener(new FutureListener<ArtifactDownloadFuture>() {
             @Override
             public void operationComplete(ArtifactDownloadFuture future) {
+                timeoutTask.cancel(false);
+                if (!timeoutOrReady.compareAndSet(ASYNC_STARTED, ASYNC_ARTIFACT_READY)) {
+                    LOGGER.warn("Download thread completed, but asynchronous timeout occurred. Downloading interrupted.");
+                    future.release();
+                    return;
+                }
                 Object value = future.getValue();
-                if (value instanceof Throwable) {
-                    LOGGER.warn("Error while downloading artifact: {}", ((Throwable) value).getMessage(), value);
-                    resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                } else if (value instanceof File) {
-                    if (!timeoutOrReady.compareAndSet(ASYNC_STARTED, ASYNC_ARTIFACT_READY)) {
-                        LOGGER.warn("Download thread completed, but asynchronous timeout occurred. Downloading interrupted.");
-                    } else {
+                try {
+                    if (value instanceof File) {
                         File artifactFile = (File) value;
-                        AsynchronousFileChannel channel = null;
-                        try {
-                            channel = AsynchronousFileChannel.open(artifactFile.toPath(), StandardOpenOption.READ);
-                            LOGGER.info("Writing response for file : {}", path);
-                            resp.setStatus(HttpServletResponse.SC_OK);
+                        LOGGER.info("Writing response for file : {}", path);
+                        resp.setDateHeader("Date", System.currentTimeMillis());
+                        resp.setHeader("Connection", "close");
+                        resp.setHeader("Server", "MavenProxy Proxy/" + FabricConstants.FABRIC_VERSION);
+                        if (algorithm != null) {
+                            sendChecksum(req, resp, artifactFile, artifactPath, algorithm);
+                            asyncContext.complete();
+                        } else {
                             resp.setContentType("application/octet-stream");
-                            resp.setDateHeader("Date", System.currentTimeMillis());
-                            resp.setHeader("Connection", "close");
-                            resp.setHeader("Server", "MavenProxy Proxy/" + FabricConstants.FABRIC_VERSION);
-                            long size = artifactFile.length();
-                            if (size < Integer.MAX_VALUE) {
-                                resp.setContentLength((int) size);
-                            }
-                            if ("GET".equals(req.getMethod())) {
-                                // Store attributes and start reading
-                                req.setAttribute(AsynchronousFileChannel.class.getName(), channel);
-                                ByteBuffer buffer = ByteBuffer.allocate(1024 * 64);
-                                ByteBuffer secondBuffer = ByteBuffer.allocate(1024 * 64);
-                                req.setAttribute(ByteBuffer.class.getName(), secondBuffer);
-                                req.setAttribute(ByteBuffer.class.getName() + ".second", buffer);
-                                req.setAttribute(AsynchronousFileChannel.class.getName() + ".position", 0l);
-                                req.setAttribute(AsynchronousFileChannel.class.getName() + ".size", size);
-                                channel.read(secondBuffer, 0, asyncContext, new CompletionHandler<Integer, AsyncContext>() {
-                                    @Override
-                                    public void completed(Integer result, AsyncContext attachment) {
-                                        req.setAttribute(AsynchronousFileChannel.class.getName() + ".read", result);
-                                        attachment.dispatch();
-                                    }
-
-                                    @Override
-                                    public void failed(Throwable exc, AsyncContext attachment) {
-                                        resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                                        attachment.complete();
-                                    }
-                                });
-                            } else if ("HEAD".equals(req.getMethod())) {
-                                asyncContext.complete();
-                            }
-                            future.release();
-                            return;
-                        } catch (Exception e) {
-                            Closeables.closeQuietly(channel);
-                            LOGGER.warn("Error while sending artifact: {}", e.getMessage(), e);
-                            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                            // the file is opened before it is released, the sender completes the response
+                            FileSender.send(req, resp, asyncContext, artifactFile);
                         }
+                        return;
+                    } else if (value instanceof Throwable) {
+                        LOGGER.warn("Error while downloading artifact: {}", ((Throwable) value).getMessage(), value);
+                        resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                    } else {
+                        resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
                     }
-                } else {
-                    resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                } catch (Exception e) {
+                    LOGGER.warn("Error while sending artifact: {}", e.getMessage(), e);
+                    resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                } finally {
+                    future.release();
                 }
-                future.release();
                 try {
                     asyncContext.complete();
                 } catch (IllegalStateException e) {
@@ -287,22 +234,125 @@ public class MavenDownloadProxyServlet extends MavenProxyServletSupport {
         });
     }
 
+    /**
+     * The digest algorithm of the checksum file with the given path, or null if it is not a checksum file
+     */
+    static String getChecksumAlgorithm(String path) {
+        if (path.endsWith(".sha1")) {
+            return "SHA-1";
+        } else if (path.endsWith(".md5")) {
+            return "MD5";
+        }
+        return null;
+    }
+
+    private void sendChecksum(HttpServletRequest req, HttpServletResponse resp, File file, String path, String algorithm) throws IOException, NoSuchAlgorithmException {
+        // the entity tag of the file changes when the artifact does
+        String key = algorithm + ":" + path + ":" + FileSender.getETag(file);
+        String checksum = checksumCache.get(key);
+        if (checksum == null) {
+            checksum = checksum(file, algorithm);
+            checksumCache.put(key, checksum);
+        }
+        byte[] content = checksum.getBytes(StandardCharsets.US_ASCII);
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType("text/plain");
+        resp.setContentLength(content.length);
+        if ("GET".equals(req.getMethod())) {
+            resp.getOutputStream().write(content);
+        }
+    }
+
+    static String checksum(File file, String algorithm) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(algorithm);
+        byte[] buffer = FileSender.acquireBuffer();
+        try (FileInputStream is = new FileInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            FileSender.releaseBuffer(buffer);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getRepositoryStatistics() {
+        return super.getRepositoryStatistics();
+    }
+
+    @Override
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+
+    @Override
+    public long getNotFoundCacheHits() {
+        return notFoundCacheHits.get();
+    }
+
+    @Override
+    public int getNotFoundCacheSize() {
+        return notFoundCache.size();
+    }
+
+    @Override
+    public long getMetadataCacheHits() {
+        return metadataCacheHits.get();
+    }
+
+    @Override
+    public int getMetadataCacheSize() {
+        return metadataCache.size();
+    }
+
+    @Override
+    public void clearCaches() {
+        notFoundCache.clear();
+        metadataCache.clear();
+        checksumCache.clear();
+    }
+
+    @Override
+    public void resetStatistics() {
+        repositoryStatistics.clear();
+        coalescedRequests.set(0);
+        notFoundCacheHits.set(0);
+        metadataCacheHits.set(0);
+    }
+
     private class ArtifactDownloadFuture extends DefaultFuture<ArtifactDownloadFuture> {
 
-        private final AtomicInteger participants = new AtomicInteger();
+        // the request which creates the future takes part in it
+        private final AtomicInteger participants = new AtomicInteger(1);
         private final String path;
 
         private ArtifactDownloadFuture(String path) {
             this.path = path;
         }
 
-        public void lock() {
-            participants.incrementAndGet();
+        /**
+         * Takes part in the resolution, unless all the requests have released it already
+         */
+        public boolean lock() {
+            int count;
+            do {
+                count = participants.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!participants.compareAndSet(count, count + 1));
+            return true;
         }
 
         public void release() {
             if (participants.decrementAndGet() == 0) {
-                requestMap.remove(path);
+                requestMap.remove(path, this);
                 Object v = getValue();
                 if (v instanceof File) {
                     ((File) v).delete();
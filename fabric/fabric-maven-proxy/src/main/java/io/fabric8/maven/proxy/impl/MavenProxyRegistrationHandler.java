@@ -25,6 +25,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
 import io.fabric8.api.CuratorComplete;
 import io.fabric8.api.RuntimeProperties;
 import io.fabric8.api.jcip.GuardedBy;
@@ -32,6 +37,7 @@ import io.fabric8.api.jcip.ThreadSafe;
 import io.fabric8.api.scr.AbstractComponent;
 import io.fabric8.api.scr.Configurer;
 import io.fabric8.api.scr.ValidatingReference;
+import io.fabric8.common.util.JMXUtils;
 import io.fabric8.deployer.ProjectDeployer;
 import io.fabric8.maven.MavenResolver;
 import io.fabric8.maven.proxy.MavenProxy;
@@ -69,6 +75,15 @@ public final class MavenProxyRegistrationHandler extends AbstractComponent imple
 
     private static final String DEFAULT_LOCAL_REPOSITORY = System.getProperty("karaf.data") + File.separator + "maven" + File.separator + "proxy" + File.separator + "downloads";
 
+    private static ObjectName OBJECT_NAME;
+    static {
+        try {
+            OBJECT_NAME = new ObjectName("io.fabric8:type=MavenDownloadProxy");
+        } catch (MalformedObjectNameException e) {
+            // ignore
+        }
+    }
+
     @Reference(referenceInterface = Configurer.class)
     private final ValidatingReference<Configurer> configurer = new ValidatingReference<Configurer>();
     @Reference(referenceInterface = HttpService.class)
@@ -83,6 +98,8 @@ public final class MavenProxyRegistrationHandler extends AbstractComponent imple
     private final ValidatingReference<MavenResolver> mavenResolver = new ValidatingReference<>();
     @Reference(referenceInterface = ConfigurationAdmin.class)
     private final ValidatingReference<ConfigurationAdmin> configAdmin = new ValidatingReference<>();
+    @Reference(referenceInterface = MBeanServer.class, bind = "bindMBeanServer", unbind = "unbindMBeanServer")
+    private final ValidatingReference<MBeanServer> mbeanServer = new ValidatingReference<>();
 
     private final Map<String, Set<String>> registeredProxies;
 
@@ -102,6 +119,11 @@ public final class MavenProxyRegistrationHandler extends AbstractComponent imple
     @Property(name = "threadMaximumPoolSize", label = "Thread pool maximum size", description = "Maximum number of concurrent threads used for the DownloadMavenProxy servlet", intValue = 5)
     private int threadMaximumPoolSize;
 
+    @Property(name = "notFoundCacheTimeout", label = "Not found cache timeout", description = "The time in milliseconds the artifacts and metadata which could not be found are remembered by the DownloadMavenProxy servlet", longValue = MavenProxyServletSupport.DEFAULT_NOT_FOUND_CACHE_TIMEOUT)
+    private long notFoundCacheTimeout = MavenProxyServletSupport.DEFAULT_NOT_FOUND_CACHE_TIMEOUT;
+    @Property(name = "metadataCacheTimeout", label = "Metadata cache timeout", description = "The time in milliseconds the metadata is cached by the DownloadMavenProxy servlet", longValue = MavenProxyServletSupport.DEFAULT_METADATA_CACHE_TIMEOUT)
+    private long metadataCacheTimeout = MavenProxyServletSupport.DEFAULT_METADATA_CACHE_TIMEOUT;
+
     @Property(name = "upload", label = "Upload repository", description = "The path to hold uploaded artifacts", value = "${runtime.data}/data/maven/upload")
     private String uploadRepository;
 
@@ -140,7 +162,10 @@ public final class MavenProxyRegistrationHandler extends AbstractComponent imple
         }
 
         this.mavenDownloadProxyServlet = new MavenDownloadProxyServlet(mavenResolver.get(), runtimeProperties.get(), projectDeployer.get(), threadMaximumPoolSize, timeout);
+        this.mavenDownloadProxyServlet.setNotFoundCacheTimeout(notFoundCacheTimeout);
+        this.mavenDownloadProxyServlet.setMetadataCacheTimeout(metadataCacheTimeout);
         this.mavenDownloadProxyServlet.start();
+        JMXUtils.registerMBean(new StandardMBean(mavenDownloadProxyServlet, MavenDownloadProxyMBean.class), mbeanServer.get(), OBJECT_NAME);
         this.mavenUploadProxyServlet = new MavenUploadProxyServlet(mavenResolver.get(), runtimeProperties.get(), projectDeployer.get(), new File(uploadRepository), timeout);
         this.mavenUploadProxyServlet.start();
         try {
@@ -157,6 +182,11 @@ public final class MavenProxyRegistrationHandler extends AbstractComponent imple
     @Deactivate
     void destroy() {
         deactivateComponent();
+        try {
+            JMXUtils.unregisterMBean(mbeanServer.get(), OBJECT_NAME);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to unregister the maven download proxy MBean: " + e.getMessage());
+        }
         if (mavenDownloadProxyServlet != null) {
             mavenDownloadProxyServlet.stop();
         }
@@ -286,4 +316,12 @@ public final class MavenProxyRegistrationHandler extends AbstractComponent imple
         this.configAdmin.unbind(configAdmin);
     }
 
+    void bindMBeanServer(MBeanServer mbeanServer) {
+        this.mbeanServer.bind(mbeanServer);
+    }
+
+    void unbindMBeanServer(MBeanServer mbeanServer) {
+        this.mbeanServer.unbind(mbeanServer);
+    }
+
 }
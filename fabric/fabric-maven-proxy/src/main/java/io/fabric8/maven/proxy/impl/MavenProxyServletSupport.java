@@ -25,9 +25,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
@@ -58,8 +63,13 @@ import org.eclipse.aether.metadata.DefaultMetadata;
 import org.eclipse.aether.metadata.Metadata;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.aether.resolution.MetadataRequest;
 import org.eclipse.aether.resolution.MetadataResult;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.ArtifactTransferException;
+import org.eclipse.aether.transfer.MetadataNotFoundException;
 import org.eclipse.aether.util.version.GenericVersionScheme;
 import org.eclipse.aether.version.VersionConstraint;
 import org.slf4j.Logger;
@@ -103,6 +113,13 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
 
     protected static final String LOCATION_HEADER = "X-Location";
 
+    public static final long DEFAULT_NOT_FOUND_CACHE_TIMEOUT = 60000L;
+    public static final long DEFAULT_METADATA_CACHE_TIMEOUT = 10000L;
+    private static final int MAX_CACHED_ENTRIES = 10000;
+
+    // the name of the statistics of the artifacts found in the remote repositories
+    static final String REMOTE_REPOSITORIES = "remote";
+
     protected List<RemoteRepository> repositories;
     protected RepositorySystem system;
     protected RepositorySystemSession session;
@@ -116,6 +133,13 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
 
     final MavenResolver resolver;
 
+    // the paths which were not found and the merged metadata, only used when proxying
+    final ExpiringCache<Boolean> notFoundCache = new ExpiringCache<>(DEFAULT_NOT_FOUND_CACHE_TIMEOUT, MAX_CACHED_ENTRIES);
+    final ExpiringCache<byte[]> metadataCache = new ExpiringCache<>(DEFAULT_METADATA_CACHE_TIMEOUT, MAX_CACHED_ENTRIES);
+    final AtomicLong notFoundCacheHits = new AtomicLong();
+    final AtomicLong metadataCacheHits = new AtomicLong();
+    final ConcurrentMap<String, RepositoryStatistics> repositoryStatistics = new ConcurrentHashMap<>();
+
     public MavenProxyServletSupport(MavenResolver resolver, RuntimeProperties runtimeProperties, ProjectDeployer projectDeployer, File uploadRepository) {
         this.resolver = resolver;
         this.runtimeProperties = runtimeProperties;
@@ -141,12 +165,51 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
     public synchronized void stop() {
     }
 
+    /**
+     * Sets how long the artifacts and metadata which were not found are remembered
+     *
+     * @param timeout the time in milliseconds, zero to disable the cache
+     */
+    public void setNotFoundCacheTimeout(long timeout) {
+        notFoundCache.setTimeToLive(timeout);
+    }
+
+    /**
+     * Sets how long the merged metadata is cached
+     *
+     * @param timeout the time in milliseconds, zero to disable the cache
+     */
+    public void setMetadataCacheTimeout(long timeout) {
+        metadataCache.setTimeToLive(timeout);
+    }
+
     @Override
     public File download(String path) throws InvalidMavenArtifactRequest {
         if (path == null) {
             throw new InvalidMavenArtifactRequest();
         }
 
+        if (!isHostedRepository()) {
+            if (notFoundCache.get(path) != null) {
+                notFoundCacheHits.incrementAndGet();
+                LOGGER.debug("Not found in cache : {}", path);
+                return null;
+            }
+            byte[] cachedMetadata = metadataCache.get(path);
+            if (cachedMetadata != null) {
+                metadataCacheHits.incrementAndGet();
+                LOGGER.debug("Getting metadata from cache : {}", path);
+                try {
+                    File tmpFile = Files.createTempFile(runtimeProperties.getDataPath());
+                    Files.writeToFile(tmpFile, cachedMetadata);
+                    return tmpFile;
+                } catch (IOException e) {
+                    LOGGER.warn(String.format("Could not write cached metadata : %s due to %s", path, e.getMessage()), e);
+                    return null;
+                }
+            }
+        }
+
         Matcher artifactMatcher = ARTIFACT_REQUEST_URL_REGEX.matcher(path);
         Matcher metdataGaMatcher = ARTIFACT_GA_METADATA_URL_REGEX.matcher(path);
 
@@ -171,6 +234,7 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
                     if (hostedMetadata.isFile()) {
                         File tmpFile = Files.createTempFile(runtimeProperties.getDataPath());
                         Files.copy(hostedMetadata, tmpFile);
+                        tmpFile.setLastModified(hostedMetadata.lastModified());
                         return tmpFile;
                     }
 
@@ -191,11 +255,14 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
                         localSession.setLocalRepositoryManager(system.newLocalRepositoryManager(localSession, repo));
 
                         LOGGER.debug("Getting metadata from default repository : {}", repo.getBasedir());
+                        long start = System.nanoTime();
                         List<MetadataResult> results = system.resolveMetadata(localSession,
                                 Collections.singletonList(new MetadataRequest(metadata, null, null)));
 
                         File file = processMetadataResults(metadata, results);
+                        record(repo.getBasedir().getPath(), file != null, false, start);
                         if (file != null) {
+                            cacheMetadata(path, file);
                             return file;
                         }
                     }
@@ -211,12 +278,18 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
                 MetadataRequest request = new MetadataRequest(metadata, null, null);
                 request.setFavorLocalRepository(true);
                 requests.add(request);
+                long start = System.nanoTime();
                 List<MetadataResult> results = system.resolveMetadata(session, requests);
+                recordMetadataResults(results, start);
 
                 File result = processMetadataResults(metadata, results);
                 if (result != null) {
+                    cacheMetadata(path, result);
                     return result;
                 }
+                if (isNotFound(results)) {
+                    notFoundCache.put(path, Boolean.TRUE);
+                }
             } catch (Exception e) {
                 LOGGER.warn(String.format("Could not find metadata : %s due to %s", metadata, e.getMessage()), e);
                 return null;
@@ -226,16 +299,24 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
         } else if (artifactMatcher.matches()) {
             LOGGER.info("Received request for maven artifact : {}", path);
             Artifact artifact = convertPathToArtifact(path);
+            long start = System.nanoTime();
             try {
                 if (artifact.getExtension() != null &&
                         (artifact.getExtension().endsWith(".sha1") || artifact.getExtension().endsWith(".md5"))) {
                     return null;
                 }
                 File download = resolver.resolveFile(artifact);
+                record(getRepositoryName(download), true, false, start);
                 File tmpFile = Files.createTempFile(runtimeProperties.getDataPath());
                 Files.copy(download, tmpFile);
+                // keeps the entity tag of the artifact the same across requests
+                tmpFile.setLastModified(download.lastModified());
                 return tmpFile;
             } catch (Exception e) {
+                recordArtifactFailures(e, start);
+                if (!isHostedRepository() && isNotFound(e)) {
+                    notFoundCache.put(path, Boolean.TRUE);
+                }
                 LOGGER.warn(String.format("Could not find artifact : %s due to %s", artifact, e.getMessage()), e);
                 return null;
             }
@@ -243,6 +324,121 @@ public class MavenProxyServletSupport extends HttpServlet implements MavenProxy
         return null;
     }
 
+    private void cacheMetadata(String path, File file) {
+        try {
+            metadataCache.put(path, Files.readBytes(file));
+        } catch (IOException e) {
+            LOGGER.debug("Could not cache metadata : " + path, e);
+        }
+    }
+
+    /**
+     * Gets the name of the repository an artifact was resolved from, the default repositories are told apart
+     * by their location
+     */
+    private String getRepositoryName(File file) {
+        String location = file.getAbsolutePath();
+        for (LocalRepository repo : resolver.getDefaultRepositories()) {
+            if (location.startsWith(repo.getBasedir().getAbsolutePath() + File.separator)) {
+                return repo.getBasedir().getPath();
+            }
+        }
+        return REMOTE_REPOSITORIES;
+    }
+
+    private void recordMetadataResults(List<MetadataResult> results, long start) {
+        for (MetadataResult result : results) {
+            RemoteRepository repository = result.getRequest().getRepository();
+            if (repository != null) {
+                boolean found = result.getMetadata() != null && result.getMetadata().getFile() != null;
+                boolean error = result.getException() != null && !(result.getException() instanceof MetadataNotFoundException);
+                record(repository.getId(), found, error, start);
+            }
+        }
+    }
+
+    /**
+     * Whether all the repositories answered that they do not have the artifact. A repository which could not
+     * be reached or failed may have it, so the artifact must not be remembered as not found.
+     */
+    private boolean isNotFound(Exception exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ArtifactResolutionException) {
+                List<ArtifactResult> results = ((ArtifactResolutionException) cause).getResults();
+                if (results == null || results.isEmpty()) {
+                    return false;
+                }
+                for (ArtifactResult result : results) {
+                    if (result.getExceptions().isEmpty()) {
+                        return false;
+                    }
+                    for (Exception e : result.getExceptions()) {
+                        if (!(e instanceof ArtifactNotFoundException)) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether none of the repositories had the metadata and none of them failed
+     */
+    private boolean isNotFound(List<MetadataResult> results) {
+        for (MetadataResult result : results) {
+            if (result.getException() != null && !(result.getException() instanceof MetadataNotFoundException)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the failures of the repositories which were asked for an artifact
+     */
+    private void recordArtifactFailures(Exception exception, long start) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ArtifactResolutionException) {
+                ArtifactResolutionException resolutionException = (ArtifactResolutionException) cause;
+                if (resolutionException.getResult() != null) {
+                    for (Exception e : resolutionException.getResult().getExceptions()) {
+                        if (e instanceof ArtifactTransferException && ((ArtifactTransferException) e).getRepository() != null) {
+                            record(((ArtifactTransferException) e).getRepository().getId(), false,
+                                    !(e instanceof ArtifactNotFoundException), start);
+                        }
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    private void record(String repository, boolean found, boolean error, long start) {
+        RepositoryStatistics statistics = repositoryStatistics.get(repository);
+        if (statistics == null) {
+            RepositoryStatistics newStatistics = new RepositoryStatistics();
+            statistics = repositoryStatistics.putIfAbsent(repository, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        statistics.record(found, error, System.nanoTime() - start);
+    }
+
+    /**
+     * The statistics of the repositories, see {@link MavenDownloadProxyMBean#getRepositoryStatistics()}
+     */
+    public Map<String, Map<String, Object>> getRepositoryStatistics() {
+        Map<String, Map<String, Object>> answer = new LinkedHashMap<>();
+        for (Map.Entry<String, RepositoryStatistics> entry : repositoryStatistics.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().toMap());
+        }
+        return answer;
+    }
+
     /**
      * Given a list of {@link MetadataResult} performs a merge of metadata
      *
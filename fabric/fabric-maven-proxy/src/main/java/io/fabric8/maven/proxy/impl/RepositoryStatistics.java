@@ -0,0 +1,79 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven.proxy.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The number of artifacts and metadata found or not in a repository, and how long it took to look for them
+ */
+class RepositoryStatistics {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /**
+     * @param found whether the artifact or metadata was found
+     * @param error whether the repository failed rather than not having the artifact or metadata
+     * @param time  the time it took in nanoseconds
+     */
+    void record(boolean found, boolean error, long time) {
+        if (found) {
+            hits.incrementAndGet();
+        } else if (error) {
+            errors.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        totalTime.addAndGet(time);
+        long max = maxTime.get();
+        while (time > max && !maxTime.compareAndSet(max, time)) {
+            max = maxTime.get();
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getErrors() {
+        return errors.get();
+    }
+
+    Map<String, Object> toMap() {
+        long hits = this.hits.get();
+        long misses = this.misses.get();
+        long errors = this.errors.get();
+        long count = hits + misses + errors;
+        Map<String, Object> answer = new LinkedHashMap<>();
+        answer.put("hits", hits);
+        answer.put("misses", misses);
+        answer.put("errors", errors);
+        answer.put("meanLatency", count > 0 ? (double) TimeUnit.NANOSECONDS.toMicros(totalTime.get()) / count / 1000 : 0d);
+        answer.put("maxLatency", TimeUnit.NANOSECONDS.toMillis(maxTime.get()));
+        return answer;
+    }
+}
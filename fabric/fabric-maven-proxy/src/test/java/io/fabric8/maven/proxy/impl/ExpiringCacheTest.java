@@ -0,0 +1,56 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven.proxy.impl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ExpiringCacheTest {
+
+    @Test
+    public void testExpiry() throws Exception {
+        ExpiringCache<String> cache = new ExpiringCache<>(50, 10);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(100);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testOldestEntriesAreEvicted() throws Exception {
+        ExpiringCache<String> cache = new ExpiringCache<>(60000, 2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("a", "3");
+        cache.put("c", "4");
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("a"));
+        assertEquals("4", cache.get("c"));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        ExpiringCache<String> cache = new ExpiringCache<>(60000, 2);
+        cache.put("a", "1");
+        cache.setTimeToLive(0);
+        cache.put("b", "2");
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven.proxy.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileSenderTest {
+
+    private File dir;
+    private File file;
+    private byte[] content;
+
+    @Before
+    public void init() throws Exception {
+        dir = new File("target/file-sender");
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        content = new byte[3 * FileSender.BUFFER_SIZE + 100];
+        new Random(0).nextBytes(content);
+        file = new File(dir, "artifact.jar");
+        Files.write(file.toPath(), content);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testFileIsWrittenFromMappedRegions() throws Exception {
+        assertEquals(0, FileSender.getMappedResponses());
+        ByteBufferOutputStream output = new ByteBufferOutputStream(Integer.MAX_VALUE);
+        AsyncContext context = send(request(null), output);
+
+        assertArrayEquals(content, output.content.toByteArray());
+        assertEquals(1, output.byteBufferWrites);
+        assertEquals(0, output.arrayWrites);
+        assertEquals(0, FileSender.getMappedResponses());
+        EasyMock.verify(context);
+    }
+
+    @Test
+    public void testRangeIsWrittenFromMappedRegions() throws Exception {
+        ByteBufferOutputStream output = new ByteBufferOutputStream(Integer.MAX_VALUE);
+        AsyncContext context = send(request("bytes=100-199"), output);
+
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 200), output.content.toByteArray());
+        assertEquals(1, output.byteBufferWrites);
+        EasyMock.verify(context);
+    }
+
+    @Test
+    public void testMappedResponsesAreLimited() throws Exception {
+        assertEquals(0, FileSender.getMappedResponses());
+        // the responses are not done until their output is ready again
+        List<ByteBufferOutputStream> outputs = new ArrayList<>();
+        for (int i = 0; i <= FileSender.MAX_MAPPED_RESPONSES; i++) {
+            ByteBufferOutputStream output = new ByteBufferOutputStream(1);
+            FileSender.send(request(null), response(output), EasyMock.createNiceMock(AsyncContext.class), file);
+            outputs.add(output);
+        }
+        assertEquals(FileSender.MAX_MAPPED_RESPONSES, FileSender.getMappedResponses());
+        for (int i = 0; i < FileSender.MAX_MAPPED_RESPONSES; i++) {
+            assertEquals(1, outputs.get(i).byteBufferWrites);
+        }
+        // the other responses are read into buffers
+        ByteBufferOutputStream last = outputs.get(FileSender.MAX_MAPPED_RESPONSES);
+        assertEquals(0, last.byteBufferWrites);
+        assertEquals(1, last.arrayWrites);
+
+        for (ByteBufferOutputStream output : outputs) {
+            output.resume();
+            assertArrayEquals(content, output.content.toByteArray());
+        }
+        assertEquals(0, FileSender.getMappedResponses());
+    }
+
+    @Test
+    public void testParseRange() {
+        assertArrayEquals(new long[] { 0, 99 }, FileSender.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] { 500, 999 }, FileSender.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[] { 900, 999 }, FileSender.parseRange("bytes=-100", 1000));
+        assertArrayEquals(new long[] { 0, 999 }, FileSender.parseRange("bytes=-2000", 1000));
+        assertArrayEquals(new long[] { 990, 999 }, FileSender.parseRange("bytes=990-2000", 1000));
+        assertArrayEquals(new long[0], FileSender.parseRange("bytes=1000-", 1000));
+        assertNull(FileSender.parseRange(null, 1000));
+        assertNull(FileSender.parseRange("bytes=0-1,5-6", 1000));
+        assertNull(FileSender.parseRange("bytes=5-1", 1000));
+        assertNull(FileSender.parseRange("bytes=a-b", 1000));
+        assertNull(FileSender.parseRange("items=0-1", 1000));
+    }
+
+    @Test
+    public void testConditionalRequests() {
+        String etag = "\"3e8-5\"";
+        assertTrue(FileSender.isNotModified(request(etag, -1, null), etag, 5000));
+        assertTrue(FileSender.isNotModified(request("*", -1, null), etag, 5000));
+        assertFalse(FileSender.isNotModified(request("\"3e8-6\"", -1, null), etag, 5000));
+        assertTrue(FileSender.isNotModified(request(null, 5000, null), etag, 5000));
+        assertFalse(FileSender.isNotModified(request(null, 4000, null), etag, 5000));
+        assertFalse(FileSender.isNotModified(request(null, -1, null), etag, 5000));
+
+        assertTrue(FileSender.isRangeValid(request(null, -1, null), etag, 5000));
+        assertTrue(FileSender.isRangeValid(request(null, -1, etag), etag, 5000));
+        assertFalse(FileSender.isRangeValid(request(null, -1, "\"3e8-6\""), etag, 5000));
+    }
+
+    private AsyncContext send(HttpServletRequest request, ServletOutputStream output) throws IOException {
+        AsyncContext context = EasyMock.createMock(AsyncContext.class);
+        context.complete();
+        EasyMock.expectLastCall();
+        EasyMock.replay(context);
+        FileSender.send(request, response(output), context, file);
+        return context;
+    }
+
+    private static HttpServletRequest request(String range) {
+        HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+        EasyMock.expect(request.getMethod()).andReturn("GET").anyTimes();
+        EasyMock.expect(request.getHeader("Range")).andReturn(range).anyTimes();
+        EasyMock.expect(request.getDateHeader((String) EasyMock.anyObject())).andReturn(-1L).anyTimes();
+        EasyMock.replay(request);
+        return request;
+    }
+
+    private static HttpServletResponse response(ServletOutputStream output) throws IOException {
+        HttpServletResponse response = EasyMock.createNiceMock(HttpServletResponse.class);
+        EasyMock.expect(response.getOutputStream()).andReturn(output).anyTimes();
+        EasyMock.replay(response);
+        return response;
+    }
+
+    private static HttpServletRequest request(String ifNoneMatch, long ifModifiedSince, String ifRange) {
+        HttpServletRequest request = EasyMock.createMock(HttpServletRequest.class);
+        EasyMock.expect(request.getHeader("If-None-Match")).andReturn(ifNoneMatch).anyTimes();
+        EasyMock.expect(request.getDateHeader("If-Modified-Since")).andReturn(ifModifiedSince).anyTimes();
+        EasyMock.expect(request.getHeader("If-Range")).andReturn(ifRange).anyTimes();
+        EasyMock.replay(request);
+        return request;
+    }
+
+    /**
+     * An output stream which can write {@link ByteBuffer}s, like the one of Jetty, and which is only ready for the
+     * given number of writes until it is resumed
+     */
+    public static class ByteBufferOutputStream extends ServletOutputStream {
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        int byteBufferWrites;
+        int arrayWrites;
+        private int readyWrites;
+        private WriteListener listener;
+
+        ByteBufferOutputStream(int readyWrites) {
+            this.readyWrites = readyWrites;
+        }
+
+        public void write(ByteBuffer buffer) {
+            byteBufferWrites++;
+            readyWrites--;
+            while (buffer.hasRemaining()) {
+                content.write(buffer.get());
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            arrayWrites++;
+            readyWrites--;
+            content.write(b, off, len);
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public boolean isReady() {
+            return readyWrites > 0;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            listener = writeListener;
+            try {
+                listener.onWritePossible();
+            } catch (IOException e) {
+                listener.onError(e);
+            }
+        }
+
+        void resume() throws IOException {
+            readyWrites = Integer.MAX_VALUE;
+            listener.onWritePossible();
+        }
+    }
+}
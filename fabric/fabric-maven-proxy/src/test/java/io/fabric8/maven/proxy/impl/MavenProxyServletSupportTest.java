@@ -20,11 +20,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
@@ -37,13 +37,11 @@ import java.util.regex.Matcher;
 
 import javax.servlet.AsyncContext;
 import javax.servlet.ReadListener;
-import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.ServletInputStream;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
@@ -68,6 +66,13 @@ import org.easymock.Capture;
 import org.easymock.CaptureType;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.ArtifactTransferException;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
@@ -421,89 +426,19 @@ public class MavenProxyServletSupportTest {
             AsyncContext context = EasyMock.createMock(AsyncContext.class);
             EasyMock.makeThreadSafe(context, true);
 
-            final Map<String, Object> attributes = new HashMap<>();
             HttpServletRequest request = EasyMock.createMock(HttpServletRequest.class);
-            HttpServletRequest requestWrapper = new HttpServletRequestWrapper(request) {
-                @Override
-                public Object getAttribute(String name) {
-                    return attributes.get(name);
-                }
-
-                @Override
-                public void setAttribute(String name, Object o) {
-                    attributes.put(name, o);
-                }
-            };
             EasyMock.makeThreadSafe(request, true);
-            EasyMock.expect(request.getMethod()).andReturn("GET");
+            EasyMock.expect(request.getMethod()).andReturn("GET").anyTimes();
             EasyMock.expect(request.getPathInfo()).andReturn("org/apache/camel/camel-core/maven-metadata.xml");
+            EasyMock.expect(request.getHeader((String) EasyMock.anyObject())).andReturn(null).anyTimes();
+            EasyMock.expect(request.getDateHeader((String) EasyMock.anyObject())).andReturn(-1L).anyTimes();
             EasyMock.expect(request.startAsync()).andReturn(context);
-            context.setTimeout(EasyMock.anyInt());
+            context.setTimeout(0);
             EasyMock.expectLastCall();
-            context.addListener((AsyncListener) EasyMock.anyObject());
-            EasyMock.expectLastCall();
-
-            HttpServletResponse response = EasyMock.createMock(HttpServletResponse.class);
-            EasyMock.makeThreadSafe(response, true);
-            response.setStatus(EasyMock.anyInt());
-            EasyMock.expectLastCall().anyTimes();
-            response.setContentLength(EasyMock.anyInt());
-            EasyMock.expectLastCall().anyTimes();
-            response.setContentType((String) EasyMock.anyObject());
-            EasyMock.expectLastCall().anyTimes();
-            response.setDateHeader((String) EasyMock.anyObject(), EasyMock.anyLong());
-            EasyMock.expectLastCall().anyTimes();
-            response.setHeader((String) EasyMock.anyObject(), (String) EasyMock.anyObject());
-            EasyMock.expectLastCall().anyTimes();
-            response.flushBuffer();
-            EasyMock.expectLastCall().anyTimes();
-
-            final CountDownLatch latchDispatch = new CountDownLatch(1);
-            context.dispatch();
-            EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
-                @Override
-                public Object answer() throws Throwable {
-                    latchDispatch.countDown();
-                    return null;
-                }
-            });
-
-            EasyMock.replay(request, response, context);
-
-            servlet.start();
-            servlet.doGet(requestWrapper, response);
 
-            latchDispatch.await();
-
-            EasyMock.verify(request, response, context);
-
-            EasyMock.reset(request, response, context);
-            EasyMock.expect(request.getPathInfo()).andReturn("org/apache/camel/camel-core/maven-metadata.xml");
-            EasyMock.expect(request.startAsync()).andReturn(context);
-            context.setTimeout(EasyMock.anyInt());
-            EasyMock.expectLastCall();
-            context.addListener((AsyncListener) EasyMock.anyObject());
-            EasyMock.expectLastCall();
             final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            EasyMock.expect(response.getOutputStream()).andReturn(new ServletOutputStream() {
-                @Override
-                public void write(int b) throws IOException {
-                    baos.write(b);
-                }
-                @Override
-                public void write(byte[] b, int off, int len) throws IOException {
-                    baos.write(b, off, len);
-                }
-                @Override
-                public boolean isReady() {
-                    return true;
-                }
-                @Override
-                public void setWriteListener(WriteListener writeListener) {
-                }
-            }).anyTimes();
-            response.flushBuffer();
-            EasyMock.expectLastCall().anyTimes();
+            HttpServletResponse response = createResponse(baos);
+
             final CountDownLatch latchComplete = new CountDownLatch(1);
             context.complete();
             EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
@@ -515,7 +450,10 @@ public class MavenProxyServletSupportTest {
             });
             EasyMock.replay(request, response, context);
 
-            servlet.doGet(requestWrapper, response);
+            servlet.start();
+            servlet.doGet(request, response);
+
+            latchComplete.await();
 
             EasyMock.verify(request, response, context);
 
@@ -554,151 +492,321 @@ public class MavenProxyServletSupportTest {
             AsyncContext context = EasyMock.createMock(AsyncContext.class);
             EasyMock.makeThreadSafe(context, true);
 
-            final Map<String, Object> attributes = new HashMap<>();
             HttpServletRequest request = EasyMock.createMock(HttpServletRequest.class);
-            HttpServletRequest requestWrapper = new HttpServletRequestWrapper(request) {
-                @Override
-                public Object getAttribute(String name) {
-                    return attributes.get(name);
-                }
-
-                @Override
-                public void setAttribute(String name, Object o) {
-                    attributes.put(name, o);
-                }
-            };
             EasyMock.makeThreadSafe(request, true);
-            EasyMock.expect(request.getMethod()).andReturn("GET");
+            EasyMock.expect(request.getMethod()).andReturn("GET").anyTimes();
             EasyMock.expect(request.getPathInfo()).andReturn("org.apache.camel/camel-core/2.13.0/camel-core-2.13.0-sources.jar");
+            EasyMock.expect(request.getHeader((String) EasyMock.anyObject())).andReturn(null).anyTimes();
+            EasyMock.expect(request.getDateHeader((String) EasyMock.anyObject())).andReturn(-1L).anyTimes();
             EasyMock.expect(request.startAsync()).andReturn(context);
-            context.setTimeout(EasyMock.anyInt());
-            EasyMock.expectLastCall();
-            context.addListener((AsyncListener) EasyMock.anyObject());
+            context.setTimeout(0);
             EasyMock.expectLastCall();
 
-            HttpServletResponse response = EasyMock.createMock(HttpServletResponse.class);
-            EasyMock.makeThreadSafe(response, true);
-            response.setStatus(EasyMock.anyInt());
-            EasyMock.expectLastCall();
-            response.setContentLength(EasyMock.anyInt());
-            EasyMock.expectLastCall();
-            response.setContentType((String) EasyMock.anyObject());
-            EasyMock.expectLastCall();
-            response.setDateHeader((String) EasyMock.anyObject(), EasyMock.anyLong());
-            EasyMock.expectLastCall();
-            response.setHeader((String) EasyMock.anyObject(), (String) EasyMock.anyObject());
-            EasyMock.expectLastCall().anyTimes();
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            HttpServletResponse response = createResponse(baos);
 
-            final CountDownLatch latchDispatch = new CountDownLatch(1);
-            context.dispatch();
+            final CountDownLatch latchComplete = new CountDownLatch(1);
+            context.complete();
             EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
                 @Override
                 public Object answer() throws Throwable {
-                    latchDispatch.countDown();
+                    latchComplete.countDown();
                     return null;
                 }
             });
-
             EasyMock.replay(request, response, context);
 
             servlet.start();
-            servlet.doGet(requestWrapper, response);
+            servlet.doGet(request, response);
 
-            latchDispatch.await();
+            latchComplete.await();
 
             EasyMock.verify(request, response, context);
+            Assert.assertArrayEquals(new byte[] { 0x42 }, baos.toByteArray());
 
-            //
-            // Subsequent call
-            //
-            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ServletOutputStream outputStream = new ServletOutputStream() {
-                @Override
-                public void write(int b) throws IOException {
-                    baos.write(b);
-                }
-                @Override
-                public void write(byte[] b, int off, int len) throws IOException {
-                    baos.write(b, off, len);
-                }
-                @Override
-                public boolean isReady() {
-                    return true;
-                }
-                @Override
-                public void setWriteListener(WriteListener writeListener) {
-                }
-            };
 
-            while (true) {
-                long size = (Long) attributes.get(AsynchronousFileChannel.class.getName() + ".size");
-                long pos = (Long) attributes.get(AsynchronousFileChannel.class.getName() + ".position");
-                ByteBuffer buffer = (ByteBuffer) attributes.get(ByteBuffer.class.getName());
-                if (pos + buffer.position() >= size) {
-                    break;
-                }
+        } finally {
+            server.stop();
+            if (old != null) {
+                System.setProperty("karaf.data", old);
+            }
+        }
+    }
 
-                EasyMock.reset(request, response, context);
-                EasyMock.expect(request.getPathInfo()).andReturn("org.apache.camel/camel-core/2.13.0/camel-core-2.13.0-sources.jar");
-                EasyMock.expect(request.startAsync()).andReturn(context);
-                context.setTimeout(EasyMock.anyInt());
-                EasyMock.expectLastCall();
-                context.addListener((AsyncListener) EasyMock.anyObject());
-                EasyMock.expectLastCall();
-                final CountDownLatch latch = new CountDownLatch(1);
-                context.dispatch();
-                EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
-                    @Override
-                    public Object answer() throws Throwable {
-                        latch.countDown();
-                        return null;
-                    }
-                });
-                EasyMock.expect(response.getOutputStream()).andReturn(outputStream);
-                EasyMock.replay(request, response, context);
-                servlet.doGet(requestWrapper, response);
-                latch.await();
-                EasyMock.verify(request, response, context);
+    /**
+     * A response whose output stream is always ready, the write listener is called right away
+     */
+    private static HttpServletResponse createResponse(final ByteArrayOutputStream baos) throws IOException {
+        HttpServletResponse response = EasyMock.createMock(HttpServletResponse.class);
+        EasyMock.makeThreadSafe(response, true);
+        response.setStatus(EasyMock.anyInt());
+        EasyMock.expectLastCall().anyTimes();
+        response.setContentLengthLong(EasyMock.anyLong());
+        EasyMock.expectLastCall().anyTimes();
+        response.setContentType((String) EasyMock.anyObject());
+        EasyMock.expectLastCall().anyTimes();
+        response.setDateHeader((String) EasyMock.anyObject(), EasyMock.anyLong());
+        EasyMock.expectLastCall().anyTimes();
+        response.setHeader((String) EasyMock.anyObject(), (String) EasyMock.anyObject());
+        EasyMock.expectLastCall().anyTimes();
+        EasyMock.expect(response.getOutputStream()).andReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                baos.write(b);
+            }
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                baos.write(b, off, len);
+            }
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                try {
+                    writeListener.onWritePossible();
+                } catch (IOException e) {
+                    writeListener.onError(e);
+                }
             }
+        }).anyTimes();
+        return response;
+    }
 
-            //
-            // Last calls
-            //
+    private static final String ARTIFACT_PATH = "org/apache/camel/camel-core/2.13.0/camel-core-2.13.0.jar";
 
-            EasyMock.reset(request, response, context);
+    @Test(timeout=30000)
+    public void testRangeOfArtifact() throws Exception {
+        File artifact = createArtifact("0123456789");
+        Response response = get(artifact, ARTIFACT_PATH, "Range", "bytes=2-5");
+        assertEquals(HttpServletResponse.SC_PARTIAL_CONTENT, response.status);
+        assertEquals("bytes 2-5/10", response.headers.get("Content-Range"));
+        assertEquals("2345", response.content());
+
+        // the range is not sent if the artifact changed since the client got its first part
+        response = get(artifact, ARTIFACT_PATH, "Range", "bytes=2-5", "If-Range", "\"a-1\"");
+        assertEquals(HttpServletResponse.SC_OK, response.status);
+        assertEquals("0123456789", response.content());
+    }
 
-            EasyMock.expect(request.getPathInfo()).andReturn("org.apache.camel/camel-core/2.13.0/camel-core-2.13.0-sources.jar");
-            EasyMock.expect(request.startAsync()).andReturn(context);
-            context.setTimeout(EasyMock.anyInt());
-            EasyMock.expectLastCall();
-            context.addListener((AsyncListener) EasyMock.anyObject());
-            EasyMock.expectLastCall();
-            final CountDownLatch latchComplete = new CountDownLatch(1);
-            context.complete();
-            EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
-                @Override
-                public Object answer() throws Throwable {
-                    latchComplete.countDown();
-                    return null;
+    @Test(timeout=30000)
+    public void testUnsatisfiableRangeOfArtifact() throws Exception {
+        Response response = get(createArtifact("0123456789"), ARTIFACT_PATH, "Range", "bytes=20-");
+        assertEquals(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, response.status);
+        assertEquals("bytes */10", response.headers.get("Content-Range"));
+        assertEquals("", response.content());
+    }
+
+    @Test(timeout=30000)
+    public void testNotModifiedArtifact() throws Exception {
+        File artifact = createArtifact("0123456789");
+        Response response = get(artifact, ARTIFACT_PATH);
+        assertEquals(HttpServletResponse.SC_OK, response.status);
+        String etag = response.headers.get("ETag");
+        assertNotNull(etag);
+
+        response = get(artifact, ARTIFACT_PATH, "If-None-Match", etag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+        assertEquals("", response.content());
+
+        response = get(artifact, ARTIFACT_PATH, "If-Modified-Since", artifact.lastModified());
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+
+        response = get(artifact, ARTIFACT_PATH, "If-Modified-Since", artifact.lastModified() - 60000);
+        assertEquals(HttpServletResponse.SC_OK, response.status);
+        assertEquals("0123456789", response.content());
+    }
+
+    @Test(timeout=30000)
+    public void testChecksumsOfArtifact() throws Exception {
+        File artifact = createArtifact("0123456789");
+        Response response = get(artifact, ARTIFACT_PATH + ".sha1");
+        assertEquals(HttpServletResponse.SC_OK, response.status);
+        assertEquals("87acec17cd9dcd20a716cc2cf67417b71c8a7016", response.content());
+
+        response = get(artifact, ARTIFACT_PATH + ".md5");
+        assertEquals(HttpServletResponse.SC_OK, response.status);
+        assertEquals("781e5e245d69b566979b86e28d23f2c7", response.content());
+    }
+
+    private static File createArtifact(String content) throws IOException {
+        File artifact = new File("target/artifacts/camel-core-2.13.0.jar");
+        FileUtils.writeStringToFile(artifact, content, "US-ASCII");
+        return artifact;
+    }
+
+    /**
+     * Gets the given path from a servlet whose resolver resolves all the artifacts to the given file
+     *
+     * @param headers the names and values of the request headers, the values of the date headers are longs
+     */
+    private Response get(File artifact, String path, Object... headers) throws Exception {
+        final String old = System.getProperty("karaf.data");
+        System.setProperty("karaf.data", new File("target").getCanonicalPath());
+        final Map<String, Object> requestHeaders = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            requestHeaders.put((String) headers[i], headers[i + 1]);
+        }
+
+        MavenResolver resolver = EasyMock.createNiceMock(MavenResolver.class);
+        EasyMock.expect(resolver.getDefaultRepositories()).andReturn(Collections.<LocalRepository>emptyList()).anyTimes();
+        EasyMock.expect(resolver.resolveFile(EasyMock.anyObject(org.eclipse.aether.artifact.Artifact.class))).andReturn(artifact).anyTimes();
+        EasyMock.replay(resolver);
+        MavenDownloadProxyServlet servlet = new MavenDownloadProxyServlet(resolver, new MockRuntimeProperties(), projectDeployer, 5, 0);
+
+        HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+        EasyMock.makeThreadSafe(request, true);
+        EasyMock.expect(request.getMethod()).andReturn("GET").anyTimes();
+        EasyMock.expect(request.getPathInfo()).andReturn(path).anyTimes();
+        EasyMock.expect(request.getHeader(EasyMock.anyObject(String.class))).andAnswer(new IAnswer<String>() {
+            @Override
+            public String answer() throws Throwable {
+                Object value = requestHeaders.get(EasyMock.getCurrentArguments()[0]);
+                return value != null ? value.toString() : null;
+            }
+        }).anyTimes();
+        EasyMock.expect(request.getDateHeader(EasyMock.anyObject(String.class))).andAnswer(new IAnswer<Long>() {
+            @Override
+            public Long answer() throws Throwable {
+                Object value = requestHeaders.get(EasyMock.getCurrentArguments()[0]);
+                return value instanceof Long ? (Long) value : -1L;
+            }
+        }).anyTimes();
+
+        final CountDownLatch latchComplete = new CountDownLatch(1);
+        AsyncContext context = EasyMock.createNiceMock(AsyncContext.class);
+        EasyMock.makeThreadSafe(context, true);
+        context.complete();
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                latchComplete.countDown();
+                return null;
+            }
+        });
+        EasyMock.expect(request.startAsync()).andReturn(context);
+
+        final Response answer = new Response();
+        HttpServletResponse response = EasyMock.createNiceMock(HttpServletResponse.class);
+        EasyMock.makeThreadSafe(response, true);
+        response.setStatus(EasyMock.anyInt());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                answer.status = (Integer) EasyMock.getCurrentArguments()[0];
+                return null;
+            }
+        }).anyTimes();
+        response.setHeader(EasyMock.anyObject(String.class), EasyMock.anyObject(String.class));
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+            @Override
+            public Object answer() throws Throwable {
+                answer.headers.put((String) EasyMock.getCurrentArguments()[0], (String) EasyMock.getCurrentArguments()[1]);
+                return null;
+            }
+        }).anyTimes();
+        EasyMock.expect(response.getOutputStream()).andReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                answer.baos.write(b);
+            }
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                answer.baos.write(b, off, len);
+            }
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                try {
+                    writeListener.onWritePossible();
+                } catch (IOException e) {
+                    writeListener.onError(e);
                 }
-            });
-            EasyMock.expect(response.getOutputStream()).andReturn(outputStream);
-            response.flushBuffer();
-            EasyMock.expectLastCall();
-            EasyMock.replay(request, response, context);
-            servlet.doGet(requestWrapper, response);
-            latchComplete.await();
-            EasyMock.verify(request, response, context);
-            Assert.assertArrayEquals(new byte[] { 0x42 }, baos.toByteArray());
+            }
+        }).anyTimes();
+        EasyMock.replay(request, response, context);
 
+        try {
+            servlet.start();
+            servlet.doGet(request, response);
+            latchComplete.await();
+            return answer;
         } finally {
-            server.stop();
+            servlet.stop();
             if (old != null) {
                 System.setProperty("karaf.data", old);
             }
         }
     }
 
+    private static class Response {
+        private volatile int status;
+        private final Map<String, String> headers = Collections.synchronizedMap(new HashMap<String, String>());
+        private final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        String content() {
+            return new String(baos.toByteArray(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Test(timeout=30000)
+    public void testNotFoundArtifactIsCached() throws Exception {
+        IOException notFound = resolutionFailure(new ArtifactNotFoundException(ARTIFACT, REMOTE_REPOSITORY));
+        MavenResolver resolver = EasyMock.createMock(MavenResolver.class);
+        EasyMock.expect(resolver.resolveFile(EasyMock.anyObject(org.eclipse.aether.artifact.Artifact.class))).andThrow(notFound).once();
+        EasyMock.replay(resolver);
+
+        MavenDownloadProxyServlet servlet = new MavenDownloadProxyServlet(resolver, runtimeProperties, projectDeployer, 5, 0);
+        String path = "org/apache/camel/camel-core/2.13.0/camel-core-2.13.0-features.xml";
+        assertNull(servlet.download(path));
+        assertNull(servlet.download(path));
+        assertEquals(1, servlet.getNotFoundCacheHits());
+        assertEquals(1, servlet.getNotFoundCacheSize());
+
+        servlet.clearCaches();
+        assertEquals(0, servlet.getNotFoundCacheSize());
+        EasyMock.verify(resolver);
+    }
+
+    @Test(timeout=30000)
+    public void testTransferFailureIsNotCached() throws Exception {
+        // one repository does not have the artifact, the other one could not be reached
+        IOException failure = resolutionFailure(new ArtifactNotFoundException(ARTIFACT, REMOTE_REPOSITORY),
+                new ArtifactTransferException(ARTIFACT, REMOTE_REPOSITORY, "Connection refused"));
+        MavenResolver resolver = EasyMock.createMock(MavenResolver.class);
+        EasyMock.expect(resolver.resolveFile(EasyMock.anyObject(org.eclipse.aether.artifact.Artifact.class))).andThrow(failure).times(2);
+        EasyMock.replay(resolver);
+
+        MavenDownloadProxyServlet servlet = new MavenDownloadProxyServlet(resolver, runtimeProperties, projectDeployer, 5, 0);
+        String path = "org/apache/camel/camel-core/2.13.0/camel-core-2.13.0-features.xml";
+        assertNull(servlet.download(path));
+        assertNull(servlet.download(path));
+        assertEquals(0, servlet.getNotFoundCacheHits());
+        assertEquals(0, servlet.getNotFoundCacheSize());
+        EasyMock.verify(resolver);
+    }
+
+    private static final org.eclipse.aether.artifact.Artifact ARTIFACT =
+            new org.eclipse.aether.artifact.DefaultArtifact("org.apache.camel:camel-core:xml:features:2.13.0");
+
+    private static final RemoteRepository REMOTE_REPOSITORY =
+            new RemoteRepository.Builder("central", "default", "http://repo1.maven.org/maven2/").build();
+
+    /**
+     * Creates the exception thrown by the resolver when none of the repositories could provide the artifact
+     */
+    private static IOException resolutionFailure(Exception... exceptions) {
+        ArtifactResult result = new ArtifactResult(new ArtifactRequest(ARTIFACT, Collections.singletonList(REMOTE_REPOSITORY), null));
+        for (Exception exception : exceptions) {
+            result.addException(exception);
+        }
+        return new IOException("Error resolving artifact", new ArtifactResolutionException(Collections.singletonList(result)));
+    }
+
     @Test(timeout=30000)
     public void testJarUploadFullMvnPath() throws Exception {
         String jarPath = "org.acme/acme-core/1.0/acme-core-1.0.jar";
@@ -224,4 +224,18 @@ public interface ServiceConstants
      */
     String PROPERTY_UPDATE_RELEASES = "updateReleases";
 
+    /**
+     * Number of threads used to query the remote repositories concurrently when a release artifact is not
+     * in the local repository. The first repository which has the artifact wins and the transfers from the
+     * others are cancelled. A repository uses at most half of the threads. Defaults to <code>4</code>,
+     * <code>1</code> or less queries the repositories one after another.
+     */
+    String PROPERTY_RESOLUTION_THREADS = "resolution.threads";
+
+    /**
+     * Time in milliseconds during which a remote repository which could not be reached is skipped for the
+     * artifacts of the same group. Defaults to <code>60000</code>, <code>0</code> disables it.
+     */
+    String PROPERTY_RESOLUTION_FAILURE_TIMEOUT = "resolution.failureTimeout";
+
 }
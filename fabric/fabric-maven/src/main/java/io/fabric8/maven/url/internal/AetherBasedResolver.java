@@ -19,6 +19,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.NoRouteToHostException;
@@ -30,15 +31,27 @@ import java.util.Deque;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -96,6 +109,7 @@ import org.eclipse.aether.internal.impl.DefaultTransporterProvider;
 import org.eclipse.aether.internal.impl.EnhancedLocalRepositoryManagerFactory;
 import org.eclipse.aether.internal.impl.slf4j.Slf4jLoggerFactory;
 import org.eclipse.aether.repository.Authentication;
+import org.eclipse.aether.repository.LocalArtifactRequest;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.MirrorSelector;
 import org.eclipse.aether.repository.Proxy;
@@ -116,10 +130,13 @@ import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
 import org.eclipse.aether.spi.connector.transport.TransporterFactory;
 import org.eclipse.aether.spi.connector.transport.TransporterProvider;
 import org.eclipse.aether.spi.localrepo.LocalRepositoryManagerFactory;
+import org.eclipse.aether.transfer.AbstractTransferListener;
 import org.eclipse.aether.transfer.ArtifactNotFoundException;
 import org.eclipse.aether.transfer.ArtifactTransferException;
 import org.eclipse.aether.transfer.MetadataNotFoundException;
 import org.eclipse.aether.transfer.MetadataTransferException;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.aether.transfer.TransferEvent;
 import org.eclipse.aether.transport.wagon.WagonProvider;
 import org.eclipse.aether.transport.wagon.WagonTransporterFactory;
 import org.eclipse.aether.util.artifact.DefaultArtifactTypeRegistry;
@@ -157,6 +174,8 @@ public class AetherBasedResolver implements MavenResolver {
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(AetherBasedResolver.class);
     private static final String LATEST_VERSION_RANGE = "(0.0,]";
     private static final String REPO_TYPE = "default";
+    private static final int DEFAULT_RESOLUTION_THREADS = 4;
+    private static final int DEFAULT_RESOLUTION_FAILURE_TIMEOUT = 60000;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AetherBasedResolver.class);
 
@@ -177,6 +196,12 @@ public class AetherBasedResolver implements MavenResolver {
     // Mapping from local repositories to remote repositories when used as defaultRepositories
     private final Map<File, RemoteRepository> defaultRepositories = new HashMap<>();
 
+    // the remote repositories are queried concurrently by these threads
+    private final int resolutionThreads;
+    private ThreadPoolExecutor resolutionExecutor;
+    private final ConcurrentMap<String, Semaphore> repositoryPermits = new ConcurrentHashMap<>();
+    private final RepositoryHealth repositoryHealth;
+
     /**
      * Create a AetherBasedResolver
      *
@@ -213,6 +238,9 @@ public class AetherBasedResolver implements MavenResolver {
         decryptSettings();
         m_proxySelector = selectProxies();
         m_mirrorSelector = selectMirrors( mirror );
+        resolutionThreads = m_config.getProperty(ServiceConstants.PROPERTY_RESOLUTION_THREADS, DEFAULT_RESOLUTION_THREADS, Integer.class);
+        int failureTimeout = m_config.getProperty(ServiceConstants.PROPERTY_RESOLUTION_FAILURE_TIMEOUT, DEFAULT_RESOLUTION_FAILURE_TIMEOUT, Integer.class);
+        repositoryHealth = new RepositoryHealth(failureTimeout);
     }
 
     private RepositorySystem newRepositorySystem() {
@@ -245,6 +273,12 @@ public class AetherBasedResolver implements MavenResolver {
 
     @Override
     public void close() throws IOException {
+        synchronized (this) {
+            if (resolutionExecutor != null) {
+                resolutionExecutor.shutdownNow();
+                resolutionExecutor = null;
+            }
+        }
         m_client.close();
     }
 
@@ -622,8 +656,13 @@ public class AetherBasedResolver implements MavenResolver {
         DefaultRepositorySystemSession session = newSession(null);
         try {
             artifact = resolveLatestVersionRange( session, remoteRepos, artifact );
-            ArtifactResult result = m_repoSystem
-                    .resolveArtifact( session, new ArtifactRequest( artifact, remoteRepos, null ) );
+            ArtifactResult result;
+            if (isRaced(session, remoteRepos, artifact)) {
+                result = race(remoteRepos, artifact);
+            } else {
+                result = m_repoSystem
+                        .resolveArtifact( session, new ArtifactRequest( artifact, remoteRepos, null ) );
+            }
 
             File resolved = result.getArtifact().getFile();
             LOG.debug( "Resolved ({}) as {}", artifact.toString(), resolved.getAbsolutePath() );
@@ -659,6 +698,232 @@ public class AetherBasedResolver implements MavenResolver {
         }
     }
 
+    /**
+     * Whether the remote repositories are queried concurrently for an artifact. Only the releases which are not
+     * in the local repository are, Aether has to look at the metadata of all the repositories to resolve the
+     * snapshots.
+     */
+    private boolean isRaced(RepositorySystemSession session, List<RemoteRepository> remoteRepos, Artifact artifact) {
+        if (resolutionThreads <= 1 || remoteRepos.size() <= 1 || artifact.isSnapshot() || session.isOffline()) {
+            return false;
+        }
+        return !session.getLocalRepositoryManager().find(session, new LocalArtifactRequest(artifact, remoteRepos, null)).isAvailable();
+    }
+
+    /**
+     * Queries the remote repositories concurrently, from the healthiest, and returns the first artifact found.
+     * The repositories which could not be reached recently for the group of the artifact are skipped, and the
+     * ones which already have as many resolutions in progress as half of the threads are only queried by the
+     * calling thread when no other repository has the artifact, so that a slow repository cannot hold all the
+     * threads. The transfers of the other repositories are cancelled once the artifact is found. If the artifact
+     * is not found the exceptions of all the repositories are thrown together in the order of the repositories,
+     * as Aether does.
+     */
+    private ArtifactResult race(List<RemoteRepository> remoteRepos, final Artifact artifact) throws ArtifactResolutionException, IOException {
+        CompletionService<ArtifactResult> completionService = new ExecutorCompletionService<>(getResolutionExecutor());
+        List<Future<ArtifactResult>> futures = new ArrayList<>();
+        List<RaceTask> tasks = new ArrayList<>();
+        final AtomicBoolean found = new AtomicBoolean();
+        List<RemoteRepository> deferred = new ArrayList<>();
+        // the exceptions in the order of the repositories
+        Map<RemoteRepository, List<Exception>> exceptions = new LinkedHashMap<>();
+        for (RemoteRepository repository : remoteRepos) {
+            exceptions.put(repository, Collections.<Exception>emptyList());
+        }
+        for (final RemoteRepository repository : repositoryHealth.sort(remoteRepos)) {
+            Exception failure = repositoryHealth.getFailure(repository, artifact.getGroupId());
+            if (failure != null) {
+                LOG.debug("Skipping " + repository + " which failed recently for " + artifact.getGroupId() + ": " + failure.getMessage());
+                exceptions.put(repository, Collections.singletonList(failure));
+                continue;
+            }
+            Semaphore permits = getRepositoryPermits(repository);
+            if (!permits.tryAcquire()) {
+                deferred.add(repository);
+                continue;
+            }
+            RaceTask task = new RaceTask(repository, artifact, found, permits);
+            tasks.add(task);
+            futures.add(completionService.submit(task));
+        }
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                ArtifactResult result = completionService.take().get();
+                if (result.isResolved()) {
+                    found.set(true);
+                    return result;
+                }
+                exceptions.put(result.getRequest().getRepositories().get(0), result.getExceptions());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while resolving " + artifact);
+        } catch (ExecutionException e) {
+            throw new IOException("Error resolving artifact " + artifact, e.getCause());
+        } finally {
+            // the transfers in progress are cancelled by their listener, Aether cleans up their downloads itself
+            found.set(true);
+            for (Future<ArtifactResult> future : futures) {
+                future.cancel(false);
+            }
+            // the tasks which are still queued will never run, their permits are given back here
+            for (RaceTask task : tasks) {
+                task.abandon();
+            }
+        }
+
+        for (RemoteRepository repository : deferred) {
+            ArtifactResult result = resolveFrom(repository, artifact, null);
+            if (result.isResolved()) {
+                return result;
+            }
+            exceptions.put(repository, result.getExceptions());
+        }
+
+        ArtifactResult result = new ArtifactResult(new ArtifactRequest(artifact, remoteRepos, null));
+        for (List<Exception> list : exceptions.values()) {
+            for (Exception exception : list) {
+                result.addException(exception);
+            }
+        }
+        throw new ArtifactResolutionException(Collections.singletonList(result));
+    }
+
+    /**
+     * The resolution from one repository of a race, which gives back the permit taken for it when it completes,
+     * or when it is abandoned before it started
+     */
+    private final class RaceTask implements Callable<ArtifactResult> {
+        private final RemoteRepository repository;
+        private final Artifact artifact;
+        private final AtomicBoolean found;
+        private final Semaphore permits;
+        // set by whichever of the task or the race releases the permit
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        RaceTask(RemoteRepository repository, Artifact artifact, AtomicBoolean found, Semaphore permits) {
+            this.repository = repository;
+            this.artifact = artifact;
+            this.found = found;
+            this.permits = permits;
+        }
+
+        @Override
+        public ArtifactResult call() throws Exception {
+            if (!claimed.compareAndSet(false, true)) {
+                return new ArtifactResult(new ArtifactRequest(artifact, Collections.singletonList(repository), null));
+            }
+            try {
+                return resolveFrom(repository, artifact, found);
+            } finally {
+                permits.release();
+            }
+        }
+
+        void abandon() {
+            if (claimed.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Resolves an artifact from a single remote repository and records how the repository answered
+     *
+     * @param cancelled the transfers are cancelled when it is set, or null
+     */
+    private ArtifactResult resolveFrom(RemoteRepository repository, Artifact artifact, final AtomicBoolean cancelled) {
+        DefaultRepositorySystemSession session = newSession(null);
+        if (cancelled != null) {
+            session.setTransferListener(new AbstractTransferListener() {
+                @Override
+                public void transferInitiated(TransferEvent event) throws TransferCancelledException {
+                    checkCancelled();
+                }
+
+                @Override
+                public void transferProgressed(TransferEvent event) throws TransferCancelledException {
+                    checkCancelled();
+                }
+
+                private void checkCancelled() throws TransferCancelledException {
+                    if (cancelled.get()) {
+                        throw new TransferCancelledException("The artifact was found in another repository");
+                    }
+                }
+            });
+        }
+        long start = System.nanoTime();
+        try {
+            ArtifactResult result = m_repoSystem.resolveArtifact(session,
+                    new ArtifactRequest(artifact, Collections.singletonList(repository), null));
+            repositoryHealth.answered(repository, System.nanoTime() - start);
+            return result;
+        } catch (ArtifactResolutionException e) {
+            ArtifactResult result = e.getResult();
+            if (cancelled != null && cancelled.get()) {
+                // the repository did not fail, it was not needed anymore
+                return result;
+            }
+            boolean failed = false;
+            for (Exception exception : result.getExceptions()) {
+                if (!(exception instanceof ArtifactNotFoundException)) {
+                    failed = true;
+                    if (isRetryableException(exception) == RetryChance.NEVER) {
+                        // the repository cannot be reached, there is no point in asking it again for a while
+                        repositoryHealth.remember(repository, artifact.getGroupId(), exception);
+                    }
+                }
+            }
+            if (failed) {
+                repositoryHealth.failed(repository, System.nanoTime() - start);
+            } else {
+                repositoryHealth.answered(repository, System.nanoTime() - start);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            // reported along with the exceptions of the other repositories, which are still queried
+            ArtifactResult result = new ArtifactResult(new ArtifactRequest(artifact, Collections.singletonList(repository), null));
+            result.addException(e);
+            repositoryHealth.failed(repository, System.nanoTime() - start);
+            return result;
+        } finally {
+            session.setTransferListener(null);
+            releaseSession(session);
+        }
+    }
+
+    /**
+     * Gets the permits for the resolutions in progress from the given repository in the pool of threads
+     */
+    private Semaphore getRepositoryPermits(RemoteRepository repository) {
+        Semaphore permits = repositoryPermits.get(repository.getUrl());
+        if (permits == null) {
+            Semaphore previous = repositoryPermits.putIfAbsent(repository.getUrl(), permits = new Semaphore(Math.max(1, resolutionThreads / 2)));
+            if (previous != null) {
+                permits = previous;
+            }
+        }
+        return permits;
+    }
+
+    private synchronized ThreadPoolExecutor getResolutionExecutor() {
+        if (resolutionExecutor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            resolutionExecutor = new ThreadPoolExecutor(resolutionThreads, resolutionThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "AetherBasedResolver-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            resolutionExecutor.allowCoreThreadTimeOut(true);
+        }
+        return resolutionExecutor;
+    }
+
     /**
      * Tries to resolve versions = LATEST using an open range version query. If it succeeds, version
      * of artifact is set to the highest available version.
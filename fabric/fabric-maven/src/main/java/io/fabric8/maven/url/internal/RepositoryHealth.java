@@ -0,0 +1,173 @@
+/*
+ *  Copyright 2005-2017 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven.url.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.repository.RemoteRepository;
+
+/**
+ * Remembers how the remote repositories answered artifact requests, so that the fast and healthy repositories
+ * are tried first and that the repositories which could not be reached for a group of artifacts are skipped
+ * for a while.
+ */
+class RepositoryHealth {
+
+    // the weight of the last latency in the moving average of the latencies
+    private static final double LATENCY_WEIGHT = 0.3;
+    // the expired failures are purged when there are more of them
+    private static final int MAX_FAILURES = 1000;
+
+    private final long failureTimeout;
+    private final ConcurrentMap<String, Score> scores = new ConcurrentHashMap<>();
+    // the failures by repository URL and group id
+    private final ConcurrentMap<String, Failure> failures = new ConcurrentHashMap<>();
+
+    /**
+     * @param failureTimeout how long in milliseconds the failures are remembered, zero or less to not remember them
+     */
+    RepositoryHealth(long failureTimeout) {
+        this.failureTimeout = failureTimeout;
+    }
+
+    /**
+     * Records an answer of a repository, whether it had the artifact or not
+     */
+    void answered(RemoteRepository repository, long nanos) {
+        getScore(repository).update(nanos, false);
+    }
+
+    /**
+     * Records a failure to get an artifact from a repository
+     */
+    void failed(RemoteRepository repository, long nanos) {
+        getScore(repository).update(nanos, true);
+    }
+
+    /**
+     * Remembers that a repository cannot be used for the artifacts of a group, the failure is returned for this
+     * group instead of trying the repository until the failure timeout expires
+     */
+    void remember(RemoteRepository repository, String groupId, Exception failure) {
+        if (failureTimeout <= 0) {
+            return;
+        }
+        if (failures.size() >= MAX_FAILURES) {
+            purge();
+        }
+        failures.put(key(repository, groupId), new Failure(failure, System.currentTimeMillis() + failureTimeout));
+    }
+
+    /**
+     * The failure remembered for a repository and a group or null
+     */
+    Exception getFailure(RemoteRepository repository, String groupId) {
+        String key = key(repository, groupId);
+        Failure failure = failures.get(key);
+        if (failure == null) {
+            return null;
+        } else if (failure.expiry <= System.currentTimeMillis()) {
+            failures.remove(key, failure);
+            return null;
+        }
+        return failure.exception;
+    }
+
+    /**
+     * Sorts repositories from the healthiest, the repositories which have not been used yet come first and the
+     * others keep their order when they are as healthy
+     */
+    List<RemoteRepository> sort(List<RemoteRepository> repositories) {
+        final Map<RemoteRepository, Double> values = new HashMap<>();
+        for (RemoteRepository repository : repositories) {
+            Score score = scores.get(repository.getUrl());
+            values.put(repository, score != null ? score.value() : 0d);
+        }
+        List<RemoteRepository> answer = new ArrayList<>(repositories);
+        Collections.sort(answer, new Comparator<RemoteRepository>() {
+            @Override
+            public int compare(RemoteRepository r1, RemoteRepository r2) {
+                return Double.compare(values.get(r1), values.get(r2));
+            }
+        });
+        return answer;
+    }
+
+    /**
+     * The score of a repository, from its average latency in milliseconds multiplied by the number of failures
+     * in a row. The lower the better, zero if the repository has not been used yet.
+     */
+    double getScore(String url) {
+        Score score = scores.get(url);
+        return score != null ? score.value() : 0d;
+    }
+
+    private Score getScore(RemoteRepository repository) {
+        Score score = scores.get(repository.getUrl());
+        if (score == null) {
+            scores.putIfAbsent(repository.getUrl(), new Score());
+            score = scores.get(repository.getUrl());
+        }
+        return score;
+    }
+
+    private void purge() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Failure> iterator = failures.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().expiry <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String key(RemoteRepository repository, String groupId) {
+        return repository.getUrl() + "|" + groupId;
+    }
+
+    private static class Score {
+        private double latency = -1;
+        private int failures;
+
+        synchronized void update(long nanos, boolean failed) {
+            double millis = (double) TimeUnit.NANOSECONDS.toMicros(nanos) / 1000;
+            latency = latency < 0 ? millis : LATENCY_WEIGHT * millis + (1 - LATENCY_WEIGHT) * latency;
+            failures = failed ? failures + 1 : 0;
+        }
+
+        synchronized double value() {
+            return (Math.max(latency, 0) + 1) * (1 + failures);
+        }
+    }
+
+    private static class Failure {
+        final Exception exception;
+        final long expiry;
+
+        Failure(Exception exception, long expiry) {
+            this.exception = exception;
+            this.expiry = expiry;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import io.fabric8.maven.url.ServiceConstants;
+import io.fabric8.maven.url.internal.AetherBasedResolver;
+import io.fabric8.maven.util.MavenConfigurationImpl;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.settings.Profile;
+import org.apache.maven.settings.Repository;
+import org.apache.maven.settings.Settings;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ops4j.util.property.PropertiesPropertyResolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test cases for the concurrent resolution of the releases from several remote repositories
+ */
+public class AetherRaceTest {
+
+    private static Server server;
+    private static int port;
+
+    // counted down when a slow transfer is aborted by the client
+    private static volatile CountDownLatch aborted;
+
+    @BeforeClass
+    public static void startJetty() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                try {
+                    String uri = request.getRequestURI();
+                    if (uri.startsWith("/late")) {
+                        // a repository which does not have any artifact and takes its time to say so
+                        sleep(500);
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    } else if (!uri.endsWith(".jar") || uri.contains("/missing/")) {
+                        if (uri.startsWith("/slow/")) {
+                            sleep(300);
+                        }
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    } else if (uri.startsWith("/slow/")) {
+                        // a large artifact sent slowly
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.setContentLength(200 * 1024);
+                        ServletOutputStream os = response.getOutputStream();
+                        try {
+                            for (int i = 0; i < 200; i++) {
+                                os.write(new byte[1024]);
+                                os.flush();
+                                sleep(50);
+                            }
+                        } catch (IOException e) {
+                            aborted.countDown();
+                        }
+                    } else {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        response.getOutputStream().write("fast".getBytes());
+                    }
+                } finally {
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        server.start();
+        port = ((NetworkConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    @AfterClass
+    public static void stopJetty() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void transfersOfOtherRepositoriesAreCancelled() throws Exception {
+        aborted = new CountDownLatch(1);
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        try {
+            File resolved = resolver.resolveFile("org.organization", "universalis-api", "", "jar", "1.0");
+            assertEquals("fast", FileUtils.readFileToString(resolved));
+            assertTrue("The transfer from the slow repository should be cancelled", aborted.await(5, TimeUnit.SECONDS));
+            assertEquals("The cancelled transfer should not replace the artifact", "fast", FileUtils.readFileToString(resolved));
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void exceptionsAreInTheOrderOfTheRepositories() throws Exception {
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration());
+        try {
+            // the second time, the slow repository is known to be slower and it is queried after the fast one
+            for (String version : new String[] {"1.0", "1.1"}) {
+                try {
+                    resolver.resolveFile("org.organization.missing", "missing", "", "jar", version);
+                    fail("The artifact should not be found");
+                } catch (IOException e) {
+                    assertEquals(2, e.getSuppressed().length);
+                    assertTrue(e.getSuppressed()[0].getMessage(), e.getSuppressed()[0].getMessage().contains("slow"));
+                    assertTrue(e.getSuppressed()[1].getMessage(), e.getSuppressed()[1].getMessage().contains("fast"));
+                }
+            }
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    public void permitsOfTheCancelledResolutionsAreGivenBack() throws Exception {
+        // more repositories than threads, so that the resolutions from some of them are still queued when the
+        // artifact is found and are cancelled before they start
+        Settings settings = settingsWithSlowAndFastRepositories();
+        Profile profile = settings.getProfiles().get(0);
+        profile.getRepositories().remove(0);
+        for (int i = 1; i <= 7; i++) {
+            Repository late = new Repository();
+            late.setId("late" + i);
+            late.setUrl("http://localhost:" + port + "/late" + i + "/repository");
+            profile.addRepository(late);
+        }
+        MavenConfigurationImpl mavenConfiguration = mavenConfiguration();
+        mavenConfiguration.setSettings(settings);
+        AetherBasedResolver resolver = new AetherBasedResolver(mavenConfiguration);
+        try {
+            for (String version : new String[] {"2.0", "2.1", "2.2", "2.3"}) {
+                File resolved = resolver.resolveFile("org.organization", "universalis-api", "", "jar", version);
+                assertEquals("fast", FileUtils.readFileToString(resolved));
+            }
+
+            // the 7 late repositories are queried 4 at a time, none of them is left to the calling thread
+            long start = System.nanoTime();
+            try {
+                resolver.resolveFile("org.organization.missing", "missing", "", "jar", "2.0");
+                fail("The artifact should not be found");
+            } catch (IOException e) {
+                assertEquals(8, e.getSuppressed().length);
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("The late repositories should be queried concurrently, took " + elapsed + "ms", elapsed < 2000);
+        } finally {
+            resolver.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private MavenConfigurationImpl mavenConfiguration() {
+        Properties properties = new Properties();
+        properties.setProperty("pid.localRepository", "target/" + UUID.randomUUID().toString());
+        properties.setProperty("pid.timeout", "10000");
+        properties.setProperty("pid.globalChecksumPolicy", "ignore");
+        properties.setProperty("pid.connection.retryCount", "0");
+        properties.setProperty("pid." + ServiceConstants.PROPERTY_RESOLUTION_THREADS, "4");
+        MavenConfigurationImpl mavenConfiguration = new MavenConfigurationImpl(new PropertiesPropertyResolver(properties), "pid");
+        mavenConfiguration.setSettings(settingsWithSlowAndFastRepositories());
+        return mavenConfiguration;
+    }
+
+    private Settings settingsWithSlowAndFastRepositories() {
+        Settings settings = new Settings();
+        Profile defaultProfile = new Profile();
+        defaultProfile.setId("default");
+        Repository slow = new Repository();
+        slow.setId("slow");
+        slow.setUrl("http://localhost:" + port + "/slow/repository");
+        defaultProfile.addRepository(slow);
+        Repository fast = new Repository();
+        fast.setId("fast");
+        fast.setUrl("http://localhost:" + port + "/fast/repository");
+        defaultProfile.addRepository(fast);
+        settings.addProfile(defaultProfile);
+        settings.addActiveProfile("default");
+        return settings;
+    }
+
+}
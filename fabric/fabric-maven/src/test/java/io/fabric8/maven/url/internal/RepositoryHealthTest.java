@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.maven.url.internal;
+
+import java.net.ConnectException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.repository.RemoteRepository;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RepositoryHealthTest {
+
+    private final RemoteRepository central = repository("central");
+    private final RemoteRepository fast = repository("fast");
+    private final RemoteRepository slow = repository("slow");
+
+    @Test
+    public void unusedRepositoriesKeepTheirOrder() {
+        RepositoryHealth health = new RepositoryHealth(60000);
+        List<RemoteRepository> repositories = Arrays.asList(central, fast, slow);
+        assertEquals(repositories, health.sort(repositories));
+    }
+
+    @Test
+    public void slowAndFailingRepositoriesComeLast() {
+        RepositoryHealth health = new RepositoryHealth(60000);
+        health.answered(central, TimeUnit.MILLISECONDS.toNanos(50));
+        health.answered(fast, TimeUnit.MILLISECONDS.toNanos(10));
+        health.answered(slow, TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(Arrays.asList(fast, central, slow), health.sort(Arrays.asList(central, fast, slow)));
+
+        // three failures in a row make the fast repository worse than the slow one
+        for (int i = 0; i < 3; i++) {
+            health.failed(fast, TimeUnit.MILLISECONDS.toNanos(200));
+        }
+        assertEquals(Arrays.asList(central, slow, fast), health.sort(Arrays.asList(central, fast, slow)));
+
+        // an answer resets the failures, the latency of the failures is still remembered
+        health.answered(fast, TimeUnit.MILLISECONDS.toNanos(10));
+        assertEquals(Arrays.asList(central, fast, slow), health.sort(Arrays.asList(central, fast, slow)));
+    }
+
+    @Test
+    public void failuresAreRememberedByGroup() throws Exception {
+        RepositoryHealth health = new RepositoryHealth(100);
+        Exception failure = new ConnectException("Connection refused");
+        health.remember(central, "org.apache.camel", failure);
+
+        assertSame(failure, health.getFailure(central, "org.apache.camel"));
+        assertNull(health.getFailure(central, "org.apache.cxf"));
+        assertNull(health.getFailure(fast, "org.apache.camel"));
+
+        Thread.sleep(150);
+        assertNull(health.getFailure(central, "org.apache.camel"));
+    }
+
+    @Test
+    public void failuresAreNotRememberedWithoutTimeout() {
+        RepositoryHealth health = new RepositoryHealth(0);
+        health.remember(central, "org.apache.camel", new ConnectException("Connection refused"));
+        assertNull(health.getFailure(central, "org.apache.camel"));
+    }
+
+    private static RemoteRepository repository(String id) {
+        return new RemoteRepository.Builder(id, "default", "http://" + id + ".example.com/maven2").build();
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of call latencies in nanoseconds over a rolling time window.
+ * <p/>
+ * Latencies are counted in log-linear buckets in the style of HdrHistogram: each power of two range
+ * is split into {@link #SUB_BUCKET_COUNT} linear buckets so percentiles are accurate to about 3%
+ * whatever the magnitude of the latency. The window is made of a ring of slots which are recycled
+ * as time moves on, so recording a latency only ever increments a few atomic counters and never
+ * allocates.
+ * <p/>
+ * Samples recorded by other threads at the exact moment a slot is recycled may be lost, which is
+ * fine for reporting purposes.
+ */
+public class LatencyHistogram {
+    public static final long DEFAULT_WINDOW_SLOT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    public static final int DEFAULT_WINDOW_SLOTS = 6;
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** latencies above about 18 minutes are counted as 18 minutes */
+    private static final long MAXIMUM_VALUE = (1L << 40) - 1;
+    private static final int BUCKET_COUNT = bucketIndex(MAXIMUM_VALUE) + 1;
+
+    private final long slotNanos;
+    private final Slot[] slots;
+    private final long origin = System.nanoTime();
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalErrors = new AtomicLong();
+    private volatile long lastRecordTime;
+
+    public LatencyHistogram() {
+        this(DEFAULT_WINDOW_SLOT_NANOS, DEFAULT_WINDOW_SLOTS);
+    }
+
+    /**
+     * @param slotNanos the duration of each slot of the rolling window
+     * @param slotCount the number of slots so the window covers <code>slotNanos * slotCount</code>
+     */
+    public LatencyHistogram(long slotNanos, int slotCount) {
+        if (slotNanos <= 0 || slotCount <= 0) {
+            throw new IllegalArgumentException("The window slot duration and count must be positive");
+        }
+        this.slotNanos = slotNanos;
+        this.slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Records the latency of a call
+     */
+    public void record(long latencyNanos, boolean error) {
+        long value = Math.min(Math.max(latencyNanos, 0L), MAXIMUM_VALUE);
+        Slot slot = currentSlot(System.nanoTime());
+        slot.counts.incrementAndGet(bucketIndex(value));
+        slot.count.incrementAndGet();
+        slot.sum.addAndGet(value);
+        if (error) {
+            slot.errors.incrementAndGet();
+            totalErrors.incrementAndGet();
+        }
+        long max = slot.max.get();
+        while (value > max && !slot.max.compareAndSet(max, value)) {
+            max = slot.max.get();
+        }
+        totalCount.incrementAndGet();
+        lastRecordTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the number of calls recorded since this histogram was created or reset
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Returns the number of failed calls recorded since this histogram was created or reset
+     */
+    public long getTotalErrors() {
+        return totalErrors.get();
+    }
+
+    /**
+     * Returns the time in milliseconds of the last recorded call or zero if there has not been one
+     */
+    public long getLastRecordTime() {
+        return lastRecordTime;
+    }
+
+    /**
+     * Returns the statistics of the calls recorded in the current window
+     */
+    public Snapshot getSnapshot() {
+        long current = slotId(System.nanoTime());
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        long errors = 0;
+        long sum = 0;
+        long max = 0;
+        for (Slot slot : slots) {
+            long id = slot.id.get();
+            if (id > current - slots.length && id <= current) {
+                for (int i = 0; i < BUCKET_COUNT; i++) {
+                    counts[i] += slot.counts.get(i);
+                }
+                count += slot.count.get();
+                errors += slot.errors.get();
+                sum += slot.sum.get();
+                max = Math.max(max, slot.max.get());
+            }
+        }
+        return new Snapshot(counts, count, errors, sum, max);
+    }
+
+    /**
+     * Clears all the recorded calls
+     */
+    public void reset() {
+        for (Slot slot : slots) {
+            slot.id.set(-1L);
+            slot.clear();
+        }
+        totalCount.set(0L);
+        totalErrors.set(0L);
+        lastRecordTime = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return getSnapshot().toString();
+    }
+
+    private long slotId(long now) {
+        return (now - origin) / slotNanos;
+    }
+
+    private Slot currentSlot(long now) {
+        long id = slotId(now);
+        Slot slot = slots[(int) (id % slots.length)];
+        long slotId = slot.id.get();
+        if (slotId < id && slot.id.compareAndSet(slotId, id)) {
+            slot.clear();
+        }
+        return slot;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int mantissa = (int) (value >>> exponent) - SUB_BUCKET_COUNT;
+        return ((exponent + 1) << SUB_BUCKET_BITS) + mantissa;
+    }
+
+    /**
+     * Returns the highest value which is counted in the given bucket
+     */
+    static long bucketHighestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int exponent = (index >> SUB_BUCKET_BITS) - 1;
+        long mantissa = index & (SUB_BUCKET_COUNT - 1);
+        return ((SUB_BUCKET_COUNT + mantissa + 1) << exponent) - 1;
+    }
+
+    private static final class Slot {
+        private final AtomicLong id = new AtomicLong(-1L);
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void clear() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts.set(i, 0L);
+            }
+            count.set(0L);
+            errors.set(0L);
+            sum.set(0L);
+            max.set(0L);
+        }
+    }
+
+    /**
+     * The latency statistics of a window in nanoseconds
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long errors;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long errors, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.errors = errors;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getMean() {
+            return count > 0 ? sum / count : 0L;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getP50() {
+            return getPercentile(50.0d);
+        }
+
+        public long getP99() {
+            return getPercentile(99.0d);
+        }
+
+        public long getP999() {
+            return getPercentile(99.9d);
+        }
+
+        /**
+         * Returns the latency which the given percentage of calls did not exceed
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0L;
+            }
+            long target = Math.max(1L, (long) Math.ceil(total * Math.min(percentile, 100.0d) / 100.0d));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(bucketHighestValue(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count +
+                    ", errors=" + errors +
+                    ", mean=" + getMean() +
+                    ", p50=" + getP50() +
+                    ", p99=" + getP99() +
+                    ", p999=" + getP999() +
+                    ", max=" + max;
+        }
+    }
+}
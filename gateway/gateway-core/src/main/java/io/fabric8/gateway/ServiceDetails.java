@@ -15,12 +15,14 @@
  */
 package io.fabric8.gateway;
 
+import io.fabric8.gateway.loadbalancer.ServiceUrls;
+
 import java.util.List;
 
 /**
  * Represents the details of a service
  */
-public interface ServiceDetails {
+public interface ServiceDetails extends ServiceUrls {
     String getId();
 
     String getContainer();
@@ -25,7 +25,9 @@ import io.fabric8.gateway.handlers.detecting.protocol.ssl.SslSocketWrapper;
 import io.fabric8.gateway.handlers.loadbalancer.ClientRequestFacadeFactory;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
+import io.fabric8.gateway.loadbalancer.LoadAwareLoadBalancer;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.StickyLoadBalancer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.AsyncResult;
@@ -35,7 +37,6 @@ import org.vertx.java.core.buffer.Buffer;
 import org.vertx.java.core.net.NetClient;
 import org.vertx.java.core.net.NetServer;
 import org.vertx.java.core.net.NetSocket;
-import org.vertx.java.core.streams.Pump;
 import org.vertx.java.core.streams.ReadStream;
 
 import javax.net.ssl.SSLContext;
@@ -43,6 +44,7 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -65,10 +67,14 @@ public class DetectingGateway implements DetectingGatewayMBean {
     final AtomicReference<InetSocketAddress> httpGateway = new AtomicReference<InetSocketAddress>();
     SslConfig sslConfig;
     long connectionTimeout = 5000;
+    volatile boolean spliceEnabled = true;
 
     final AtomicLong receivedConnectionAttempts = new AtomicLong();
     final AtomicLong successfulConnectionAttempts = new AtomicLong();
     final AtomicLong failedConnectionAttempts = new AtomicLong();
+    final AtomicLong bytesFromClients = new AtomicLong();
+    final AtomicLong bytesToClients = new AtomicLong();
+    final AtomicLong splicedConnections = new AtomicLong();
     Set<SocketWrapper> socketsConnecting = Collections.synchronizedSet(new HashSet<SocketWrapper>());
     Set<ConnectedSocketInfo> socketsConnected = Collections.synchronizedSet(new HashSet<ConnectedSocketInfo>());
     private volatile ShutdownTracker shutdownTracker = new ShutdownTracker();
@@ -213,12 +219,14 @@ public class DetectingGateway implements DetectingGatewayMBean {
         private final URI url;
         private final SocketWrapper from;
         private final NetClient to;
+        private final ServiceDetails service;
 
-        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetClient to) {
+        public ConnectedSocketInfo(ConnectionParameters params, URI url, SocketWrapper from, NetClient to, ServiceDetails service) {
             this.params = params;
             this.url = url;
             this.from = from;
             this.to = to;
+            this.service = service;
         }
 
         public String toString() {
@@ -282,7 +290,8 @@ public class DetectingGateway implements DetectingGatewayMBean {
         }
 
         readStream.dataHandler(new Handler<Buffer>() {
-            Buffer received = new Buffer();
+            final ProtocolDetector detector = new ProtocolDetector(protocols, maxProtocolIdentificationLength);
+            Buffer received;
 
             {
                 LOG.debug("Inititalized new Handler[{}] for socket: {}", this, socket.remoteAddress());
@@ -290,90 +299,93 @@ public class DetectingGateway implements DetectingGatewayMBean {
 
             @Override
             public void handle(Buffer event) {
-                received.appendBuffer(event);
+                if (received == null) {
+                    received = event;
+                } else {
+                    received.appendBuffer(event);
+                }
                 if (LOG.isTraceEnabled()) {
                     LOG.trace("Socket received following data: {}", event.copy().toString().replaceAll("\r", " "));
                     LOG.trace("Data handled by Handler {}", this.toString());
                 }
-                for (final Protocol protocol : protocols) {
-                    if (protocol.matches(received)) {
-                        if ("ssl".equals(protocol.getProtocolName())) {
-
-                            LOG.info(String.format("SSL Connection from '%s'", socket.remoteAddress()));
-                            String disabledCypherSuites = null;
-                            String enabledCipherSuites = null;
-                            if (sslConfig != null) {
-                                disabledCypherSuites = sslConfig.getDisabledCypherSuites();
-                                enabledCipherSuites = sslConfig.getEnabledCipherSuites();
-                            }
-                            if (sslContext == null) {
-                                try {
-                                    if (sslConfig != null) {
-                                        sslContext = SSLContext.getInstance(sslConfig.getProtocol());
-                                        sslContext.init(sslConfig.getKeyManagers(), sslConfig.getTrustManagers(), null);
-                                    } else {
-                                        sslContext = SSLContext.getDefault();
-                                    }
-                                } catch (Exception e) {
-                                    handleConnectFailure(socket, "Could initialize SSL: " + e);
-                                    return;
+                final Protocol protocol = detector.detect(received);
+                if (protocol != null) {
+                    if ("ssl".equals(protocol.getProtocolName())) {
+
+                        LOG.info(String.format("SSL Connection from '%s'", socket.remoteAddress()));
+                        String disabledCypherSuites = null;
+                        String enabledCipherSuites = null;
+                        if (sslConfig != null) {
+                            disabledCypherSuites = sslConfig.getDisabledCypherSuites();
+                            enabledCipherSuites = sslConfig.getEnabledCipherSuites();
+                        }
+                        if (sslContext == null) {
+                            try {
+                                if (sslConfig != null) {
+                                    sslContext = SSLContext.getInstance(sslConfig.getProtocol());
+                                    sslContext.init(sslConfig.getKeyManagers(), sslConfig.getTrustManagers(), null);
+                                } else {
+                                    sslContext = SSLContext.getDefault();
                                 }
+                            } catch (Exception e) {
+                                handleConnectFailure(socket, "Could initialize SSL: " + e);
+                                return;
                             }
+                        }
 
 
-                            if( socketsConnecting.remove(socket) ){
-                                // lets wrap it up in a SslSocketWrapper.
-                                SslSocketWrapper sslSocketWrapper = new SslSocketWrapper(socket);
-                                sslSocketWrapper.putBackHeader(received);
-                                sslSocketWrapper.initServer(sslContext, clientAuth, disabledCypherSuites, enabledCipherSuites);
-                                receivedConnectionAttempts.decrementAndGet();
-                                try {
-                                    DetectingGateway.this.handle(sslSocketWrapper);
-                                } finally {
-                                    shutdownTracker.release();
-                                }
-                                return;
-                            } else {
-                                handleConnectFailure(socket,"Could not accept SSL connection from: " + socket.remoteAddress() + "socket wasn't present in connecting socket set.");
-                                return;
+                        if( socketsConnecting.remove(socket) ){
+                            // lets wrap it up in a SslSocketWrapper.
+                            SslSocketWrapper sslSocketWrapper = new SslSocketWrapper(socket);
+                            sslSocketWrapper.putBackHeader(received);
+                            sslSocketWrapper.initServer(sslContext, clientAuth, disabledCypherSuites, enabledCipherSuites);
+                            receivedConnectionAttempts.decrementAndGet();
+                            try {
+                                DetectingGateway.this.handle(sslSocketWrapper);
+                            } finally {
+                                shutdownTracker.release();
                             }
-                        } else if ("http".equals(protocol.getProtocolName())) {
-                            InetSocketAddress target = getHttpGateway();
-                            if (target != null) {
-                                URI url;
-                                try {
-                                    url = new URI("http://" + target.getHostString() + ":" + target.getPort());
-                                    LOG.info(String.format("Connecting '%s' to '%s:%d' using the http protocol",
-                                            socket.remoteAddress(), url.getHost(), url.getPort()));
-                                } catch (URISyntaxException e) {
-                                    handleConnectFailure(socket, "Could not build valid connect URI: " + e);
-                                    return;
-                                }
-                                ConnectionParameters params = new ConnectionParameters();
-                                params.protocol = "http";
-                                createClient(params, socket, url, received);
-                                return;
-                            } else {
-                                handleConnectFailure(socket, "No http gateway available for the http protocol");
+                            return;
+                        } else {
+                            handleConnectFailure(socket,"Could not accept SSL connection from: " + socket.remoteAddress() + "socket wasn't present in connecting socket set.");
+                            return;
+                        }
+                    } else if ("http".equals(protocol.getProtocolName())) {
+                        InetSocketAddress target = getHttpGateway();
+                        if (target != null) {
+                            URI url;
+                            try {
+                                url = new URI("http://" + target.getHostString() + ":" + target.getPort());
+                                LOG.info(String.format("Connecting '%s' to '%s:%d' using the http protocol",
+                                        socket.remoteAddress(), url.getHost(), url.getPort()));
+                            } catch (URISyntaxException e) {
+                                handleConnectFailure(socket, "Could not build valid connect URI: " + e);
                                 return;
                             }
+                            ConnectionParameters params = new ConnectionParameters();
+                            params.protocol = "http";
+                            createClient(params, socket, url, received, null);
+                            return;
                         } else {
-                            protocol.snoopConnectionParameters(socket, received, new Handler<ConnectionParameters>() {
-                                @Override
-                                public void handle(ConnectionParameters connectionParameters) {
-                                    // this will install a new dataHandler on the socket.
-                                    if (connectionParameters.protocol == null)
-                                        connectionParameters.protocol = protocol.getProtocolName();
-                                    if (connectionParameters.protocolSchemes == null)
-                                        connectionParameters.protocolSchemes = protocol.getProtocolSchemes();
-                                    route(socket, connectionParameters, received);
-                                }
-                            });
+                            handleConnectFailure(socket, "No http gateway available for the http protocol");
                             return;
                         }
+                    } else {
+                        protocol.snoopConnectionParameters(socket, received, new Handler<ConnectionParameters>() {
+                            @Override
+                            public void handle(ConnectionParameters connectionParameters) {
+                                // this will install a new dataHandler on the socket.
+                                if (connectionParameters.protocol == null)
+                                    connectionParameters.protocol = protocol.getProtocolName();
+                                if (connectionParameters.protocolSchemes == null)
+                                    connectionParameters.protocolSchemes = protocol.getProtocolSchemes();
+                                route(socket, connectionParameters, received);
+                            }
+                        });
+                        return;
                     }
                 }
-                if (received.length() >= maxProtocolIdentificationLength) {
+                if (detector.isRejected()) {
                     handleConnectFailure(socket, "Connection did not use one of the enabled protocols " + getProtocolNames());
                 }
             }
@@ -440,7 +452,7 @@ public class DetectingGateway implements DetectingGatewayMBean {
                                           ));
                                     }
 
-                                    client = createClient(params, socket, uri, received);
+                                    client = createClient(params, socket, uri, received, serviceDetails);
                                     break;
                                 }
                             } catch (URISyntaxException e) {
@@ -461,13 +473,19 @@ public class DetectingGateway implements DetectingGatewayMBean {
     /**
      * Creates a new client for the given URL and handler
      */
-    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received) {
+    private NetClient createClient(final ConnectionParameters params, final SocketWrapper socketFromClient, final URI url, final Buffer received, final ServiceDetails serviceDetails) {
         final NetClient netClient = vertx.createNetClient();
+        final long connectStart = System.nanoTime();
         socketFromClient.readStream().pause();
         return netClient.connect(url.getPort(), url.getHost(), new Handler<AsyncResult<NetSocket>>() {
             public void handle(final AsyncResult<NetSocket> asyncSocket) {
 
                 if( !asyncSocket.succeeded() ) {
+                    if (serviceLoadBalancer instanceof LoadAwareLoadBalancer) {
+                        // penalize the service as if it had taken the whole timeout to connect
+                        long latency = Math.max(System.nanoTime() - connectStart, TimeUnit.MILLISECONDS.toNanos(connectionTimeout));
+                        ((LoadAwareLoadBalancer) serviceLoadBalancer).recordLatency(serviceDetails, latency);
+                    }
                     handleConnectFailure(socketFromClient, String.format("Could not connect to '%s'", url));
                 } else {
                     socketFromClient.readStream().resume();
@@ -476,7 +494,12 @@ public class DetectingGateway implements DetectingGatewayMBean {
                     successfulConnectionAttempts.incrementAndGet();
 
                     if(socketsConnecting.remove(socketFromClient)) {
-                        final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, netClient);
+                        final ConnectedSocketInfo connectedInfo = new ConnectedSocketInfo(params, url, socketFromClient, netClient, serviceDetails);
+                        if (serviceLoadBalancer instanceof LoadAwareLoadBalancer) {
+                            LoadAwareLoadBalancer loadBalancer = (LoadAwareLoadBalancer) serviceLoadBalancer;
+                            loadBalancer.recordLatency(serviceDetails, System.nanoTime() - connectStart);
+                            loadBalancer.connectionOpened(serviceDetails);
+                        }
                         synchronized (socketsConnected) {
                             socketsConnected.add(connectedInfo);
 
@@ -500,9 +523,11 @@ public class DetectingGateway implements DetectingGatewayMBean {
                         if(LOG.isTraceEnabled()){
                             LOG.trace("Sending out to destination socket: {}", received);
                         }
+                        bytesFromClients.addAndGet(received.length());
                         socketToServer.write(received);
-                        Pump.createPump(socketToServer, socketFromClient.writeStream()).start();
-                        Pump.createPump(socketFromClient.readStream(), socketToServer).start();
+                        if (SocketRelay.relay(socketFromClient, socketToServer, bytesFromClients, bytesToClients, spliceEnabled)) {
+                            splicedConnections.incrementAndGet();
+                        }
                         LOG.debug("socketFromClient {} has been connected to socketToServer {}", socketFromClient.remoteAddress(), socketToServer.remoteAddress());
                     } else {
                         handleConnectFailure(socketFromClient,"Could not create a new client for: " + socketFromClient.remoteAddress() + "socket wasn't present in connecting socket set.");
@@ -518,6 +543,9 @@ public class DetectingGateway implements DetectingGatewayMBean {
         LOG.debug("Handling Shutdown for Socket: [{}]", connectedInfo);
         if (socketsConnected.remove(connectedInfo)) {
             LOG.trace("Socket: [{}] found and removed from socketsConnected Set", connectedInfo);
+            if (serviceLoadBalancer instanceof LoadAwareLoadBalancer) {
+                ((LoadAwareLoadBalancer) serviceLoadBalancer).connectionClosed(connectedInfo.service);
+            }
             try {
                 try {
                     connectedInfo.from.close();
@@ -581,10 +609,42 @@ public class DetectingGateway implements DetectingGatewayMBean {
         return connectionTimeout;
     }
 
+    public long getStickySessionHits() {
+        return serviceLoadBalancer instanceof StickyLoadBalancer ? ((StickyLoadBalancer) serviceLoadBalancer).getHits() : 0L;
+    }
+
+    public long getStickySessionMisses() {
+        return serviceLoadBalancer instanceof StickyLoadBalancer ? ((StickyLoadBalancer) serviceLoadBalancer).getMisses() : 0L;
+    }
+
+    public double getStickySessionHitRatio() {
+        return serviceLoadBalancer instanceof StickyLoadBalancer ? ((StickyLoadBalancer) serviceLoadBalancer).getHitRatio() : 0.0d;
+    }
+
     public void setConnectionTimeout(long connectionTimeout) {
         this.connectionTimeout = connectionTimeout;
     }
 
+    public long getBytesFromClients() {
+        return bytesFromClients.get();
+    }
+
+    public long getBytesToClients() {
+        return bytesToClients.get();
+    }
+
+    public long getSplicedConnections() {
+        return splicedConnections.get();
+    }
+
+    public boolean isSpliceEnabled() {
+        return spliceEnabled;
+    }
+
+    public void setSpliceEnabled(boolean spliceEnabled) {
+        this.spliceEnabled = spliceEnabled;
+    }
+
     public int getPort() {
         return port;
     }
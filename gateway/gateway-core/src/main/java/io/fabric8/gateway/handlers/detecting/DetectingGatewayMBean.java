@@ -34,5 +34,13 @@ public interface DetectingGatewayMBean {
     public String[] getConnectedClients();
     public long getConnectionTimeout();
     public void setConnectionTimeout(long connectionTimeout);
+    public long getStickySessionHits();
+    public long getStickySessionMisses();
+    public double getStickySessionHitRatio();
+    public long getBytesFromClients();
+    public long getBytesToClients();
+    public long getSplicedConnections();
+    public boolean isSpliceEnabled();
+    public void setSpliceEnabled(boolean spliceEnabled);
 
 }
@@ -25,10 +25,31 @@ import org.vertx.java.core.buffer.Buffer;
  */
 public interface Protocol {
 
+    /**
+     * {@link #detect(Buffer)} result when the received bytes can not be the start of this protocol
+     */
+    public static final int NO_MATCH = 0;
+    /**
+     * {@link #detect(Buffer)} result when the received bytes are the start of this protocol
+     */
+    public static final int MATCH = 1;
+    /**
+     * {@link #detect(Buffer)} result when the received bytes could be the start of this protocol but more are needed to tell
+     */
+    public static final int NEED_MORE = 2;
+
     public String[] getProtocolSchemes();
     public String getProtocolName();
     public int getMaxIdentificationLength();
     public boolean matches(Buffer buffer);
+
+    /**
+     * Detects whether the bytes received so far are the start of this protocol by looking at no more
+     * than {@link #getMaxIdentificationLength()} bytes and without allocating any objects.
+     *
+     * @return one of {@link #MATCH}, {@link #NO_MATCH} or {@link #NEED_MORE}
+     */
+    public int detect(Buffer buffer);
     public void snoopConnectionParameters(final SocketWrapper socket, Buffer received, Handler<ConnectionParameters> handler);
 
 }
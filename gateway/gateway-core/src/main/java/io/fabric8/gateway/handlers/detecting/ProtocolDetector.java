@@ -0,0 +1,77 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import org.vertx.java.core.buffer.Buffer;
+
+import java.util.List;
+
+/**
+ * Detects the protocol of a single connection as its first bytes arrive by running the
+ * {@link Protocol#detect(Buffer)} check of all the protocols side by side.
+ * <p/>
+ * A protocol which has rejected the bytes received so far is not asked again, and the connection
+ * is rejected as soon as every protocol has rejected it rather than once the longest
+ * identification length has been received.
+ */
+public class ProtocolDetector {
+    private final List<Protocol> protocols;
+    private final int maxIdentificationLength;
+    private long rejected;
+    private int received;
+
+    public ProtocolDetector(List<Protocol> protocols, int maxIdentificationLength) {
+        if (protocols.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " protocols can be detected");
+        }
+        this.protocols = protocols;
+        this.maxIdentificationLength = maxIdentificationLength;
+    }
+
+    /**
+     * Returns the first protocol, in the order they were configured, which the received bytes
+     * are the start of or null if there is none yet
+     */
+    public Protocol detect(Buffer buffer) {
+        received = buffer.length();
+        for (int i = 0, size = protocols.size(); i < size; i++) {
+            long bit = 1L << i;
+            if ((rejected & bit) != 0) {
+                continue;
+            }
+            Protocol protocol = protocols.get(i);
+            switch (protocol.detect(buffer)) {
+                case Protocol.MATCH:
+                    return protocol;
+                case Protocol.NO_MATCH:
+                    rejected |= bit;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if none of the protocols can match the connection
+     */
+    public boolean isRejected() {
+        int size = protocols.size();
+        long all = size == Long.SIZE ? -1L : (1L << size) - 1;
+        return rejected == all || received >= maxIdentificationLength;
+    }
+}
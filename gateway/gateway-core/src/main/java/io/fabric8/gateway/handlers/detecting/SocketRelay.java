@@ -0,0 +1,205 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import io.fabric8.gateway.SocketWrapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.net.NetSocket;
+import org.vertx.java.core.net.impl.ConnectionBase;
+import org.vertx.java.core.streams.ReadStream;
+import org.vertx.java.core.streams.WriteStream;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relays the traffic between a client socket and the broker socket it was connected to once the
+ * {@link DetectingGateway} has detected the protocol, counting the bytes in each direction.
+ * <p/>
+ * When both sockets are plain Vert.x TCP sockets served by the event loop the relay is started on, the
+ * relay is spliced into their Netty pipelines ahead of Vert.x, so the pooled direct buffers read from one
+ * socket are handed straight to the other without being copied onto the heap into a Vert.x {@link Buffer}.
+ * Back pressure is then only applied by turning off reads on a socket while its peer is not writable, and
+ * a socket is closed when its peer is closed or fails. Other sockets, such as web sockets or sockets the
+ * gateway terminates SSL on, are pumped through Vert.x.
+ */
+public final class SocketRelay {
+    private static final transient Logger LOG = LoggerFactory.getLogger(SocketRelay.class);
+    private static final String RELAY_HANDLER_NAME = "gatewayRelay";
+    private static final Field CHANNEL_FIELD = channelField();
+
+    private SocketRelay() {
+    }
+
+    /**
+     * Starts relaying the traffic between the two sockets
+     *
+     * @param splice whether the relay may be spliced into the Netty pipelines
+     * @return true if the relay was spliced or false if the sockets are pumped through Vert.x
+     */
+    public static boolean relay(SocketWrapper client, NetSocket server, AtomicLong bytesFromClients, AtomicLong bytesToClients, boolean splice) {
+        if (splice && client.stream() instanceof NetSocket) {
+            Channel clientChannel = channel((NetSocket) client.stream());
+            Channel serverChannel = channel(server);
+            if (canSplice(clientChannel) && canSplice(serverChannel)) {
+                // both handlers are added before either channel reads again, so Vert.x gets no more data
+                install(clientChannel, serverChannel, bytesFromClients);
+                install(serverChannel, clientChannel, bytesToClients);
+                return true;
+            }
+        }
+        pump(client.readStream(), server, bytesFromClients);
+        pump(server, client.writeStream(), bytesToClients);
+        return false;
+    }
+
+    /**
+     * A Vert.x pump which counts the bytes it pumps
+     */
+    static void pump(final ReadStream<?> from, final WriteStream<?> to, final AtomicLong counter) {
+        final Handler<Void> drainHandler = new Handler<Void>() {
+            @Override
+            public void handle(Void event) {
+                from.resume();
+            }
+        };
+        from.dataHandler(new Handler<Buffer>() {
+            @Override
+            public void handle(Buffer data) {
+                counter.addAndGet(data.length());
+                to.write(data);
+                if (to.writeQueueFull()) {
+                    from.pause();
+                    to.drainHandler(drainHandler);
+                }
+            }
+        });
+    }
+
+    /**
+     * Whether the relay handler can be added to the pipeline of the channel right now, which is only done
+     * on the event loop of the channel so that it sees every buffer read after the ones given to Vert.x
+     */
+    private static boolean canSplice(Channel channel) {
+        return channel != null && channel.isActive() && channel.eventLoop().inEventLoop() && !isSecure(channel);
+    }
+
+    private static void install(Channel from, Channel to, AtomicLong counter) {
+        ChannelPipeline pipeline = from.pipeline();
+        // the last handler is the one which hands the data over to Vert.x
+        pipeline.addBefore(pipeline.lastContext().name(), RELAY_HANDLER_NAME, new RelayHandler(to, counter));
+    }
+
+    private static Channel channel(NetSocket socket) {
+        if (CHANNEL_FIELD != null && socket instanceof ConnectionBase) {
+            try {
+                return (Channel) CHANNEL_FIELD.get(socket);
+            } catch (IllegalAccessException e) {
+                LOG.debug("Could not access the channel of " + socket + ". " + e, e);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSecure(Channel channel) {
+        return channel.pipeline().get("ssl") != null;
+    }
+
+    private static Field channelField() {
+        try {
+            Field field = ConnectionBase.class.getDeclaredField("channel");
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            LOG.info("Sockets will be relayed through Vert.x as the Netty channels are not accessible: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the buffers read from a channel to its peer, and closes the peer once the channel is closed
+     */
+    static final class RelayHandler extends ChannelInboundHandlerAdapter {
+        private final Channel peer;
+        private final AtomicLong counter;
+        private boolean needsFlush;
+
+        RelayHandler(Channel peer, AtomicLong counter) {
+            this.peer = peer;
+            this.counter = counter;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if (msg instanceof ByteBuf) {
+                counter.addAndGet(((ByteBuf) msg).readableBytes());
+                peer.write(msg);
+                needsFlush = true;
+            } else {
+                ctx.fireChannelRead(msg);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+            if (needsFlush) {
+                needsFlush = false;
+                peer.flush();
+                if (!peer.isWritable()) {
+                    ctx.channel().config().setAutoRead(false);
+                    // the peer may have drained in the meantime
+                    if (peer.isWritable()) {
+                        ctx.channel().config().setAutoRead(true);
+                    }
+                }
+            }
+            ctx.fireChannelReadComplete();
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if (ctx.channel().isWritable()) {
+                peer.config().setAutoRead(true);
+            }
+            ctx.fireChannelWritabilityChanged();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // the peer gets what was already relayed to it before being closed
+            peer.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+            ctx.fireChannelInactive();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            LOG.debug("Closing the relay from " + ctx.channel() + " to " + peer + " as it failed: " + cause);
+            ctx.close();
+            peer.close();
+            ctx.fireExceptionCaught(cause);
+        }
+    }
+}
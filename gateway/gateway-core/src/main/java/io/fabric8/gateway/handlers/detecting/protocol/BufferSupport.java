@@ -15,6 +15,7 @@
  */
 package io.fabric8.gateway.handlers.detecting.protocol;
 
+import io.fabric8.gateway.handlers.detecting.Protocol;
 import io.netty.buffer.ByteBuf;
 import org.vertx.java.core.buffer.Buffer;
 
@@ -73,11 +74,44 @@ public class BufferSupport {
     }
 
     static public boolean startsWith(Buffer self, Buffer needle) {
-        return indexOf(self, 0, needle.length(), needle) == 0;
+        return startsWith(self, 0, needle);
     }
 
     static public boolean startsWith(Buffer self, int start, Buffer needle) {
-        return indexOf(self, start, start+needle.length(), needle) == 0;
+        return self.length() >= start + needle.length() && matches(self, start, needle);
+    }
+
+    /**
+     * Compares the bytes received so far at the given position with the needle.
+     *
+     * @return {@link Protocol#MATCH} if the whole needle is there, {@link Protocol#NEED_MORE} if the
+     * bytes received so far are the start of the needle or {@link Protocol#NO_MATCH} otherwise
+     */
+    static public int detect(Buffer self, int pos, Buffer needle) {
+        int length = self.length();
+        int needleLength = needle.length();
+        for (int i = 0; i < needleLength; i++) {
+            if (pos + i >= length) {
+                return Protocol.NEED_MORE;
+            }
+            if (self.getByte(pos + i) != needle.getByte(i)) {
+                return Protocol.NO_MATCH;
+            }
+        }
+        return Protocol.MATCH;
+    }
+
+    /**
+     * Combines the detection results of two alternatives
+     */
+    static public int either(int detected, int other) {
+        if (detected == Protocol.MATCH || other == Protocol.MATCH) {
+            return Protocol.MATCH;
+        } else if (detected == Protocol.NEED_MORE || other == Protocol.NEED_MORE) {
+            return Protocol.NEED_MORE;
+        } else {
+            return Protocol.NO_MATCH;
+        }
     }
 
     static public int indexOf(Buffer self, int start, Buffer needle) {
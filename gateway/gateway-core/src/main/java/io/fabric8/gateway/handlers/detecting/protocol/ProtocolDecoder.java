@@ -129,7 +129,8 @@ public abstract class ProtocolDecoder<T> implements Handler<Buffer> {
             }
             return buff.getBuffer(offset, readEnd);
         } else {
-            readEnd += buff.length();
+            // carry on scanning from where we got to once more data arrives
+            readEnd = buff.length();
             if (max >= 0 && (readEnd - readStart) > max) {
                 throw new ProtocolException(msg);
             }
@@ -149,6 +150,33 @@ public abstract class ProtocolDecoder<T> implements Handler<Buffer> {
         }
     }
 
+    /**
+     * Reads the given number of bytes straight into an array without creating an intermediate buffer
+     */
+    protected byte[] readByteArray(int length) {
+        readEnd = readStart + length;
+        if (buff.length() < readEnd) {
+            return null;
+        } else {
+            bytesDecoded += readEnd-readStart;
+            int offset = readStart;
+            readStart = readEnd;
+            return buff.getBytes(offset, readEnd);
+        }
+    }
+
+    /**
+     * Returns the big endian int at the read position without consuming it or -1 if it has not been received yet
+     */
+    protected int peekInt() {
+        readEnd = readStart + 4;
+        if (buff.length() < readEnd) {
+            return -1;
+        } else {
+            return buff.getInt(readStart);
+        }
+    }
+
     protected Buffer peekBytes(int length) {
         readEnd = readStart + length;
         if (buff.length() < readEnd) {
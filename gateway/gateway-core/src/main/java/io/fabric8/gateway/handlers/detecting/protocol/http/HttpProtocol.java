@@ -18,6 +18,7 @@ package io.fabric8.gateway.handlers.detecting.protocol.http;
 import io.fabric8.gateway.handlers.detecting.Protocol;
 import io.fabric8.gateway.SocketWrapper;
 import io.fabric8.gateway.handlers.detecting.protocol.Ascii;
+import io.fabric8.gateway.handlers.detecting.protocol.BufferSupport;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,7 +26,7 @@ import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 
 import static io.fabric8.gateway.handlers.detecting.protocol.Ascii.ascii;
-import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.startsWith;
+import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.either;
 
 /**
  */
@@ -40,6 +41,10 @@ public class HttpProtocol implements Protocol {
     final Ascii OPTIONS = ascii("OPTIONS ");
     final Ascii HEAD = ascii("HEAD ");
     final Ascii TRACE = ascii("TRACE ");
+    final Buffer[] METHODS = new Buffer[]{
+        GET.toBuffer(), POST.toBuffer(), PUT.toBuffer(), DELETE.toBuffer(),
+        HEAD.toBuffer(), OPTIONS.toBuffer(), TRACE.toBuffer(), CONNECT.toBuffer()
+    };
 
     @Override
     public String getProtocolName() {
@@ -60,15 +65,19 @@ public class HttpProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer header) {
-        return
-            startsWith(header, 0, GET.toBuffer()) ||
-            startsWith(header, 0, HEAD.toBuffer()) ||
-            startsWith(header, 0, POST.toBuffer()) ||
-            startsWith(header, 0, PUT.toBuffer()) ||
-            startsWith(header, 0, DELETE.toBuffer()) ||
-            startsWith(header, 0, OPTIONS.toBuffer()) ||
-            startsWith(header, 0, TRACE.toBuffer()) ||
-            startsWith(header, 0, CONNECT.toBuffer());
+        return detect(header) == MATCH;
+    }
+
+    @Override
+    public int detect(Buffer header) {
+        int rc = NO_MATCH;
+        for (Buffer method : METHODS) {
+            rc = either(rc, BufferSupport.detect(header, 0, method));
+            if (rc == MATCH) {
+                break;
+            }
+        }
+        return rc;
     }
 
     @Override
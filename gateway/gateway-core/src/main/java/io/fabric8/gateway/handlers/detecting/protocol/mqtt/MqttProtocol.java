@@ -58,15 +58,23 @@ public class MqttProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer header) {
-        if (header.length() < 10) {
-          return false;
-        } else {
-          return BufferSupport.startsWith(header, HEAD_MAGIC) && (
-              BufferSupport.indexOf(header, 2, MQTT31_TAIL_MAGIC)< 6
-              ||
-              BufferSupport.indexOf(header, 2, MQTT311_TAIL_MAGIC) < 6
-          );
+        return detect(header) == MATCH;
+    }
+
+    @Override
+    public int detect(Buffer header) {
+        int rc = BufferSupport.detect(header, 0, HEAD_MAGIC);
+        if (rc != MATCH) {
+            return rc;
+        }
+        // the protocol name follows the 1 to 4 byte remaining length of the CONNECT frame
+        rc = NO_MATCH;
+        for (int pos = 2; pos < 6 && rc != MATCH; pos++) {
+            rc = BufferSupport.either(rc, BufferSupport.either(
+                BufferSupport.detect(header, pos, MQTT31_TAIL_MAGIC),
+                BufferSupport.detect(header, pos, MQTT311_TAIL_MAGIC)));
         }
+        return rc;
     }
 
     static void append(Buffer self, MQTTFrame value) {
@@ -19,7 +19,6 @@ import io.fabric8.gateway.handlers.detecting.protocol.ProtocolDecoder;
 import org.fusesource.mqtt.codec.MQTTFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.vertx.java.core.buffer.Buffer;
 
 import java.io.IOException;
 
@@ -89,13 +88,12 @@ class MqttProtocolDecoder extends ProtocolDecoder<MQTTFrame> {
     Action<MQTTFrame> readBody(final byte header, final int remaining) {
         return new Action<MQTTFrame>() {
             public MQTTFrame apply() throws IOException {
-                Buffer body = readBytes(remaining);
+                byte[] body = readByteArray(remaining);
                 if( body==null ) {
                     return null;
                 } else {
                     nextDecodeAction = readHeader;
-                    // TODO: optimize out this conversion to byte[]
-                    return new MQTTFrame(new org.fusesource.hawtbuf.Buffer(body.getBytes())).header(header);
+                    return new MQTTFrame(new org.fusesource.hawtbuf.Buffer(body)).header(header);
                 }
             }
         };
@@ -16,6 +16,7 @@
 package io.fabric8.gateway.handlers.detecting.protocol.openwire;
 
 import io.fabric8.gateway.handlers.detecting.Protocol;
+import io.fabric8.gateway.handlers.detecting.protocol.BufferSupport;
 import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.Command;
 import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.WireFormatInfo;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
@@ -27,8 +28,6 @@ import org.vertx.java.core.buffer.Buffer;
 
 import java.io.IOException;
 
-import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.indexOf;
-
 /**
  */
 public class OpenwireProtocol implements Protocol {
@@ -57,7 +56,13 @@ public class OpenwireProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer buffer) {
-        return buffer.length() >= 4 + MAGIC.length() && indexOf(buffer, 5, MAGIC) >= 0;
+        return detect(buffer) == MATCH;
+    }
+
+    @Override
+    public int detect(Buffer buffer) {
+        // the magic of the WireFormatInfo follows the frame size and command type
+        return BufferSupport.detect(buffer, 5, MAGIC);
     }
 
     @Override
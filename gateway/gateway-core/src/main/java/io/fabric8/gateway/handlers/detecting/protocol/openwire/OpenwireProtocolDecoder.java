@@ -20,7 +20,6 @@ import io.fabric8.gateway.handlers.detecting.protocol.openwire.codec.OpenWireFor
 import io.fabric8.gateway.handlers.detecting.protocol.openwire.command.Command;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.vertx.java.core.buffer.Buffer;
 
 import java.io.IOException;
 import java.net.ProtocolException;
@@ -48,22 +47,20 @@ class OpenwireProtocolDecoder extends ProtocolDecoder<Command> {
 
     final Action<Command> read_action = new Action<Command>() {
         public Command apply() throws IOException {
-            Buffer header = peekBytes(4);
-            if( header==null ) {
+            final int length = peekInt();
+            if( length < 0 ) {
               return null;
             } else {
-              final int length = header.getInt(0);
               if( length > protocol.maxFrameSize ) {
                   throw new ProtocolException("Max frame size exceeded.");
               }
               nextDecodeAction = new Action<Command>() {
                 public Command apply() throws IOException {
-                  Buffer frame = readBytes(4+length) ;
+                  byte[] frame = readByteArray(4+length) ;
                   if( frame==null ) {
                     return null;
                   } else {
-                    // TODO: avoid this conversion.
-                    org.fusesource.hawtbuf.Buffer buffer = new org.fusesource.hawtbuf.Buffer(frame.getBytes());
+                    org.fusesource.hawtbuf.Buffer buffer = new org.fusesource.hawtbuf.Buffer(frame);
                     Command command = (Command) format.unmarshal(buffer);
                     nextDecodeAction = read_action;
                     return command;
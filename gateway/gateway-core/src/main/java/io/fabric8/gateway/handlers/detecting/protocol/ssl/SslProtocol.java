@@ -50,6 +50,25 @@ public class SslProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer buffer) {
+        return detect(buffer) == MATCH;
+    }
+
+    @Override
+    public int detect(Buffer buffer) {
+        if (buffer.length() == 0) {
+            return NEED_MORE;
+        }
+        byte contentType = buffer.getByte(0);
+        if (contentType != 0x16 && (contentType & 0xC0) != 0x80) {
+            return NO_MATCH;
+        }
+        if (buffer.length() < 6) {
+            return NEED_MORE;
+        }
+        return isClientHello(buffer) ? MATCH : NO_MATCH;
+    }
+
+    private boolean isClientHello(Buffer buffer) {
         if( buffer.length() >= 6 ) {
           if( buffer.getByte(0) == 0x16 ) { // content type
             return (buffer.getByte(5) == 1) && // Client Hello
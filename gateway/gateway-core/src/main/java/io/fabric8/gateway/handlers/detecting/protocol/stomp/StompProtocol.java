@@ -17,13 +17,14 @@ package io.fabric8.gateway.handlers.detecting.protocol.stomp;
 
 import io.fabric8.gateway.handlers.detecting.Protocol;
 import io.fabric8.gateway.SocketWrapper;
+import io.fabric8.gateway.handlers.detecting.protocol.BufferSupport;
 import io.fabric8.gateway.handlers.loadbalancer.ConnectionParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.vertx.java.core.Handler;
 import org.vertx.java.core.buffer.Buffer;
 
-import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.startsWith;
+import static io.fabric8.gateway.handlers.detecting.protocol.BufferSupport.either;
 import static io.fabric8.gateway.handlers.detecting.protocol.stomp.Constants.*;
 
 /**
@@ -55,8 +56,12 @@ public class StompProtocol implements Protocol {
 
     @Override
     public boolean matches(Buffer header) {
-        return startsWith(header, 0, CONNECT.toBuffer()) ||
-               startsWith(header, 0, STOMP.toBuffer());
+        return detect(header) == MATCH;
+    }
+
+    @Override
+    public int detect(Buffer header) {
+        return either(BufferSupport.detect(header, 0, CONNECT.toBuffer()), BufferSupport.detect(header, 0, STOMP.toBuffer()));
     }
 
     @Override
@@ -0,0 +1,285 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.http.HttpClient;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps one keep-alive {@link HttpClient} per upstream host:port and Vert.x event loop so
+ * that proxied requests reuse pooled backend connections rather than opening a new one each time.
+ * <p/>
+ * Vert.x clients must only be used from the context which created them, so upstreams are keyed by
+ * the current context as well. Each upstream runs an idle check on its own context and closes its
+ * client once it has not been used for {@link #getIdleTimeout()} milliseconds.
+ */
+public class HttpClientPool {
+    private static final transient Logger LOG = LoggerFactory.getLogger(HttpClientPool.class);
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000L;
+
+    private final Vertx vertx;
+    private final ConcurrentMap<UpstreamKey, Upstream> upstreams = new ConcurrentHashMap<>();
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private int connectionTimeout = 60000;
+    private boolean keepAlive = true;
+
+    public HttpClientPool(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * Leases the pooled client for the given upstream URL. The returned lease must be
+     * {@link Lease#release() released} once the proxied exchange has completed or failed.
+     */
+    public Lease acquire(URL url) {
+        UpstreamKey key = new UpstreamKey(vertx.currentContext(), url.getHost(), url.getPort());
+        Upstream upstream = upstreams.get(key);
+        while (upstream == null || upstream.closed) {
+            Upstream created = new Upstream(key);
+            boolean added = upstream == null ? upstreams.putIfAbsent(key, created) == null : upstreams.replace(key, upstream, created);
+            if (added) {
+                upstream = created;
+            } else {
+                // another caller created the client of the upstream first
+                created.close();
+                upstream = upstreams.get(key);
+            }
+        }
+        return upstream.lease();
+    }
+
+    /**
+     * Closes all pooled clients
+     */
+    public void close() {
+        for (Upstream upstream : new ArrayList<>(upstreams.values())) {
+            upstream.close();
+        }
+        upstreams.clear();
+    }
+
+    /**
+     * Returns the number of proxied requests currently using an upstream connection
+     */
+    public int getActiveConnections() {
+        int answer = 0;
+        for (Upstream upstream : upstreams.values()) {
+            answer += upstream.getActive();
+        }
+        return answer;
+    }
+
+    /**
+     * Returns a description of each pooled upstream and its number of active requests
+     */
+    public List<String> getUpstreamStatistics() {
+        List<String> answer = new ArrayList<>();
+        for (Upstream upstream : upstreams.values()) {
+            answer.add(upstream.toString());
+        }
+        return answer;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(int connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * A leased upstream client for the duration of a single proxied request
+     */
+    public static final class Lease {
+        private final Upstream upstream;
+        private boolean released;
+
+        private Lease(Upstream upstream) {
+            this.upstream = upstream;
+        }
+
+        public HttpClient getClient() {
+            return upstream.client;
+        }
+
+        /**
+         * Returns the client to the pool; calling this more than once has no effect
+         */
+        public void release() {
+            if (!released) {
+                released = true;
+                upstream.release();
+            }
+        }
+
+        /**
+         * Returns the client to the pool and stops handing it out to new requests, closing it once
+         * all its in flight requests are done. Used when a connection may have been left in an
+         * unusable state, e.g. after a request timeout.
+         */
+        public void discard() {
+            upstream.discard();
+            release();
+        }
+    }
+
+    private final class Upstream {
+        private final UpstreamKey key;
+        private final HttpClient client;
+        private final long timerId;
+        private final AtomicInteger active = new AtomicInteger();
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile boolean discarded;
+        private volatile boolean closed;
+
+        Upstream(UpstreamKey key) {
+            this.key = key;
+            this.client = vertx.createHttpClient();
+            client.setHost(key.host);
+            client.setPort(key.port);
+            client.setKeepAlive(keepAlive);
+            client.setMaxPoolSize(maxConnections);
+            client.setConnectTimeout(connectionTimeout);
+            client.exceptionHandler(new Handler<Throwable>() {
+                @Override
+                public void handle(Throwable throwable) {
+                    LOG.debug("Upstream connection error on " + Upstream.this + ": " + throwable, throwable);
+                }
+            });
+            long interval = Math.max(1000L, idleTimeout / 2);
+            this.timerId = idleTimeout > 0 ? vertx.setPeriodic(interval, new Handler<Long>() {
+                @Override
+                public void handle(Long event) {
+                    evictIfIdle();
+                }
+            }) : -1L;
+            LOG.debug("Created upstream client for {}:{}", key.host, key.port);
+        }
+
+        Lease lease() {
+            active.incrementAndGet();
+            lastUsed = System.currentTimeMillis();
+            return new Lease(this);
+        }
+
+        void release() {
+            int remaining = active.decrementAndGet();
+            lastUsed = System.currentTimeMillis();
+            if (discarded && remaining <= 0) {
+                close();
+            }
+        }
+
+        void discard() {
+            discarded = true;
+            upstreams.remove(key, this);
+        }
+
+        void evictIfIdle() {
+            if (active.get() <= 0 && System.currentTimeMillis() - lastUsed >= idleTimeout) {
+                LOG.debug("Evicting idle upstream client for {}:{}", key.host, key.port);
+                upstreams.remove(key, this);
+                close();
+            }
+        }
+
+        void close() {
+            if (!closed) {
+                closed = true;
+                if (timerId >= 0) {
+                    vertx.cancelTimer(timerId);
+                }
+                client.close();
+            }
+        }
+
+        int getActive() {
+            return Math.max(active.get(), 0);
+        }
+
+        @Override
+        public String toString() {
+            return key.host + ":" + key.port + "{active=" + getActive() + "}";
+        }
+    }
+
+    private static final class UpstreamKey {
+        private final Object context;
+        private final String host;
+        private final int port;
+
+        UpstreamKey(Object context, String host, int port) {
+            this.context = context;
+            this.host = host;
+            this.port = port;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            UpstreamKey that = (UpstreamKey) o;
+            return context == that.context && port == that.port && host.equals(that.host);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(context);
+            result = 31 * result + host.hashCode();
+            result = 31 * result + port;
+            return result;
+        }
+    }
+}
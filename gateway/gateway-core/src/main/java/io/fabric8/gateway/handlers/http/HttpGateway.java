@@ -43,6 +43,12 @@ public interface HttpGateway {
      */
     Map<String, MappedServices> getMappedServices();
 
+    /**
+     * Returns the routing table used to find the mapped services for a request URI by longest
+     * matching prefix; implementations should rebuild it only when the mapping rules change
+     */
+    HttpRoutingTable getRoutingTable();
+
     /**
      * Returns true if the mapping index is enabled which by default
      * returns a JSON document describing the mapping of URI prefixes to services
@@ -17,6 +17,9 @@ package io.fabric8.gateway.handlers.http;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.LatencyHistogram;
+import io.fabric8.gateway.loadbalancer.LoadAwareLoadBalancer;
+import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.netty.channel.ConnectTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,7 +27,6 @@ import org.vertx.java.core.Handler;
 import org.vertx.java.core.Vertx;
 import org.vertx.java.core.VoidHandler;
 import org.vertx.java.core.buffer.Buffer;
-import org.vertx.java.core.http.HttpClient;
 import org.vertx.java.core.http.HttpClientRequest;
 import org.vertx.java.core.http.HttpClientResponse;
 import org.vertx.java.core.http.HttpServerRequest;
@@ -40,6 +42,7 @@ import java.net.URL;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
@@ -55,18 +58,25 @@ import static org.vertx.java.core.http.HttpHeaders.CONTENT_TYPE;
 public class HttpGatewayHandler implements Handler<HttpServerRequest> {
     private static final transient Logger LOG = LoggerFactory.getLogger(HttpGatewayHandler.class);
     private static final long DEFAULT_REQUEST_TIMEOUT = -1L;
+    /**
+     * The URI of the JSON document of the latency statistics which is served along with the mapping index
+     */
+    public static final String STATISTICS_URI = "/_statistics";
 
     private final Vertx vertx;
     private final HttpGateway httpGateway;
     private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClientPool clientPool;
+    private final HttpGatewayStatistics statistics = new HttpGatewayStatistics();
+    private volatile HttpRoutingTable statisticsRoutingTable;
 
     private boolean addMissingTrailingSlashes = true;
-    private int connectionTimeout = 60000;
     private long requestTimeout = DEFAULT_REQUEST_TIMEOUT;
 
     public HttpGatewayHandler(Vertx vertx, HttpGateway httpGateway) {
         this.vertx = vertx;
         this.httpGateway = httpGateway;
+        this.clientPool = new HttpClientPool(vertx);
     }
 
     @Override
@@ -77,19 +87,28 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
 
         // lets map the request URI to map to the service URI and then the renaming URI
         // using mapping rules...
-        Map<String, MappedServices> mappingRules = httpGateway.getMappedServices();
+        HttpRoutingTable routingTable = httpGateway.getRoutingTable();
+        if (routingTable != statisticsRoutingTable) {
+            // forget about the prefixes and services which are no longer mapped
+            statisticsRoutingTable = routingTable;
+            statistics.retain(routingTable.getMappedServices());
+        }
         try {
             if (isMappingIndexRequest(request)) {
                 // lets return the JSON of all the results
-                doReturnIndex(request, mappingRules);
+                doReturnIndex(request, routingTable.getMappedServices());
+            } else if (isStatisticsRequest(request)) {
+                doReturnStatistics(request);
             } else {
-                doRouteRequest(mappingRules, request);
+                doRouteRequest(routingTable, request);
             }
-            CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, null);
-            httpGateway.addCallDetailRecord(cdr);
+            statistics.requestHandled(System.nanoTime() - callStart);
         } catch (Throwable e) {
             LOG.error("Caught: " + e, e);
-            CallDetailRecord cdr = new CallDetailRecord(System.nanoTime() - callStart, new Date() + ":" + e.getMessage());
+            long callTime = System.nanoTime() - callStart;
+            statistics.requestHandled(callTime);
+            // only failures are reported as call detail records, the other requests are only counted
+            CallDetailRecord cdr = new CallDetailRecord(callTime, new Date() + ":" + e.getMessage());
             httpGateway.addCallDetailRecord(cdr);
             request.response().setStatusCode(404);
             StringWriter buffer = new StringWriter();
@@ -100,7 +119,14 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
     }
 
     protected void doReturnIndex(HttpServerRequest request, Map<String, MappedServices> mappingRules) throws IOException {
-        String json = mappingRulesToJson(mappingRules);
+        doReturnJson(request, mappingRulesToJson(mappingRules));
+    }
+
+    protected void doReturnStatistics(HttpServerRequest request) throws IOException {
+        doReturnJson(request, statisticsToJson());
+    }
+
+    protected void doReturnJson(HttpServerRequest request, String json) {
         HttpServerResponse response = request.response();
         response.headers().set(CONTENT_TYPE, "application/json");
         if ("HEAD".equals(request.method())) {
@@ -128,60 +154,82 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         return mapper.writeValueAsString(data);
     }
 
-    protected void doRouteRequest(Map<String, MappedServices> mappingRules, final HttpServerRequest request) {
+    /**
+     * Returns the latencies in nanoseconds of the current window of the whole gateway, each URI prefix and each upstream service
+     */
+    protected String statisticsToJson() throws IOException {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("total", statistics.getTotal().getSnapshot());
+        data.put("routes", statistics.getRouteSnapshots());
+        data.put("upstreams", statistics.getUpstreamSnapshots());
+        return mapper.writeValueAsString(data);
+    }
+
+    protected void doRouteRequest(HttpRoutingTable routingTable, final HttpServerRequest request) {
         String uri = request.uri();
         String uri2 = uri;
         if(addMissingTrailingSlashes) {
             uri2 = normalizeUri(uri);
         } 
 
-        HttpClient client = null;
+        HttpClientPool.Lease lease = null;
         String remaining = null;
         String prefix = null;
         String proxyServiceUrl = null;
         String reverseServiceUrl = null;
+        String routePrefix = null;
 
         MappedServices mappedServices = null;
         URL clientURL = null;
-        Set<Map.Entry<String, MappedServices>> entries = mappingRules.entrySet();
-        for (Map.Entry<String, MappedServices> entry : entries) {
-            String path = entry.getKey();
-            mappedServices = entry.getValue();
+        // walk the prefixes matching either form of the URI, longest first
+        HttpRoutingTable.Route uri2Route = routingTable.match(uri2);
+        HttpRoutingTable.Route uriRoute = routingTable.match(uri);
+        while (uri2Route != null || uriRoute != null) {
+            HttpRoutingTable.Route route;
+            if (uriRoute == null || (uri2Route != null && uri2Route.getPrefix().length() >= uriRoute.getPrefix().length())) {
+                route = uri2Route;
+                if (uriRoute == uri2Route) {
+                    uriRoute = uriRoute.getNext();
+                }
+                uri2Route = uri2Route.getNext();
+            } else {
+                route = uriRoute;
+                uriRoute = uriRoute.getNext();
+            }
+            mappedServices = route.getMappedServices();
 
-            String pathPrefix = path;
-            boolean uriMatches = uri.startsWith(pathPrefix);
+            String pathPrefix = route.getPrefix();
             boolean uri2Matches = uri2 != null && uri2.startsWith(pathPrefix);
-            if (uriMatches || uri2Matches) {
-                int pathPrefixLength = pathPrefix.length();
-                if (uri2Matches && pathPrefixLength < uri2.length()) {
-                    remaining = uri2.substring(pathPrefixLength);
-                } else if (pathPrefixLength < uri.length()) {
-                    remaining = uri.substring(pathPrefixLength);
-                } else {
-                    remaining = null;
-                }
+            int pathPrefixLength = pathPrefix.length();
+            if (uri2Matches && pathPrefixLength < uri2.length()) {
+                remaining = uri2.substring(pathPrefixLength);
+            } else if (pathPrefixLength < uri.length()) {
+                remaining = uri.substring(pathPrefixLength);
+            } else {
+                remaining = null;
+            }
 
-                // now lets pick a service for this path
-                proxyServiceUrl = mappedServices.chooseService(request);
-                if (proxyServiceUrl != null) {
-                    // lets create a client for this request...
-                    try {
-                        clientURL = new URL(proxyServiceUrl);
-                        client = createClient(clientURL);
-                        prefix = clientURL.getPath();
-                        reverseServiceUrl = request.absoluteURI().resolve(pathPrefix).toString();
-                        if (reverseServiceUrl.endsWith("/")) {
-                            reverseServiceUrl = reverseServiceUrl.substring(0, reverseServiceUrl.length() - 1);
-                        }
-                        break;
-                    } catch (MalformedURLException e) {
-                        LOG.warn("Failed to parse URL: " + proxyServiceUrl + ". " + e, e);
+            // now lets pick a service for this path
+            proxyServiceUrl = mappedServices.chooseService(request);
+            if (proxyServiceUrl != null) {
+                // lets create a client for this request...
+                try {
+                    clientURL = new URL(proxyServiceUrl);
+                    prefix = clientURL.getPath();
+                    reverseServiceUrl = request.absoluteURI().resolve(pathPrefix).toString();
+                    if (reverseServiceUrl.endsWith("/")) {
+                        reverseServiceUrl = reverseServiceUrl.substring(0, reverseServiceUrl.length() - 1);
                     }
+                    lease = clientPool.acquire(clientURL);
+                    routePrefix = pathPrefix;
+                    break;
+                } catch (MalformedURLException e) {
+                    LOG.warn("Failed to parse URL: " + proxyServiceUrl + ". " + e, e);
                 }
             }
         }
 
-        if (client != null) {
+        if (lease != null) {
             String servicePath = prefix != null ? prefix : "";
             // we should usually end the prefix path with a slash for web apps at least
             if (servicePath.length() > 0 && !servicePath.endsWith("/")) {
@@ -192,24 +240,22 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
             }
 
             LOG.info("Proxying request {} to service path: {} on service: {} reverseServiceUrl: {}", uri, servicePath, proxyServiceUrl, reverseServiceUrl);
-            final HttpClient finalClient = client;
-
-            client.exceptionHandler(new Handler<Throwable>() {
+            final UpstreamCall upstreamCall = new UpstreamCall(lease, mappedServices.getLoadBalancer(), proxyServiceUrl,
+                    statistics.getRoute(routePrefix), statistics.getUpstream(proxyServiceUrl), statistics.getTotal());
+            // when the downstream client goes away in the middle of the call, neither the end of the upstream
+            // response nor an upstream failure is seen, the upstream connection may be left half read
+            request.response().closeHandler(new VoidHandler() {
+                public void handle() {
+                    upstreamCall.abort();
+                }
+            });
+            request.response().exceptionHandler(new Handler<Throwable>() {
                 @Override
                 public void handle(Throwable throwable) {
-                    if(throwable instanceof TimeoutException || throwable instanceof ConnectTimeoutException) {
-                        request.response().setStatusCode(504);
-                        request.response().end();
-                        finalClient.close();
-                    } else {
-                        request.response().setStatusCode(500);
-                        request.response().end();
-                        finalClient.close();
-                        LOG.error("Unhandled exception", throwable);
-                    }
+                    LOG.debug("Downstream connection error: " + throwable, throwable);
+                    upstreamCall.abort();
                 }
             });
-            client.setConnectTimeout( connectionTimeout );
 
             Handler<HttpClientResponse> responseHandler = new Handler<HttpClientResponse>() {
                 public void handle(HttpClientResponse clientResponse) {
@@ -226,7 +272,7 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                     clientResponse.endHandler(new VoidHandler() {
                         public void handle() {
                             request.response().end();
-                            finalClient.close();
+                            upstreamCall.release(clientResponse.statusCode() >= 500);
                         }
                     });
                 }
@@ -236,7 +282,7 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                 responseHandler = mappedServices.wrapResponseHandlerInPolicies(request, responseHandler, proxyMappingDetails);
             }
 
-            final HttpClientRequest clientRequest = client.request(request.method(), servicePath, responseHandler);
+            final HttpClientRequest clientRequest = lease.getClient().request(request.method(), servicePath, responseHandler);
             clientRequest.headers().set(request.headers());
             clientRequest.setChunked(true);
             clientRequest.exceptionHandler(new Handler<Throwable>() {
@@ -245,12 +291,13 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
                     if(throwable instanceof TimeoutException || throwable instanceof ConnectTimeoutException) {
                         request.response().setStatusCode(504);
                         request.response().end();
-                        finalClient.close();
+                        // the connection may still be waiting on the backend so don't hand it out again
+                        upstreamCall.discard();
                     } else {
                         request.response().setStatusCode(500);
                         request.response().end();
                         LOG.error("Unhandled exception", throwable);
-                        finalClient.close();
+                        upstreamCall.discard();
                     }
                 }
             });
@@ -271,12 +318,16 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
             });
         } else {
             //  lets return a 404
-            LOG.info("Could not find matching proxy path for {} from paths: {}", uri, mappingRules.keySet());
+            LOG.info("Could not find matching proxy path for {} from paths: {}", uri, routingTable.getMappedServices().keySet());
             request.response().setStatusCode(404);
             request.response().end();
         }
     }
 
+    protected boolean isStatisticsRequest(HttpServerRequest request) {
+        return httpGateway != null && httpGateway.isEnableIndex() && STATISTICS_URI.equals(request.path());
+    }
+
     protected boolean isMappingIndexRequest(HttpServerRequest request) {
         if (httpGateway == null || !httpGateway.isEnableIndex()) {
             return false;
@@ -285,13 +336,93 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
         return uri == null || uri.length() == 0 || uri.equals("/");
     }
 
-    protected HttpClient createClient(URL url) throws MalformedURLException {
-        // lets create a client
-        HttpClient client = vertx.createHttpClient();
-        client.setHost(url.getHost());
-        client.setPort(url.getPort());
-        return client;
+    /**
+     * Closes the pooled upstream clients
+     */
+    public void close() {
+        clientPool.close();
+    }
 
+    /**
+     * Returns the pool of keep-alive clients used to proxy requests to the upstream services
+     */
+    public HttpClientPool getClientPool() {
+        return clientPool;
+    }
+
+    /**
+     * Returns the latency histograms of the proxied requests
+     */
+    public HttpGatewayStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * A proxied request to an upstream service which returns its pooled client, records its latency
+     * and reports the load of the service to load aware load balancers when it completes
+     */
+    private static final class UpstreamCall {
+        private final HttpClientPool.Lease lease;
+        private final LoadAwareLoadBalancer loadBalancer;
+        private final String service;
+        private final LatencyHistogram route;
+        private final LatencyHistogram upstream;
+        private final LatencyHistogram total;
+        private final long start = System.nanoTime();
+        private boolean completed;
+
+        UpstreamCall(HttpClientPool.Lease lease, LoadBalancer loadBalancer, String service,
+                     LatencyHistogram route, LatencyHistogram upstream, LatencyHistogram total) {
+            this.lease = lease;
+            this.route = route;
+            this.upstream = upstream;
+            this.total = total;
+            this.loadBalancer = loadBalancer instanceof LoadAwareLoadBalancer ? (LoadAwareLoadBalancer) loadBalancer : null;
+            this.service = service;
+            if (this.loadBalancer != null) {
+                this.loadBalancer.connectionOpened(service);
+            }
+        }
+
+        void release(boolean error) {
+            if (complete(error, true)) {
+                lease.release();
+            }
+        }
+
+        void discard() {
+            if (complete(true, true)) {
+                lease.discard();
+            }
+        }
+
+        /**
+         * Discards the call when the downstream client went away, the time it took says nothing
+         * about the upstream service so it is not reported to the load balancer
+         */
+        void abort() {
+            if (complete(true, false)) {
+                lease.discard();
+            }
+        }
+
+        private boolean complete(boolean error, boolean reportLatency) {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            long latency = System.nanoTime() - start;
+            route.record(latency, error);
+            upstream.record(latency, error);
+            total.record(latency, error);
+            if (loadBalancer != null) {
+                if (reportLatency) {
+                    loadBalancer.recordLatency(service, latency);
+                }
+                loadBalancer.connectionClosed(service);
+            }
+            return true;
+        }
     }
 
     /**
@@ -331,7 +462,19 @@ public class HttpGatewayHandler implements Handler<HttpServerRequest> {
     }
 
     public void setConnectionTimeout(int connectionTimeout) {
-        this.connectionTimeout = connectionTimeout;
+        clientPool.setConnectionTimeout(connectionTimeout);
+    }
+
+    public void setMaxConnectionsPerUpstream(int maxConnectionsPerUpstream) {
+        clientPool.setMaxConnections(maxConnectionsPerUpstream);
+    }
+
+    public void setUpstreamIdleTimeout(long upstreamIdleTimeout) {
+        clientPool.setIdleTimeout(upstreamIdleTimeout);
+    }
+
+    public void setUpstreamKeepAlive(boolean upstreamKeepAlive) {
+        clientPool.setKeepAlive(upstreamKeepAlive);
     }
 
     public void setRequestTimeout(long requestTimeout) {
@@ -68,6 +68,7 @@ public class HttpGatewayServer {
 
     public void destroy() {
         server.close();
+        handler.close();
     }
 
     public int getPort() {
@@ -0,0 +1,147 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import io.fabric8.gateway.LatencyHistogram;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The latency histograms of the requests proxied by a {@link HttpGatewayHandler} for the whole
+ * gateway, for each mapped URI prefix and for each upstream service URL, along with the counters
+ * of all the requests the handler handled
+ */
+public class HttpGatewayStatistics {
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong requestNanos = new AtomicLong();
+    private volatile long lastRequestTime;
+    private final ConcurrentMap<String, LatencyHistogram> routes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> upstreams = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the histogram of all the proxied requests
+     */
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    /**
+     * Records the time the handler took to handle a request, whether it was proxied or not
+     */
+    public void requestHandled(long nanos) {
+        requests.incrementAndGet();
+        requestNanos.addAndGet(nanos);
+        lastRequestTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the number of requests handled since the statistics were created or reset
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the average time the handler took to handle the requests since the statistics were created or reset
+     */
+    public long getAverageRequestNanos() {
+        long count = requests.get();
+        return count > 0 ? requestNanos.get() / count : 0L;
+    }
+
+    /**
+     * Returns the time in milliseconds of the last handled request or zero if there has not been one
+     */
+    public long getLastRequestTime() {
+        return lastRequestTime;
+    }
+
+    /**
+     * Returns the histogram of the requests proxied for the given URI prefix
+     */
+    public LatencyHistogram getRoute(String prefix) {
+        return getOrCreate(routes, prefix);
+    }
+
+    /**
+     * Returns the histogram of the requests proxied to the given service URL
+     */
+    public LatencyHistogram getUpstream(String serviceUrl) {
+        return getOrCreate(upstreams, serviceUrl);
+    }
+
+    /**
+     * Returns the current window of each URI prefix sorted by prefix
+     */
+    public Map<String, LatencyHistogram.Snapshot> getRouteSnapshots() {
+        return snapshots(routes);
+    }
+
+    /**
+     * Returns the current window of each upstream service sorted by URL
+     */
+    public Map<String, LatencyHistogram.Snapshot> getUpstreamSnapshots() {
+        return snapshots(upstreams);
+    }
+
+    /**
+     * Removes the histograms of the URI prefixes and services which are no longer mapped
+     */
+    public void retain(Map<String, MappedServices> mappedServices) {
+        Set<String> serviceUrls = new HashSet<>();
+        for (MappedServices services : mappedServices.values()) {
+            serviceUrls.addAll(services.getServiceUrls());
+        }
+        routes.keySet().retainAll(mappedServices.keySet());
+        upstreams.keySet().retainAll(serviceUrls);
+    }
+
+    public void reset() {
+        total.reset();
+        requests.set(0L);
+        requestNanos.set(0L);
+        lastRequestTime = 0L;
+        routes.clear();
+        upstreams.clear();
+    }
+
+    private static LatencyHistogram getOrCreate(ConcurrentMap<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram answer = histograms.get(key);
+        if (answer == null) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            answer = histograms.putIfAbsent(key, histogram);
+            if (answer == null) {
+                answer = histogram;
+            }
+        }
+        return answer;
+    }
+
+    private static Map<String, LatencyHistogram.Snapshot> snapshots(Map<String, LatencyHistogram> histograms) {
+        Map<String, LatencyHistogram.Snapshot> answer = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().getSnapshot());
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable prefix trie of the URI prefixes mapped by a {@link HttpGateway} so that the
+ * {@link HttpGatewayHandler} can find the longest matching prefix for a request URI in time
+ * proportional to the length of the URI rather than the number of mapped services.
+ * <p/>
+ * A new table is built whenever the mapping rules change; instances can be shared between
+ * threads without any locking.
+ */
+public final class HttpRoutingTable {
+    private static final HttpRoutingTable EMPTY = new HttpRoutingTable(Collections.<String, MappedServices>emptyMap());
+
+    private final Map<String, MappedServices> mappedServices;
+    private final Node root;
+
+    public HttpRoutingTable(Map<String, MappedServices> mappedServices) {
+        this.mappedServices = Collections.unmodifiableMap(new LinkedHashMap<>(mappedServices));
+        this.root = new Builder().addAll(mappedServices).build(null);
+    }
+
+    public static HttpRoutingTable empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the mapped services indexed by URI prefix this table was built from
+     */
+    public Map<String, MappedServices> getMappedServices() {
+        return mappedServices;
+    }
+
+    /**
+     * Returns the route with the longest URI prefix matching the given URI or null if there is no match.
+     * Shorter matching prefixes can be walked via {@link Route#getNext()}.
+     */
+    public Route match(String uri) {
+        if (uri == null) {
+            return null;
+        }
+        Node node = root;
+        Route answer = root.route;
+        for (int i = 0, length = uri.length(); i < length; i++) {
+            node = node.child(uri.charAt(i));
+            if (node == null) {
+                break;
+            }
+            if (node.route != null) {
+                answer = node.route;
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpRoutingTable{" + mappedServices.keySet() + "}";
+    }
+
+    /**
+     * A URI prefix and the services mapped to it
+     */
+    public static final class Route {
+        private final String prefix;
+        private final MappedServices mappedServices;
+        private final Route next;
+
+        Route(String prefix, MappedServices mappedServices, Route next) {
+            this.prefix = prefix;
+            this.mappedServices = mappedServices;
+            this.next = next;
+        }
+
+        public String getPrefix() {
+            return prefix;
+        }
+
+        public MappedServices getMappedServices() {
+            return mappedServices;
+        }
+
+        /**
+         * Returns the route for the next shorter prefix of the URI this route was matched with, or null
+         */
+        public Route getNext() {
+            return next;
+        }
+
+        @Override
+        public String toString() {
+            return "Route{" + prefix + " -> " + mappedServices + "}";
+        }
+    }
+
+    private static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final Route route;
+
+        Node(char[] keys, Node[] children, Route route) {
+            this.keys = keys;
+            this.children = children;
+            this.route = route;
+        }
+
+        Node child(char c) {
+            int idx = Arrays.binarySearch(keys, c);
+            return idx >= 0 ? children[idx] : null;
+        }
+    }
+
+    /**
+     * Mutable trie used to build the immutable {@link Node}s
+     */
+    private static final class Builder {
+        private final TreeMap<Character, Builder> children = new TreeMap<>();
+        private String prefix;
+        private MappedServices value;
+
+        Builder addAll(Map<String, MappedServices> mappedServices) {
+            for (Map.Entry<String, MappedServices> entry : mappedServices.entrySet()) {
+                add(entry.getKey(), 0, entry.getValue());
+            }
+            return this;
+        }
+
+        private void add(String key, int offset, MappedServices mapped) {
+            if (offset == key.length()) {
+                prefix = key;
+                value = mapped;
+                return;
+            }
+            char c = key.charAt(offset);
+            Builder child = children.get(c);
+            if (child == null) {
+                child = new Builder();
+                children.put(c, child);
+            }
+            child.add(key, offset + 1, mapped);
+        }
+
+        Node build(Route parent) {
+            Route route = value != null ? new Route(prefix, value, parent) : parent;
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().build(route);
+                i++;
+            }
+            return new Node(keys, nodes, value != null ? route : null);
+        }
+    }
+}
@@ -90,6 +90,10 @@ public class MappedServices {
         return reverseHeaders;
     }
 
+    public LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
     public ServiceDetails getServiceDetails() {
         return serviceDetails;
     }
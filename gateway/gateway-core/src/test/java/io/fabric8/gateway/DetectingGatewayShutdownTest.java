@@ -32,6 +32,7 @@ import io.fabric8.gateway.handlers.http.HttpGateway;
 import io.fabric8.gateway.handlers.http.HttpGatewayHandler;
 import io.fabric8.gateway.handlers.http.HttpGatewayServer;
 import io.fabric8.gateway.handlers.http.HttpMappingRule;
+import io.fabric8.gateway.handlers.http.HttpRoutingTable;
 import io.fabric8.gateway.handlers.http.MappedServices;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.loadbalancer.LoadBalancers;
@@ -234,6 +235,11 @@ public class DetectingGatewayShutdownTest {
                 return mappedServices;
             }
 
+            @Override
+            public HttpRoutingTable getRoutingTable() {
+                return new HttpRoutingTable(mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -205,6 +205,11 @@ public class ExtendedBurnIn extends AbstractMqGatewayTest {
                 return mappedServices;
             }
 
+            @Override
+            public HttpRoutingTable getRoutingTable() {
+                return new HttpRoutingTable(mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i), i % 100 == 0);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(10, snapshot.getErrors());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), snapshot.getMax());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(500), snapshot.getP50());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(990), snapshot.getP99());
+        assertWithin(TimeUnit.MICROSECONDS.toNanos(999), snapshot.getP999());
+        assertEquals(1000, histogram.getTotalCount());
+        assertTrue(histogram.getLastRecordTime() > 0);
+
+        histogram.reset();
+        assertEquals(0, histogram.getSnapshot().getCount());
+        assertEquals(0, histogram.getSnapshot().getP99());
+        assertEquals(0, histogram.getTotalCount());
+    }
+
+    @Test
+    public void testWindowRollsOver() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram(TimeUnit.MILLISECONDS.toNanos(10), 2);
+        histogram.record(TimeUnit.SECONDS.toNanos(1), false);
+        assertEquals(1, histogram.getSnapshot().getCount());
+        Thread.sleep(50);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1), false);
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(1, snapshot.getCount());
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(1), snapshot.getMax());
+        assertEquals(2, histogram.getTotalCount());
+    }
+
+    @Test
+    public void testBucketsCoverAllValues() throws Exception {
+        long previous = -1;
+        for (int i = 0; i < LatencyHistogram.bucketIndex(Long.MAX_VALUE >>> 23); i++) {
+            long highest = LatencyHistogram.bucketHighestValue(i);
+            assertEquals("bucket " + i, i, LatencyHistogram.bucketIndex(previous + 1));
+            assertEquals("bucket " + i, i, LatencyHistogram.bucketIndex(highest));
+            previous = highest;
+        }
+    }
+
+    protected void assertWithin(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, Math.abs(expected - actual) <= expected / 30);
+    }
+}
@@ -24,6 +24,7 @@ import io.fabric8.gateway.handlers.http.HttpGateway;
 import io.fabric8.gateway.handlers.http.HttpGatewayHandler;
 import io.fabric8.gateway.handlers.http.HttpGatewayServer;
 import io.fabric8.gateway.handlers.http.HttpMappingRule;
+import io.fabric8.gateway.handlers.http.HttpRoutingTable;
 import io.fabric8.gateway.handlers.http.MappedServices;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
@@ -205,6 +206,11 @@ public abstract class AbstractDetectingGatewayTest extends AbstractMqGatewayTest
                 return mappedServices;
             }
 
+            @Override
+            public HttpRoutingTable getRoutingTable() {
+                return new HttpRoutingTable(mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -0,0 +1,106 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import io.fabric8.gateway.handlers.detecting.protocol.amqp.AmqpProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.http.HttpProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.mqtt.MqttProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.openwire.OpenwireProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.ssl.SslProtocol;
+import io.fabric8.gateway.handlers.detecting.protocol.stomp.StompProtocol;
+import org.junit.Test;
+import org.vertx.java.core.buffer.Buffer;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class ProtocolDetectorTest {
+
+    protected ArrayList<Protocol> protocols = new ArrayList<Protocol>();
+    protected int maxIdentificationLength;
+
+    public ProtocolDetectorTest() {
+        protocols.add(new StompProtocol());
+        protocols.add(new MqttProtocol());
+        protocols.add(new AmqpProtocol());
+        protocols.add(new OpenwireProtocol());
+        protocols.add(new HttpProtocol());
+        protocols.add(new SslProtocol());
+        for (Protocol protocol : protocols) {
+            maxIdentificationLength = Math.max(maxIdentificationLength, protocol.getMaxIdentificationLength());
+        }
+    }
+
+    @Test
+    public void testDetectsProtocolsAsBytesArrive() throws Exception {
+        assertDetected("stomp", "CONNECT\nhost:localhost\n\n\u0000");
+        assertDetected("stomp", "STOMP\nhost:localhost\n\n\u0000");
+        assertDetected("http", "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        assertDetected("http", "OPTIONS * HTTP/1.1\r\n\r\n");
+        assertDetected("amqp", "AMQP\u0000\u0001\u0000\u0000");
+        assertDetected("mqtt", "\u0010\u0016\u0000\u0004MQTT\u0004\u0002\u0000<\u0000\u0004test");
+        assertDetected("mqtt", "\u0010\u0018\u0000\u0006MQIsdp\u0003\u0002\u0000<\u0000\u0004test");
+        assertDetected("openwire", "\u0000\u0000\u0001\u0000\u0001ActiveMQ\u0000\u0000\u0000\n");
+        assertDetected("ssl", "\u0016\u0003\u0001\u0000\u00c8\u0001\u0000\u0000\u00c4\u0003\u0003");
+    }
+
+    @Test
+    public void testRejectsUnknownProtocolEarly() throws Exception {
+        ProtocolDetector detector = new ProtocolDetector(protocols, maxIdentificationLength);
+        assertNull(detector.detect(buffer("Z")));
+        assertFalse("OpenWire can not tell before the command type", detector.isRejected());
+        assertNull(detector.detect(buffer("ZZZZZZ")));
+        assertTrue("All protocols should have rejected the connection", detector.isRejected());
+
+        detector = new ProtocolDetector(protocols, maxIdentificationLength);
+        assertNull(detector.detect(buffer("\u0010\u0016\u0000\u0004MQXX\u0004\u0002\u0000")));
+        assertTrue(detector.isRejected());
+    }
+
+    @Test
+    public void testAmbiguousPrefixWaitsForMoreBytes() throws Exception {
+        ProtocolDetector detector = new ProtocolDetector(protocols, maxIdentificationLength);
+        // could still be CONNECT for STOMP or CONNECT for HTTP
+        assertNull(detector.detect(buffer("CONN")));
+        assertFalse(detector.isRejected());
+    }
+
+    protected void assertDetected(String expected, String data) {
+        ProtocolDetector detector = new ProtocolDetector(protocols, maxIdentificationLength);
+        Buffer received = new Buffer();
+        Protocol detected = null;
+        for (int i = 0; i < data.length() && detected == null; i++) {
+            assertFalse("Rejected " + expected + " after " + i + " bytes", detector.isRejected());
+            received.appendByte((byte) data.charAt(i));
+            detected = detector.detect(received);
+        }
+        assertEquals(expected, detected != null ? detected.getProtocolName() : null);
+    }
+
+    protected Buffer buffer(String data) {
+        Buffer answer = new Buffer();
+        for (int i = 0; i < data.length(); i++) {
+            answer.appendByte((byte) data.charAt(i));
+        }
+        return answer;
+    }
+}
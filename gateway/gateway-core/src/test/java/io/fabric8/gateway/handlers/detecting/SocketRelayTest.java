@@ -0,0 +1,150 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.detecting;
+
+import io.fabric8.gateway.SocketWrapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.net.NetServer;
+import org.vertx.java.core.net.NetSocket;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class SocketRelayTest {
+
+    Vertx vertx;
+    NetServer echoServer;
+    NetServer relayServer;
+    final AtomicLong bytesFromClients = new AtomicLong();
+    final AtomicLong bytesToClients = new AtomicLong();
+    final AtomicInteger spliced = new AtomicInteger();
+    final CountDownLatch echoSocketClosed = new CountDownLatch(1);
+    volatile boolean closeAfterEcho;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = VertxFactory.newVertx();
+        FutureHandler<AsyncResult<NetServer>> echoListen = new FutureHandler<AsyncResult<NetServer>>();
+        echoServer = vertx.createNetServer().connectHandler(new Handler<NetSocket>() {
+            @Override
+            public void handle(final NetSocket socket) {
+                socket.dataHandler(new Handler<Buffer>() {
+                    @Override
+                    public void handle(Buffer data) {
+                        socket.write(data);
+                        if (closeAfterEcho) {
+                            socket.close();
+                        }
+                    }
+                });
+                socket.closeHandler(new Handler<Void>() {
+                    @Override
+                    public void handle(Void event) {
+                        echoSocketClosed.countDown();
+                    }
+                });
+            }
+        }).listen(0, "localhost", echoListen);
+        final int echoPort = FutureHandler.result(echoListen).port();
+
+        FutureHandler<AsyncResult<NetServer>> relayListen = new FutureHandler<AsyncResult<NetServer>>();
+        relayServer = vertx.createNetServer().connectHandler(new Handler<NetSocket>() {
+            @Override
+            public void handle(final NetSocket client) {
+                client.pause();
+                vertx.createNetClient().connect(echoPort, "localhost", new Handler<AsyncResult<NetSocket>>() {
+                    @Override
+                    public void handle(AsyncResult<NetSocket> event) {
+                        if (SocketRelay.relay(SocketWrapper.wrap(client), event.result(), bytesFromClients, bytesToClients, true)) {
+                            spliced.incrementAndGet();
+                        }
+                        client.resume();
+                    }
+                });
+            }
+        }).listen(0, "localhost", relayListen);
+        FutureHandler.result(relayListen);
+    }
+
+    @After
+    public void tearDown() {
+        relayServer.close();
+        echoServer.close();
+        vertx.stop();
+    }
+
+    @Test
+    public void testRelayCountsBytes() throws Exception {
+        byte[] data = new byte[64 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        try (Socket socket = new Socket("localhost", relayServer.port())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(data);
+            out.flush();
+            byte[] echoed = new byte[data.length];
+            new DataInputStream(socket.getInputStream()).readFully(echoed);
+            assertArrayEquals(data, echoed);
+        }
+        assertEquals(1, spliced.get());
+        assertEquals(data.length, bytesFromClients.get());
+        assertEquals(data.length, bytesToClients.get());
+    }
+
+    @Test
+    public void testClientCloseClosesServer() throws Exception {
+        try (Socket socket = new Socket("localhost", relayServer.port())) {
+            socket.getOutputStream().write(1);
+            assertEquals(1, socket.getInputStream().read());
+        }
+        assertTrue("The server socket should be closed", echoSocketClosed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, spliced.get());
+    }
+
+    @Test
+    public void testServerCloseClosesClient() throws Exception {
+        closeAfterEcho = true;
+        try (Socket socket = new Socket("localhost", relayServer.port())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(1);
+            InputStream in = socket.getInputStream();
+            // what was relayed before the server closed still gets to the client
+            assertEquals(1, in.read());
+            assertEquals(-1, in.read());
+        }
+        assertEquals(1, spliced.get());
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.vertx.java.core.Vertx;
+import org.vertx.java.core.VertxFactory;
+import org.vertx.java.core.http.HttpClient;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ */
+public class HttpClientPoolTest {
+
+    Vertx vertx;
+    HttpClientPool pool;
+
+    @Before
+    public void setUp() {
+        vertx = VertxFactory.newVertx();
+        pool = new HttpClientPool(vertx);
+        pool.setMaxConnections(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        vertx.stop();
+    }
+
+    @Test
+    public void testClientIsReusedPerUpstream() throws Exception {
+        HttpClientPool.Lease a = pool.acquire(new URL("http://localhost:8181/foo"));
+        HttpClientPool.Lease b = pool.acquire(new URL("http://localhost:8181/bar"));
+        HttpClientPool.Lease c = pool.acquire(new URL("http://localhost:8182/foo"));
+
+        assertSame(a.getClient(), b.getClient());
+        assertNotSame(a.getClient(), c.getClient());
+        assertEquals(3, pool.getActiveConnections());
+
+        HttpClientPool.Lease d = pool.acquire(new URL("http://localhost:8181/"));
+        assertEquals(4, pool.getActiveConnections());
+
+        a.release();
+        a.release();
+        b.release();
+        c.release();
+        d.release();
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(2, pool.getUpstreamStatistics().size());
+    }
+
+    @Test
+    public void testConcurrentCallersShareTheClient() throws Exception {
+        final URL url = new URL("http://localhost:8181/");
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<HttpClientPool.Lease>> leases = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 8; i++) {
+                leases.add(executor.submit(new Callable<HttpClientPool.Lease>() {
+                    @Override
+                    public HttpClientPool.Lease call() throws Exception {
+                        start.await();
+                        return pool.acquire(url);
+                    }
+                }));
+            }
+            start.countDown();
+            HttpClient client = leases.get(0).get().getClient();
+            for (Future<HttpClientPool.Lease> lease : leases) {
+                assertSame(client, lease.get().getClient());
+            }
+            assertEquals(8, pool.getActiveConnections());
+            assertEquals(1, pool.getUpstreamStatistics().size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDiscardedClientIsReplaced() throws Exception {
+        URL url = new URL("http://localhost:8181/");
+        HttpClientPool.Lease a = pool.acquire(url);
+        a.discard();
+
+        HttpClientPool.Lease b = pool.acquire(url);
+        assertNotSame(a.getClient(), b.getClient());
+        assertEquals(1, pool.getActiveConnections());
+        b.release();
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import io.fabric8.gateway.CallDetailRecord;
+import io.fabric8.gateway.ServiceDTO;
+import io.fabric8.gateway.handlers.detecting.FutureHandler;
+import io.fabric8.gateway.loadbalancer.LeastConnectionsLoadBalancer;
+import org.junit.Test;
+import org.vertx.java.core.AsyncResult;
+import org.vertx.java.core.Handler;
+import org.vertx.java.core.buffer.Buffer;
+import org.vertx.java.core.http.HttpServer;
+import org.vertx.java.core.http.HttpServerRequest;
+import org.vertx.java.core.net.NetSocket;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests that the upstream call is completed when the downstream client goes away in the middle of the response
+ */
+public class HttpGatewayClientAbortTest extends AbstractHttpGatewayTest {
+
+    HttpGatewayHandler handler;
+    LeastConnectionsLoadBalancer loadBalancer = new LeastConnectionsLoadBalancer();
+
+    @Override
+    public HttpServer startRestEndpoint() throws InterruptedException {
+        restEndpointServer = vertx.createHttpServer();
+        restEndpointServer.requestHandler(new Handler<HttpServerRequest>() {
+            @Override
+            public void handle(HttpServerRequest request) {
+                // starts a response which is never completed
+                request.response().setChunked(true);
+                request.response().write("Hello");
+            }
+        });
+
+        FutureHandler<AsyncResult<HttpServer>> future = new FutureHandler<>();
+        restEndpointServer.listen(8181, "0.0.0.0", future);
+        future.await();
+        return restEndpointServer;
+    }
+
+    @Override
+    public HttpGatewayServer startHttpGateway() {
+        if (restEndpointServer != null) {
+            ServiceDTO serviceDetails = new ServiceDTO();
+            serviceDetails.setContainer("local");
+            serviceDetails.setVersion("1");
+
+            mappedServices.put("/hello/world", new MappedServices("http://localhost:8181", serviceDetails, loadBalancer, false));
+        }
+
+        handler = new HttpGatewayHandler(vertx, new HttpGateway() {
+            @Override
+            public void addMappingRuleConfiguration(HttpMappingRule mappingRule) {
+            }
+
+            @Override
+            public void removeMappingRuleConfiguration(HttpMappingRule mappingRule) {
+            }
+
+            @Override
+            public Map<String, MappedServices> getMappedServices() {
+                return mappedServices;
+            }
+
+            @Override
+            public HttpRoutingTable getRoutingTable() {
+                return new HttpRoutingTable(mappedServices);
+            }
+
+            @Override
+            public boolean isEnableIndex() {
+                return true;
+            }
+
+            @Override
+            public InetSocketAddress getLocalAddress() {
+                return new InetSocketAddress("0.0.0.0", 8080);
+            }
+
+            @Override
+            public void addCallDetailRecord(CallDetailRecord cdr) {
+            }
+        });
+        httpGatewayServer = new HttpGatewayServer(vertx, handler, null, 8080);
+        httpGatewayServer.setHost("localhost");
+        httpGatewayServer.init();
+        return httpGatewayServer;
+    }
+
+    @Test
+    public void testClientAbortReleasesUpstream() throws Exception {
+        startRestEndpoint();
+        startHttpGateway();
+
+        FutureHandler<AsyncResult<NetSocket>> connected = new FutureHandler<>();
+        vertx.createNetClient().connect(8080, "localhost", connected);
+        final NetSocket socket = FutureHandler.result(connected);
+        final FutureHandler<Buffer> received = new FutureHandler<>();
+        socket.dataHandler(received);
+        socket.write("GET /hello/world HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        // the response has started, the client goes away
+        assertNotNull(received.await(5, TimeUnit.SECONDS));
+        assertEquals(1, handler.getClientPool().getActiveConnections());
+        assertEquals(1, loadBalancer.getActiveConnections("http://localhost:8181"));
+        socket.close();
+
+        for (int i = 0; i < 50 && handler.getClientPool().getActiveConnections() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, handler.getClientPool().getActiveConnections());
+        assertEquals(0, loadBalancer.getActiveConnections("http://localhost:8181"));
+
+        stopHttpGateway();
+        stopVertx();
+    }
+
+}
@@ -84,6 +84,11 @@ public class HttpGatewayClientNotHangingTest extends AbstractHttpGatewayTest {
                 return mappedServices;
             }
 
+            @Override
+            public HttpRoutingTable getRoutingTable() {
+                return new HttpRoutingTable(mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -73,6 +73,11 @@ public class HttpGatewayConnectionTimeoutTest extends AbstractHttpGatewayTest {
                 return mappedServices;
             }
 
+            @Override
+            public HttpRoutingTable getRoutingTable() {
+                return new HttpRoutingTable(mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -91,6 +91,11 @@ public class HttpGatewayRequestTimeoutTest extends AbstractHttpGatewayTest {
                 return mappedServices;
             }
 
+            @Override
+            public HttpRoutingTable getRoutingTable() {
+                return new HttpRoutingTable(mappedServices);
+            }
+
             @Override
             public boolean isEnableIndex() {
                 return true;
@@ -0,0 +1,71 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.handlers.http;
+
+import io.fabric8.gateway.ServiceDTO;
+import io.fabric8.gateway.loadbalancer.RoundRobinLoadBalancer;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ */
+public class HttpRoutingTableTest {
+
+    @Test
+    public void testLongestPrefixWins() throws Exception {
+        Map<String, MappedServices> mappedServices = new HashMap<>();
+        mappedServices.put("/", createMappedServices("http://localhost:8181/root"));
+        mappedServices.put("/cxf/", createMappedServices("http://localhost:8181/cxf"));
+        mappedServices.put("/cxf/crm/", createMappedServices("http://localhost:8181/crm"));
+        mappedServices.put("/cxf/crm/customers", createMappedServices("http://localhost:8181/customers"));
+        HttpRoutingTable table = new HttpRoutingTable(mappedServices);
+
+        HttpRoutingTable.Route route = table.match("/cxf/crm/customers/123");
+        assertEquals("/cxf/crm/customers", route.getPrefix());
+        assertEquals("/cxf/crm/", route.getNext().getPrefix());
+        assertEquals("/cxf/", route.getNext().getNext().getPrefix());
+        assertEquals("/", route.getNext().getNext().getNext().getPrefix());
+        assertNull(route.getNext().getNext().getNext().getNext());
+
+        assertEquals("/cxf/crm/", table.match("/cxf/crm/orders").getPrefix());
+        assertEquals("/cxf/", table.match("/cxf/crm").getPrefix());
+        assertEquals("/", table.match("/other").getPrefix());
+    }
+
+    @Test
+    public void testNoMatch() throws Exception {
+        Map<String, MappedServices> mappedServices = new HashMap<>();
+        mappedServices.put("/cxf/", createMappedServices("http://localhost:8181/cxf"));
+        HttpRoutingTable table = new HttpRoutingTable(mappedServices);
+
+        assertNull(table.match("/cx"));
+        assertNull(table.match("/other/cxf/"));
+        assertNull(table.match(null));
+        assertNull(HttpRoutingTable.empty().match("/cxf/"));
+    }
+
+    protected MappedServices createMappedServices(String url) {
+        ServiceDTO serviceDetails = new ServiceDTO();
+        serviceDetails.setContainer("local");
+        serviceDetails.setVersion("1");
+        return new MappedServices(url, serviceDetails, new RoundRobinLoadBalancer(), false);
+    }
+}
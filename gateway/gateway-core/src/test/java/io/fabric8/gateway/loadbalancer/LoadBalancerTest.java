@@ -15,6 +15,7 @@
  */
 package io.fabric8.gateway.loadbalancer;
 
+import io.fabric8.gateway.ServiceDTO;
 import io.fabric8.gateway.loadbalancer.ClientRequestFacade;
 import io.fabric8.gateway.loadbalancer.LoadBalancer;
 import io.fabric8.gateway.loadbalancer.RandomLoadBalancer;
@@ -28,6 +29,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -103,6 +105,138 @@ public class LoadBalancerTest {
 
     }
 
+    @Test
+    public void testStickyLoadBalancerStatistics() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer();
+        List<String> results = performRequests(loadBalancer);
+        assertEquals("Should always use the same service: " + results, 1, asSet(results).size());
+        assertEquals(1, loadBalancer.getMisses());
+        assertEquals(requestCount - 1, loadBalancer.getHits());
+        assertEquals(1, loadBalancer.getSize());
+
+        // when the bound service goes away the client should be rebound
+        String bound = results.get(0);
+        List<String> remaining = new ArrayList<String>(services);
+        remaining.remove(bound);
+        String rebound = loadBalancer.choose(remaining, clientRequestFacade);
+        assertTrue("Should have chosen another service than " + bound, !bound.equals(rebound));
+        assertEquals(2, loadBalancer.getMisses());
+
+        loadBalancer.flush();
+        assertEquals(0, loadBalancer.getSize());
+    }
+
+    @Test
+    public void testStickyLoadBalancerTimeToLive() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(100, new RoundRobinLoadBalancer(), 1L);
+        loadBalancer.choose(services, clientRequestFacade);
+        Thread.sleep(10);
+        loadBalancer.choose(services, clientRequestFacade);
+        assertEquals("Binding should have expired", 2, loadBalancer.getMisses());
+        assertEquals(0, loadBalancer.getHits());
+    }
+
+    @Test
+    public void testStickyLoadBalancerIsBounded() throws Exception {
+        StickyLoadBalancer loadBalancer = new StickyLoadBalancer(64);
+        for (int i = 0; i < 1000; i++) {
+            clientRequestKey = "newClient:" + i;
+            loadBalancer.choose(services, clientRequestFacade);
+        }
+        assertTrue("Cache should be bounded but was: " + loadBalancer.getSize(), loadBalancer.getSize() <= 64);
+    }
+
+    @Test
+    public void testConsistentHashLoadBalancer() throws Exception {
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(new ConsistentHashLoadBalancer());
+
+        LoadBalancer loadBalancer = new ConsistentHashLoadBalancer();
+        Set<String> allRequests = new HashSet<String>();
+        int numberOfClients = 20;
+        for (int i = 0; i < numberOfClients; i++) {
+            clientRequestKey = "newClient:" + i;
+
+            List<String> results = performRequests(loadBalancer);
+            Set<String> set = asSet(results);
+            assertTrue("All values should be the same for client: " + clientRequestKey + " but got: " + set, set.size() == 1);
+            allRequests.addAll(set);
+
+            // removing a service the client is not bound to should not move it
+            String bound = results.get(0);
+            List<String> remaining = new ArrayList<String>(services);
+            for (String service : services) {
+                if (!service.equals(bound)) {
+                    remaining.remove(service);
+                    break;
+                }
+            }
+            assertEquals(bound, loadBalancer.choose(remaining, clientRequestFacade));
+        }
+        assertTrue("Across " + numberOfClients + " we should have most of the values: " + allRequests, allRequests.size() > 1);
+    }
+
+    @Test
+    public void testLeastConnectionsLoadBalancer() throws Exception {
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(new LeastConnectionsLoadBalancer());
+
+        LeastConnectionsLoadBalancer loadBalancer = new LeastConnectionsLoadBalancer();
+        Set<String> chosen = new HashSet<String>();
+        for (int i = 0; i < services.size(); i++) {
+            String service = loadBalancer.choose(services, clientRequestFacade);
+            loadBalancer.connectionOpened(service);
+            chosen.add(service);
+        }
+        assertEquals("Should spread connections over all services: " + chosen, services.size(), chosen.size());
+
+        // the first service becomes idle so it should be chosen next
+        String idle = services.get(0);
+        loadBalancer.connectionClosed(idle);
+        assertEquals(0, loadBalancer.getActiveConnections(idle));
+        assertEquals(idle, loadBalancer.choose(services, clientRequestFacade));
+    }
+
+    @Test
+    public void testPeakEwmaLoadBalancer() throws Exception {
+        assertLoadBalancerWorksOnEmptyOrSingletonServices(new PeakEwmaLoadBalancer());
+
+        PeakEwmaLoadBalancer loadBalancer = new PeakEwmaLoadBalancer();
+        String slow = services.get(0);
+        String fast = services.get(1);
+        List<String> pair = Arrays.asList(slow, fast);
+        loadBalancer.recordLatency(slow, TimeUnit.SECONDS.toNanos(1));
+        loadBalancer.recordLatency(fast, TimeUnit.MILLISECONDS.toNanos(1));
+        assertTrue(loadBalancer.getCost(fast) < loadBalancer.getCost(slow));
+        for (int i = 0; i < requestCount; i++) {
+            assertEquals(fast, loadBalancer.choose(pair, clientRequestFacade));
+        }
+
+        // enough in flight requests on the fast service should make the slow one cheaper
+        for (int i = 0; i < 2000; i++) {
+            loadBalancer.connectionOpened(fast);
+        }
+        assertEquals(slow, loadBalancer.choose(pair, clientRequestFacade));
+    }
+
+    @Test
+    public void testLoadIsTrackedAcrossServiceDetailsUpdates() throws Exception {
+        LeastConnectionsLoadBalancer loadBalancer = new LeastConnectionsLoadBalancer();
+        ServiceDTO service = serviceDetails(services.get(0));
+        loadBalancer.connectionOpened(service);
+
+        // the registry hands out new details for the same service when it is updated
+        ServiceDTO updated = serviceDetails(services.get(0));
+        assertEquals(1, loadBalancer.getActiveConnections(updated));
+        loadBalancer.connectionClosed(updated);
+        assertEquals(0, loadBalancer.getActiveConnections(service));
+    }
+
+    protected ServiceDTO serviceDetails(String url) {
+        ServiceDTO answer = new ServiceDTO();
+        answer.setContainer("local");
+        answer.setServices(Arrays.asList(url));
+        return answer;
+    }
+
     protected List<String> performRequests(LoadBalancer loadBalancer) {
         List<String> answer = new ArrayList<String>();
         for (int i = 0; i < requestCount; i++) {
@@ -118,12 +118,19 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
             label = "SSL enabled", description = "Enable or disable the SSL protocol detection")
     private boolean sslEnabled = false;
 
+    @Property(name = "spliceEnabled", boolValue = true,
+            label = "Splice enabled", description = "Relay the traffic of plain TCP connections directly between the sockets once the protocol has been detected rather than copying it through Vert.x buffers")
+    private boolean spliceEnabled = true;
+
     @Property(name = "loadBalancerType",
             value = LoadBalancers.ROUND_ROBIN_LOAD_BALANCER,
             options = {
                     @PropertyOption(name = LoadBalancers.RANDOM_LOAD_BALANCER, value = "Random"),
                     @PropertyOption(name = LoadBalancers.ROUND_ROBIN_LOAD_BALANCER, value = "Round Robin"),
-                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky")
+                    @PropertyOption(name = LoadBalancers.STICKY_LOAD_BALANCER, value = "Sticky"),
+                    @PropertyOption(name = LoadBalancers.CONSISTENT_HASH_LOAD_BALANCER, value = "Consistent Hash"),
+                    @PropertyOption(name = LoadBalancers.LEAST_CONNECTIONS_LOAD_BALANCER, value = "Least Connections"),
+                    @PropertyOption(name = LoadBalancers.PEAK_EWMA_LOAD_BALANCER, value = "Peak EWMA Latency")
             },
             label = "Load Balancer", description = "The kind of load balancing strategy to use when multiple endpoints can service the client conneciton")
     private String loadBalancerType;
@@ -132,6 +139,10 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
             label = "Sticky Load Balancer Cache Size", description = "The number of unique client keys to cache for the sticky load balancer (using an LRU caching algorithm)")
     private int stickyLoadBalancerCacheSize = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE;
 
+    @Property(name = "stickyLoadBalancerTimeToLive", longValue = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE,
+            label = "Sticky Load Balancer Time To Live", description = "The number of milliseconds a client key stays bound to a service by the sticky load balancer; zero or less never expires")
+    private long stickyLoadBalancerTimeToLive = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE;
+
     @Property(name = "sslProtocol", value="TLS",
             label = "SSL Protocol", description = "Example: SSL, TLS, TLSv1, TLSv2 etc.")
     private String sslProtocol;
@@ -245,13 +256,14 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         DetectingGateway gateway = new DetectingGateway();
 
         VertxService vertxService = getVertxService();
-        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize);
+        LoadBalancer serviceLoadBalancer = LoadBalancers.createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, stickyLoadBalancerTimeToLive);
         gateway.setVertx(vertxService.getVertx());
         gateway.setPort(port);
         gateway.setServiceMap(serviceMap);
         gateway.setShutdownTacker(shutdownTacker);
         gateway.setServiceLoadBalancer(serviceLoadBalancer);
         gateway.setDefaultVirtualHost(defaultVirtualHost);
+        gateway.setSpliceEnabled(spliceEnabled);
 
         ArrayList<Protocol> protocols = new ArrayList<Protocol>();
         if( isStompEnabled() ) {
@@ -440,6 +452,14 @@ public class FabricDetectingGateway extends AbstractComponent implements FabricD
         this.sslEnabled = sslEnabled;
     }
 
+    public boolean isSpliceEnabled() {
+        return spliceEnabled;
+    }
+
+    public void setSpliceEnabled(boolean spliceEnabled) {
+        this.spliceEnabled = spliceEnabled;
+    }
+
     public void setSslAlgorithm(String sslAlgorithm) {
         this.sslAlgorithm = sslAlgorithm;
     }
@@ -48,10 +48,12 @@ import org.apache.felix.scr.annotations.Service;
 
 import io.fabric8.gateway.fabric.support.vertx.VertxService;
 import io.fabric8.gateway.handlers.detecting.DetectingGatewayWebSocketHandler;
+import io.fabric8.gateway.handlers.http.HttpClientPool;
 import io.fabric8.gateway.handlers.http.HttpGateway;
 import io.fabric8.gateway.handlers.http.HttpGatewayHandler;
 import io.fabric8.gateway.handlers.http.HttpGatewayServer;
 import io.fabric8.gateway.handlers.http.HttpMappingRule;
+import io.fabric8.gateway.handlers.http.HttpRoutingTable;
 import io.fabric8.gateway.handlers.http.MappedServices;
 
 import org.slf4j.Logger;
@@ -93,6 +95,15 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     @Property(name = "requestTimeout", longValue = -1L, label = "Request idle Timeout", description = "HTTP Request idle timeout")
     private long requestTimeout = -1L;
 
+    @Property(name = "maxConnectionsPerUpstream", intValue = HttpClientPool.DEFAULT_MAX_CONNECTIONS, label = "Max connections per upstream", description = "The maximum number of pooled connections to each upstream host and port per event loop")
+    private int maxConnectionsPerUpstream = HttpClientPool.DEFAULT_MAX_CONNECTIONS;
+
+    @Property(name = "upstreamIdleTimeout", longValue = HttpClientPool.DEFAULT_IDLE_TIMEOUT, label = "Upstream idle timeout", description = "Time in milliseconds after which the unused connections to an upstream service are closed")
+    private long upstreamIdleTimeout = HttpClientPool.DEFAULT_IDLE_TIMEOUT;
+
+    @Property(name = "upstreamKeepAlive", boolValue = true, label = "Upstream keep alive", description = "If enabled then connections to upstream services are kept alive and reused between requests")
+    private boolean upstreamKeepAlive = true;
+
     @Reference
     private Configurer configurer;
 
@@ -112,6 +123,13 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     private DetectingGatewayWebSocketHandler websocketHandler = new DetectingGatewayWebSocketHandler();
 
     private Set<HttpMappingRule> mappingRuleConfigurations = new CopyOnWriteArraySet<HttpMappingRule>();
+    private volatile HttpRoutingTable routingTable = HttpRoutingTable.empty();
+    private final Runnable mappingRulesChangeListener = new Runnable() {
+        @Override
+        public void run() {
+            rebuildRoutingTable();
+        }
+    };
 
     ShutdownTracker shutdownTracker = new ShutdownTracker();
     private FabricHTTPGatewayInfo fabricHTTPGatewayInfoMBean;
@@ -144,6 +162,9 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
         handler.setAddMissingTrailingSlashes(addMissingTrailingSlashes);
         handler.setConnectionTimeout(connectionTimeout);
         handler.setRequestTimeout(requestTimeout);
+        handler.setMaxConnectionsPerUpstream(maxConnectionsPerUpstream);
+        handler.setUpstreamIdleTimeout(upstreamIdleTimeout);
+        handler.setUpstreamKeepAlive(upstreamKeepAlive);
         websocketHandler.setPathPrefix(websocketGatewayPrefix);
         server = new HttpGatewayServer(vertx, handler, enableWebSocketGateway ? websocketHandler : null, port);
         server.init();
@@ -157,8 +178,6 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     
     @Override
     public void addCallDetailRecord(CallDetailRecord cdr) {
-    	fabricHTTPGatewayInfoMBean.setLastCallDate(cdr.getCallDate().toString());
-    	fabricHTTPGatewayInfoMBean.registerCall(cdr.getCallTimeNanos());
     	if (cdr.getError()!=null) {
     		fabricHTTPGatewayInfoMBean.setLastError(cdr.getError());
     	}
@@ -168,22 +187,40 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     public void addMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
         assertValid();
         mappingRuleConfigurations.add(mappingRuleConfiguration);
+        mappingRuleConfiguration.addChangeListener(mappingRulesChangeListener);
+        rebuildRoutingTable();
     }
 
     @Override
     public void removeMappingRuleConfiguration(HttpMappingRule mappingRuleConfiguration) {
         assertValid();
+        mappingRuleConfiguration.removeChangeListener(mappingRulesChangeListener);
         mappingRuleConfigurations.remove(mappingRuleConfiguration);
+        rebuildRoutingTable();
     }
 
     @Override
     public Map<String, MappedServices> getMappedServices() {
+        return getRoutingTable().getMappedServices();
+    }
+
+    @Override
+    public HttpRoutingTable getRoutingTable() {
         assertValid();
-        Map<String, MappedServices> answer = new HashMap<String, MappedServices>();
+        return routingTable;
+    }
+
+    /**
+     * Rebuilds the routing table from the current mapping rules; invoked only when a rule is added,
+     * removed or its mapped services change so that requests never have to rebuild it
+     */
+    private synchronized void rebuildRoutingTable() {
+        Map<String, MappedServices> mappedServices = new HashMap<String, MappedServices>();
         for (HttpMappingRule mappingRuleConfiguration : mappingRuleConfigurations) {
-            mappingRuleConfiguration.appendMappedServices(answer);
+            mappingRuleConfiguration.appendMappedServices(mappedServices);
         }
-        return answer;
+        routingTable = new HttpRoutingTable(mappedServices);
+        LOG.debug("Rebuilt routing table: {}", routingTable);
     }
 
     @Override
@@ -221,6 +258,10 @@ public final class FabricHTTPGateway extends AbstractComponent implements HttpGa
     int getPort() {
         return port;
     }
+
+    HttpGatewayHandler getHandler() {
+        return handler;
+    }
     
     String getHost() {
     	return host;
@@ -16,7 +16,19 @@
 package io.fabric8.gateway.fabric.http;
 
 import io.fabric8.common.util.ShutdownTracker;
+import io.fabric8.gateway.LatencyHistogram;
 import io.fabric8.gateway.fabric.jmx.FabricGatewayInfoMBean;
+import io.fabric8.gateway.handlers.http.HttpClientPool;
+import io.fabric8.gateway.handlers.http.HttpGatewayHandler;
+import io.fabric8.gateway.handlers.http.HttpGatewayStatistics;
+import io.fabric8.gateway.handlers.http.MappedServices;
+import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.StickyLoadBalancer;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
@@ -34,10 +46,7 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     private final FabricHTTPGateway fabricHTTPGateway;
     private ObjectName objectName;
-    private long numberOfInvocations = 0l;
-    private long averageCallTimeNanos = 0l;
-    private String lastError;
-    private String lastCallDate;
+    private volatile String lastError;
     
     public FabricHTTPGatewayInfo(FabricHTTPGateway fabricHTTPGateway) {
 		super();
@@ -86,13 +95,10 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
 
     @Override
 	public long getNumberOfInvocations() {
-		return numberOfInvocations;
+		HttpGatewayStatistics statistics = getStatistics();
+		return statistics != null ? statistics.getRequestCount() : 0L;
 	}
     
-    public void registerCall(long callTimeNanos) {
-    	averageCallTimeNanos = (averageCallTimeNanos * numberOfInvocations + callTimeNanos)/++numberOfInvocations;
-    }
-    
     public void setLastError(String error) {
     	lastError = error;
     }
@@ -102,28 +108,171 @@ public class FabricHTTPGatewayInfo implements FabricGatewayInfoMBean {
     	return lastError;
     }
     
-    public void setLastCallDate(String callDate) {
-    	lastCallDate = callDate;
-    }
-    
     @Override
     public String getLastCallDate() {
-    	if (lastCallDate!=null)
-    		return lastCallDate.toString();
+    	HttpGatewayStatistics statistics = getStatistics();
+    	if (statistics != null && statistics.getLastRequestTime() > 0)
+    		return new Date(statistics.getLastRequestTime()).toString();
     	else
     		return null;
     }
     
     @Override 
     public long getAvarageCallTimeNanos() {
-    	return averageCallTimeNanos;
+    	HttpGatewayStatistics statistics = getStatistics();
+    	return statistics != null ? statistics.getAverageRequestNanos() : 0L;
+    }
+
+    @Override
+    public long getNumberOfProxiedCalls() {
+        LatencyHistogram total = getTotalLatencies();
+        return total != null ? total.getTotalCount() : 0L;
+    }
+
+    @Override
+    public String getLastProxiedCallDate() {
+        LatencyHistogram total = getTotalLatencies();
+        return total != null && total.getLastRecordTime() > 0 ? new Date(total.getLastRecordTime()).toString() : null;
+    }
+
+    @Override
+    public long getCallTimeWindowCount() {
+        return getTotalSnapshot().getCount();
+    }
+
+    @Override
+    public long getCallTimeWindowErrors() {
+        return getTotalSnapshot().getErrors();
+    }
+
+    @Override
+    public long getCallTimeMeanNanos() {
+        return getTotalSnapshot().getMean();
+    }
+
+    @Override
+    public long getCallTimeP50Nanos() {
+        return getTotalSnapshot().getP50();
+    }
+
+    @Override
+    public long getCallTimeP99Nanos() {
+        return getTotalSnapshot().getP99();
+    }
+
+    @Override
+    public long getCallTimeP999Nanos() {
+        return getTotalSnapshot().getP999();
+    }
+
+    @Override
+    public long getCallTimeMaxNanos() {
+        return getTotalSnapshot().getMax();
+    }
+
+    @Override
+    public String getRouteCallTimes() {
+        HttpGatewayStatistics statistics = getStatistics();
+        return statistics != null ? toString(statistics.getRouteSnapshots()) : "";
+    }
+
+    @Override
+    public String getUpstreamCallTimes() {
+        HttpGatewayStatistics statistics = getStatistics();
+        return statistics != null ? toString(statistics.getUpstreamSnapshots()) : "";
+    }
+
+    protected LatencyHistogram.Snapshot getTotalSnapshot() {
+        LatencyHistogram total = getTotalLatencies();
+        return total != null ? total.getSnapshot() : new LatencyHistogram().getSnapshot();
+    }
+
+    protected LatencyHistogram getTotalLatencies() {
+        HttpGatewayStatistics statistics = getStatistics();
+        return statistics != null ? statistics.getTotal() : null;
+    }
+
+    protected HttpGatewayStatistics getStatistics() {
+        HttpGatewayHandler handler = getFabricHTTPGateway().getHandler();
+        return handler != null ? handler.getStatistics() : null;
+    }
+
+    private static String toString(Map<String, LatencyHistogram.Snapshot> snapshots) {
+        String answer = "";
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : snapshots.entrySet()) {
+            answer += entry.getKey() + ":" + entry.getValue() + "<BR>";
+        }
+        return answer;
     }
     
+    @Override
+    public int getUpstreamActiveConnections() {
+        HttpClientPool pool = getClientPool();
+        return pool != null ? pool.getActiveConnections() : 0;
+    }
+
+    @Override
+    public String getUpstreamConnectionPools() {
+        String answer = "";
+        HttpClientPool pool = getClientPool();
+        if (pool != null) {
+            for (String upstream : pool.getUpstreamStatistics()) {
+                answer += upstream + "<BR>";
+            }
+        }
+        return answer;
+    }
+
+    @Override
+    public long getStickySessionHits() {
+        long answer = 0;
+        for (StickyLoadBalancer loadBalancer : getStickyLoadBalancers()) {
+            answer += loadBalancer.getHits();
+        }
+        return answer;
+    }
+
+    @Override
+    public long getStickySessionMisses() {
+        long answer = 0;
+        for (StickyLoadBalancer loadBalancer : getStickyLoadBalancers()) {
+            answer += loadBalancer.getMisses();
+        }
+        return answer;
+    }
+
+    @Override
+    public double getStickySessionHitRatio() {
+        long hits = getStickySessionHits();
+        long total = hits + getStickySessionMisses();
+        return total > 0 ? (double) hits / total : 0.0d;
+    }
+
+    /**
+     * Returns the distinct sticky load balancers used by the mapped services
+     */
+    protected Collection<StickyLoadBalancer> getStickyLoadBalancers() {
+        Map<StickyLoadBalancer, Boolean> answer = new IdentityHashMap<StickyLoadBalancer, Boolean>();
+        for (MappedServices mappedServices : getFabricHTTPGateway().getMappedServices().values()) {
+            LoadBalancer loadBalancer = mappedServices.getLoadBalancer();
+            if (loadBalancer instanceof StickyLoadBalancer) {
+                answer.put((StickyLoadBalancer) loadBalancer, Boolean.TRUE);
+            }
+        }
+        return answer.keySet();
+    }
+
+    protected HttpClientPool getClientPool() {
+        HttpGatewayHandler handler = getFabricHTTPGateway().getHandler();
+        return handler != null ? handler.getClientPool() : null;
+    }
+
     @Override
     public void resetStatistics() {
-    	averageCallTimeNanos = 0l;
-    	numberOfInvocations = 0l;
-    	lastCallDate = null;
+    	HttpGatewayStatistics statistics = getStatistics();
+    	if (statistics != null) {
+    		statistics.reset();
+    	}
     	lastError = null;
     }
    
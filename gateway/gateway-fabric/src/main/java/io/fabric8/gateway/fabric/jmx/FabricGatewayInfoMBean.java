@@ -30,5 +30,22 @@ public interface FabricGatewayInfoMBean {
     String getLastError();
     String getLastCallDate();
     long getAvarageCallTimeNanos();
+    // the proxied calls timed until their responses end, the call times are over the last minute
+    long getNumberOfProxiedCalls();
+    String getLastProxiedCallDate();
+    long getCallTimeWindowCount();
+    long getCallTimeWindowErrors();
+    long getCallTimeMeanNanos();
+    long getCallTimeP50Nanos();
+    long getCallTimeP99Nanos();
+    long getCallTimeP999Nanos();
+    long getCallTimeMaxNanos();
+    String getRouteCallTimes();
+    String getUpstreamCallTimes();
+    int getUpstreamActiveConnections();
+    String getUpstreamConnectionPools();
+    long getStickySessionHits();
+    long getStickySessionMisses();
+    double getStickySessionHitRatio();
     void resetStatistics();
 }
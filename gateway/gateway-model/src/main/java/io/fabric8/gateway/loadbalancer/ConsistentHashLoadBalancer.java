@@ -0,0 +1,68 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.List;
+
+/**
+ * A sticky load balancer which does not keep any state; the unique client ID String from the
+ * {@link ClientRequestFacade} is hashed over the services using rendezvous (highest random weight)
+ * hashing so that a client keeps using the same service for as long as it is available, and only
+ * the clients bound to a service which goes away are moved elsewhere.
+ */
+public class ConsistentHashLoadBalancer implements LoadBalancer {
+
+    @Override
+    public String toString() {
+        return "ConsistentHashLoadBalancer{}";
+    }
+
+    @Override
+    public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
+        int size = services.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return services.get(0);
+        }
+        String clientKey = requestFacade.getClientRequestKey();
+        int keyHash = clientKey != null ? clientKey.hashCode() : 0;
+        T answer = null;
+        long best = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            T service = services.get(i);
+            long weight = mix(keyHash, service != null ? service.hashCode() : 0);
+            if (answer == null || weight > best) {
+                best = weight;
+                answer = service;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Combines the two hash codes into a well distributed 64 bit weight (the MurmurHash3 finalizer)
+     */
+    static long mix(int keyHash, int serviceHash) {
+        long h = ((long) keyHash << 32) ^ (serviceHash & 0xffffffffL);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+/**
+ * A {@link LoadBalancer} which takes the current load of each service into account and so
+ * needs to be told by the gateway when connections or requests to a chosen service start and
+ * finish, together with how long they took.
+ */
+public interface LoadAwareLoadBalancer extends LoadBalancer {
+
+    /**
+     * Invoked when a connection or request to the given service has been started
+     */
+    void connectionOpened(Object service);
+
+    /**
+     * Invoked when a connection or request to the given service which was previously
+     * {@link #connectionOpened(Object) opened} has finished
+     */
+    void connectionClosed(Object service);
+
+    /**
+     * Records a latency sample for the given service such as the time taken to connect
+     * to it or to receive a response from it
+     */
+    void recordLatency(Object service, long latencyNanos);
+}
@@ -0,0 +1,132 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base class for load balancers which keep track of the load of each service they have chosen
+ */
+public abstract class LoadAwareLoadBalancerSupport<S extends LoadAwareLoadBalancerSupport.ServiceLoad> implements LoadAwareLoadBalancer {
+    private final ConcurrentMap<Object, S> serviceLoads = new ConcurrentHashMap<>();
+
+    @Override
+    public void connectionOpened(Object service) {
+        if (service != null) {
+            getServiceLoad(service).opened();
+        }
+    }
+
+    @Override
+    public void connectionClosed(Object service) {
+        S load = service != null ? serviceLoads.get(serviceKey(service)) : null;
+        if (load != null) {
+            load.closed();
+        }
+    }
+
+    @Override
+    public void recordLatency(Object service, long latencyNanos) {
+        if (service != null) {
+            getServiceLoad(service).recordLatency(latencyNanos);
+        }
+    }
+
+    /**
+     * Returns the number of open connections or requests on the given service
+     */
+    public int getActiveConnections(Object service) {
+        S load = serviceLoads.get(serviceKey(service));
+        return load != null ? load.getActive() : 0;
+    }
+
+    protected S getServiceLoad(Object service) {
+        Object key = serviceKey(service);
+        S answer = serviceLoads.get(key);
+        if (answer == null) {
+            S initial = createServiceLoad();
+            answer = serviceLoads.putIfAbsent(key, initial);
+            if (answer == null) {
+                answer = initial;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Removes the idle services which are no longer in the list of services so that the
+     * statistics do not grow as services come and go
+     */
+    protected void pruneServiceLoads(List<?> services) {
+        if (serviceLoads.size() > services.size() * 2 + 16) {
+            Set<Object> keys = new HashSet<>();
+            for (Object service : services) {
+                keys.add(serviceKey(service));
+            }
+            Iterator<Map.Entry<Object, S>> iter = serviceLoads.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<Object, S> entry = iter.next();
+                if (entry.getValue().getActive() == 0 && !keys.contains(entry.getKey())) {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the key the load of the service is tracked by, which is its URLs if it has some
+     */
+    protected Object serviceKey(Object service) {
+        if (service instanceof ServiceUrls) {
+            List<String> urls = ((ServiceUrls) service).getServices();
+            if (urls != null) {
+                return urls;
+            }
+        }
+        return service;
+    }
+
+    protected abstract S createServiceLoad();
+
+    /**
+     * The load of a single service
+     */
+    public static class ServiceLoad {
+        private final AtomicInteger active = new AtomicInteger();
+
+        void opened() {
+            active.incrementAndGet();
+        }
+
+        void closed() {
+            active.decrementAndGet();
+        }
+
+        public int getActive() {
+            return Math.max(active.get(), 0);
+        }
+
+        protected void recordLatency(long latencyNanos) {
+        }
+    }
+}
@@ -28,16 +28,31 @@ public class LoadBalancers {
     public static final String RANDOM_LOAD_BALANCER = "random";
     public static final String ROUND_ROBIN_LOAD_BALANCER = "roundrobin";
     public static final String STICKY_LOAD_BALANCER = "sticky";
+    public static final String CONSISTENT_HASH_LOAD_BALANCER = "consistenthash";
+    public static final String LEAST_CONNECTIONS_LOAD_BALANCER = "leastconnections";
+    public static final String PEAK_EWMA_LOAD_BALANCER = "peakewma";
 
     public static final int STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE = 10000;
 
+    public static final long STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE = 0L;
+
     public static LoadBalancer createLoadBalancer(String loadBalancerType, int stickyLoadBalancerCacheSize) {
+        return createLoadBalancer(loadBalancerType, stickyLoadBalancerCacheSize, STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE);
+    }
+
+    public static LoadBalancer createLoadBalancer(String loadBalancerType, int stickyLoadBalancerCacheSize, long stickyLoadBalancerTimeToLive) {
         if (RANDOM_LOAD_BALANCER.equals(loadBalancerType)) {
             return new RandomLoadBalancer();
         } else if (ROUND_ROBIN_LOAD_BALANCER.equals(loadBalancerType)) {
             return new RoundRobinLoadBalancer();
         } else if (STICKY_LOAD_BALANCER.equals(loadBalancerType)) {
-            return new StickyLoadBalancer(stickyLoadBalancerCacheSize);
+            return new StickyLoadBalancer(stickyLoadBalancerCacheSize, new RoundRobinLoadBalancer(), stickyLoadBalancerTimeToLive);
+        } else if (CONSISTENT_HASH_LOAD_BALANCER.equals(loadBalancerType)) {
+            return new ConsistentHashLoadBalancer();
+        } else if (LEAST_CONNECTIONS_LOAD_BALANCER.equals(loadBalancerType)) {
+            return new LeastConnectionsLoadBalancer();
+        } else if (PEAK_EWMA_LOAD_BALANCER.equals(loadBalancerType)) {
+            return new PeakEwmaLoadBalancer();
         } else {
             if (Strings.isNotBlank(loadBalancerType)) {
                 LOG.warn("Ignored invalid load balancer type: " + loadBalancerType);
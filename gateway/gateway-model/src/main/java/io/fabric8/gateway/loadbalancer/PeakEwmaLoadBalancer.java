@@ -0,0 +1,132 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.loadbalancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A latency aware load balancer which picks two services at random and uses the one with the lowest
+ * cost, where the cost is the peak exponentially weighted moving average (EWMA) of the service latency
+ * multiplied by its number of open connections or in flight requests plus one.
+ * <p/>
+ * A latency above the current average replaces it immediately so that slow services are avoided
+ * straight away, while lower latencies decay the average over the configured time window.
+ */
+public class PeakEwmaLoadBalancer extends LoadAwareLoadBalancerSupport<PeakEwmaLoadBalancer.EwmaServiceLoad> {
+    public static final long DEFAULT_DECAY_TIME = TimeUnit.SECONDS.toNanos(10);
+    private static final double UNKNOWN_LATENCY_PENALTY = TimeUnit.SECONDS.toNanos(60);
+
+    private final long decayTimeNanos;
+
+    public PeakEwmaLoadBalancer() {
+        this(DEFAULT_DECAY_TIME);
+    }
+
+    /**
+     * @param decayTimeNanos the time window over which older latency samples lose their weight
+     */
+    public PeakEwmaLoadBalancer(long decayTimeNanos) {
+        this.decayTimeNanos = decayTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "PeakEwmaLoadBalancer{" +
+                "decayTimeNanos=" + decayTimeNanos +
+                '}';
+    }
+
+    @Override
+    public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
+        int size = services.size();
+        if (size == 0) {
+            return null;
+        } else if (size == 1) {
+            return services.get(0);
+        }
+        pruneServiceLoads(services);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        T a = services.get(first);
+        T b = services.get(second);
+        return getCost(b) < getCost(a) ? b : a;
+    }
+
+    /**
+     * Returns the current cost of using the given service
+     */
+    public double getCost(Object service) {
+        return getServiceLoad(service).getCost(System.nanoTime());
+    }
+
+    @Override
+    protected EwmaServiceLoad createServiceLoad() {
+        return new EwmaServiceLoad(decayTimeNanos);
+    }
+
+    public static class EwmaServiceLoad extends LoadAwareLoadBalancerSupport.ServiceLoad {
+        private final long decayTimeNanos;
+        private double ewma;
+        private long lastUpdate = System.nanoTime();
+
+        public EwmaServiceLoad(long decayTimeNanos) {
+            this.decayTimeNanos = decayTimeNanos;
+        }
+
+        @Override
+        protected synchronized void recordLatency(long latencyNanos) {
+            long now = System.nanoTime();
+            if (latencyNanos > ewma) {
+                ewma = latencyNanos;
+            } else {
+                double w = weight(now);
+                ewma = ewma * w + latencyNanos * (1.0d - w);
+            }
+            lastUpdate = now;
+        }
+
+        synchronized double getCost(long now) {
+            // with nothing new to go on the average decays towards zero so that a
+            // service which was slow gets retried eventually
+            ewma *= weight(now);
+            lastUpdate = now;
+            int active = getActive();
+            if (ewma == 0.0d && active > 0) {
+                // a busy service we have no latency for yet should not attract all the load
+                return UNKNOWN_LATENCY_PENALTY + active;
+            }
+            return ewma * (active + 1);
+        }
+
+        /**
+         * Returns the latency average in nanoseconds
+         */
+        public synchronized double getLatency() {
+            return ewma;
+        }
+
+        private double weight(long now) {
+            long elapsed = Math.max(now - lastUpdate, 0L);
+            return Math.exp(-(double) elapsed / decayTimeNanos);
+        }
+    }
+}
@@ -18,16 +18,26 @@ package io.fabric8.gateway.loadbalancer;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implements a sticky load balancer where a unique client ID String is requested from the
  * {@link ClientRequestFacade} and used to keep track of which
  * service was used last time and to use that if its possible and keep a cache of requests to
+ * <p/>
+ * The cache is split into a number of independently locked LRU segments so that concurrent
+ * connections only contend when their client keys hash to the same segment. Entries can
+ * optionally expire after a time to live.
  */
 public class StickyLoadBalancer implements LoadBalancer {
+    private static final int MAXIMUM_SEGMENTS = 16;
+
     private final LoadBalancer firstRequestLoadBalancer;
     private final int maximumCacheSize;
-    private final Map<String, Object> requestCache;
+    private final long timeToLive;
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
 
     public StickyLoadBalancer() {
         this(LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE);
@@ -38,36 +48,60 @@ public class StickyLoadBalancer implements LoadBalancer {
     }
 
     public StickyLoadBalancer(int maximumCacheSize, LoadBalancer firstRequestLoadBalancer) {
+        this(maximumCacheSize, firstRequestLoadBalancer, 0L);
+    }
+
+    /**
+     * @param timeToLive the number of milliseconds a client stays bound to a service, or zero or less to never expire
+     */
+    public StickyLoadBalancer(int maximumCacheSize, LoadBalancer firstRequestLoadBalancer, long timeToLive) {
         this.firstRequestLoadBalancer = firstRequestLoadBalancer;
         this.maximumCacheSize = maximumCacheSize;
-        this.requestCache = new LinkedHashMap(maximumCacheSize + 1, .75F, true) {
-            // This method is called just after a new entry has been added
-            public boolean removeEldestEntry(Map.Entry eldest) {
-                return size() > StickyLoadBalancer.this.maximumCacheSize;
-            }
-        };
+        this.timeToLive = timeToLive;
+
+        int segmentCount = 1;
+        while (segmentCount < MAXIMUM_SEGMENTS && segmentCount * 2 <= maximumCacheSize) {
+            segmentCount *= 2;
+        }
+        this.segments = new Segment[segmentCount];
+        int remainder = maximumCacheSize % segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(maximumCacheSize / segmentCount + (i < remainder ? 1 : 0));
+        }
     }
 
     @Override
     public String toString() {
         return "StickyLoadBalancer{" +
                 "maximumCacheSize=" + maximumCacheSize +
+                ", timeToLive=" + timeToLive +
                 '}';
     }
 
     @Override
     public <T> T choose(List<T> services, ClientRequestFacade requestFacade) {
         String clientKey = requestFacade.getClientRequestKey();
-        T answer;
-        synchronized (requestCache) {
-            answer = (T) requestCache.get(clientKey);
-            if (answer == null || !services.contains(answer)) {
-                answer = firstRequestLoadBalancer.choose(services, requestFacade);
-                if (answer != null) {
-                    requestCache.put(clientKey, answer);
+        Segment segment = segmentFor(clientKey);
+        StickyEntry entry = segment.get(clientKey);
+        long now = timeToLive > 0 ? System.currentTimeMillis() : 0L;
+        if (entry != null && (timeToLive <= 0 || entry.expiresAt > now)) {
+            int index = indexOf(services, entry);
+            if (index >= 0) {
+                if (index != entry.index) {
+                    segment.put(clientKey, new StickyEntry(entry.service, index, entry.expiresAt));
                 }
+                hits.incrementAndGet();
+                return services.get(index);
             }
         }
+        misses.incrementAndGet();
+        T answer = firstRequestLoadBalancer.choose(services, requestFacade);
+        if (answer != null) {
+            long expiresAt = timeToLive > 0 ? now + timeToLive : Long.MAX_VALUE;
+            segment.put(clientKey, new StickyEntry(answer, services.indexOf(answer), expiresAt));
+        } else {
+            segment.remove(clientKey);
+        }
         return answer;
     }
 
@@ -75,8 +109,113 @@ public class StickyLoadBalancer implements LoadBalancer {
      * Clears the cache of request client IDs to the bound service
      */
     public void flush() {
-        synchronized (requestCache) {
-            requestCache.clear();
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns the number of requests which were bound to the service previously used by the client
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests for which a new service had to be chosen
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the ratio of hits to all requests or zero if there have not been any requests
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total > 0 ? (double) h / total : 0.0d;
+    }
+
+    /**
+     * Returns the number of client keys currently cached
+     */
+    public int getSize() {
+        int answer = 0;
+        for (Segment segment : segments) {
+            answer += segment.size();
+        }
+        return answer;
+    }
+
+    public int getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    private Segment segmentFor(String clientKey) {
+        int h = clientKey != null ? clientKey.hashCode() : 0;
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /**
+     * Returns the index of the cached service in the current services, checking its last known
+     * position first so that the common case does not have to scan the list
+     */
+    private static int indexOf(List<?> services, StickyEntry entry) {
+        int index = entry.index;
+        if (index >= 0 && index < services.size() && entry.service.equals(services.get(index))) {
+            return index;
+        }
+        return services.indexOf(entry.service);
+    }
+
+    private static final class StickyEntry {
+        private final Object service;
+        private final int index;
+        private final long expiresAt;
+
+        StickyEntry(Object service, int index, long expiresAt) {
+            this.service = service;
+            this.index = index;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Segment {
+        private final Map<String, StickyEntry> cache;
+
+        Segment(final int maximumSize) {
+            this.cache = new LinkedHashMap<String, StickyEntry>(maximumSize + 1, .75F, true) {
+                // This method is called just after a new entry has been added
+                public boolean removeEldestEntry(Map.Entry<String, StickyEntry> eldest) {
+                    return size() > maximumSize;
+                }
+            };
+        }
+
+        synchronized StickyEntry get(String key) {
+            return cache.get(key);
+        }
+
+        synchronized void put(String key, StickyEntry entry) {
+            cache.put(key, entry);
+        }
+
+        synchronized void remove(String key) {
+            cache.remove(key);
+        }
+
+        synchronized void clear() {
+            cache.clear();
+        }
+
+        synchronized int size() {
+            return cache.size();
         }
     }
 }
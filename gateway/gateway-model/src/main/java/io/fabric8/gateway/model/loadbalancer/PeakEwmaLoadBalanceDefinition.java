@@ -0,0 +1,38 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.gateway.model.loadbalancer;
+
+import io.fabric8.gateway.loadbalancer.LoadBalancer;
+import io.fabric8.gateway.loadbalancer.PeakEwmaLoadBalancer;
+
+/**
+ */
+public class PeakEwmaLoadBalanceDefinition extends LoadBalancerDefinition {
+    private long decayTimeNanos = PeakEwmaLoadBalancer.DEFAULT_DECAY_TIME;
+
+    public long getDecayTimeNanos() {
+        return decayTimeNanos;
+    }
+
+    public void setDecayTimeNanos(long decayTimeNanos) {
+        this.decayTimeNanos = decayTimeNanos;
+    }
+
+    @Override
+    protected LoadBalancer createLoadBalancer() {
+        return new PeakEwmaLoadBalancer(decayTimeNanos);
+    }
+}
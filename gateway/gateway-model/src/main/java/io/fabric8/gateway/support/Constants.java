@@ -21,5 +21,6 @@ import io.fabric8.gateway.loadbalancer.LoadBalancers;
  */
 public class Constants {
     public static final int STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_CACHE_SIZE;
+    public static final long STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE = LoadBalancers.STICKY_LOAD_BALANCER_DEFAULT_TIME_TO_LIVE;
 
 }
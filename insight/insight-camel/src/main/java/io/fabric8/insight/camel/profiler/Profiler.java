@@ -29,6 +29,7 @@ import org.apache.camel.spi.ProcessorFactory;
 import org.apache.camel.spi.RouteContext;
 import org.apache.camel.util.StringHelper;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -41,7 +42,8 @@ import java.util.concurrent.ConcurrentHashMap;
 @ManagedResource(description = "Profiler")
 public class Profiler extends SwitchableContainerStrategy implements ProfilerMBean {
 
-    private final Map<ProcessorDefinition<?>, Stats> statistics = new LinkedHashMap<ProcessorDefinition<?>, Stats>();
+    // copied on write as the stats are only added when the processors are created, so they are read without locking
+    private volatile Map<ProcessorDefinition<?>, Stats> statistics = Collections.emptyMap();
     private final Map<String, ExchangeData> exchanges = new ConcurrentHashMap<String, ExchangeData>();
 
     public Profiler() {
@@ -89,6 +91,7 @@ public class Profiler extends SwitchableContainerStrategy implements ProfilerMBe
     }
 
     public String dumpStatsAsXml(String routeId) {
+        Map<ProcessorDefinition<?>, Stats> statistics = this.statistics;
         Set<RouteDefinition> routes = new HashSet<RouteDefinition>();
         for (ProcessorDefinition<?> definition : statistics.keySet()) {
             RouteDefinition route = ProcessorDefinitionHelper.getRoute(definition);
@@ -103,7 +106,7 @@ public class Profiler extends SwitchableContainerStrategy implements ProfilerMBe
                     sb.append(" id=\"").append(route.getId()).append("\"");
                 }
                 sb.append(">");
-                appendStats(sb, route);
+                appendStats(sb, statistics, route);
                 sb.append("</route>");
             }
         }
@@ -115,7 +118,7 @@ public class Profiler extends SwitchableContainerStrategy implements ProfilerMBe
         return dumpStatsAsXml(null);
     }
 
-    protected void appendStats(StringBuilder sb, ProcessorDefinition<?> definition) {
+    protected void appendStats(StringBuilder sb, Map<ProcessorDefinition<?>, Stats> statistics, ProcessorDefinition<?> definition) {
         Stats stats = statistics.get(definition);
         if (stats != null) {
             sb.append("<processor");
@@ -129,28 +132,41 @@ public class Profiler extends SwitchableContainerStrategy implements ProfilerMBe
             sb.append(" count=\"").append(stats.getCount()).append("\"");
             sb.append(" self=\"").append(stats.getSelf()).append("\"");
             sb.append(" total=\"").append(stats.getTotal()).append("\"");
+            sb.append(" p50=\"").append(stats.getPercentile(0.5)).append("\"");
+            sb.append(" p90=\"").append(stats.getPercentile(0.9)).append("\"");
+            sb.append(" p99=\"").append(stats.getPercentile(0.99)).append("\"");
             sb.append(">");
             for (ProcessorDefinition<?> child : statistics.keySet()) {
                 if (child.getParent() == definition) {
-                    appendStats(sb, child);
+                    appendStats(sb, statistics, child);
                 }
             }
             sb.append("</processor>");
         }
     }
 
+    /**
+     * Gets the stats of a processor, which are resolved once when the processor is wrapped
+     */
     public Stats getStats(ProcessorDefinition<?> definition) {
-        if (definition != null) {
-            synchronized (statistics) {
-                Stats stats = statistics.get(definition);
-                if (stats == null) {
-                    stats = new Stats(definition, getStats(definition.getParent()));
-                    statistics.put(definition, stats);
-                }
-                return stats;
+        if (definition == null) {
+            return null;
+        }
+        Stats stats = statistics.get(definition);
+        if (stats != null) {
+            return stats;
+        }
+        synchronized (this) {
+            stats = statistics.get(definition);
+            if (stats == null) {
+                Stats parent = getStats(definition.getParent());
+                stats = new Stats(definition, parent);
+                Map<ProcessorDefinition<?>, Stats> copy = new LinkedHashMap<ProcessorDefinition<?>, Stats>(statistics);
+                copy.put(definition, stats);
+                statistics = Collections.unmodifiableMap(copy);
             }
+            return stats;
         }
-        return null;
     }
 
     public void reset() {
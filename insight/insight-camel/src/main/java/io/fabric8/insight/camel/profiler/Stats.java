@@ -17,15 +17,26 @@ package io.fabric8.insight.camel.profiler;
 
 import org.apache.camel.model.ProcessorDefinition;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
- *
+ * The statistics of a processor.
+ * <p/>
+ * The counters are striped by thread, each stripe in its own cache line, so that the exchanges completed
+ * concurrently do not contend on the same counters. The total times are also counted in buckets by power of two
+ * of nanoseconds, from which the percentiles are estimated.
  */
 public class Stats {
-    final AtomicLong count = new AtomicLong();
-    final AtomicLong self = new AtomicLong();
-    final AtomicLong total = new AtomicLong();
+    static final int BUCKETS = 64;
+    static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+    // the count, self and total of a stripe padded to a cache line of 64 bytes
+    private static final int COUNT = 0;
+    private static final int SELF = 1;
+    private static final int TOTAL = 2;
+    private static final int PADDING = 8;
+
+    final AtomicLongArray counters = new AtomicLongArray(STRIPES * PADDING);
+    final AtomicLongArray buckets = new AtomicLongArray(STRIPES * BUCKETS);
     final Stats parent;
     final ProcessorDefinition definition;
 
@@ -34,10 +45,12 @@ public class Stats {
         this.parent = parent;
     }
 
-    public synchronized void addTime(long self, long total) {
-        this.count.incrementAndGet();
-        this.self.addAndGet(self);
-        this.total.addAndGet(total);
+    public void addTime(long self, long total) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        counters.incrementAndGet(stripe * PADDING + COUNT);
+        counters.addAndGet(stripe * PADDING + SELF, self);
+        counters.addAndGet(stripe * PADDING + TOTAL, total);
+        buckets.incrementAndGet(stripe * BUCKETS + bucket(total));
     }
 
     public Stats getParent() {
@@ -45,24 +58,83 @@ public class Stats {
     }
 
     public long getCount() {
-        return count.get();
+        return sum(COUNT);
     }
 
     public long getSelf() {
-        return self.get();
+        return sum(SELF);
     }
 
     public long getTotal() {
-        return total.get();
+        return sum(TOTAL);
+    }
+
+    /**
+     * Estimates a percentile of the total times in nanoseconds, as the upper bound of the bucket which contains it
+     *
+     * @param percentile the percentile between 0 and 1
+     */
+    public long getPercentile(double percentile) {
+        long[] histogram = getHistogram();
+        long count = 0;
+        for (long value : histogram) {
+            count += value;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            rank -= histogram[bucket];
+            if (rank <= 0) {
+                return bucket < BUCKETS - 1 ? (1L << (bucket + 1)) - 1 : Long.MAX_VALUE;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * The number of total times by bucket, the bucket n counts the times from 2^n to 2^(n+1) - 1 nanoseconds
+     * and the bucket 0 the times below 2 nanoseconds
+     */
+    public long[] getHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for (int i = 0; i < buckets.length(); i++) {
+            histogram[i % BUCKETS] += buckets.get(i);
+        }
+        return histogram;
     }
 
     public void reset() {
-        count.set(0);
-        self.set(0);
-        total.set(0);
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
     }
 
     public String toString() {
         return "Stats[" + definition.toString() + "]";
     }
+
+    private long sum(int counter) {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += counters.get(stripe * PADDING + counter);
+        }
+        return sum;
+    }
+
+    static int bucket(long time) {
+        return time > 1 ? 63 - Long.numberOfLeadingZeros(time) : 0;
+    }
+
+    static int stripes(int processors) {
+        int stripes = 1;
+        while (stripes < processors && stripes < 16) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
 }
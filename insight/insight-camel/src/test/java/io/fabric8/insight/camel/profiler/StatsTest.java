@@ -0,0 +1,70 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.insight.camel.profiler;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatsTest {
+
+    @Test
+    public void testConcurrentAddTime() throws Exception {
+        final Stats stats = new Stats(null, null);
+        int nbThreads = 8;
+        final CountDownLatch latch = new CountDownLatch(nbThreads);
+        for (int t = 0; t < nbThreads; t++) {
+            new Thread() {
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        stats.addTime(1, 3);
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+        latch.await();
+        assertEquals(80000, stats.getCount());
+        assertEquals(80000, stats.getSelf());
+        assertEquals(240000, stats.getTotal());
+
+        stats.reset();
+        assertEquals(0, stats.getCount());
+        assertEquals(0, stats.getTotal());
+        assertEquals(0, stats.getPercentile(0.5));
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        Stats stats = new Stats(null, null);
+        for (int i = 0; i < 90; i++) {
+            stats.addTime(100, 100);
+        }
+        for (int i = 0; i < 10; i++) {
+            stats.addTime(1000000, 1000000);
+        }
+        long p50 = stats.getPercentile(0.5);
+        assertTrue(p50 >= 100 && p50 < 200);
+        long p90 = stats.getPercentile(0.9);
+        assertTrue(p90 >= 100 && p90 < 200);
+        long p99 = stats.getPercentile(0.99);
+        assertTrue(p99 >= 1000000 && p99 < 2000000);
+        assertEquals(90, stats.getHistogram()[Stats.bucket(100)]);
+    }
+}
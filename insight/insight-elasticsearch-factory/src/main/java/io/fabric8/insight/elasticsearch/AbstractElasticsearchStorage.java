@@ -15,11 +15,12 @@
  */
 package io.fabric8.insight.elasticsearch;
 
+import io.fabric8.common.util.JMXUtils;
+import io.fabric8.common.util.Maps;
 import io.fabric8.insight.metrics.model.MetricsStorageService;
 import io.fabric8.insight.metrics.model.QueryResult;
 import io.fabric8.insight.metrics.mvel.MetricsStorageServiceImpl;
 import io.fabric8.insight.storage.StorageService;
-import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateRequest;
 import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateRequestBuilder;
 import org.elasticsearch.action.bulk.BulkItemResponse;
@@ -31,28 +32,84 @@ import org.elasticsearch.node.Node;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-public abstract class AbstractElasticsearchStorage implements StorageService, MetricsStorageService, Runnable {
+/**
+ * Base class of the storages which index documents in Elasticsearch.
+ * <p/>
+ * The documents are put in a bounded queue and sent in bulk by a number of worker threads. A bulk is sent once it
+ * holds {@link #MAX_BULK_ACTIONS} documents or {@link #MAX_BULK_SIZE} bytes, or when its first document waited
+ * {@link #FLUSH_INTERVAL} milliseconds. When the queue is full, new documents are dropped, or with the
+ * {@link OverflowPolicy#BLOCK} policy the caller waits up to {@link #BLOCK_TIMEOUT} milliseconds for room.
+ * Documents which failed with a transient error are queued again after an exponential backoff.
+ */
+public abstract class AbstractElasticsearchStorage implements StorageService, MetricsStorageService, ElasticsearchStorageMBean, Runnable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractElasticsearchStorage.class);
 
-    private static final SimpleDateFormat indexFormat = new SimpleDateFormat("yyyy.MM.dd");
+    public static final String QUEUE_SIZE = "queueSize";
+    public static final String OVERFLOW_POLICY = "overflowPolicy";
+    public static final String BLOCK_TIMEOUT = "blockTimeout";
+    public static final String WORKERS = "workers";
+    public static final String MAX_BULK_ACTIONS = "maxBulkActions";
+    public static final String MAX_BULK_SIZE = "maxBulkSize";
+    public static final String FLUSH_INTERVAL = "flushInterval";
+    public static final String MAX_RETRIES = "maxRetries";
+    public static final String RETRY_BACKOFF = "retryBackoff";
 
-    private int max = 1000;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final long MAX_RETRY_BACKOFF = TimeUnit.MINUTES.toMillis(1);
 
-    protected Thread thread;
+    public enum OverflowPolicy {
+        DROP, BLOCK
+    }
 
     protected volatile boolean running;
 
-    private BlockingQueue<ActionRequest> queue = new LinkedBlockingQueue<ActionRequest>();
+    private int queueSize = 10000;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+    private long blockTimeout = 1000;
+    private int workers = 2;
+    private int maxBulkActions = 1000;
+    private long maxBulkSize = 5 * 1024 * 1024;
+    private long flushInterval = 200;
+    private int maxRetries = 3;
+    private long retryBackoff = 500;
+
+    private volatile BlockingQueue<Item> queue = new ArrayBlockingQueue<Item>(queueSize);
+    private final List<Thread> threads = new ArrayList<Thread>();
+    private ScheduledExecutorService retryExecutor;
+    private ObjectName objectName;
+
+    private volatile IndexName indexName;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong bulkCount = new AtomicLong();
+    private final AtomicLong bulkTime = new AtomicLong();
+    private final AtomicLong maxBulkTime = new AtomicLong();
 
     private MetricsStorageService metricsStorage = new MetricsStorageServiceImpl(this);
 
@@ -74,6 +131,65 @@ public abstract class AbstractElasticsearchStorage implements StorageService, Me
         indicesAdminClient.putTemplate(putInsightTemplateRequest).actionGet();
     }
 
+    /**
+     * Starts the worker threads which send the documents
+     */
+    protected void start(String name, Map<String, ?> configuration) {
+        queueSize = Maps.integerValue(configuration, QUEUE_SIZE, queueSize);
+        String policy = Maps.stringValue(configuration, OVERFLOW_POLICY, overflowPolicy.name());
+        overflowPolicy = OverflowPolicy.valueOf(policy.trim().toUpperCase());
+        blockTimeout = Maps.integerValue(configuration, BLOCK_TIMEOUT, (int) blockTimeout);
+        workers = Math.max(1, Maps.integerValue(configuration, WORKERS, workers));
+        maxBulkActions = Math.max(1, Maps.integerValue(configuration, MAX_BULK_ACTIONS, maxBulkActions));
+        maxBulkSize = Maps.integerValue(configuration, MAX_BULK_SIZE, (int) maxBulkSize);
+        flushInterval = Maps.integerValue(configuration, FLUSH_INTERVAL, (int) flushInterval);
+        maxRetries = Maps.integerValue(configuration, MAX_RETRIES, maxRetries);
+        retryBackoff = Maps.integerValue(configuration, RETRY_BACKOFF, (int) retryBackoff);
+
+        queue = new ArrayBlockingQueue<Item>(queueSize);
+        final String retryThreadName = name + "-retry";
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, retryThreadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this, name + "-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the worker threads, the documents which were not sent yet are discarded
+     */
+    protected void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        threads.clear();
+        if (retryExecutor != null) {
+            retryExecutor.shutdownNow();
+        }
+    }
+
+    protected void registerMBean(MBeanServer mbeanServer, String name) throws Exception {
+        objectName = new ObjectName("io.fabric8.insight:type=ElasticsearchStorage,name=" + name);
+        JMXUtils.registerMBean(new StandardMBean(this, ElasticsearchStorageMBean.class), mbeanServer, objectName);
+    }
+
+    protected void unregisterMBean(MBeanServer mbeanServer) throws Exception {
+        if (objectName != null) {
+            JMXUtils.unregisterMBean(mbeanServer, objectName);
+        }
+    }
+
     @Override
     public void store(String type, long timestamp, QueryResult queryResult) {
         metricsStorage.store(type, timestamp, queryResult);
@@ -81,43 +197,236 @@ public abstract class AbstractElasticsearchStorage implements StorageService, Me
 
     @Override
     public void store(String type, long timestamp, String jsonData) {
-        Date ts = new Date(timestamp);
-        Date utc = new Date(ts.getTime() + ts.getTimezoneOffset() * 60000);
         IndexRequest ir = new IndexRequest()
-                .index("insight-"+ indexFormat.format(utc))
+                .index(getIndexName(timestamp))
                 .type(type)
                 .source(jsonData)
                 .create(true);
-        queue.add(ir);
+        Item item = new Item(ir, jsonData.length());
+        boolean queued;
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queued = queue.offer(item, blockTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued = false;
+            }
+        } else {
+            queued = queue.offer(item);
+        }
+        if (!queued && dropped.getAndIncrement() % 1000 == 0) {
+            LOGGER.warn("The queue of documents sent to Elasticsearch is full, {} documents were dropped so far", dropped.get());
+        }
+    }
+
+    /**
+     * Returns the name of the daily index of the given time, the name is only computed again when the day changes.
+     */
+    protected String getIndexName(long timestamp) {
+        IndexName current = indexName;
+        if (current == null || timestamp < current.start || timestamp >= current.end) {
+            Calendar calendar = Calendar.getInstance(UTC);
+            calendar.setTimeInMillis(timestamp);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            long start = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            SimpleDateFormat format = new SimpleDateFormat("yyyy.MM.dd");
+            format.setTimeZone(UTC);
+            current = new IndexName(start, calendar.getTimeInMillis(), "insight-" + format.format(new Date(start)));
+            indexName = current;
+        }
+        return current.name;
     }
 
     public void run() {
+        List<Item> bulk = new ArrayList<Item>();
         while (running) {
             try {
-                ActionRequest req = queue.take();
-                // Send data
-                BulkRequest bulk = new BulkRequest();
-                int nb = 0;
-                while (req != null && (nb == 0 || nb < max)) {
-                    bulk.add(req);
-                    nb++;
-                    req = queue.poll();
-                }
-                if (bulk.numberOfActions() > 0) {
-                    BulkResponse rep = getNode().client().bulk(bulk).actionGet();
-                    for (BulkItemResponse bir : rep.getItems()) {
-                        if (bir.isFailed()) {
-                            LOGGER.warn("Error executing request: {}", bir.getFailureMessage());
-                        }
+                Item item = queue.take();
+                long size = 0;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+                while (item != null) {
+                    bulk.add(item);
+                    size += item.size;
+                    if (bulk.size() >= maxBulkActions || size >= maxBulkSize) {
+                        break;
                     }
+                    long remaining = deadline - System.nanoTime();
+                    item = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                }
+                send(bulk);
+            } catch (InterruptedException e) {
+                if (running) {
+                    LOGGER.warn("Interrupted while waiting for requests");
                 }
             } catch (Exception e) {
                 if (running) {
                     LOGGER.warn("Error while sending requests", e);
                 }
+            } finally {
+                bulk.clear();
+            }
+        }
+    }
+
+    private void send(List<Item> items) {
+        BulkRequest bulk = new BulkRequest();
+        for (Item item : items) {
+            bulk.add(item.request);
+        }
+        long start = System.nanoTime();
+        BulkResponse rep;
+        try {
+            rep = getNode().client().bulk(bulk).actionGet();
+        } catch (Exception e) {
+            if (running) {
+                LOGGER.warn("Error while sending requests", e);
+                for (Item item : items) {
+                    retry(item);
+                }
             }
+            return;
+        }
+        recordBulk(System.nanoTime() - start);
+        for (BulkItemResponse bir : rep.getItems()) {
+            if (!bir.isFailed()) {
+                indexed.incrementAndGet();
+            } else if (isTransient(bir)) {
+                retry(items.get(bir.getItemId()));
+            } else {
+                failed.incrementAndGet();
+                LOGGER.warn("Error executing request: {}", bir.getFailureMessage());
+            }
+        }
+    }
+
+    /**
+     * Rejected executions and unavailable shards are worth retrying, but not the documents which are invalid or
+     * already exist because their first attempt made it.
+     */
+    private static boolean isTransient(BulkItemResponse bir) {
+        BulkItemResponse.Failure failure = bir.getFailure();
+        if (failure == null || failure.getStatus() == null) {
+            return false;
+        }
+        int status = failure.getStatus().getStatus();
+        return status == 429 || status >= 500;
+    }
+
+    private void retry(final Item item) {
+        if (item.attempts >= maxRetries || !running) {
+            failed.incrementAndGet();
+            return;
         }
+        long delay = Math.min(retryBackoff << item.attempts, MAX_RETRY_BACKOFF);
+        item.attempts++;
+        retried.incrementAndGet();
+        try {
+            retryExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!queue.offer(item)) {
+                        dropped.incrementAndGet();
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // the storage is being stopped
+            failed.incrementAndGet();
+        }
+    }
+
+    private void recordBulk(long nanos) {
+        bulkCount.incrementAndGet();
+        bulkTime.addAndGet(nanos);
+        long max = maxBulkTime.get();
+        while (nanos > max && !maxBulkTime.compareAndSet(max, nanos)) {
+            max = maxBulkTime.get();
+        }
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public long getIndexed() {
+        return indexed.get();
+    }
+
+    @Override
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @Override
+    public long getRetried() {
+        return retried.get();
+    }
+
+    @Override
+    public long getBulkCount() {
+        return bulkCount.get();
+    }
+
+    @Override
+    public double getMeanBulkLatency() {
+        long count = bulkCount.get();
+        return count > 0 ? bulkTime.get() / (double) count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+    }
+
+    @Override
+    public long getMaxBulkLatency() {
+        return TimeUnit.NANOSECONDS.toMillis(maxBulkTime.get());
+    }
+
+    @Override
+    public void reset() {
+        dropped.set(0);
+        indexed.set(0);
+        failed.set(0);
+        retried.set(0);
+        bulkCount.set(0);
+        bulkTime.set(0);
+        maxBulkTime.set(0);
     }
 
     public abstract Node getNode();
+
+    private static final class Item {
+        private final IndexRequest request;
+        private final int size;
+        private int attempts;
+
+        Item(IndexRequest request, int size) {
+            this.request = request;
+            this.size = size;
+        }
+    }
+
+    private static final class IndexName {
+        private final long start;
+        private final long end;
+        private final String name;
+
+        IndexName(long start, long end, String name) {
+            this.start = start;
+            this.end = end;
+            this.name = name;
+        }
+    }
 }
@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.insight.elasticsearch;
+
+/**
+ * JMX MBean API for the statistics of the queue of documents sent to Elasticsearch in bulk
+ */
+public interface ElasticsearchStorageMBean {
+
+    /**
+     * The number of documents waiting to be sent
+     */
+    int getQueueSize();
+
+    /**
+     * The maximum number of documents which can wait to be sent
+     */
+    int getQueueCapacity();
+
+    /**
+     * The number of documents which were dropped because the queue was full
+     */
+    long getDropped();
+
+    /**
+     * The number of documents which were indexed
+     */
+    long getIndexed();
+
+    /**
+     * The number of documents which failed to be indexed for good
+     */
+    long getFailed();
+
+    /**
+     * The number of times a document was queued again to be retried
+     */
+    long getRetried();
+
+    /**
+     * The number of bulk requests which were sent
+     */
+    long getBulkCount();
+
+    /**
+     * The mean time a bulk request took in milliseconds
+     */
+    double getMeanBulkLatency();
+
+    /**
+     * The longest time a bulk request took in milliseconds
+     */
+    long getMaxBulkLatency();
+
+    /**
+     * Resets the statistics
+     */
+    void reset();
+}
@@ -0,0 +1,284 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.insight.elasticsearch;
+
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.node.Node;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractElasticsearchStorageTest {
+
+    private static final String DOCUMENT = "{\"a\":1}";
+
+    private final List<Integer> bulkSizes = new CopyOnWriteArrayList<Integer>();
+    private final List<Long> bulkTimes = new CopyOnWriteArrayList<Long>();
+    private final AtomicInteger failedBulks = new AtomicInteger();
+    private volatile RestStatus failureStatus = RestStatus.SERVICE_UNAVAILABLE;
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private volatile CountDownLatch release;
+
+    private Node node;
+    private AbstractElasticsearchStorage storage;
+
+    @Before
+    public void init() throws Exception {
+        Client client = Mockito.mock(Client.class);
+        Mockito.when(client.bulk(Mockito.any(BulkRequest.class))).thenAnswer(new Answer<ActionFuture<BulkResponse>>() {
+            @Override
+            public ActionFuture<BulkResponse> answer(InvocationOnMock invocation) throws Throwable {
+                return bulk((BulkRequest) invocation.getArguments()[0]);
+            }
+        });
+        node = Mockito.mock(Node.class);
+        Mockito.when(node.client()).thenReturn(client);
+        storage = new AbstractElasticsearchStorage() {
+            @Override
+            public Node getNode() {
+                return node;
+            }
+        };
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        if (release != null) {
+            release.countDown();
+        }
+        storage.stop();
+    }
+
+    @Test
+    public void testBulkIsSentWhenItHoldsTheMaximumNumberOfDocuments() throws Exception {
+        start(AbstractElasticsearchStorage.MAX_BULK_ACTIONS, 3, AbstractElasticsearchStorage.FLUSH_INTERVAL, 10000);
+        for (int i = 0; i < 6; i++) {
+            storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        }
+        awaitDone(6);
+        assertEquals(Arrays.asList(3, 3), bulkSizes);
+        assertEquals(6, storage.getIndexed());
+    }
+
+    @Test
+    public void testBulkIsSentWhenItReachesTheMaximumSize() throws Exception {
+        start(AbstractElasticsearchStorage.MAX_BULK_SIZE, 2 * DOCUMENT.length(), AbstractElasticsearchStorage.FLUSH_INTERVAL, 10000);
+        for (int i = 0; i < 4; i++) {
+            storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        }
+        awaitDone(4);
+        assertEquals(Arrays.asList(2, 2), bulkSizes);
+    }
+
+    @Test
+    public void testBulkIsSentAfterTheFlushInterval() throws Exception {
+        start(AbstractElasticsearchStorage.FLUSH_INTERVAL, 100);
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        awaitDone(1);
+        assertEquals(Arrays.asList(1), bulkSizes);
+    }
+
+    @Test
+    public void testDocumentsAreDroppedWhenTheQueueIsFull() throws Exception {
+        release = new CountDownLatch(1);
+        start(AbstractElasticsearchStorage.QUEUE_SIZE, 2, AbstractElasticsearchStorage.MAX_BULK_ACTIONS, 1);
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        // the worker is busy sending the first document
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        assertEquals(2, storage.getQueueSize());
+        assertEquals(1, storage.getDropped());
+
+        release.countDown();
+        awaitDone(3);
+        assertEquals(3, storage.getIndexed());
+    }
+
+    @Test
+    public void testCallerWaitsForRoomInTheQueue() throws Exception {
+        release = new CountDownLatch(1);
+        start(AbstractElasticsearchStorage.QUEUE_SIZE, 1, AbstractElasticsearchStorage.MAX_BULK_ACTIONS, 1,
+                AbstractElasticsearchStorage.OVERFLOW_POLICY, "block", AbstractElasticsearchStorage.BLOCK_TIMEOUT, 10000);
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+                release.countDown();
+            }
+        }.start();
+        long start = System.nanoTime();
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, storage.getDropped());
+
+        awaitDone(3);
+        assertEquals(3, storage.getIndexed());
+    }
+
+    @Test
+    public void testCallerGivesUpAfterTheBlockTimeout() throws Exception {
+        release = new CountDownLatch(1);
+        start(AbstractElasticsearchStorage.QUEUE_SIZE, 1, AbstractElasticsearchStorage.MAX_BULK_ACTIONS, 1,
+                AbstractElasticsearchStorage.OVERFLOW_POLICY, "BLOCK", AbstractElasticsearchStorage.BLOCK_TIMEOUT, 100);
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+
+        long start = System.nanoTime();
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, storage.getDropped());
+    }
+
+    @Test
+    public void testTransientFailureIsRetried() throws Exception {
+        failedBulks.set(1);
+        start(AbstractElasticsearchStorage.FLUSH_INTERVAL, 10, AbstractElasticsearchStorage.RETRY_BACKOFF, 10);
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        awaitDone(1);
+        assertEquals(1, storage.getIndexed());
+        assertEquals(1, storage.getRetried());
+        assertEquals(0, storage.getFailed());
+    }
+
+    @Test
+    public void testRetriesBackOffExponentially() throws Exception {
+        failedBulks.set(Integer.MAX_VALUE);
+        start(AbstractElasticsearchStorage.FLUSH_INTERVAL, 10, AbstractElasticsearchStorage.MAX_RETRIES, 2,
+                AbstractElasticsearchStorage.RETRY_BACKOFF, 100);
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        awaitDone(1);
+        assertEquals(1, storage.getFailed());
+        assertEquals(2, storage.getRetried());
+        assertEquals(3, bulkTimes.size());
+        assertTrue(bulkTimes.get(1) - bulkTimes.get(0) >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue(bulkTimes.get(2) - bulkTimes.get(1) >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testInvalidDocumentIsNotRetried() throws Exception {
+        failedBulks.set(Integer.MAX_VALUE);
+        failureStatus = RestStatus.BAD_REQUEST;
+        start(AbstractElasticsearchStorage.FLUSH_INTERVAL, 10, AbstractElasticsearchStorage.RETRY_BACKOFF, 10);
+        storage.store("test", System.currentTimeMillis(), DOCUMENT);
+        awaitDone(1);
+        assertEquals(1, storage.getFailed());
+        assertEquals(0, storage.getRetried());
+        assertEquals(1, bulkTimes.size());
+    }
+
+    @Test
+    public void testIndexNamesAreUtcDays() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long endOfDay = format.parse("2016-02-29 23:59:59.999").getTime();
+
+        TimeZone timeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Kiritimati"));
+        try {
+            assertEquals("insight-2016.02.29", storage.getIndexName(endOfDay));
+            assertEquals("insight-2016.03.01", storage.getIndexName(endOfDay + 1));
+            assertEquals("insight-2016.02.29", storage.getIndexName(endOfDay - TimeUnit.DAYS.toMillis(1) + 1));
+            assertEquals("insight-2016.02.28", storage.getIndexName(endOfDay - TimeUnit.DAYS.toMillis(1)));
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    /**
+     * Starts the storage with a single worker and the given pairs of configuration keys and values
+     */
+    private void start(Object... configuration) {
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put(AbstractElasticsearchStorage.WORKERS, 1);
+        for (int i = 0; i < configuration.length; i += 2) {
+            map.put((String) configuration[i], configuration[i + 1]);
+        }
+        storage.start("TestStorage", map);
+    }
+
+    /**
+     * Answers a bulk request, after the release latch if any, where each document fails while there are failed bulks
+     */
+    @SuppressWarnings("unchecked")
+    private ActionFuture<BulkResponse> bulk(BulkRequest request) throws InterruptedException {
+        bulkTimes.add(System.nanoTime());
+        bulkSizes.add(request.numberOfActions());
+        sending.countDown();
+        if (release != null) {
+            release.await();
+        }
+        boolean failed = failedBulks.getAndDecrement() > 0;
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = Mockito.mock(BulkItemResponse.class);
+            Mockito.when(items[i].getItemId()).thenReturn(i);
+            Mockito.when(items[i].isFailed()).thenReturn(failed);
+            if (failed) {
+                BulkItemResponse.Failure failure = Mockito.mock(BulkItemResponse.Failure.class);
+                Mockito.when(failure.getStatus()).thenReturn(failureStatus);
+                Mockito.when(items[i].getFailure()).thenReturn(failure);
+                Mockito.when(items[i].getFailureMessage()).thenReturn(failureStatus.name());
+            }
+        }
+        BulkResponse response = Mockito.mock(BulkResponse.class);
+        Mockito.when(response.getItems()).thenReturn(items);
+        ActionFuture<BulkResponse> future = Mockito.mock(ActionFuture.class);
+        Mockito.when(future.actionGet()).thenReturn(response);
+        return future;
+    }
+
+    private void awaitDone(long documents) throws InterruptedException {
+        for (int i = 0; i < 100 && storage.getIndexed() + storage.getFailed() < documents; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(documents, storage.getIndexed() + storage.getFailed());
+    }
+
+}
@@ -21,8 +21,22 @@ import io.fabric8.insight.storage.StorageService;
 import org.apache.felix.scr.annotations.*;
 import org.elasticsearch.node.Node;
 
+import javax.management.MBeanServer;
+import java.util.Map;
+
 @Component(immediate = true, name = "io.fabric8.insight.log.elasticsearch")
 @Service({StorageService.class})
+@Properties({
+        @Property(name = AbstractElasticsearchStorage.QUEUE_SIZE, label = "Queue Size", description = "The number of documents waiting to be sent", intValue = 10000),
+        @Property(name = AbstractElasticsearchStorage.OVERFLOW_POLICY, label = "Overflow Policy", description = "What to do with new documents when the queue is full, DROP or BLOCK", value = "DROP"),
+        @Property(name = AbstractElasticsearchStorage.BLOCK_TIMEOUT, label = "Block Timeout", description = "The time in ms to wait for room in the queue with the BLOCK overflow policy", intValue = 1000),
+        @Property(name = AbstractElasticsearchStorage.WORKERS, label = "Workers", description = "The number of threads sending the documents", intValue = 2),
+        @Property(name = AbstractElasticsearchStorage.MAX_BULK_ACTIONS, label = "Maximum Bulk Actions", description = "The maximum number of documents sent in a bulk", intValue = 1000),
+        @Property(name = AbstractElasticsearchStorage.MAX_BULK_SIZE, label = "Maximum Bulk Size", description = "The size in bytes of the documents after which a bulk is sent", intValue = 5 * 1024 * 1024),
+        @Property(name = AbstractElasticsearchStorage.FLUSH_INTERVAL, label = "Flush Interval", description = "The time in ms after which a bulk is sent even if it is not full", intValue = 200),
+        @Property(name = AbstractElasticsearchStorage.MAX_RETRIES, label = "Maximum Retries", description = "The number of times a document which failed with a transient error is sent again", intValue = 3),
+        @Property(name = AbstractElasticsearchStorage.RETRY_BACKOFF, label = "Retry Backoff", description = "The time in ms to wait before the first retry, doubled for each following one", intValue = 500)
+})
 public class ElasticsearchLogStorage extends AbstractElasticsearchStorage {
 
     private static final String INDEX_TEMPLATE_LOCATION = "indexTemplateLocation";
@@ -30,23 +44,23 @@ public class ElasticsearchLogStorage extends AbstractElasticsearchStorage {
     @Reference(name = "node", referenceInterface = org.elasticsearch.node.Node.class, target = "(cluster.name=insight)")
     private final ValidatingReference<Node> node = new ValidatingReference<>();
 
+    @Reference(referenceInterface = MBeanServer.class, bind = "bindMBeanServer", unbind = "unbindMBeanServer")
+    private final ValidatingReference<MBeanServer> mbeanServer = new ValidatingReference<>();
+
     @Property(name = INDEX_TEMPLATE_LOCATION, label = "Index Template Location", description = "Location of the json file containing the index template", boolValue = false)
     private String indexTemplateLocation = "profile:elasticsearch-index-template.json";
 
     @Activate
-    public void activate() {
-        running = true;
+    public void activate(Map<String, ?> configuration) throws Exception {
         putInsightTemplate(indexTemplateLocation);
-        thread = new Thread(this, "ElasticStorage");
-        thread.start();
+        start("ElasticStorage", configuration);
+        registerMBean(mbeanServer.get(), "log");
     }
 
     @Deactivate
-    public void deactivate() {
-        running = false;
-        if (thread != null) {
-            thread.interrupt();
-        }
+    public void deactivate() throws Exception {
+        unregisterMBean(mbeanServer.get());
+        stop();
     }
 
     private void bindNode(Node node) {
@@ -57,6 +71,14 @@ public class ElasticsearchLogStorage extends AbstractElasticsearchStorage {
         this.node.unbind(node);
     }
 
+    private void bindMBeanServer(MBeanServer mbeanServer) {
+        this.mbeanServer.bind(mbeanServer);
+    }
+
+    private void unbindMBeanServer(MBeanServer mbeanServer) {
+        this.mbeanServer.unbind(mbeanServer);
+    }
+
     @Override
     public Node getNode() {
         return node.get();
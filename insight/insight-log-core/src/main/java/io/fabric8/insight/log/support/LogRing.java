@@ -0,0 +1,342 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.insight.log.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size ring of log records which is appended to without locking and which is queried from snapshots.
+ * <p/>
+ * Every record is given a sequence number and its slot is reused once the ring has wrapped around, so readers
+ * simply skip the slots which are overwritten while they read. Records are indexed by level and by timestamp, and
+ * optionally by the trigrams of their text, so that queries only look at the records which may match.
+ */
+public class LogRing<T> {
+
+    private static final int TEXT_INDEX_WORDS = 4;
+    private static final int TEXT_INDEX_BITS = TEXT_INDEX_WORDS * 64;
+
+    private final int capacity;
+    private final int levelCount;
+    private final boolean textIndex;
+    private final AtomicReferenceArray<Record<T>> records;
+    // the last record which was appended, its sequence and watermark are used to create the next one
+    private final AtomicReference<Record<T>> tail = new AtomicReference<>(new Record<T>(-1, Long.MIN_VALUE, 0, 0, null, null));
+    private final AtomicLong[] levelCounts;
+    private final AtomicLongArray[] levelIndexes;
+    private volatile long start;
+
+    /**
+     * @param capacity  the number of records kept
+     * @param levels    the number of levels, records are added with a level from 0 to levels - 1
+     * @param textIndex whether the text of the records is indexed
+     */
+    public LogRing(int capacity, int levels, boolean textIndex) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The size must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.levelCount = levels;
+        this.textIndex = textIndex;
+        this.records = new AtomicReferenceArray<>(capacity);
+        this.levelCounts = new AtomicLong[levels];
+        this.levelIndexes = new AtomicLongArray[levels];
+        for (int i = 0; i < levels; i++) {
+            levelCounts[i] = new AtomicLong();
+            levelIndexes[i] = new AtomicLongArray(capacity);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isTextIndex() {
+        return textIndex;
+    }
+
+    public int size() {
+        long end = tail.get().sequence + 1;
+        return (int) (end - Math.max(start, end - capacity));
+    }
+
+    public void clear() {
+        start = tail.get().sequence + 1;
+    }
+
+    /**
+     * Adds a record
+     *
+     * @param element   the record
+     * @param level     the level of the record
+     * @param timestamp the time of the record
+     * @param text      the text of the record which is indexed, ignored unless the text is indexed
+     */
+    public void add(T element, int level, long timestamp, String... text) {
+        if (element == null) {
+            throw new NullPointerException("Attempted to add null object to buffer");
+        }
+        long[] mask = textIndex ? textMask(text) : null;
+        Record<T> last;
+        Record<T> record;
+        do {
+            last = tail.get();
+            record = new Record<>(last.sequence + 1, Math.max(last.watermark, timestamp), timestamp, level, mask, element);
+        } while (!tail.compareAndSet(last, record));
+        records.set(index(record.sequence), record);
+        long position = levelCounts[level].getAndIncrement();
+        levelIndexes[level].set(index(position), record.sequence);
+    }
+
+    /**
+     * Selects the records which match from a snapshot of the ring, oldest first. The records which are added
+     * while selecting are not selected.
+     *
+     * @param levels    the levels to select or null for all the levels
+     * @param after     only select the records after this time or null
+     * @param before    only select the records before this time or null
+     * @param text      some text the records contain or null. The text index only skips the records which
+     *                  cannot contain it so the predicate still has to check the text.
+     * @param predicate the predicate which the records must match or null
+     * @param maxCount  the maximum number of records to select, or zero or less for all of them
+     */
+    public Selection<T> select(BitSet levels, Long after, Long before, String text, Predicate<T> predicate, int maxCount) {
+        long end = tail.get().sequence + 1;
+        long first = Math.max(start, end - capacity);
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        // a text without trigrams can be contained by anything
+        long[] mask = textIndex && text != null && text.length() >= 3 ? textMask(text) : null;
+        if (levels != null && levels.nextClearBit(0) >= levelCount) {
+            levels = null;
+        }
+
+        long[] sequences = null;
+        long low = after != null ? firstAfter(first, end, after) : first;
+        if (levels != null) {
+            sequences = indexedSequences(levels, low, end);
+        }
+
+        List<T> answer = new ArrayList<>();
+        boolean truncated = false;
+        int count = sequences != null ? sequences.length : (int) (end - low);
+        for (int i = 0; i < count; i++) {
+            Record<T> record = get(sequences != null ? sequences[i] : low + i);
+            if (record == null) {
+                continue;
+            }
+            from = Math.min(from, record.timestamp);
+            to = Math.max(to, record.timestamp);
+            if ((levels != null && !levels.get(record.level))
+                    || (after != null && record.timestamp <= after)
+                    || (before != null && record.timestamp >= before)
+                    || (mask != null && !record.mayContain(mask))
+                    || (predicate != null && !predicate.matches(record.element))) {
+                continue;
+            }
+            answer.add(record.element);
+            if (maxCount > 0 && answer.size() >= maxCount) {
+                truncated = true;
+                break;
+            }
+        }
+
+        Record<T> oldest = next(first, end);
+        if (oldest != null) {
+            from = Math.min(from, oldest.timestamp);
+        }
+        if (!truncated) {
+            Record<T> newest = previous(end - 1, first);
+            if (newest != null) {
+                to = Math.max(to, newest.watermark);
+            }
+        }
+        return new Selection<>(answer, from < Long.MAX_VALUE ? from : null, to > Long.MIN_VALUE ? to : null);
+    }
+
+    /**
+     * Finds the first record whose watermark is after the given time with a binary search, as the watermarks
+     * always increase all the records before it are before the given time too
+     */
+    private long firstAfter(long low, long high, long after) {
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            Record<T> record = records.get(index(middle));
+            if (record == null || record.sequence < middle) {
+                // still being added
+                high = middle;
+            } else if (record.sequence > middle || record.watermark <= after) {
+                // overwritten or too old
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Gets the sequences of the records with the given levels from the level indexes, in order and without
+     * the stale entries of the indexes which are before the given range
+     */
+    private long[] indexedSequences(BitSet levels, long low, long high) {
+        long[] answer = new long[0];
+        int size = 0;
+        for (int level = levels.nextSetBit(0); level >= 0 && level < levelCount; level = levels.nextSetBit(level + 1)) {
+            AtomicLongArray index = levelIndexes[level];
+            long end = levelCounts[level].get();
+            long position = Math.max(0, end - capacity);
+            if (answer.length < size + end - position) {
+                answer = Arrays.copyOf(answer, (int) (size + end - position));
+            }
+            for (; position < end; position++) {
+                long sequence = index.get(index(position));
+                if (sequence >= low && sequence < high) {
+                    answer[size++] = sequence;
+                }
+            }
+        }
+        // the indexes are not strictly in order when records are added concurrently
+        Arrays.sort(answer, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || answer[unique - 1] != answer[i]) {
+                answer[unique++] = answer[i];
+            }
+        }
+        return Arrays.copyOf(answer, unique);
+    }
+
+    private Record<T> get(long sequence) {
+        Record<T> record = records.get(index(sequence));
+        return record != null && record.sequence == sequence ? record : null;
+    }
+
+    private Record<T> next(long sequence, long end) {
+        for (; sequence < end; sequence++) {
+            Record<T> record = get(sequence);
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private Record<T> previous(long sequence, long first) {
+        for (; sequence >= first; sequence--) {
+            Record<T> record = get(sequence);
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    /**
+     * Creates a bloom filter of the trigrams of the given text, a text can only be contained by some other text
+     * if all its trigrams are in the filter of the other text
+     */
+    static long[] textMask(String... text) {
+        long[] mask = new long[TEXT_INDEX_WORDS];
+        if (text != null) {
+            for (String value : text) {
+                if (value != null) {
+                    for (int i = 0; i + 3 <= value.length(); i++) {
+                        int hash = ((value.charAt(i) * 31 + value.charAt(i + 1)) * 31 + value.charAt(i + 2)) * 0x9E3779B1;
+                        int bit = (hash >>> 16) % TEXT_INDEX_BITS;
+                        mask[bit >>> 6] |= 1L << bit;
+                    }
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * The records selected from a {@link LogRing}
+     */
+    public static class Selection<T> {
+        private final List<T> elements;
+        private final Long fromTimestamp;
+        private final Long toTimestamp;
+
+        Selection(List<T> elements, Long fromTimestamp, Long toTimestamp) {
+            this.elements = elements;
+            this.fromTimestamp = fromTimestamp;
+            this.toTimestamp = toTimestamp;
+        }
+
+        public List<T> getElements() {
+            return elements;
+        }
+
+        /**
+         * The time of the oldest record which was looked at
+         */
+        public Long getFromTimestamp() {
+            return fromTimestamp;
+        }
+
+        /**
+         * The time of the newest record which was looked at
+         */
+        public Long getToTimestamp() {
+            return toTimestamp;
+        }
+    }
+
+    private static final class Record<T> {
+        final long sequence;
+        // the highest time of this record and of all the records added before it
+        final long watermark;
+        final long timestamp;
+        final int level;
+        final long[] text;
+        final T element;
+
+        Record(long sequence, long watermark, long timestamp, int level, long[] text, T element) {
+            this.sequence = sequence;
+            this.watermark = watermark;
+            this.timestamp = timestamp;
+            this.level = level;
+            this.text = text;
+            this.element = element;
+        }
+
+        boolean mayContain(long[] mask) {
+            if (text == null) {
+                return true;
+            }
+            for (int i = 0; i < mask.length; i++) {
+                if ((text[i] & mask[i]) != mask[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
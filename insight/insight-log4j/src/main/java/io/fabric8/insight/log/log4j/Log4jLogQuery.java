@@ -20,8 +20,6 @@ import io.fabric8.maven.url.internal.AetherBasedResolver;
 import io.fabric8.maven.util.MavenConfigurationImpl;
 import org.apache.log4j.Appender;
 import org.apache.log4j.AppenderSkeleton;
-import org.apache.log4j.Category;
-import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.spi.AppenderAttachable;
 import org.apache.log4j.spi.LocationInfo;
@@ -31,7 +29,7 @@ import io.fabric8.insight.log.LogEvent;
 import io.fabric8.insight.log.LogFilter;
 import io.fabric8.insight.log.LogResults;
 import io.fabric8.insight.log.support.LogQuerySupport;
-import io.fabric8.insight.log.support.LruList;
+import io.fabric8.insight.log.support.LogRing;
 import io.fabric8.insight.log.support.Predicate;
 import org.ops4j.util.property.PropertiesPropertyResolver;
 import org.slf4j.ILoggerFactory;
@@ -44,9 +42,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import org.apache.felix.scr.annotations.Activate;
@@ -66,7 +64,9 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
     private static final transient Logger LOG = LoggerFactory.getLogger(Log4jLogQuery.class);
 
     private int size = 1000;
-    private LruList<LoggingEvent> events;
+    private boolean textIndex;
+    private boolean locationInfo;
+    private volatile LogRing<LogRecord> events;
     private boolean addMavenCoordinates = true;
     private AetherBasedResolver resolver;
     private Properties properties = new Properties();
@@ -122,89 +122,58 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
     }
 
     public LogResults queryLogResults(LogFilter filter) {
-        Predicate<LogEvent> predicate = createPredicate(filter);
-        int maxCount = -1;
-        if (filter != null) {
-            maxCount = filter.getCount();
-        }
-        return filterLogResults(predicate, maxCount);
+        return filterLogResults(filter, filter != null ? filter.getCount() : -1);
     }
 
-    private Predicate<LogEvent> createPredicate(LogFilter filter) {
-        if (filter == null) {
-            return null;
-        }
-        final List<Predicate<LogEvent>> predicates = new ArrayList<Predicate<LogEvent>>();
-
-        final Set<String> levels = filter.getLevelsSet();
-        if (levels.size() > 0) {
-            predicates.add(new Predicate<LogEvent>() {
-                @Override
-                public boolean matches(LogEvent event) {
-                    String level = event.getLevel();
-                    return level != null && levels.contains(level.toString());
-                }
-            });
-        }
-        final Long before = filter.getBeforeTimestamp();
-        if (before != null) {
-            final Date date = new Date(before);
-            predicates.add(new Predicate<LogEvent>() {
-                @Override
-                public boolean matches(LogEvent event) {
-                    Date time = event.getTimestamp();
-                    return time != null && time.before(date);
-                }
-            });
-        }
-        final Long after = filter.getAfterTimestamp();
-        if (after != null) {
-            final Date date = new Date(after);
-            predicates.add(new Predicate<LogEvent>() {
-                @Override
-                public boolean matches(LogEvent event) {
-                    Date time = event.getTimestamp();
-                    return time != null && time.after(date);
+    protected LogResults filterLogResults(LogFilter filter, int maxCount) {
+        BitSet levelIndexes = null;
+        Long before = null;
+        Long after = null;
+        String text = null;
+        final List<Predicate<LogRecord>> predicates = new ArrayList<Predicate<LogRecord>>();
+        if (filter != null) {
+            final Set<String> levels = filter.getLevelsSet();
+            if (levels.size() > 0) {
+                levelIndexes = new BitSet();
+                for (String level : levels) {
+                    levelIndexes.set(LogRecord.levelIndex(level));
                 }
-            });
-        }
-
-        final String matchesText = filter.getMatchesText();
-        if (matchesText != null && matchesText.length() > 0) {
-            predicates.add(new Predicate<LogEvent>() {
-                @Override
-                public boolean matches(LogEvent event) {
-                    if (contains(matchesText, event.getClassName(), event.getMessage(), event.getLogger(), event.getThread())) {
-                        return true;
-                    }
-                    String[] throwableStrRep = event.getException();
-                    if (throwableStrRep != null && contains(matchesText, throwableStrRep)) {
-                        return true;
+                // the index only tells the levels which are not known apart
+                predicates.add(new Predicate<LogRecord>() {
+                    @Override
+                    public boolean matches(LogRecord record) {
+                        return record.level != null && levels.contains(record.level);
                     }
-                    Map properties = event.getProperties();
-                    if (properties != null && contains(matchesText, properties.toString())) {
-                        return true;
+                });
+            }
+            before = filter.getBeforeTimestamp();
+            after = filter.getAfterTimestamp();
+            final String matchesText = filter.getMatchesText();
+            if (matchesText != null && matchesText.length() > 0) {
+                text = matchesText;
+                predicates.add(new Predicate<LogRecord>() {
+                    @Override
+                    public boolean matches(LogRecord record) {
+                        return contains(matchesText, record.getText());
                     }
-                    return false;
-                }
-            });
+                });
+            }
         }
 
-        if (predicates.size() == 0) {
-            return null;
-        } else if (predicates.size() == 1) {
-            return predicates.get(0);
-        } else {
-            return new Predicate<LogEvent>() {
+        Predicate<LogRecord> predicate = null;
+        if (predicates.size() == 1) {
+            predicate = predicates.get(0);
+        } else if (predicates.size() > 1) {
+            predicate = new Predicate<LogRecord>() {
                 @Override
                 public String toString() {
                     return "AndPredicate" + predicates;
                 }
 
                 @Override
-                public boolean matches(LogEvent event) {
-                    for (Predicate<LogEvent> predicate : predicates) {
-                        if (!predicate.matches(event)) {
+                public boolean matches(LogRecord record) {
+                    for (Predicate<LogRecord> predicate : predicates) {
+                        if (!predicate.matches(record)) {
                             return false;
                         }
                     }
@@ -212,55 +181,31 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
                 }
             };
         }
-    }
 
-    protected LogResults filterLogResults(Predicate<LogEvent> predicate, int maxCount) {
-        int matched = 0;
-        long from = Long.MAX_VALUE;
-        long to = Long.MIN_VALUE;
+        LogRing<LogRecord> events = getEvents();
+        LogRing.Selection<LogRecord> selection = events.select(levelIndexes, after, before, text, predicate, maxCount);
         List<LogEvent> list = new ArrayList<LogEvent>();
-        Iterable<LoggingEvent> elements = getEvents().getElements();
-        for (LoggingEvent element : elements) {
-            LogEvent logEvent = toLogEvent(element);
-            long timestamp = element.getTimeStamp();
-            if (timestamp > to) {
-                to = timestamp;
-            }
-            if (timestamp < from) {
-                from = timestamp;
-            }
-            if (logEvent != null) {
-                if (predicate == null || predicate.matches(logEvent)) {
-                    list.add(logEvent);
-                    matched += 1;
-                    if (maxCount > 0 && matched >= maxCount) {
-                        break;
-                    }
-                }
-            }
+        for (LogRecord record : selection.getElements()) {
+            list.add(toLogEvent(record));
         }
         LogResults results = new LogResults();
         results.setEvents(list);
-        if (from < Long.MAX_VALUE) {
-            results.setFromTimestamp(from);
-        }
-        if (to > Long.MIN_VALUE) {
-            results.setToTimestamp(to);
-        }
+        results.setFromTimestamp(selection.getFromTimestamp());
+        results.setToTimestamp(selection.getToTimestamp());
         if (LOG.isDebugEnabled()) {
             LOG.debug("Requested " + maxCount + " logging items. returning "
-                    + results.getEvents().size() + " event(s) from a possible " + getEvents().size());
+                    + results.getEvents().size() + " event(s) from a possible " + events.size());
 
         }
         return results;
     }
 
-    protected LogEvent toLogEvent(LoggingEvent element) {
+    private LogEvent toLogEvent(LogRecord element) {
         LogEvent answer = new LogEvent();
-        answer.setClassName(element.getFQNOfLoggerClass());
+        answer.setClassName(element.fqnOfLoggerClass);
         // TODO
         //answer.setContainerName(element.get);
-        ThrowableInformation throwableInformation = element.getThrowableInformation();
+        ThrowableInformation throwableInformation = element.throwableInformation;
         if (throwableInformation != null) {
             ThrowableFormatter renderer = new ThrowableFormatter();
             String[] stack = renderer.doRender(throwableInformation.getThrowable());
@@ -269,30 +214,22 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
             }
             answer.setException(stack);
         }
-        LocationInfo locationInformation = element.getLocationInformation();
+        LocationInfo locationInformation = element.locationInformation;
         if (locationInformation != null) {
             answer.setFileName(locationInformation.getFileName());
             answer.setClassName(locationInformation.getClassName());
             answer.setMethodName(locationInformation.getMethodName());
             answer.setLineNumber(locationInformation.getLineNumber());
         }
-        Level level = element.getLevel();
-        if (level != null) {
-            answer.setLevel(level.toString());
-        }
+        answer.setLevel(element.level);
         // TODO
-        answer.setLogger(element.getLoggerName());
-        Category logger = element.getLogger();
-        Object message = element.getMessage();
-        if (message != null) {
-            // TODO marshal differently?
-            answer.setMessage(message.toString());
-        }
-        answer.setProperties(element.getProperties());
+        answer.setLogger(element.loggerName);
+        answer.setMessage(element.message);
+        answer.setProperties(element.properties);
         // TODO
-        answer.setSeq(element.getTimeStamp());
-        answer.setTimestamp(new Date(element.getTimeStamp()));
-        answer.setThread(element.getThreadName());
+        answer.setSeq(element.timestamp);
+        answer.setTimestamp(new Date(element.timestamp));
+        answer.setThread(element.threadName);
         answer.setHost(getHostName());
         return answer;
     }
@@ -358,15 +295,17 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
 
     // Properties
     //-------------------------------------------------------------------------
-    public LruList<LoggingEvent> getEvents() {
-        if (events == null) {
-            events = new LruList<LoggingEvent>(LoggingEvent.class, getSize());
+    LogRing<LogRecord> getEvents() {
+        LogRing<LogRecord> answer = events;
+        if (answer == null) {
+            synchronized (this) {
+                if (events == null) {
+                    events = new LogRing<LogRecord>(getSize(), LogRecord.OTHER_LEVEL + 1, isTextIndex());
+                }
+                answer = events;
+            }
         }
-        return events;
-    }
-
-    public void setEvents(LruList<LoggingEvent> events) {
-        this.events = events;
+        return answer;
     }
 
     public int getSize() {
@@ -377,6 +316,31 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
         this.size = size;
     }
 
+    public boolean isTextIndex() {
+        return textIndex;
+    }
+
+    /**
+     * Whether the text of the events is indexed when they are logged, which makes the queries
+     * matching some text faster at the expense of the logging threads
+     */
+    public void setTextIndex(boolean textIndex) {
+        this.textIndex = textIndex;
+    }
+
+    public boolean isLocationInfo() {
+        return locationInfo;
+    }
+
+    /**
+     * Whether the class, method and line of the logging calls are kept, like the LocationInfo option of
+     * the log4j appenders. They are found from the stack of the logging thread, so this is off by default;
+     * the maven coordinates of the logging classes are only added when it is on.
+     */
+    public void setLocationInfo(boolean locationInfo) {
+        this.locationInfo = locationInfo;
+    }
+
     public boolean isAddMavenCoordinates() {
         return addMavenCoordinates;
     }
@@ -411,9 +375,11 @@ public class Log4jLogQuery extends LogQuerySupport implements Log4jLogQueryMBean
 
 	@Override
 	public void logMessage(LoggingEvent record) {
-        if (addMavenCoordinates) {
+        if (addMavenCoordinates && locationInfo) {
             appendMavenCoordinates(record);
         }
-		getEvents().add(record);
+        LogRing<LogRecord> events = getEvents();
+        LogRecord logRecord = new LogRecord(record, locationInfo);
+        events.add(logRecord, logRecord.levelIndex, logRecord.timestamp, events.isTextIndex() ? logRecord.getText() : null);
 	}
 }
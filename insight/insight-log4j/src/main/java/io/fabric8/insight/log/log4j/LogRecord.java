@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.insight.log.log4j;
+
+import java.util.Map;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LocationInfo;
+import org.apache.log4j.spi.LoggingEvent;
+import org.apache.log4j.spi.ThrowableInformation;
+
+/**
+ * The parts of a {@link LoggingEvent} kept by {@link Log4jLogQuery}, without the references to the logger
+ * and to the message object of the event
+ */
+final class LogRecord {
+
+    static final String[] LEVELS = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR", "FATAL"};
+    static final int OTHER_LEVEL = LEVELS.length;
+
+    final long timestamp;
+    final String level;
+    final int levelIndex;
+    final String loggerName;
+    final String fqnOfLoggerClass;
+    final String threadName;
+    final String message;
+    final ThrowableInformation throwableInformation;
+    final LocationInfo locationInformation;
+    final Map properties;
+
+    /**
+     * @param locationInfo whether the location of the logging call is kept, it is found from the current stack
+     *                     so it is only right on the logging thread and costly to find
+     */
+    LogRecord(LoggingEvent event, boolean locationInfo) {
+        Level level = event.getLevel();
+        Object message = event.getMessage();
+        this.timestamp = event.getTimeStamp();
+        this.level = level != null ? level.toString() : null;
+        this.levelIndex = levelIndex(this.level);
+        this.loggerName = event.getLoggerName();
+        this.fqnOfLoggerClass = event.getFQNOfLoggerClass();
+        this.threadName = event.getThreadName();
+        this.message = message != null ? message.toString() : null;
+        this.throwableInformation = event.getThrowableInformation();
+        this.locationInformation = locationInfo ? event.getLocationInformation() : null;
+        // the MDC is only found from the logging thread, the events without any property keep no map
+        Map properties = event.getProperties();
+        this.properties = properties.isEmpty() ? null : properties;
+    }
+
+    static int levelIndex(String level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].equals(level)) {
+                return i;
+            }
+        }
+        return OTHER_LEVEL;
+    }
+
+    String getClassName() {
+        return locationInformation != null ? locationInformation.getClassName() : fqnOfLoggerClass;
+    }
+
+    String[] getThrowableStrRep() {
+        return throwableInformation != null ? throwableInformation.getThrowableStrRep() : null;
+    }
+
+    /**
+     * The text which is searched by the queries
+     */
+    String[] getText() {
+        String[] throwable = getThrowableStrRep();
+        int length = throwable != null ? throwable.length : 0;
+        String[] answer = new String[length + 5];
+        answer[0] = getClassName();
+        answer[1] = message;
+        answer[2] = loggerName;
+        answer[3] = threadName;
+        answer[4] = properties != null ? properties.toString() : null;
+        if (throwable != null) {
+            System.arraycopy(throwable, 0, answer, 5, length);
+        }
+        return answer;
+    }
+}
@@ -20,6 +20,8 @@ import io.fabric8.insight.log.LogFilter;
 import io.fabric8.insight.log.LogResults;
 import io.fabric8.insight.log.support.LogQuerySupportMBean;
 import io.fabric8.insight.log.support.Predicate;
+import org.apache.log4j.Level;
+import org.apache.log4j.spi.LoggingEvent;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -28,7 +30,9 @@ import org.slf4j.LoggerFactory;
 
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -63,6 +67,74 @@ public class Log4jTest {
         assertLogQuery(logQuery);
     }
 
+    @Test
+    public void testQueryOfWrappedEvents() throws Exception {
+        Log4jLogQuery query = new Log4jLogQuery();
+        query.setSize(4);
+        query.setTextIndex(true);
+        query.setAddMavenCoordinates(false);
+        query.logMessage(event(1000, Level.INFO, info1));
+        query.logMessage(event(2000, Level.ERROR, error1));
+        query.logMessage(event(3000, Level.INFO, info2));
+        query.logMessage(event(4000, Level.WARN, warn1));
+        query.logMessage(event(5000, Level.ERROR, error2));
+        query.logMessage(event(6000, Level.DEBUG, debug1));
+
+        LogResults results = query.allLogResults();
+        assertEquals(4, results.getEvents().size());
+        assertEquals(info2, results.getEvents().get(0).getMessage());
+        assertEquals(Long.valueOf(3000), results.getFromTimestamp());
+        assertEquals(Long.valueOf(6000), results.getToTimestamp());
+
+        LogFilter filter = new LogFilter();
+        filter.setLevels(new String[] {"ERROR", "WARN"});
+        List<LogEvent> logEvents = query.queryLogResults(filter).getEvents();
+        assertEquals(2, logEvents.size());
+        assertEquals(warn1, logEvents.get(0).getMessage());
+        assertEquals(error2, logEvents.get(1).getMessage());
+
+        filter = new LogFilter();
+        filter.setAfterTimestamp(4000L);
+        filter.setBeforeTimestamp(6000L);
+        logEvents = query.queryLogResults(filter).getEvents();
+        assertEquals(1, logEvents.size());
+        assertEquals(error2, logEvents.get(0).getMessage());
+
+        filter = new LogFilter();
+        filter.setMatchesText("Two");
+        logEvents = query.queryLogResults(filter).getEvents();
+        assertEquals(2, logEvents.size());
+        assertEquals(info2, logEvents.get(0).getMessage());
+
+        filter.setCount(1);
+        results = query.queryLogResults(filter);
+        assertEquals(1, results.getEvents().size());
+        assertEquals(Long.valueOf(3000), results.getToTimestamp());
+    }
+
+    @Test
+    public void testLocationInfo() throws Exception {
+        Log4jLogQuery query = new Log4jLogQuery();
+        query.setAddMavenCoordinates(false);
+        query.logMessage(event(1000, Level.INFO, info1));
+        LogEvent logEvent = query.allLogResults().getEvents().get(0);
+        assertNull(logEvent.getMethodName());
+        assertNull(logEvent.getProperties());
+
+        query.setLocationInfo(true);
+        // the location is the caller of the query, as if it were the logger
+        org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(Log4jTest.class);
+        query.logMessage(new LoggingEvent(Log4jLogQuery.class.getName(), logger, 2000, Level.INFO, info2, null));
+        logEvent = query.allLogResults().getEvents().get(1);
+        assertEquals(Log4jTest.class.getName(), logEvent.getClassName());
+        assertEquals("testLocationInfo", logEvent.getMethodName());
+    }
+
+    private static LoggingEvent event(long timestamp, Level level, String message) {
+        org.apache.log4j.Logger logger = org.apache.log4j.Logger.getLogger(Log4jTest.class);
+        return new LoggingEvent(Log4jTest.class.getName(), logger, timestamp, level, message, null);
+    }
+
     protected void assertLogQuery(LogQuerySupportMBean mBean) throws Exception {
         LogResults results = mBean.allLogResults();
         List<LogEvent> logEvents = assertNotEmpty(results);
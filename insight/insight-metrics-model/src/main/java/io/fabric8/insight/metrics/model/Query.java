@@ -26,6 +26,8 @@ public class Query {
     private final int period;
     private final int minPeriod;
     private final String lock;
+    // queries are looked up in maps on every collection
+    private int hashCode;
 
     public Query(String name, Set<Request> requests, String template, String metadata, String lock, int period, int minPeriod) {
         this.name = name;
@@ -85,11 +87,15 @@ public class Query {
 
     @Override
     public int hashCode() {
-        int result = name != null ? name.hashCode() : 0;
-        result = 31 * result + (requests != null ? requests.hashCode() : 0);
-        result = 31 * result + (template != null ? template.hashCode() : 0);
-        result = 31 * result + (metadata != null ? metadata.hashCode() : 0);
-        result = 31 * result + period;
+        int result = hashCode;
+        if (result == 0) {
+            result = name != null ? name.hashCode() : 0;
+            result = 31 * result + (requests != null ? requests.hashCode() : 0);
+            result = 31 * result + (template != null ? template.hashCode() : 0);
+            result = 31 * result + (metadata != null ? metadata.hashCode() : 0);
+            result = 31 * result + period;
+            hashCode = result;
+        }
         return result;
     }
 }
@@ -32,7 +32,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class Renderer {
 
-    private Map<Query, String> sources = new ConcurrentHashMap<Query, String>();
+    // the compiled templates by query, the queries sharing a template source share the compiled template
+    private Map<Query, CompiledTemplate> queryTemplates = new ConcurrentHashMap<Query, CompiledTemplate>();
     private Map<String, CompiledTemplate> templates = new ConcurrentHashMap<String, CompiledTemplate>();
     private ParserContext context;
 
@@ -53,33 +54,34 @@ public class Renderer {
     }
 
     private CompiledTemplate getTemplate(Query set) throws IOException {
-        String source = getTemplateSource(set);
-        CompiledTemplate template = templates.get(source);
+        CompiledTemplate template = queryTemplates.get(set);
         if (template == null) {
-            template = TemplateCompiler.compileTemplate(source, context);
-            templates.put(source, template);
+            String source = getTemplateSource(set);
+            template = templates.get(source);
+            if (template == null) {
+                template = TemplateCompiler.compileTemplate(source, context);
+                templates.put(source, template);
+            }
+            queryTemplates.put(set, template);
         }
         return template;
     }
 
     private String getTemplateSource(Query set) throws IOException {
-        String source = sources.get(set);
+        String source = null;
+        if (set.getTemplate() != null) {
+            source = IOHelpers.loadFully(new URL(set.getTemplate()));
+        }
         if (source == null) {
-            if (set.getTemplate() != null) {
-                source = IOHelpers.loadFully(new URL(set.getTemplate()));
+            URL url = getClass().getResource("/io/fabric8/insight/metrics/" + set.getName() + ".mvel");
+            if (url == null) {
+                url = getClass().getResource("/io/fabric8/insight/metrics/default.mvel");
             }
-            if (source == null) {
-                URL url = getClass().getResource("/io/fabric8/insight/metrics/" + set.getName() + ".mvel");
-                if (url == null) {
-                    url = getClass().getResource("/io/fabric8/insight/metrics/default.mvel");
-                }
-                if (url != null) {
-                    source = IOHelpers.loadFully(url);
-                } else {
-                    throw new IllegalStateException("Could not find default template");
-                }
+            if (url != null) {
+                source = IOHelpers.loadFully(url);
+            } else {
+                throw new IllegalStateException("Could not find default template");
             }
-            sources.put(set, source);
         }
         return source;
     }
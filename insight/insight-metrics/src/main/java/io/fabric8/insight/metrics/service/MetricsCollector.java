@@ -82,6 +82,8 @@ public class MetricsCollector implements MetricsCollectorMBean {
 
     private ScheduledThreadPoolExecutor executor;
     private Map<Query, QueryState> queries = new ConcurrentHashMap<Query, QueryState>();
+    // the queries with the same period are collected together
+    private ConcurrentMap<Long, PeriodicCollection> collections = new ConcurrentHashMap<Long, PeriodicCollection>();
 
     @Reference
     private MBeanServer mbeanServer;
@@ -95,7 +97,7 @@ public class MetricsCollector implements MetricsCollectorMBean {
     private BundleContext bundleContext;
 
     static class QueryState {
-        ScheduledFuture<?> future;
+        PeriodicCollection collection;
         Server server;
         Query query;
         QueryResult lastResult;
@@ -105,7 +107,7 @@ public class MetricsCollector implements MetricsCollectorMBean {
         Group<QueryNodeState> lock;
 
         public void close() {
-            future.cancel(false);
+            collection.remove(this);
             if (lock != null) {
                 try {
                     lock.close();
@@ -245,11 +247,18 @@ public class MetricsCollector implements MetricsCollectorMBean {
                     }
 
                     long delay = q.getPeriod() > 0 ? q.getPeriod() : defaultDelay;
-                    state.future = this.executor.scheduleAtFixedRate(
-                            new Task(state, storage),
-                            Math.round(Math.random() * 1000) + 1,
-                            delay * 1000,
-                            TimeUnit.MILLISECONDS);
+                    PeriodicCollection collection = collections.get(delay);
+                    if (collection == null) {
+                        collection = new PeriodicCollection(delay);
+                        collection.future = this.executor.scheduleAtFixedRate(
+                                collection,
+                                Math.round(Math.random() * 1000) + 1,
+                                delay * 1000,
+                                TimeUnit.MILLISECONDS);
+                        collections.put(delay, collection);
+                    }
+                    state.collection = collection;
+                    collection.add(state);
                     queries.put(q, state);
                 }
             }
@@ -320,12 +329,28 @@ public class MetricsCollector implements MetricsCollectorMBean {
         }
     }
 
-    class Task implements Runnable {
+    /**
+     * Collects all the queries with the same period in a single pass, see {@link JmxUtils#execute(Server, Collection, javax.management.MBeanServerConnection)}
+     */
+    class PeriodicCollection implements Runnable {
+
+        private final long period;
+        private final List<QueryState> states = new CopyOnWriteArrayList<QueryState>();
+        private ScheduledFuture<?> future;
 
-        private final QueryState query;
+        PeriodicCollection(long period) {
+            this.period = period;
+        }
 
-        public Task(QueryState query, ValidatingReference<MetricsStorageService> storage) {
-            this.query = query;
+        void add(QueryState state) {
+            states.add(state);
+        }
+
+        void remove(QueryState state) {
+            states.remove(state);
+            if (states.isEmpty() && collections.remove(period, this)) {
+                future.cancel(false);
+            }
         }
 
         @Override
@@ -337,49 +362,65 @@ public class MetricsCollector implements MetricsCollectorMBean {
                     return;
                 }
                 // If there's a lock, check we are the master
-                if (query.lock != null && !query.lock.isMaster()) {
+                final Map<Query, QueryState> active = new LinkedHashMap<Query, QueryState>();
+                for (QueryState state : states) {
+                    if (state.lock == null || state.lock.isMaster()) {
+                        active.put(state.query, state);
+                    }
+                }
+                if (active.isEmpty()) {
                     return;
                 }
+                final Server server = active.values().iterator().next().server;
 
                 Subject subject = new Subject();
                 subject.getPrincipals().add(new RolePrincipal("admin"));
 
-                QueryResult qrs = Subject.doAs(subject, new PrivilegedAction<QueryResult>() {
+                Map<Query, QueryResult> results = Subject.doAs(subject, new PrivilegedAction<Map<Query, QueryResult>>() {
                     @Override
-                    public QueryResult run() {
+                    public Map<Query, QueryResult> run() {
                         try {
-                            return JmxUtils.execute(query.server, query.query, mbeanServer);
+                            return JmxUtils.execute(server, active.keySet(), mbeanServer);
                         } catch (Throwable e) {
-                            LOG.error("Error retrieving metrics for " + query.query.getMetadata(), e);
+                            LOG.error("Error retrieving metrics", e);
                         }
                         return null;
                     }
                 });
 
-                if (qrs != null) {
-                    boolean forceSend = query.query.getMinPeriod() == query.query.getPeriod() ||
-                            qrs.getTimestamp().getTime() - query.lastSent >= TimeUnit.SECONDS.toMillis(query.query.getMinPeriod());
-                    if (!forceSend && query.lastResult != null) {
-                        if (qrs.getResults().equals(query.lastResult.getResults())) {
-                            query.lastResult = qrs;
-                            query.lastResultSent = false;
-                        }
-                        if (!query.lastResultSent) {
-                            renderAndSend(svc, query.lastResult);
+                if (results != null) {
+                    for (Map.Entry<Query, QueryResult> entry : results.entrySet()) {
+                        try {
+                            send(svc, active.get(entry.getKey()), entry.getValue());
+                        } catch (Throwable e) {
+                            LOG.error("Error sending metrics", e);
                         }
                     }
-                    query.lastResult = qrs;
-                    query.lastResultSent = true;
-                    query.lastSent = qrs.getTimestamp().getTime();
-                    renderAndSend(svc, qrs);
                 }
             } catch (Throwable e) {
                 LOG.error("Error sending metrics", e);
             }
         }
 
-        private void renderAndSend(MetricsStorageService svc, QueryResult qrs) throws Exception {
+        /**
+         * Sends the result unless nothing changed since the previous one and the minimum period did not elapse. The
+         * last unchanged result is sent before the next change so that the change is dated correctly.
+         */
+        private void send(MetricsStorageService svc, QueryState query, QueryResult qrs) throws Exception {
             long timestamp = qrs.getTimestamp().getTime();
+            boolean forceSend = query.query.getMinPeriod() == query.query.getPeriod() ||
+                    timestamp - query.lastSent >= TimeUnit.SECONDS.toMillis(query.query.getMinPeriod());
+            if (!forceSend && query.lastResult != null && !JmxUtils.hasChanged(query.lastResult, qrs)) {
+                query.lastResult = qrs;
+                query.lastResultSent = false;
+                return;
+            }
+            if (query.lastResult != null && !query.lastResultSent) {
+                svc.store(type, query.lastResult.getTimestamp().getTime(), query.lastResult);
+            }
+            query.lastResult = qrs;
+            query.lastResultSent = true;
+            query.lastSent = timestamp;
             svc.store(type, timestamp, qrs);
         }
 
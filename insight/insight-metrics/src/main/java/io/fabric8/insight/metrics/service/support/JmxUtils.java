@@ -17,14 +17,185 @@ package io.fabric8.insight.metrics.service.support;
 
 import io.fabric8.insight.metrics.model.*;
 import io.fabric8.insight.metrics.model.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.management.*;
 import javax.management.openmbean.CompositeDataSupport;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JmxUtils {
 
+    private static final transient Logger LOG = LoggerFactory.getLogger(JmxUtils.class);
+
+    private static final Map<String, ObjectName> OBJECT_NAMES = new ConcurrentHashMap<String, ObjectName>();
+
+    /**
+     * Executes several queries in a single pass. Every ObjectName pattern is resolved once, and all the
+     * attributes the queries read from an MBean are read with a single getAttributes call.
+     *
+     * @return the results by query, without the queries which failed
+     */
+    public static Map<Query, QueryResult> execute(Server server, Collection<Query> queries, MBeanServerConnection mbs) throws JMException, IOException {
+        // Resolve the MBeans and gather the attributes to read from each of them
+        Map<String, Set<ObjectName>> mbeans = new HashMap<String, Set<ObjectName>>();
+        Map<ObjectName, Set<String>> attributes = new HashMap<ObjectName, Set<String>>();
+        Map<Query, Exception> failures = new HashMap<Query, Exception>();
+        for (Query query : queries) {
+            try {
+                for (Request request : query.getRequests()) {
+                    if (request instanceof MBeanAttrs) {
+                        queryNames(((MBeanAttrs) request).getObj(), mbeans, mbs);
+                    } else if (request instanceof MBeanOpers) {
+                        queryNames(((MBeanOpers) request).getObj(), mbeans, mbs);
+                    }
+                }
+            } catch (Exception e) {
+                failures.put(query, e);
+                continue;
+            }
+            for (Request request : query.getRequests()) {
+                if (request instanceof MBeanAttrs) {
+                    MBeanAttrs attrs = (MBeanAttrs) request;
+                    for (ObjectName mbean : mbeans.get(attrs.getObj())) {
+                        Set<String> names = attributes.get(mbean);
+                        if (names == null) {
+                            names = new LinkedHashSet<String>();
+                            attributes.put(mbean, names);
+                        }
+                        names.addAll(attrs.getAttrs());
+                    }
+                }
+            }
+        }
+        Map<ObjectName, Map<String, Object>> values = new HashMap<ObjectName, Map<String, Object>>();
+        Map<ObjectName, Exception> mbeanFailures = new HashMap<ObjectName, Exception>();
+        for (Map.Entry<ObjectName, Set<String>> entry : attributes.entrySet()) {
+            AttributeList al;
+            try {
+                al = mbs.getAttributes(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+            } catch (InstanceNotFoundException e) {
+                // unregistered since it was resolved
+                continue;
+            } catch (Exception e) {
+                // only the queries reading this MBean fail
+                mbeanFailures.put(entry.getKey(), e);
+                continue;
+            }
+            Map<String, Object> mbeanValues = new HashMap<String, Object>();
+            for (Attribute attribute : al.asList()) {
+                mbeanValues.put(attribute.getName(), getJmxValue(attribute.getValue()));
+            }
+            values.put(entry.getKey(), mbeanValues);
+        }
+
+        // Split the values between the queries
+        Date timestamp = new Date();
+        Map<Query, QueryResult> answer = new LinkedHashMap<Query, QueryResult>();
+        for (Query query : queries) {
+            Map<String, Result<?>> queryResults = new HashMap<String, Result<?>>();
+            try {
+                if (failures.containsKey(query)) {
+                    throw failures.get(query);
+                }
+                for (Request request : query.getRequests()) {
+                    if (request instanceof MBeanAttrs) {
+                        MBeanAttrs attrs = (MBeanAttrs) request;
+                        List<MBeanAttrResult> results = new ArrayList<MBeanAttrResult>();
+                        for (ObjectName mbean : mbeans.get(attrs.getObj())) {
+                            if (mbeanFailures.containsKey(mbean)) {
+                                throw mbeanFailures.get(mbean);
+                            }
+                            Map<String, Object> mbeanValues = values.get(mbean);
+                            if (mbeanValues != null) {
+                                Map<String, Object> requestValues = new HashMap<String, Object>();
+                                for (String attr : attrs.getAttrs()) {
+                                    if (mbeanValues.containsKey(attr)) {
+                                        requestValues.put(attr, mbeanValues.get(attr));
+                                    }
+                                }
+                                results.add(new MBeanAttrResult(mbean, requestValues));
+                            }
+                        }
+                        queryResults.put(request.getName(), new MBeanAttrsResult(attrs, results));
+                    } else if (request instanceof MBeanOpers) {
+                        MBeanOpers opers = (MBeanOpers) request;
+                        queryResults.put(request.getName(), invoke(opers, mbeans.get(opers.getObj()), mbs));
+                    } else {
+                        throw new IllegalArgumentException("Unsupported request " + request);
+                    }
+                }
+                answer.put(query, new QueryResult(server, query, timestamp, queryResults));
+            } catch (Exception e) {
+                LOG.error("Error retrieving metrics for " + query.getMetadata(), e);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Compares two results of the same query attribute by attribute, stopping at the first difference.
+     */
+    public static boolean hasChanged(QueryResult previous, QueryResult current) {
+        Map<String, Result<?>> previousResults = previous.getResults();
+        Map<String, Result<?>> currentResults = current.getResults();
+        if (previousResults.size() != currentResults.size()) {
+            return true;
+        }
+        for (Map.Entry<String, Result<?>> entry : currentResults.entrySet()) {
+            Result<?> previousResult = previousResults.get(entry.getKey());
+            Result<?> currentResult = entry.getValue();
+            if (currentResult instanceof MBeanAttrsResult && previousResult instanceof MBeanAttrsResult) {
+                List<MBeanAttrResult> previousAttrs = ((MBeanAttrsResult) previousResult).getResults();
+                List<MBeanAttrResult> currentAttrs = ((MBeanAttrsResult) currentResult).getResults();
+                if (previousAttrs.size() != currentAttrs.size()) {
+                    return true;
+                }
+                for (int i = 0; i < currentAttrs.size(); i++) {
+                    MBeanAttrResult previousAttr = previousAttrs.get(i);
+                    MBeanAttrResult currentAttr = currentAttrs.get(i);
+                    if (!currentAttr.getObjectName().equals(previousAttr.getObjectName())
+                            || hasChanged(previousAttr.getAttrs(), currentAttr.getAttrs())) {
+                        return true;
+                    }
+                }
+            } else if (currentResult == null ? previousResult != null : !currentResult.equals(previousResult)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasChanged(Map<String, Object> previous, Map<String, Object> current) {
+        if (previous.size() != current.size()) {
+            return true;
+        }
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            Object value = entry.getValue();
+            Object previousValue = previous.get(entry.getKey());
+            if (value == null ? previousValue != null || !previous.containsKey(entry.getKey()) : !value.equals(previousValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<ObjectName> queryNames(String obj, Map<String, Set<ObjectName>> mbeans, MBeanServerConnection mbs) throws JMException, IOException {
+        Set<ObjectName> names = mbeans.get(obj);
+        if (names == null) {
+            ObjectName name = OBJECT_NAMES.get(obj);
+            if (name == null) {
+                name = new ObjectName(obj);
+                OBJECT_NAMES.put(obj, name);
+            }
+            names = mbs.queryNames(name, null);
+            mbeans.put(obj, names);
+        }
+        return names;
+    }
+
     public static QueryResult execute(Server server, Query query, MBeanServerConnection mbs) throws JMException, IOException {
         // Iterate through queries
         Map<String, Result<?>> queryResults = new HashMap<String, Result<?>>();
@@ -45,9 +216,12 @@ public class JmxUtils {
     }
 
     public static MBeanOpersResult execute(Server server, MBeanOpers request, MBeanServerConnection mbs) throws JMException, IOException {
-        List<MBeanOperResult> results = new ArrayList<MBeanOperResult>();
         // Get all mbeans
-        Set<ObjectName> mbeans = mbs.queryNames(new ObjectName(request.getObj()), null);
+        return invoke(request, mbs.queryNames(new ObjectName(request.getObj()), null), mbs);
+    }
+
+    private static MBeanOpersResult invoke(MBeanOpers request, Set<ObjectName> mbeans, MBeanServerConnection mbs) throws JMException, IOException {
+        List<MBeanOperResult> results = new ArrayList<MBeanOperResult>();
         for (ObjectName mbean : mbeans) {
             // Invoke operation
             List<Object> args = request.getArgs();
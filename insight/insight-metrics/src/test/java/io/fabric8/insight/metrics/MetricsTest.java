@@ -16,23 +16,40 @@
 package io.fabric8.insight.metrics;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.insight.metrics.model.MBeanAttrResult;
 import io.fabric8.insight.metrics.model.MBeanAttrs;
+import io.fabric8.insight.metrics.model.MBeanAttrsResult;
 import io.fabric8.insight.metrics.model.MBeanOpers;
 import io.fabric8.insight.metrics.model.Query;
 import io.fabric8.insight.metrics.model.Request;
+import io.fabric8.insight.metrics.model.Result;
 import io.fabric8.insight.metrics.service.support.JmxUtils;
 import io.fabric8.insight.metrics.mvel.Renderer;
 import io.fabric8.insight.metrics.model.QueryResult;
 import io.fabric8.insight.metrics.model.Server;
 import org.junit.Test;
 
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
 import java.lang.management.ManagementFactory;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class MetricsTest {
 
@@ -55,4 +72,107 @@ public class MetricsTest {
         assertEquals("local", map.get("host"));
         assertNotNull(map.get("@timestamp"));
     }
+
+    @Test
+    public void testCollectSeveralQueries() throws Exception {
+        Query memory = new Query("memory", new HashSet<Request>(Arrays.<Request>asList(
+                new MBeanAttrs("heap", "java.lang:type=Memory", Arrays.asList("HeapMemoryUsage", "Unknown")))), null, null, null, 0, 0);
+        Query runtime = new Query("runtime", new HashSet<Request>(Arrays.asList(
+                new MBeanAttrs("nonHeap", "java.lang:type=Memory", Arrays.asList("NonHeapMemoryUsage")),
+                new MBeanAttrs("pools", "java.lang:type=MemoryPool,*", Arrays.asList("Name")),
+                new MBeanOpers("deadlocks", "java.lang:type=Threading", "findDeadlockedThreads",
+                        Collections.emptyList(), Collections.<String>emptyList())
+        )), null, null, null, 0, 0);
+
+        Map<Query, QueryResult> results = JmxUtils.execute(new Server("local"), Arrays.asList(memory, runtime),
+                ManagementFactory.getPlatformMBeanServer());
+
+        assertEquals(2, results.size());
+        MBeanAttrsResult heap = (MBeanAttrsResult) results.get(memory).getResults().get("heap");
+        assertEquals(1, heap.getResults().size());
+        assertEquals(Collections.singleton("HeapMemoryUsage"), heap.getResults().get(0).getAttrs().keySet());
+        MBeanAttrsResult nonHeap = (MBeanAttrsResult) results.get(runtime).getResults().get("nonHeap");
+        assertEquals(Collections.singleton("NonHeapMemoryUsage"), nonHeap.getResults().get(0).getAttrs().keySet());
+        assertFalse(((MBeanAttrsResult) results.get(runtime).getResults().get("pools")).getResults().isEmpty());
+        assertNotNull(results.get(runtime).getResults().get("deadlocks"));
+    }
+
+    @Test
+    public void testFailedQueriesAreDropped() throws Exception {
+        Query memory = new Query("memory", new HashSet<Request>(Arrays.<Request>asList(
+                new MBeanAttrs("heap", "java.lang:type=Memory", Arrays.asList("HeapMemoryUsage")))), null, null, null, 0, 0);
+        Query malformed = new Query("malformed", new HashSet<Request>(Arrays.<Request>asList(
+                new MBeanAttrs("heap", "not an object name", Arrays.asList("HeapMemoryUsage")))), null, null, null, 0, 0);
+        Query failing = new Query("failing", new HashSet<Request>(Arrays.<Request>asList(
+                new MBeanAttrs("count", "test:type=Failing", Arrays.asList("Count")))), null, null, null, 0, 0);
+
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("test:type=Failing");
+        mbs.registerMBean(new FailingMBean(), name);
+        try {
+            Map<Query, QueryResult> results = JmxUtils.execute(new Server("local"), Arrays.asList(malformed, failing, memory), mbs);
+
+            assertEquals(Collections.singleton(memory), results.keySet());
+            MBeanAttrsResult heap = (MBeanAttrsResult) results.get(memory).getResults().get("heap");
+            assertEquals(1, heap.getResults().size());
+        } finally {
+            mbs.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testChanges() throws Exception {
+        QueryResult previous = result(1L, "a");
+        assertFalse(JmxUtils.hasChanged(previous, result(1L, "a")));
+        assertTrue(JmxUtils.hasChanged(previous, result(2L, "a")));
+        assertTrue(JmxUtils.hasChanged(previous, result(1L, "b")));
+        assertTrue(JmxUtils.hasChanged(previous, result(1L, null)));
+    }
+
+    private static QueryResult result(Object count, String name) throws Exception {
+        MBeanAttrs request = new MBeanAttrs("test", "test:type=Test", Arrays.asList("Count", "Name"));
+        Map<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put("Count", count);
+        if (name != null) {
+            attrs.put("Name", name);
+        }
+        MBeanAttrsResult result = new MBeanAttrsResult(request, Arrays.asList(new MBeanAttrResult(new ObjectName("test:type=Test"), attrs)));
+        return new QueryResult(new Server("local"), null, new Date(), Collections.<String, Result<?>>singletonMap("test", result));
+    }
+
+    /**
+     * An MBean whose attributes cannot be read
+     */
+    private static class FailingMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException, MBeanException, ReflectionException {
+            throw new MBeanException(new Exception("Cannot read " + attribute));
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            throw new IllegalStateException("Cannot read the attributes");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            return new MBeanInfo(FailingMBean.class.getName(), null, null, null, null, null);
+        }
+    }
 }